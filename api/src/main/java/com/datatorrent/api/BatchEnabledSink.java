@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.api;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A {@link Sink} which supports adding several data tuples at once. The reservoirs hand the runs of data tuples
+ * found between two control tuples to such sinks in batches rather than one tuple at a time.
+ *
+ * @since 3.7.0
+ */
+@InterfaceStability.Evolving
+public interface BatchEnabledSink<T> extends Sink<T>
+{
+  /**
+   * Add a batch of data tuples to the sink. The caller reuses the array once the method returns, so the sink must not
+   * keep a reference to it.
+   *
+   * @param tuples array holding the tuples, starting at index 0
+   * @param count number of the tuples in the array
+   */
+  void putBatch(Object[] tuples, int count);
+}
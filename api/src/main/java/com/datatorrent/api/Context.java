@@ -116,6 +116,20 @@ public interface Context
     ENABLE, FOLLOW_HADOOP_AUTH, FOLLOW_HADOOP_HTTP_AUTH, DISABLE
   }
 
+  /**
+   * The strategy an operator uses to wait when there are no tuples available on any of its input ports or when an
+   * input operator does not emit any tuples.<br/><br/>
+   * SLEEP - Sleep for a period increasing from 0 to SPIN_MILLIS milliseconds.<br/>
+   * SPIN - Poll the input ports without pausing, trades a CPU core for the lowest latency.<br/>
+   * YIELD - Yield the processor to the other threads between the polls.<br/>
+   * PARK - Park the thread for a period doubling from a microsecond up to SPIN_MILLIS milliseconds.<br/>
+   * BLOCK - Block until the upstream puts a tuple on any of the input ports, or at most SPIN_MILLIS milliseconds.
+   */
+  enum WaitStrategy
+  {
+    SLEEP, SPIN, YIELD, PARK, BLOCK
+  }
+
   interface PortContext extends Context
   {
     /**
@@ -181,6 +195,36 @@ public interface Context
      */
     Attribute<Class<?>> TUPLE_CLASS = new Attribute<>(Class2String.getInstance());
 
+    /**
+     * Input port attribute. Deliver the tuples received from the buffer server as they were serialized by the
+     * STREAM_CODEC of the port, along with their partition, instead of deserializing them. Meant for the operators
+     * which forward the tuples without looking inside, the serialized tuples emitted to a stream with the same codec
+     * are published without being serialized again. The STREAM_CODEC of the port needs to be set to a codec which is
+     * not stateful. The tuples of container and thread local streams are delivered as they were emitted.
+     */
+    Attribute<Boolean> RAW_TUPLES = new Attribute<>(false);
+
+    /**
+     * Output port attribute. Compress the payload tuples published to the buffer server in batches, each batch being
+     * flushed at the next control tuple or once it reaches 64 KB. The buffer server keeps the batches compressed,
+     * including the blocks it spools to the disk, and the subscribers decompress them. Meant for the streams which
+     * cross the hosts when the network rather than the CPU is the bottleneck. The compression ratio and the time spent
+     * compressing and decompressing are reported in the port stats. The buffer server cannot filter the tuples of a
+     * compressed batch by partition, so the attribute cannot be set on a stream whose sink is partitioned other than
+     * in parallel, each partition would receive and decompress the whole stream.
+     */
+    Attribute<Boolean> BUFFER_SERVER_COMPRESSION = new Attribute<>(false);
+
+    /**
+     * Output port attribute. Maximum number of payload tuples the publisher packs into a single buffer server message.
+     * A frame is sent when it is full, once it reaches 64 KB, or at the next control tuple, so the framing adds no
+     * latency across the windows. The buffer server stores and forwards the frames without unpacking them, which
+     * cuts the per message overhead of the small tuples. The default of 1 sends every tuple in its own message. The
+     * buffer server delivers a frame whole to every partition which owns at least one of its tuples, so a frame size
+     * greater than 1 cannot be set on a stream whose sink is partitioned other than in parallel.
+     */
+    Attribute<Integer> PAYLOAD_FRAME_SIZE = new Attribute<>(1);
+
     @SuppressWarnings("FieldNameHidesFieldInSuperclass")
     long serialVersionUID = AttributeMap.AttributeInitializer.initialize(PortContext.class);
   }
@@ -200,6 +244,12 @@ public interface Context
      * Default value is 10 milliseconds.
      */
     Attribute<Integer> SPIN_MILLIS = new Attribute<>(10);
+    /**
+     * The strategy used to wait when there are no tuples available on any of the input ports of the operator.<br/>
+     * See {@link WaitStrategy} for the different options.<br/>
+     * Default value is WaitStrategy.SLEEP
+     */
+    Attribute<WaitStrategy> WAIT_STRATEGY = new Attribute<>(WaitStrategy.SLEEP, StringCodec.Enum2String.getInstance(WaitStrategy.class));
     /**
      * The maximum number of attempts to restart a failing operator before shutting down the application.
      * Until this number is reached, when an operator fails to start it is re-spawned in a new container. Once all the
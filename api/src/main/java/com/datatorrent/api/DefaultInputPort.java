@@ -29,7 +29,7 @@ import com.datatorrent.api.Operator.InputPort;
  * @param <T>
  * @since 0.3.2
  */
-public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
+public abstract class DefaultInputPort<T> implements InputPort<T>, BatchEnabledSink<T>
 {
   protected int count;
   protected boolean connected = false;
@@ -79,6 +79,14 @@ public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
     process(tuple);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void putBatch(Object[] tuples, int count)
+  {
+    this.count += count;
+    process(tuples, count);
+  }
+
   /** {@inheritDoc} */
   @Override
   public int getCount(boolean reset)
@@ -109,4 +117,20 @@ public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
    */
   public abstract void process(T tuple);
 
+  /**
+   * Processes a run of tuples received between two control tuples. The default implementation calls
+   * {@link #process(Object)} for each of the tuples, the ports of the operators which can work on several tuples at
+   * once, for example to insert them in bulk or to aggregate them, override it.
+   *
+   * @param tuples array holding the tuples, starting at index 0, the array is reused once the method returns
+   * @param count number of the tuples in the array
+   */
+  @SuppressWarnings("unchecked")
+  public void process(Object[] tuples, int count)
+  {
+    for (int i = 0; i < count; i++) {
+      process((T)tuples[i]);
+    }
+  }
+
 }
@@ -55,6 +55,17 @@ public interface Stats extends Serializable
     public ArrayList<PortStats> inputPorts;
     public ArrayList<PortStats> outputPorts;
     public long cpuTimeUsed;
+    /**
+     * Bytes allocated by the thread of the operator since the previous window stats, zero when the JVM does not
+     * measure the allocations per thread. The operators deployed thread local share their thread and its allocations.
+     */
+    public long allocatedBytes;
+    /**
+     * Number and time in milliseconds of the garbage collections in the container of the operator since the previous
+     * window stats. These are the same for all the operators of the container.
+     */
+    public long gcCollectionCount;
+    public long gcCollectionTime;
     public CheckpointStats checkpointStats;
     /**
      * @deprecated use {@link #metrics}
@@ -75,6 +86,13 @@ public interface Stats extends Serializable
       public int tupleCount;
       public long endWindowTimestamp;
       public long bufferServerBytes;
+      /**
+       * Bytes of the compressed tuples exchanged with the buffer server, before and after the compression, along with
+       * the time spent compressing or decompressing them. These are zero unless the stream is compressed.
+       */
+      public long uncompressedBytes;
+      public long compressedBytes;
+      public long compressionNanos;
       public int queueSize;
       /**
        * If there is a recording on the port, this contains the recording id, otherwise null
@@ -89,7 +107,7 @@ public interface Stats extends Serializable
       @Override
       public String toString()
       {
-        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
+        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", uncompressedBytes = " + uncompressedBytes + ", compressedBytes = " + compressedBytes + ", compressionNanos = " + compressionNanos + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
       }
 
     }
@@ -98,6 +116,7 @@ public interface Stats extends Serializable
     public String toString()
     {
       return "OperatorStats{" + "windowId=" + windowId + ", checkpointedWindowId=" + checkpoint + ", inputPorts=" + inputPorts + ", outputPorts=" + outputPorts + ", cpuTimeUsed=" + cpuTimeUsed +
+        ", allocatedBytes=" + allocatedBytes + ", gcCollectionCount=" + gcCollectionCount + ", gcCollectionTime=" + gcCollectionTime +
         ", checkpointStats=" + checkpointStats + '}';
     }
 
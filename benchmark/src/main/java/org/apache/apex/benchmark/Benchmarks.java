@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks of the engine and the buffer server.</p>
+ * <br>
+ * Takes the JMH command line options, for example {@code java -jar benchmarks.jar Reservoir -p capacity=1024} runs
+ * the reservoir benchmarks with the given capacity only. Unless the options tell otherwise the results are written
+ * as JSON to {@code jmh-result.json}, so the results of the releases can be compared by tools.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class Benchmarks
+{
+  private Benchmarks()
+  {
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.shouldHelp()) {
+      options.showHelp();
+      return;
+    }
+
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+    if (!options.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    Runner runner = new Runner(builder.build());
+    if (options.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+}
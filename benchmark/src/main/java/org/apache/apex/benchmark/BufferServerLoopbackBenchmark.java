@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.Sink;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.plan.logical.DefaultKryoStreamCodec;
+import com.datatorrent.stram.stream.BufferServerPublisher;
+import com.datatorrent.stram.stream.BufferServerSubscriber;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.ResetWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * <p>Measures the throughput of a stream from a {@link BufferServerPublisher} through the buffer {@link Server} to a
+ * {@link BufferServerSubscriber}, all of them in the same process.</p>
+ * <br>
+ * Every invocation publishes a window of tuples and waits until the subscriber delivers all of them. The windows are
+ * purged from the buffer server as the stream goes, the way the containers purge the committed windows.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferServerLoopbackBenchmark
+{
+  private static final int WINDOW_SIZE = 1000;
+  private static final int PURGE_WINDOWS = 100;
+  private static final long TIMEOUT_MILLIS = 30000;
+  private static final int WINDOW_WIDTH_MILLIS = 500;
+
+  @Param({"stateful", "kryo"})
+  public String codec;
+
+  /**
+   * number of the tuples packed in a message, 1 sends every tuple in a message of its own.
+   */
+  @Param({"1", "64"})
+  public int payloadFrameSize;
+
+  @Param({"false", "true"})
+  public boolean compression;
+
+  private DefaultEventLoop eventloop;
+  private Server server;
+  private BufferServerPublisher publisher;
+  private BufferServerSubscriber subscriber;
+  private SweepableReservoir reservoir;
+  private String[] tuples;
+  private long windowId;
+
+  @Setup
+  public void setup(final Blackhole blackhole) throws IOException
+  {
+    eventloop = DefaultEventLoop.createEventLoop("BufferServerLoopbackBenchmark");
+    eventloop.start();
+    server = new Server(eventloop, 0, 1024 * 1024, 8);
+    InetSocketAddress address = server.run();
+
+    StreamCodec<Object> streamCodec = "stateful".equals(codec) ? new DefaultStatefulStreamCodec<>() :
+        new DefaultKryoStreamCodec<>();
+    StreamContext publisherContext = newContext(address, streamCodec);
+    publisherContext.put(PortContext.BUFFER_SERVER_COMPRESSION, compression);
+    publisherContext.put(PortContext.PAYLOAD_FRAME_SIZE, payloadFrameSize);
+    publisher = new BufferServerPublisher(publisherContext.getSourceId(), 1024);
+    publisher.setup(publisherContext);
+    publisher.activate(publisherContext);
+
+    StreamContext subscriberContext = newContext(address, streamCodec);
+    subscriber = new BufferServerSubscriber(subscriberContext.getSinkId(), 1024);
+    subscriber.setup(subscriberContext);
+    reservoir = subscriber.acquireReservoir("benchmark", 16 * 1024);
+    reservoir.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        blackhole.consume(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    subscriber.activate(subscriberContext);
+
+    tuples = new String[WINDOW_SIZE];
+    for (int i = 0; i < tuples.length; i++) {
+      tuples[i] = "tuple of the benchmark stream " + i;
+    }
+
+    /*
+     * the stream starts with a reset window like the streams of the containers do, the buffer server relies on its
+     * base seconds to find the windows to purge.
+     */
+    windowId = System.currentTimeMillis() / 1000 << 32;
+    publisher.put(new ResetWindowTuple(windowId | WINDOW_WIDTH_MILLIS));
+  }
+
+  private StreamContext newContext(InetSocketAddress address, StreamCodec<Object> streamCodec)
+  {
+    StreamContext context = new StreamContext("benchmark");
+    context.setSourceId("publisher");
+    context.setSinkId("subscriber");
+    context.setFinishedWindowId(-1);
+    context.setBufferServerAddress(address);
+    context.put(StreamContext.CODEC, streamCodec);
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    return context;
+  }
+
+  @TearDown
+  public void teardown()
+  {
+    subscriber.deactivate();
+    publisher.deactivate();
+    server.stop();
+    eventloop.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public long publishSubscribe() throws InterruptedException
+  {
+    windowId++;
+    publisher.put(new Tuple(MessageType.BEGIN_WINDOW, windowId));
+    for (String tuple : tuples) {
+      publisher.put(tuple);
+    }
+    publisher.put(new EndWindowTuple(windowId));
+
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (true) {
+      Tuple tuple = reservoir.sweep();
+      if (tuple == null) {
+        if (System.currentTimeMillis() > deadline) {
+          throw new IllegalStateException("Window " + windowId + " was not delivered in time");
+        }
+        Thread.yield();
+        continue;
+      }
+      reservoir.remove();
+      if (tuple.getType() == MessageType.END_WINDOW) {
+        break;
+      }
+    }
+
+    if ((int)windowId % PURGE_WINDOWS == 0) {
+      server.purge(windowId - 1);
+    }
+    return windowId;
+  }
+}
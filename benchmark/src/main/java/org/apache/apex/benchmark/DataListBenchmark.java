@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.datatorrent.bufferserver.internal.BlockPool;
+import com.datatorrent.bufferserver.internal.DataList;
+import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.netlet.util.VarInt;
+
+/**
+ * <p>Measures the writing of a window of messages to a {@link DataList} and the reading of the window back.</p>
+ * <br>
+ * Every invocation writes the window to a new data list. The data lists take their memory block from a pool and
+ * return it when done, so the blocks are reused rather than allocated for every window.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataListBenchmark
+{
+  private static final int BASE_SECONDS = 0x7afebabe;
+  private static final int WINDOW_SIZE = 1000;
+
+  /**
+   * size in bytes of the payload of the tuples.
+   */
+  @Param({"16", "256"})
+  public int tupleSize;
+
+  private BlockPool pool;
+  private byte[][] messages;
+
+  @Setup
+  public void setup()
+  {
+    messages = new byte[WINDOW_SIZE + 3][];
+    messages[0] = ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500);
+    messages[1] = BeginWindowTuple.getSerializedTuple(1);
+    for (int i = 0; i < WINDOW_SIZE; i++) {
+      messages[i + 2] = PayloadTuple.getSerializedTuple(i, tupleSize);
+    }
+    messages[WINDOW_SIZE + 2] = EndWindowTuple.getSerializedTuple(1);
+
+    int size = 0;
+    for (byte[] message : messages) {
+      size += VarInt.getSize(message.length) + message.length;
+    }
+    pool = new BlockPool(size, 1);
+  }
+
+  private DataList publish()
+  {
+    DataList dataList = new DataList("benchmark", pool, false);
+    dataList.setAutoFlushExecutor(MoreExecutors.sameThreadExecutor());
+    final byte[] buffer = dataList.getBuffer((long)BASE_SECONDS << 32);
+    int offset = 0;
+    for (byte[] message : messages) {
+      offset = VarInt.write(message.length, buffer, offset);
+      System.arraycopy(message, 0, buffer, offset, message.length);
+      offset += message.length;
+    }
+    /* the data list indexes the messages received by the buffer server from the publisher in a single read */
+    dataList.flush(offset);
+    return dataList;
+  }
+
+  private void release(DataList dataList)
+  {
+    pool.release(dataList.getBuffer((long)BASE_SECONDS << 32));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public int write()
+  {
+    DataList dataList = publish();
+    release(dataList);
+    return dataList.getPosition();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public int writeRead()
+  {
+    DataList dataList = publish();
+    int length = 0;
+    try (DataListIterator iterator = dataList.newIterator(0)) {
+      while (iterator.hasNext()) {
+        SerializedData data = iterator.next();
+        length += data.length;
+      }
+    }
+    release(dataList);
+    return length;
+  }
+}
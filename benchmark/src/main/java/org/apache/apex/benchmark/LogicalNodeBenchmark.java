@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.datatorrent.bufferserver.internal.DataList;
+import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
+import com.datatorrent.bufferserver.internal.LogicalNode;
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.netlet.WriteOnlyClient;
+import com.datatorrent.netlet.util.VarInt;
+
+/**
+ * <p>Measures the distribution of a window of messages by a {@link LogicalNode} to its subscribers.</p>
+ * <br>
+ * The window is published once and every invocation distributes it through a new logical node, to a client which
+ * discards the data. The partitioned logical node subscribes to half of the partitions of the tuples.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogicalNodeBenchmark
+{
+  private static final int BASE_SECONDS = 0x7afebabe;
+  private static final int WINDOW_SIZE = 1000;
+  private static final int PARTITION_MASK = 0x0f;
+
+  @Param({"false", "true"})
+  public boolean partitioned;
+
+  /**
+   * number of the clients of the logical node.
+   */
+  @Param({"1", "4"})
+  public int subscribers;
+
+  private DataList dataList;
+  private WriteOnlyClient[] clients;
+
+  @Setup
+  public void setup(final Blackhole blackhole)
+  {
+    dataList = new DataList("benchmark", 1024 * 1024, 1, false);
+    dataList.setAutoFlushExecutor(MoreExecutors.sameThreadExecutor());
+    final byte[] buffer = dataList.getBuffer((long)BASE_SECONDS << 32);
+    int offset = write(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500), buffer, 0);
+    offset = write(BeginWindowTuple.getSerializedTuple(1), buffer, offset);
+    for (int i = 0; i < WINDOW_SIZE; i++) {
+      offset = write(PayloadTuple.getSerializedTuple(i, 64), buffer, offset);
+    }
+    offset = write(EndWindowTuple.getSerializedTuple(1), buffer, offset);
+    dataList.flush(offset);
+
+    clients = new WriteOnlyClient[subscribers];
+    for (int i = 0; i < clients.length; i++) {
+      clients[i] = new WriteOnlyClient()
+      {
+        @Override
+        public boolean send(byte[] array, int off, int len)
+        {
+          blackhole.consume(array);
+          return true;
+        }
+      };
+    }
+  }
+
+  private static int write(byte[] message, byte[] buffer, int offset)
+  {
+    int dataOffset = VarInt.write(message.length, buffer, offset);
+    System.arraycopy(message, 0, buffer, dataOffset, message.length);
+    return dataOffset + message.length;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public boolean distribute()
+  {
+    try (DataListIterator iterator = dataList.newIterator(0)) {
+      LogicalNode logicalNode = new LogicalNode("benchmark", "publisher", "subscriber", iterator, -1, null);
+      for (WriteOnlyClient client : clients) {
+        logicalNode.addConnection(client);
+      }
+      if (partitioned) {
+        for (int partition = 0; partition <= PARTITION_MASK; partition += 2) {
+          logicalNode.addPartition(partition, PARTITION_MASK);
+        }
+      }
+      logicalNode.catchUp();
+      return logicalNode.isReady();
+    }
+  }
+}
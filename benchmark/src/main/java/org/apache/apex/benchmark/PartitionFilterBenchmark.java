@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.BitVector;
+import com.datatorrent.bufferserver.util.PartitionFilter;
+
+/**
+ * <p>Measures the matching of the partitions of the tuples against the partitions of a subscriber.</p>
+ * <br>
+ * The subscriber holds half of the partitions of the stream. The {@link PartitionFilter} is compared with the
+ * {@link BitVector}s it replaced, on their own and with the partition read from the serialized payload tuples.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionFilterBenchmark
+{
+  private static final int COUNT = 1024;
+
+  /**
+   * number of the partitions of the stream, a power of two.
+   */
+  @Param({"2", "16", "256"})
+  public int partitions;
+
+  private PartitionFilter filter;
+  private BitVector[] bitVectors;
+  private int[] hashes;
+  private byte[][] tuples;
+
+  @Setup
+  public void setup()
+  {
+    final int mask = partitions - 1;
+    List<BitVector> subscribed = new ArrayList<>();
+    for (int i = 0; i < partitions; i += 2) {
+      subscribed.add(new BitVector(i, mask));
+    }
+    filter = new PartitionFilter(subscribed);
+    bitVectors = subscribed.toArray(new BitVector[subscribed.size()]);
+
+    hashes = new int[COUNT];
+    tuples = new byte[COUNT][];
+    Random random = new Random(0);
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = random.nextInt();
+      tuples[i] = PayloadTuple.getSerializedTuple(hashes[i], 16);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int partitionFilter()
+  {
+    int matches = 0;
+    for (int hash : hashes) {
+      if (filter.matches(hash)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int bitVectors()
+  {
+    int matches = 0;
+    for (int hash : hashes) {
+      for (BitVector bitVector : bitVectors) {
+        if (bitVector.matches(hash)) {
+          matches++;
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Reads the partition in place from the serialized payload tuple and matches it with the filter.
+   */
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int serializedPartitionFilter()
+  {
+    int matches = 0;
+    for (byte[] tuple : tuples) {
+      if (filter.matches(PayloadTuple.getPartition(tuple, 0))) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Deserializes the payload tuple to get its partition and matches it with the bit vectors.
+   */
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public int serializedBitVectors()
+  {
+    int matches = 0;
+    for (byte[] tuple : tuples) {
+      int partition = Tuple.getTuple(tuple, 0, tuple.length).getPartition();
+      for (BitVector bitVector : bitVectors) {
+        if (bitVector.matches(partition)) {
+          matches++;
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.api.Sink;
+import com.datatorrent.stram.engine.AbstractReservoir;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * <p>Measures the put and sweep of the tuples through each of the {@link AbstractReservoir} implementations.</p>
+ * <br>
+ * The tuples are put and swept by the same thread, a window of tuples at a time, so the measurement covers the cost
+ * of the queue operations without the cost of the threads waiting for each other.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservoirBenchmark
+{
+  /**
+   * system property choosing the reservoir implementation.
+   */
+  private static final String RESERVOIR_PROPERTY = "com.datatorrent.stram.engine.Reservoir";
+  private static final int WINDOW_SIZE = 1000;
+
+  @Param({"SpscArrayQueueReservoir", "SpscArrayBlockingQueueReservoir", "CircularBufferReservoir",
+      "ArrayBlockingQueueReservoir"})
+  public String reservoir;
+
+  @Param({"1024", "16384"})
+  public int capacity;
+
+  private AbstractReservoir queue;
+  private Object[] tuples;
+  private Tuple endWindow;
+
+  @Setup
+  public void setup(final Blackhole blackhole)
+  {
+    System.setProperty(RESERVOIR_PROPERTY, AbstractReservoir.class.getName() + '$' + reservoir);
+    try {
+      queue = AbstractReservoir.newReservoir("benchmark", capacity);
+    } finally {
+      System.clearProperty(RESERVOIR_PROPERTY);
+    }
+    queue.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        blackhole.consume(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+
+    tuples = new Object[WINDOW_SIZE];
+    for (int i = 0; i < tuples.length; i++) {
+      tuples[i] = i;
+    }
+    endWindow = new EndWindowTuple(0);
+  }
+
+  /**
+   * Puts a window of tuples and sweeps them, in batches of the reservoir capacity when the window does not fit.
+   */
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public Tuple putSweep() throws InterruptedException
+  {
+    for (int i = 0; i < tuples.length; i++) {
+      if (!queue.offer(tuples[i])) {
+        queue.sweep();
+        queue.put(tuples[i]);
+      }
+    }
+    if (!queue.offer(endWindow)) {
+      queue.sweep();
+      queue.put(endWindow);
+    }
+    Tuple tuple = queue.sweep();
+    queue.remove();
+    return tuple;
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.MappedStorage;
+import com.datatorrent.bufferserver.storage.Storage;
+
+/**
+ * <p>Measures the spooling of the blocks of the buffer server by the {@link MappedStorage} and the
+ * {@link DiskStorage}.</p>
+ * <br>
+ * Every invocation stores, retrieves and discards a batch of blocks, the blocks are spooled to a temporary directory
+ * of the local file system.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpoolStorageBenchmark
+{
+  private static final String IDENTIFIER = "SpoolStorageBenchmark";
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int BLOCK_COUNT = 16;
+
+  /**
+   * the spool storage, either mapped or disk.
+   */
+  @Param({"mapped", "disk"})
+  public String storageType;
+
+  private File directory;
+  private Storage storage;
+  private byte[] block;
+  private final int[] ids = new int[BLOCK_COUNT];
+
+  @Setup
+  public void setup() throws IOException
+  {
+    directory = Files.createTempDirectory("SpoolStorageBenchmark").toFile();
+    switch (storageType) {
+      case "mapped":
+        storage = new MappedStorage(directory.getAbsolutePath(), BLOCK_COUNT * BLOCK_SIZE);
+        break;
+      case "disk":
+        storage = new DiskStorage(directory.getAbsolutePath());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown storage " + storageType);
+    }
+    block = new byte[BLOCK_SIZE];
+    new Random(0).nextBytes(block);
+  }
+
+  @TearDown
+  public void teardown() throws IOException
+  {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * Stores the blocks, then retrieves and discards them in the order they were stored.
+   */
+  @Benchmark
+  public int storeRetrieveDiscard()
+  {
+    for (int i = 0; i < BLOCK_COUNT; i++) {
+      ids[i] = storage.store(IDENTIFIER, block, 0, block.length);
+    }
+    int length = 0;
+    for (int i = 0; i < BLOCK_COUNT; i++) {
+      length += storage.retrieve(IDENTIFIER, ids[i]).length;
+      storage.discard(IDENTIFIER, ids[i]);
+    }
+    return length;
+  }
+}
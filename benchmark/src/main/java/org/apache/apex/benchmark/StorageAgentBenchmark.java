@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import com.datatorrent.common.util.FSStorageAgent;
+
+/**
+ * <p>Measures the saving and the loading of the checkpoints of an operator by the {@link FSStorageAgent}.</p>
+ * <br>
+ * The checkpoints are stored in a temporary directory of the local file system, the state of the operator is a map
+ * of the given number of entries. The in-memory serialization of the checkpoints is measured both on a single
+ * thread and on the threads of several operators checkpointing concurrently.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageAgentBenchmark
+{
+  private static final int OPERATOR_ID = 1;
+  private static final long WINDOW_ID = 1;
+
+  /**
+   * number of the entries of the state of the operator.
+   */
+  @Param({"10", "10000"})
+  public int stateSize;
+
+  private File directory;
+  private FSStorageAgent storageAgent;
+  private HashMap<Long, String> state;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    directory = Files.createTempDirectory("StorageAgentBenchmark").toFile();
+    storageAgent = new FSStorageAgent(directory.getAbsolutePath(), new Configuration());
+    state = new HashMap<>();
+    for (long i = 0; i < stateSize; i++) {
+      state.put(i, "value" + i);
+    }
+    storageAgent.save(state, OPERATOR_ID, WINDOW_ID);
+  }
+
+  @TearDown
+  public void teardown() throws IOException
+  {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * Saves the checkpoint, it replaces the checkpoint saved by the previous invocation.
+   */
+  @Benchmark
+  public void save() throws IOException
+  {
+    storageAgent.save(state, OPERATOR_ID, WINDOW_ID);
+  }
+
+  @Benchmark
+  public Object load() throws IOException
+  {
+    return storageAgent.load(OPERATOR_ID, WINDOW_ID);
+  }
+
+  /**
+   * Serializes the checkpoint into memory and deserializes it back.
+   */
+  @Benchmark
+  public Object storeRetrieve()
+  {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    FSStorageAgent.store(stream, state);
+    return FSStorageAgent.retrieve(new ByteArrayInputStream(stream.toByteArray()));
+  }
+
+  /**
+   * Same as {@link #storeRetrieve()} with every thread checkpointing its own operator.
+   */
+  @Benchmark
+  @Threads(4)
+  public Object storeRetrieveConcurrently()
+  {
+    return storeRetrieve();
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.PojoStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.plan.logical.DefaultKryoStreamCodec;
+
+/**
+ * <p>Measures the serialization and deserialization of the tuples by the stream codecs.</p>
+ * <br>
+ * Each codec serializes the tuples on one side of the stream and deserializes them on the other, so the tuples are
+ * serialized and deserialized by two instances of the codec just like they are by the publisher and the subscriber.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamCodecBenchmark
+{
+  /**
+   * The tuple of the benchmarks, a typical POJO of a few fields.
+   */
+  public static class Event
+  {
+    public long id;
+    public int key;
+    public String name;
+    public double value;
+    public long timestamp;
+  }
+
+  @Param({"stateful", "kryo", "pojo"})
+  public String codec;
+
+  private StreamCodec<Object> encoder;
+  private StreamCodec<Object> decoder;
+  private StatefulStreamCodec<Object> statefulEncoder;
+  private StatefulStreamCodec<Object> statefulDecoder;
+  private Event event;
+  private Slice serialized;
+  private final DataStatePair pair = new DataStatePair();
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup()
+  {
+    switch (codec) {
+      case "stateful":
+        statefulEncoder = new DefaultStatefulStreamCodec<>();
+        statefulDecoder = statefulEncoder.newInstance();
+        encoder = statefulEncoder;
+        decoder = statefulDecoder;
+        break;
+
+      case "kryo":
+        encoder = new DefaultKryoStreamCodec<>();
+        decoder = new DefaultKryoStreamCodec<>();
+        break;
+
+      case "pojo":
+        encoder = (StreamCodec)new PojoStreamCodec<>(Event.class, "key");
+        decoder = (StreamCodec)new PojoStreamCodec<>(Event.class, "key");
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown codec " + codec);
+    }
+
+    event = new Event();
+    event.id = 1234567890123L;
+    event.key = 42;
+    event.name = "benchmark event";
+    event.value = 3.14159;
+    event.timestamp = System.currentTimeMillis();
+
+    /* the class registrations of the stateful codec are exchanged once, the benchmarks measure the steady state */
+    roundTrip();
+    serialized = copy(serialize());
+  }
+
+  private static Slice copy(Slice slice)
+  {
+    byte[] bytes = new byte[slice.length];
+    System.arraycopy(slice.buffer, slice.offset, bytes, 0, slice.length);
+    return new Slice(bytes, 0, bytes.length);
+  }
+
+  @Benchmark
+  public Object roundTrip()
+  {
+    if (statefulEncoder != null) {
+      DataStatePair pair = statefulEncoder.toDataStatePair(event);
+      return statefulDecoder.fromDataStatePair(pair);
+    }
+    return decoder.fromByteArray(encoder.toByteArray(event));
+  }
+
+  @Benchmark
+  public Slice serialize()
+  {
+    if (statefulEncoder != null) {
+      return statefulEncoder.toDataStatePair(event).data;
+    }
+    return encoder.toByteArray(event);
+  }
+
+  @Benchmark
+  public Object deserialize()
+  {
+    if (statefulDecoder != null) {
+      pair.data = serialized;
+      pair.state = null;
+      return statefulDecoder.fromDataStatePair(pair);
+    }
+    return decoder.fromByteArray(serialized);
+  }
+
+  @Benchmark
+  public int partition()
+  {
+    return encoder.getPartition(event);
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Collections.newSetFromMap;
+
+/**
+ * Bounded pool of the memory blocks shared by the data lists of a buffer server.<p>
+ * <br>
+ * The pool keeps the number of blocks held in memory by all the data lists within a global budget. Once the budget
+ * is exhausted the data lists spool their blocks to the secondary storage and suspend the publishers until the
+ * memory is released by any of the data lists. Blocks that are known to be unreferenced are kept for reuse, so the
+ * publishers do not need to allocate a new block every time they fill one.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class BlockPool
+{
+  private final int blockSize;
+  private final int capacity;
+  private final AtomicInteger permits;
+  private final ArrayDeque<byte[]> freeBlocks = new ArrayDeque<>();
+  private final Set<DataList> waitingDataLists = newSetFromMap(new ConcurrentHashMap<DataList, Boolean>());
+  private final AtomicLong numBlocksAllocated = new AtomicLong();
+  private final AtomicLong numBlocksReused = new AtomicLong();
+
+  /**
+   * @param blockSize size of a block
+   * @param capacity number of blocks all the data lists sharing the pool may hold in memory
+   */
+  public BlockPool(int blockSize, int capacity)
+  {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Invalid block size " + blockSize);
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid number of Data List Memory blocks " + capacity);
+    }
+    this.blockSize = blockSize;
+    this.capacity = capacity;
+    permits = new AtomicInteger(capacity);
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return number of blocks that can be brought into memory before the budget is exhausted, negative when the budget
+   * is exceeded.
+   */
+  public int getPermits()
+  {
+    return permits.get();
+  }
+
+  public long getNumBlocksAllocated()
+  {
+    return numBlocksAllocated.get();
+  }
+
+  public long getNumBlocksReused()
+  {
+    return numBlocksReused.get();
+  }
+
+  /**
+   * Returns a block of at least the requested size. The block is not accounted until it is {@link #acquire acquired}.
+   *
+   * @param size minimum size of the block
+   * @return a reused block or a newly allocated one
+   */
+  public byte[] allocate(final int size)
+  {
+    if (size > blockSize) {
+      logger.error("Tuple size {} exceeds buffer server current block size {}. Please decrease tuple size. " +
+          "Proceeding with allocating larger block that may cause out of memory exception.", size, blockSize);
+      return new byte[size];
+    }
+    final byte[] block;
+    synchronized (freeBlocks) {
+      block = freeBlocks.poll();
+    }
+    if (block == null) {
+      numBlocksAllocated.incrementAndGet();
+      return new byte[blockSize];
+    }
+    numBlocksReused.incrementAndGet();
+    return block;
+  }
+
+  /**
+   * Accounts a block brought into memory.
+   *
+   * @return number of permits left
+   */
+  public int acquire()
+  {
+    final int permits = this.permits.decrementAndGet();
+    if (permits < 0) {
+      logger.warn("Exceeded allowed memory block allocation by {}", -permits);
+    }
+    return permits;
+  }
+
+  /**
+   * Accounts a block removed from memory and resumes the data lists waiting for the memory.
+   *
+   * @param block the block removed from memory if it is no longer referenced and can be reused, null otherwise
+   * @return number of permits left
+   */
+  public int release(final byte[] block)
+  {
+    if (block != null && block.length == blockSize) {
+      synchronized (freeBlocks) {
+        if (freeBlocks.size() < capacity) {
+          freeBlocks.push(block);
+        }
+      }
+    }
+    final int permits = this.permits.incrementAndGet();
+    assert permits <= capacity : "Number of in memory block permits " + permits + " exceeded configured maximum " +
+        capacity + '.';
+    if (permits > 0 && !waitingDataLists.isEmpty()) {
+      for (DataList dataList : new ArrayList<>(waitingDataLists)) {
+        /*
+         * the data list registers again if its clients have to be suspended again.
+         */
+        if (waitingDataLists.remove(dataList)) {
+          dataList.resumeSuspendedClients(permits);
+        }
+      }
+    }
+    return permits;
+  }
+
+  /**
+   * Registers the data list to be notified when memory is released by any of the data lists sharing the pool.
+   */
+  void await(final DataList dataList)
+  {
+    waitingDataLists.add(dataList);
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + '@' + Integer.toHexString(hashCode()) + "{blockSize=" + blockSize +
+        ", capacity=" + capacity + ", permits=" + permits + '}';
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(BlockPool.class);
+}
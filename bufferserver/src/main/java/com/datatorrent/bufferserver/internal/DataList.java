@@ -28,17 +28,20 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.LatencyMarkerTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.SerialExecutorService;
 import com.datatorrent.bufferserver.util.SerializedData;
 import com.datatorrent.bufferserver.util.VarInt;
 import com.datatorrent.netlet.AbstractClient;
@@ -55,7 +58,11 @@ import static com.google.common.collect.Sets.newHashSet;
  */
 public class DataList
 {
-  private final int MAX_COUNT_OF_INMEM_BLOCKS;
+  /**
+   * number of blocks a data list may always hold in memory regardless of the blocks held by the other data lists
+   * sharing the pool, so that every publisher can make progress.
+   */
+  private static final int MIN_COUNT_OF_INMEM_BLOCKS = 2;
   protected final String identifier;
   private final int blockSize;
   private final HashMap<BitVector, HashSet<DataListener>> listeners = newHashMap();
@@ -64,27 +71,40 @@ public class DataList
   protected Block last;
   protected Storage storage;
   protected ExecutorService autoFlushExecutor;
-  protected ExecutorService storageExecutor;
+  protected SerialExecutorService storageExecutor;
   protected int size;
   protected int processingOffset;
+  protected int messageOffset;
   protected long baseSeconds;
   private final Set<AbstractClient> suspendedClients = newHashSet();
-  private final AtomicInteger numberOfInMemBlockPermits;
+  private final BlockPool pool;
+  private final AtomicInteger numberOfInMemBlocks = new AtomicInteger();
   private MutableInt nextOffset = new MutableInt();
   private final ListenersNotifier listenersNotifier = new ListenersNotifier();
   private final boolean backPressureEnabled;
+  private final AtomicLong numBlocksStored = new AtomicLong();
+  private final AtomicLong storeNanos = new AtomicLong();
+  private final AtomicLong numBlocksRetrieved = new AtomicLong();
+  private final AtomicLong retrieveNanos = new AtomicLong();
 
   public DataList(final String identifier, final int blockSize, final int numberOfCacheBlocks, final boolean backPressureEnabled)
   {
-    if (numberOfCacheBlocks < 1) {
-      throw new IllegalArgumentException("Invalid number of Data List Memory blocks " + numberOfCacheBlocks);
-    }
-    this.MAX_COUNT_OF_INMEM_BLOCKS = numberOfCacheBlocks;
-    numberOfInMemBlockPermits = new AtomicInteger(MAX_COUNT_OF_INMEM_BLOCKS - 1);
+    this(identifier, new BlockPool(blockSize, numberOfCacheBlocks), backPressureEnabled);
+  }
+
+  /**
+   * @param identifier identifier of the publisher
+   * @param pool memory blocks pool shared with the other data lists
+   * @param backPressureEnabled whether the blocks are evicted only after all the subscribers are done with them
+   */
+  public DataList(final String identifier, final BlockPool pool, final boolean backPressureEnabled)
+  {
     this.identifier = identifier;
-    this.blockSize = blockSize;
+    this.pool = pool;
+    this.blockSize = pool.getBlockSize();
     this.backPressureEnabled = backPressureEnabled;
-    first = last = new Block(identifier, blockSize);
+    first = last = new Block(identifier, pool.allocate(blockSize));
+    acquireMemoryBlock();
   }
 
   public DataList(String identifier)
@@ -144,15 +164,23 @@ public class DataList
      *  block.
      */
 
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.addAndGet(numberOfInMemBlockRewound);
-    assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-        numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
+    /*
+     * the subscribers may still be sending the data of the discarded blocks, so the blocks are not reused.
+     */
+    int numberOfInMemBlockPermits = pool.getPermits();
+    for (int i = numberOfInMemBlockRewound; i-- > 0;) {
+      numberOfInMemBlockPermits = releaseMemoryBlock(null);
+    }
     resumeSuspendedClients(numberOfInMemBlockPermits);
     logger.debug("Discarded {} in memory blocks during rewind. Number of in memory blocks permits {} after" +
         " rewinding {}.", numberOfInMemBlockRewound, numberOfInMemBlockPermits, this);
 
   }
 
+  /**
+   * Discards all the blocks but the last one and returns the memory held by the data list to the pool. The data list
+   * is not expected to be published to after the reset.
+   */
   public void reset()
   {
     logger.debug("Resetting {}", this);
@@ -176,7 +204,13 @@ public class DataList
       first = last;
       first.prev = null;
     }
-    numberOfInMemBlockPermits.set(MAX_COUNT_OF_INMEM_BLOCKS - 1);
+
+    /*
+     * the subscribers may still be sending the data of the discarded blocks, so the blocks are not reused.
+     */
+    for (int i = numberOfInMemBlocks.get(); i-- > 0;) {
+      releaseMemoryBlock(null);
+    }
   }
 
   public void purge(final long windowId)
@@ -184,7 +218,7 @@ public class DataList
     logger.debug("Purging {} from window ID {} to window ID {}", this, Codec.getStringWindowId(first.starting_window),
         Codec.getStringWindowId(windowId));
 
-    int numberOfInMemBlockPurged = 0;
+    final ArrayList<byte[]> purgedBlocks = new ArrayList<>();
     synchronized (this) {
       for (Block prev = null, temp = first; temp != null && temp.starting_window <= windowId;
           prev = temp, temp = temp.next) {
@@ -203,19 +237,24 @@ public class DataList
             throw new IllegalStateException("Discarded block " + temp + " has positive reference count!");
           }
           if (temp.data != null) {
+            purgedBlocks.add(temp.data);
             temp.data = null;
-            numberOfInMemBlockPurged++;
           }
         }
       }
     }
 
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.addAndGet(numberOfInMemBlockPurged);
-    assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-        numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
+    /*
+     * the purged windows are committed by all the subscribers, so none of them references the purged blocks anymore
+     * and the blocks can be reused.
+     */
+    int numberOfInMemBlockPermits = pool.getPermits();
+    for (byte[] block : purgedBlocks) {
+      numberOfInMemBlockPermits = releaseMemoryBlock(block);
+    }
     resumeSuspendedClients(numberOfInMemBlockPermits);
     logger.debug("Discarded {} in memory blocks during purge. Number of in memory blocks permits {} after purging {}. ",
-        numberOfInMemBlockPurged, numberOfInMemBlockPermits, this);
+        purgedBlocks.size(), numberOfInMemBlockPermits, this);
 
   }
 
@@ -234,6 +273,7 @@ public class DataList
     flush:
     do {
       while (size == 0) {
+        messageOffset = processingOffset;
         size = VarInt.read(last.data, processingOffset, writeOffset, nextOffset);
         if (nextOffset.integer > -5 && nextOffset.integer < 1) {
           if (writeOffset == last.data.length) {
@@ -250,27 +290,7 @@ public class DataList
       processingOffset = nextOffset.integer;
 
       if (processingOffset + size <= writeOffset) {
-        switch (last.data[processingOffset]) {
-          case MessageType.BEGIN_WINDOW_VALUE:
-            Tuple bwt = Tuple.getTuple(last.data, processingOffset, size);
-            if (last.starting_window == -1) {
-              last.starting_window = baseSeconds | bwt.getWindowId();
-              last.ending_window = last.starting_window;
-              //logger.debug("assigned both window id {}", last);
-            } else {
-              last.ending_window = baseSeconds | bwt.getWindowId();
-              //logger.debug("assigned last window id {}", last);
-            }
-            break;
-
-          case MessageType.RESET_WINDOW_VALUE:
-            Tuple rwt = Tuple.getTuple(last.data, processingOffset, size);
-            baseSeconds = (long)rwt.getBaseSeconds() << 32;
-            break;
-
-          default:
-            break;
-        }
+        processMessage(messageOffset, processingOffset, size);
         processingOffset += size;
         size = 0;
       } else {
@@ -289,6 +309,52 @@ public class DataList
 
   }
 
+  /**
+   * Tracks the window ids available in the last block and indexes the window and control tuples. The latency markers
+   * are stamped with the time they arrived.
+   *
+   * @param messageOffset offset of the message including its length
+   * @param dataOffset offset of the message data
+   * @param size size of the message data
+   */
+  protected void processMessage(final int messageOffset, final int dataOffset, final int size)
+  {
+    final byte type = last.data[dataOffset];
+    switch (type) {
+      case MessageType.BEGIN_WINDOW_VALUE:
+        Tuple bwt = Tuple.getTuple(last.data, dataOffset, size);
+        if (last.starting_window == -1) {
+          last.starting_window = baseSeconds | bwt.getWindowId();
+          last.ending_window = last.starting_window;
+          //logger.debug("assigned both window id {}", last);
+        } else {
+          last.ending_window = baseSeconds | bwt.getWindowId();
+          //logger.debug("assigned last window id {}", last);
+        }
+        last.index.beginWindow(baseSeconds | bwt.getWindowId(), messageOffset, baseSeconds);
+        break;
+
+      case MessageType.RESET_WINDOW_VALUE:
+        last.index.control(type, messageOffset, baseSeconds);
+        Tuple rwt = Tuple.getTuple(last.data, dataOffset, size);
+        baseSeconds = (long)rwt.getBaseSeconds() << 32;
+        break;
+
+      case MessageType.CHECKPOINT_VALUE:
+      case MessageType.CODEC_STATE_VALUE:
+      case MessageType.END_STREAM_VALUE:
+        last.index.control(type, messageOffset, baseSeconds);
+        break;
+
+      case MessageType.LATENCY_MARKER_VALUE:
+        LatencyMarkerTuple.setBufferServerMillis(last.data, dataOffset, System.currentTimeMillis());
+        break;
+
+      default:
+        break;
+    }
+  }
+
   public void notifyListeners()
   {
     listenersNotifier.moreDataAvailable();
@@ -299,10 +365,30 @@ public class DataList
     autoFlushExecutor = es;
   }
 
+  /**
+   * Sets the storage to spool the blocks to. The storage operations of the data list are executed in order, one at a
+   * time, by the threads of the executor, which may be shared with the other data lists. Once as many operations as
+   * there are blocks in the pool wait to be executed, the publisher is suspended until the operations catch up.
+   *
+   * @param storage secondary storage
+   * @param es executor to run the storage operations
+   */
   public void setSecondaryStorage(Storage storage, ExecutorService es)
   {
     this.storage = storage;
-    storageExecutor = es;
+    if (storageExecutor == null || storageExecutor.getExecutor() != es) {
+      storageExecutor = new SerialExecutorService(es, pool.getCapacity())
+      {
+        @Override
+        protected void available()
+        {
+          pool.await(DataList.this);
+          if (isMemoryBlockAvailable() && !isSpoolFull()) {
+            resumeSuspendedClients(pool.getPermits());
+          }
+        }
+      };
+    }
   }
 
   /*
@@ -329,7 +415,9 @@ public class DataList
       temp = temp.next;
     }
     //logger.debug("returning new iterator on temp = {}", temp);
-    return getIterator(temp);
+    final DataListIterator iterator = getIterator(temp);
+    iterator.seek(windowId);
+    return iterator;
   }
 
   public void addDataListener(DataListener dl)
@@ -381,15 +469,25 @@ public class DataList
 
   public boolean suspendRead(final AbstractClient client)
   {
+    final boolean suspended;
     synchronized (suspendedClients) {
-      return suspendedClients.add(client) && client.suspendReadIfResumed();
+      suspended = suspendedClients.add(client) && client.suspendReadIfResumed();
+    }
+    /*
+     * the memory may be released by any of the data lists sharing the pool and the storage operations may catch up,
+     * possibly before the client got suspended.
+     */
+    pool.await(this);
+    if (isMemoryBlockAvailable() && !isSpoolFull()) {
+      resumeSuspendedClients(pool.getPermits());
     }
+    return suspended;
   }
 
   public boolean resumeSuspendedClients(final int numberOfInMemBlockPermits)
   {
     boolean resumedSuspendedClients = false;
-    if (numberOfInMemBlockPermits > 0) {
+    if ((numberOfInMemBlockPermits > 0 || numberOfInMemBlocks.get() < MIN_COUNT_OF_INMEM_BLOCKS) && !isSpoolFull()) {
       synchronized (suspendedClients) {
         for (AbstractClient client : suspendedClients) {
           resumedSuspendedClients |= client.resumeReadIfSuspended();
@@ -405,25 +503,46 @@ public class DataList
 
   public boolean isMemoryBlockAvailable()
   {
-    return (storage == null) || (numberOfInMemBlockPermits.get() > 0);
+    return (storage == null) || (pool.getPermits() > 0) || (numberOfInMemBlocks.get() < MIN_COUNT_OF_INMEM_BLOCKS);
+  }
+
+  /**
+   * @return true if the storage operations of the data list fell behind and the publisher has to wait for them
+   */
+  public boolean isSpoolFull()
+  {
+    return storageExecutor != null && storageExecutor.isFull();
+  }
+
+  public BlockPool getPool()
+  {
+    return pool;
+  }
+
+  private void acquireMemoryBlock()
+  {
+    numberOfInMemBlocks.incrementAndGet();
+    pool.acquire();
+  }
+
+  /**
+   * @param block the block removed from memory if it can be reused, null otherwise
+   * @return number of in memory block permits left in the pool
+   */
+  private int releaseMemoryBlock(final byte[] block)
+  {
+    numberOfInMemBlocks.decrementAndGet();
+    return pool.release(block);
   }
 
   public byte[] newBuffer(final int size)
   {
-    if (size > blockSize) {
-      logger.error("Tuple size {} exceeds buffer server current block size {}. Please decrease tuple size. " +
-          "Proceeding with allocating larger block that may cause out of memory exception.", size, blockSize);
-      return new byte[size];
-    }
-    return new byte[blockSize];
+    return pool.allocate(size);
   }
 
   public synchronized void addBuffer(byte[] array)
   {
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.decrementAndGet();
-    if (numberOfInMemBlockPermits < 0) {
-      logger.warn("Exceeded allowed memory block allocation by {}", -numberOfInMemBlockPermits);
-    }
+    acquireMemoryBlock();
     last.next = new Block(identifier, array, last.ending_window, last.ending_window);
     last.next.prev = last;
     last.release(false, true);
@@ -451,11 +570,30 @@ public class DataList
     public long numBytesWaiting = 0;
     public long numBytesAllocated = 0;
     public String slowestConsumer;
+    /**
+     * number of storage operations waiting to be executed for the data list.
+     */
+    public int spoolQueueDepth = 0;
+    public long numBlocksStored = 0;
+    /**
+     * total time spent storing the blocks, divide by numBlocksStored for the average latency.
+     */
+    public long storeNanos = 0;
+    public long numBlocksRetrieved = 0;
+    /**
+     * total time spent retrieving the blocks, divide by numBlocksRetrieved for the average latency.
+     */
+    public long retrieveNanos = 0;
   }
 
   public Status getStatus()
   {
     Status status = new Status();
+    status.spoolQueueDepth = storageExecutor == null ? 0 : storageExecutor.getQueueDepth();
+    status.numBlocksStored = numBlocksStored.get();
+    status.storeNanos = storeNanos.get();
+    status.numBlocksRetrieved = numBlocksRetrieved.get();
+    status.retrieveNanos = retrieveNanos.get();
 
     // When the number of subscribers becomes high or the number of blocks becomes high, consider optimize it.
     Block b = first;
@@ -552,6 +690,10 @@ public class DataList
      */
     private final AtomicInteger refCount;
     private Future<?> future;
+    /**
+     * offsets of the windows available in this block, kept while the data is in the backup storage.
+     */
+    final WindowIndex index = new WindowIndex();
 
     public Block(String id, int size)
     {
@@ -617,6 +759,8 @@ public class DataList
         }
       }
 
+      index.truncate(windowId, writingOffset);
+
       if (starting_window == -1) {
         starting_window = windowId;
         ending_window = windowId;
@@ -731,17 +875,17 @@ public class DataList
         @Override
         public void run()
         {
+          final long start = System.nanoTime();
           byte[] data = storage.retrieve(identifier, uniqueIdentifier);
+          retrieveNanos.addAndGet(System.nanoTime() - start);
+          numBlocksRetrieved.incrementAndGet();
           synchronized (Block.this) {
             if (Block.this.data == null) {
               Block.this.data = data;
               readingOffset = 0;
               writingOffset = data.length;
               Block.this.notifyAll();
-              int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.decrementAndGet();
-              if (numberOfInMemBlockPermits < 0) {
-                logger.warn("Exceeded allowed memory block allocation by {}", -numberOfInMemBlockPermits);
-              }
+              acquireMemoryBlock();
             } else {
               logger.debug("Block {} was already loaded into memory", Block.this);
             }
@@ -794,23 +938,27 @@ public class DataList
         public void run()
         {
           if (uniqueIdentifier == 0) {
+            final long start = System.nanoTime();
             uniqueIdentifier = storage.store(identifier, data, readingOffset, writingOffset);
+            storeNanos.addAndGet(System.nanoTime() - start);
+            numBlocksStored.incrementAndGet();
           }
           if (uniqueIdentifier == 0) {
             logger.warn("Storage returned unexpectedly, please check the status of the spool directory!");
           } else {
-            int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.get();
+            boolean evicted = false;
             synchronized (Block.this) {
               if (refCount.get() == 0 && Block.this.data != null) {
                 Block.this.data = null;
-                numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.incrementAndGet();
+                evicted = true;
               } else {
                 logger.debug("Keeping Block {} unchanged", Block.this);
               }
             }
-            assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-                numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
-            resumeSuspendedClients(numberOfInMemBlockPermits);
+            /*
+             * the subscribers may still be sending the data of the evicted block, so the block is not reused.
+             */
+            resumeSuspendedClients(evicted ? releaseMemoryBlock(null) : pool.getPermits());
           }
         }
       };
@@ -825,11 +973,11 @@ public class DataList
         if (future != null && future.cancel(false)) {
           logger.debug("Block {} future is cancelled", this);
         }
-        final int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.get();
-        if (wait && numberOfInMemBlockPermits == 0) {
+        final int numberOfInMemBlockPermits = pool.getPermits();
+        if (wait && numberOfInMemBlockPermits <= 0) {
           future = null;
           storer.run();
-        } else if (numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS / 2) {
+        } else if (numberOfInMemBlockPermits < pool.getCapacity() / 2) {
           future = storageExecutor.submit(storer);
         } else {
           future = null;
@@ -848,7 +996,7 @@ public class DataList
 
             // it is more likely to find the match quicker. No need to search more than maximum number of in memory
             // permits.
-            for (Block temp = this.prev; (blocks < (MAX_COUNT_OF_INMEM_BLOCKS - 1)) && (temp != null); temp = temp.prev, ++blocks) {
+            for (Block temp = this.prev; (blocks < (pool.getCapacity() - 1)) && (temp != null); temp = temp.prev, ++blocks) {
               if (temp.refCount.get() != 0) {
                 evict = false;
                 break;
@@ -928,6 +1076,10 @@ public class DataList
     protected int readOffset;
     MutableInt nextOffset = new MutableInt();
     int size;
+    /**
+     * base seconds at the read offset after {@link #seek(long)} within the current block, -1 otherwise.
+     */
+    private long baseSeconds = -1;
 
     /**
      *
@@ -944,7 +1096,26 @@ public class DataList
     // this is a hack! Get rid of it.
     public int getBaseSeconds()
     {
-      return da == null ? 0 : (int)(da.starting_window >> 32);
+      return da == null ? 0 : (int)((baseSeconds == -1 ? da.starting_window : baseSeconds) >> 32);
+    }
+
+    /**
+     * Moves the read offset within the current block past the windows that are not greater than the windowId using
+     * the block window index. Control tuples that a subscriber needs to catch up are not skipped.
+     *
+     * @param windowId window id (including base seconds) to skip
+     */
+    void seek(long windowId)
+    {
+      final WindowIndex index = da.index;
+      synchronized (index) {
+        final int i = index.find(windowId, da.readingOffset);
+        if (i != -1 && index.getOffset(i) > readOffset) {
+          readOffset = index.getOffset(i);
+          baseSeconds = index.getBaseSeconds(i);
+          size = 0;
+        }
+      }
     }
 
     public int getReadOffset()
@@ -963,6 +1134,7 @@ public class DataList
       da.release(false, false);
       da = next;
       size = 0;
+      baseSeconds = -1;
       buffer = da.data;
       readOffset = da.readingOffset;
       return true;
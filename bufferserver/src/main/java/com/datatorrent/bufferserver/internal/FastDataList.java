@@ -21,8 +21,6 @@ package com.datatorrent.bufferserver.internal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.datatorrent.bufferserver.packet.MessageType;
-import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.util.SerializedData;
 
 /**
@@ -42,6 +40,11 @@ public class FastDataList extends DataList
     super(identifier, blocksize, numberOfCacheBlocks, backPressureEnabled);
   }
 
+  public FastDataList(String identifier, BlockPool pool, boolean backPressureEnabled)
+  {
+    super(identifier, pool, backPressureEnabled);
+  }
+
   long item;
 
   @Override
@@ -51,6 +54,7 @@ public class FastDataList extends DataList
     do {
       while (size == 0) {
         if (writeOffset - processingOffset >= 2) {
+          messageOffset = processingOffset;
           size = last.data[processingOffset];
           size |= (last.data[processingOffset + 1] << 8);
 //          logger.debug("read item = {} of size = {} at offset = {}", item++, size, processingOffset);
@@ -66,25 +70,7 @@ public class FastDataList extends DataList
       processingOffset += 2;
 
       if (processingOffset + size <= writeOffset) {
-        switch (last.data[processingOffset]) {
-          case MessageType.BEGIN_WINDOW_VALUE:
-            Tuple btw = Tuple.getTuple(last.data, processingOffset, size);
-            if (last.starting_window == -1) {
-              last.starting_window = baseSeconds | btw.getWindowId();
-              last.ending_window = last.starting_window;
-            } else {
-              last.ending_window = baseSeconds | btw.getWindowId();
-            }
-            break;
-
-          case MessageType.RESET_WINDOW_VALUE:
-            Tuple rwt = Tuple.getTuple(last.data, processingOffset, size);
-            baseSeconds = (long)rwt.getBaseSeconds() << 32;
-            break;
-
-          default:
-            break;
-        }
+        processMessage(messageOffset, processingOffset, size);
         processingOffset += size;
         size = 0;
       } else {
@@ -26,11 +26,14 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadFrameTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.policy.GiveAll;
 import com.datatorrent.bufferserver.policy.Policy;
 import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.PartitionFilter;
 import com.datatorrent.bufferserver.util.SerializedData;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.WriteOnlyClient;
@@ -51,6 +54,7 @@ public class LogicalNode implements DataListener
   private final String group;
   private final HashSet<PhysicalNode> physicalNodes;
   private final HashSet<BitVector> partitions;
+  private PartitionFilter partitionFilter;
   private final Policy policy = GiveAll.getInstance();
   private final DataListIterator iterator;
   private final long skipWindowId;
@@ -73,6 +77,7 @@ public class LogicalNode implements DataListener
     this.group = group;
     this.physicalNodes = new HashSet<>();
     this.partitions = new HashSet<>();
+    this.partitionFilter = new PartitionFilter(partitions);
     this.iterator = iterator;
     this.skipWindowId = skipWindowId;
     this.eventloop = eventloop;
@@ -103,7 +108,7 @@ public class LogicalNode implements DataListener
    */
   public void addConnection(WriteOnlyClient connection)
   {
-    PhysicalNode pn = new PhysicalNode(connection);
+    PhysicalNode pn = new PhysicalNode(connection, !(iterator instanceof FastDataList.FastDataListIterator));
     if (!physicalNodes.contains(pn)) {
       physicalNodes.add(pn);
     }
@@ -131,6 +136,7 @@ public class LogicalNode implements DataListener
   public void addPartition(int partition, int mask)
   {
     partitions.add(new BitVector(partition, mask));
+    partitionFilter = new PartitionFilter(partitions);
   }
 
   boolean ready = true;
@@ -147,6 +153,16 @@ public class LogicalNode implements DataListener
     return ready;
   }
 
+  /**
+   * Hands the data batched by the physical nodes over to their clients.
+   */
+  private void flush()
+  {
+    for (PhysicalNode pn : physicalNodes) {
+      ready = pn.flush() & ready;
+    }
+  }
+
   // make it run a lot faster by tracking faster!
   /**
    *
@@ -181,6 +197,11 @@ public class LogicalNode implements DataListener
               ++skippedPayloadTuples;
               break;
 
+            case MessageType.PAYLOAD_FRAME_VALUE:
+              skippedPayloadTuples += PayloadFrameTuple.getCount(data.buffer, data.dataOffset,
+                  data.length - data.dataOffset + data.offset);
+              break;
+
             case MessageType.RESET_WINDOW_VALUE:
               Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
               baseSeconds = (long)tuple.getBaseSeconds() << 32;
@@ -215,6 +236,7 @@ public class LogicalNode implements DataListener
                   physicalNodes);
           }
         }
+        flush();
       } catch (Exception e) {
         logger.error("Disconnecting {}", this, e);
         boot();
@@ -242,6 +264,7 @@ public class LogicalNode implements DataListener
               SerializedData data = iterator.next();
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
+                case MessageType.PAYLOAD_FRAME_VALUE:
                   ready = policy.distribute(physicalNodes, data);
                   break;
 
@@ -263,18 +286,21 @@ public class LogicalNode implements DataListener
               }
             }
           } else {
+            final PartitionFilter partitionFilter = this.partitionFilter;
             while (ready && iterator.hasNext()) {
               SerializedData data = iterator.next();
-              final int length = data.length - data.dataOffset + data.offset;
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
-                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
-                  int value = tuple.getPartition();
-                  for (BitVector bv : partitions) {
-                    if (bv.matches(value)) {
-                      ready = policy.distribute(physicalNodes, data);
-                      break;
-                    }
+                  if (partitionFilter.matches(PayloadTuple.getPartition(data.buffer, data.dataOffset))) {
+                    ready = policy.distribute(physicalNodes, data);
+                  }
+                  break;
+
+                case MessageType.PAYLOAD_FRAME_VALUE:
+                  /* the frame is sent whole if any of its payloads matches, the subscriber filters the rest */
+                  if (PayloadFrameTuple.matches(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset,
+                      partitionFilter)) {
+                    ready = policy.distribute(physicalNodes, data);
                   }
                   break;
 
@@ -283,7 +309,8 @@ public class LogicalNode implements DataListener
                   break;
 
                 case MessageType.RESET_WINDOW_VALUE:
-                  tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
+                  final int length = data.length - data.dataOffset + data.offset;
+                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
                   baseSeconds = (long)tuple.getBaseSeconds() << 32;
                   ready = GiveAll.getInstance().distribute(physicalNodes, data);
                   break;
@@ -294,6 +321,7 @@ public class LogicalNode implements DataListener
               }
             }
           }
+          flush();
         } catch (Exception e) {
           logger.error("Disconnecting {}", this, e);
           boot();
@@ -23,27 +23,69 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.bufferserver.util.VarInt;
 import com.datatorrent.netlet.WriteOnlyClient;
 
 /**
  * PhysicalNode represents one physical subscriber.
+ * <p>
+ * The client is expected to send the data as is, so the data is sent along with its length prefix. Consecutive
+ * messages that are adjacent in the same block are sent as a single range of the block that is not copied until
+ * the client writes it to the channel. A range is at most {@link #MAX_RANGE_SIZE} bytes long, and a new range is not
+ * started while a {@link PendingData} client has not written the previous ones yet, so a slow subscriber holds up the
+ * logical node instead of getting whole blocks queued.
+ * <p>
+ * The data which is not prefixed with the length the subscriber expects is not copied either, the length is written
+ * into a small header chunk shared by the consecutive messages and handed to the client ahead of the data, so the
+ * client writes both with the same gathering write.
  *
  * @since 0.3.2
  */
 public class PhysicalNode
 {
+  public static final int MAX_RANGE_SIZE = 256 * 1024;
+  private static final int HEADER_CHUNK_SIZE = 4096;
+  private static final int MAX_HEADER_SIZE = 5;
   private final long starttime;
   private final WriteOnlyClient client;
+  private final boolean lengthPrefixed;
   private long processedMessageCount;
   private SerializedData blocker;
+  /*
+   * range of the block pending to be sent.
+   */
+  private byte[] buffer;
+  private int offset;
+  private int length;
+  /*
+   * chunk of the length prefixes of the data which is not prefixed, the prefixes handed to the client are not
+   * overwritten, a new chunk is started once the chunk is full.
+   */
+  private byte[] headers;
+  private int headersOffset;
+  /*
+   * data whose length prefix is handed to the client already, the data itself is not.
+   */
+  private SerializedData framed;
 
   /**
    *
    * @param client
    */
   public PhysicalNode(WriteOnlyClient client)
+  {
+    this(client, true);
+  }
+
+  /**
+   * @param client client that sends the data as is
+   * @param lengthPrefixed whether the data is prefixed with the length the way the subscriber expects it, if not the
+   * length is sent ahead of the data.
+   */
+  public PhysicalNode(WriteOnlyClient client, boolean lengthPrefixed)
   {
     this.client = client;
+    this.lengthPrefixed = lengthPrefixed;
     starttime = System.currentTimeMillis();
     processedMessageCount = 0;
   }
@@ -73,31 +115,78 @@ public class PhysicalNode
    */
   public boolean send(SerializedData d)
   {
-    if (client.send(d.buffer, d.dataOffset, d.length - (d.dataOffset - d.offset))) {
-      return true;
+    if (blocker != null && blocker != d) {
+      throw new IllegalStateException(String.format("Can't send data %s while blocker %s is pending on %s", d, blocker, this));
     }
-    if (blocker == null) {
+    if (length > 0 && (buffer != d.buffer || offset + length != d.offset || length + d.length > MAX_RANGE_SIZE)
+        && !flush()) {
       blocker = d;
-    } else if (blocker != d) {
-      throw new IllegalStateException(String.format("Can't send data %s while blocker %s is pending on %s", d, blocker, this));
+      return false;
     }
-    return false;
+    if (lengthPrefixed) {
+      if (length == 0) {
+        if (client instanceof PendingData && ((PendingData)client).hasPendingData()) {
+          blocker = d;
+          return false;
+        }
+        buffer = d.buffer;
+        offset = d.offset;
+      }
+      length += d.length;
+    } else {
+      final int size = d.length - (d.dataOffset - d.offset);
+      if (framed != d) {
+        if (headers == null || headers.length - headersOffset < MAX_HEADER_SIZE) {
+          headers = new byte[HEADER_CHUNK_SIZE];
+          headersOffset = 0;
+        }
+        final int end = VarInt.write(size, headers, headersOffset);
+        if (!client.send(headers, headersOffset, end - headersOffset)) {
+          blocker = d;
+          return false;
+        }
+        headersOffset = end;
+        framed = d;
+      }
+      if (!client.send(d.buffer, d.dataOffset, size)) {
+        blocker = d;
+        return false;
+      }
+      framed = null;
+    }
+    blocker = null;
+    return true;
   }
 
-  public boolean unblock()
+  /**
+   * Hands the pending data over to the client.
+   *
+   * @return false if the client can't accept the data at the moment
+   */
+  public boolean flush()
   {
-    if (blocker == null) {
+    if (length == 0) {
       return true;
     }
-
-    if (client.send(blocker.buffer, blocker.dataOffset, blocker.length - (blocker.dataOffset - blocker.offset))) {
-      blocker = null;
+    if (client.send(buffer, offset, length)) {
+      buffer = null;
+      length = 0;
       return true;
     }
-
     return false;
   }
 
+  public boolean unblock()
+  {
+    if (!flush()) {
+      return false;
+    }
+    if (blocker != null && !send(blocker)) {
+      return false;
+    }
+    return flush();
+  }
+
   /**
    *
    * @return long
@@ -151,5 +240,16 @@ public class PhysicalNode
     return "PhysicalNode." + client;
   }
 
+  /**
+   * Implemented by the clients which can tell whether they have written all the data handed to them.
+   */
+  public interface PendingData
+  {
+    /**
+     * @return true if some of the data handed to the client is not written to the channel yet
+     */
+    boolean hasPendingData();
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(PhysicalNode.class);
 }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.Arrays;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+
+/**
+ * Per block index from window id to the offset in the block at which a subscriber catching up to that window may
+ * start reading.<p>
+ * <br>
+ * The index is built by the data list as it processes the data written by the publisher. For every begin window
+ * tuple it records an anchor offset that is never past a control tuple the subscriber still needs: the control
+ * tuples published since the previous begin window and the codec state published since the last checkpoint. The
+ * index lives outside of the block data, so it is available for the blocks that are spooled to the secondary storage.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+final class WindowIndex
+{
+  private static final int INITIAL_CAPACITY = 16;
+  private long[] windowIds = new long[INITIAL_CAPACITY];
+  private long[] anchorBaseSeconds = new long[INITIAL_CAPACITY];
+  private int[] offsets = new int[INITIAL_CAPACITY];
+  private int size;
+  /**
+   * offset of the first control tuple since the last begin window or -1.
+   */
+  private int controlOffset = -1;
+  private long controlBaseSeconds;
+  /**
+   * offset of the first codec state tuple since the last checkpoint or -1.
+   */
+  private int codecStateOffset = -1;
+  private long codecStateBaseSeconds;
+
+  /**
+   * Records a control tuple that a subscriber may not skip while catching up.
+   *
+   * @param type message type of the control tuple
+   * @param offset offset of the control tuple (including its length) in the block
+   * @param baseSeconds base seconds in effect before the control tuple
+   */
+  synchronized void control(final byte type, final int offset, final long baseSeconds)
+  {
+    switch (type) {
+      case MessageType.CHECKPOINT_VALUE:
+        codecStateOffset = -1;
+        break;
+
+      case MessageType.CODEC_STATE_VALUE:
+        if (codecStateOffset == -1) {
+          codecStateOffset = offset;
+          codecStateBaseSeconds = baseSeconds;
+        }
+        break;
+
+      default:
+        break;
+    }
+
+    if (controlOffset == -1) {
+      controlOffset = offset;
+      controlBaseSeconds = baseSeconds;
+    }
+  }
+
+  /**
+   * Adds an entry for the begin window tuple.
+   *
+   * @param windowId window id (including base seconds) of the begin window tuple
+   * @param offset offset of the begin window tuple (including its length) in the block
+   * @param baseSeconds base seconds in effect at the begin window tuple
+   */
+  synchronized void beginWindow(final long windowId, final int offset, final long baseSeconds)
+  {
+    int anchor = offset;
+    long base = baseSeconds;
+    if (controlOffset != -1) {
+      anchor = controlOffset;
+      base = controlBaseSeconds;
+      controlOffset = -1;
+    }
+    if (codecStateOffset != -1 && codecStateOffset < anchor) {
+      anchor = codecStateOffset;
+      base = codecStateBaseSeconds;
+    }
+
+    if (size == windowIds.length) {
+      final int capacity = size << 1;
+      windowIds = Arrays.copyOf(windowIds, capacity);
+      anchorBaseSeconds = Arrays.copyOf(anchorBaseSeconds, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+    }
+    windowIds[size] = windowId;
+    anchorBaseSeconds[size] = base;
+    offsets[size++] = anchor;
+  }
+
+  /**
+   * Finds the entry to start reading from to reach the first window greater than the given window id.
+   *
+   * @param windowId window id (including base seconds) to skip
+   * @param readingOffset offset of the first valid byte in the block
+   * @return index of the entry or -1 if the block has to be read from the reading offset
+   */
+  synchronized int find(final long windowId, final int readingOffset)
+  {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (windowIds[mid] > windowId) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+
+    /*
+     * when all the indexed windows are to be skipped, start from the last one as the window that is needed
+     * is yet to be indexed.
+     */
+    final int i = low == size ? size - 1 : low;
+    return i >= 0 && offsets[i] >= readingOffset ? i : -1;
+  }
+
+  synchronized int getOffset(final int i)
+  {
+    return offsets[i];
+  }
+
+  synchronized long getBaseSeconds(final int i)
+  {
+    return anchorBaseSeconds[i];
+  }
+
+  /**
+   * Drops the entries for the windows that are no longer available in the block.
+   *
+   * @param windowId window id (including base seconds) of the first window that is removed
+   * @param offset offset of the first byte that is removed from the block
+   */
+  synchronized void truncate(final long windowId, final int offset)
+  {
+    while (size > 0 && (windowIds[size - 1] >= windowId || offsets[size - 1] >= offset)) {
+      size--;
+    }
+    if (controlOffset >= offset) {
+      controlOffset = -1;
+    }
+    if (codecStateOffset >= offset) {
+      codecStateOffset = -1;
+    }
+  }
+
+  synchronized int size()
+  {
+    return size;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "WindowIndex{size=" + size + ", controlOffset=" + controlOffset + ", codecStateOffset=" + codecStateOffset +
+        '}';
+  }
+}
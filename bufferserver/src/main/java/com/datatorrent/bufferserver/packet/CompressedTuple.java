@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import com.datatorrent.bufferserver.util.LZ4Compressor;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+
+/**
+ * Tuple carrying a batch of messages compressed together.<p>
+ * <br>
+ * The tuple consists of the length of the messages before the compression followed by the messages, each prefixed
+ * by its length as on the wire, compressed into a {@link LZ4Compressor} block. The buffer server stores and
+ * distributes the tuple as is, the subscriber decompresses it and processes the messages in order.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class CompressedTuple extends Tuple
+{
+  public CompressedTuple(byte[] array, int offset, int length)
+  {
+    super(array, offset, length);
+  }
+
+  @Override
+  public MessageType getType()
+  {
+    return MessageType.COMPRESSED;
+  }
+
+  /**
+   * @return length of the messages before the compression
+   */
+  public int getUncompressedLength()
+  {
+    return VarInt.read(buffer, offset, limit, new VarInt.MutableInt());
+  }
+
+  /**
+   * @return the compressed block
+   */
+  @Override
+  public Slice getData()
+  {
+    VarInt.MutableInt dataOffset = new VarInt.MutableInt();
+    VarInt.read(buffer, offset, limit, dataOffset);
+    return new Slice(buffer, dataOffset.integer, limit - dataOffset.integer);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "CompressedTuple{" + getUncompressedLength() + ", " + getData() + '}';
+  }
+
+  /**
+   * Decompresses the messages of the serialized tuple without creating the tuple.
+   *
+   * @param buffer buffer containing the serialized tuple
+   * @param offset offset of the message type of the tuple
+   * @param length length of the serialized tuple
+   * @param messages slice to be pointed to the decompressed messages, its buffer is reused when large enough
+   * @return the given slice
+   */
+  public static Slice decompress(byte[] buffer, int offset, int length, Slice messages)
+  {
+    final VarInt.MutableInt dataOffset = new VarInt.MutableInt();
+    final int uncompressedLength = VarInt.read(buffer, offset + 1, offset + length, dataOffset);
+    if (messages.buffer == null || messages.buffer.length < uncompressedLength) {
+      messages.buffer = new byte[uncompressedLength];
+    }
+    messages.offset = 0;
+    messages.length = LZ4Compressor.decompress(buffer, dataOffset.integer, offset + length - dataOffset.integer,
+        messages.buffer, 0, uncompressedLength);
+    if (messages.length != uncompressedLength) {
+      throw new IllegalArgumentException("Decompressed " + messages.length + " bytes instead of " + uncompressedLength);
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the length of the serialized tuple.
+   *
+   * @param uncompressedLength length of the messages before the compression
+   * @param compressedLength length of the compressed block
+   * @return length of the serialized tuple
+   */
+  public static int getSerializedLength(int uncompressedLength, int compressedLength)
+  {
+    return 1 + VarInt.getSize(uncompressedLength) + compressedLength;
+  }
+
+  /**
+   * Serializes the tuple into the given buffer.
+   *
+   * @param uncompressedLength length of the messages before the compression
+   * @param block the compressed block
+   * @param buffer buffer the tuple is serialized into
+   * @param offset offset the tuple is serialized at
+   * @return offset following the tuple
+   */
+  public static int writeSerializedTuple(int uncompressedLength, Slice block, byte[] buffer, int offset)
+  {
+    buffer[offset++] = MessageType.COMPRESSED_VALUE;
+    offset = VarInt.write(uncompressedLength, buffer, offset);
+    System.arraycopy(block.buffer, block.offset, buffer, offset, block.length);
+    return offset + block.length;
+  }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+/**
+ * Tuple used to trace the latency of a stream.<p>
+ * <br>
+ * The marker carries the id of the input operator which injected it, the time it was created, the time it was sent
+ * by the publisher and the time it was received by the buffer server. The fields have a fixed width, so the buffer
+ * server writes its time in place when the marker arrives, all the times are in milliseconds.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class LatencyMarkerTuple extends Tuple
+{
+  private static final int SOURCE_OPERATOR_OFFSET = 1;
+  private static final int CREATED_OFFSET = SOURCE_OPERATOR_OFFSET + 4;
+  private static final int EMITTED_OFFSET = CREATED_OFFSET + 8;
+  private static final int BUFFER_SERVER_OFFSET = EMITTED_OFFSET + 8;
+  public static final int SIZE = BUFFER_SERVER_OFFSET + 8;
+  private final int start;
+
+  public LatencyMarkerTuple(byte[] array, int offset, int length)
+  {
+    super(array, offset, length);
+    start = offset;
+  }
+
+  @Override
+  public MessageType getType()
+  {
+    return MessageType.LATENCY_MARKER;
+  }
+
+  /**
+   * @return id of the input operator which injected the marker
+   */
+  public int getSourceOperatorId()
+  {
+    return readInt(buffer, start + SOURCE_OPERATOR_OFFSET);
+  }
+
+  /**
+   * @return time the marker was created by the input operator
+   */
+  public long getCreatedMillis()
+  {
+    return readLong(buffer, start + CREATED_OFFSET);
+  }
+
+  /**
+   * @return time the marker was sent by the publisher
+   */
+  public long getEmittedMillis()
+  {
+    return readLong(buffer, start + EMITTED_OFFSET);
+  }
+
+  /**
+   * @return time the marker was received by the buffer server, 0 if it did not go through the buffer server
+   */
+  public long getBufferServerMillis()
+  {
+    return readLong(buffer, start + BUFFER_SERVER_OFFSET);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LatencyMarkerTuple{" + getSourceOperatorId() + ", " + getCreatedMillis() + ", " + getEmittedMillis() + ", "
+        + getBufferServerMillis() + '}';
+  }
+
+  public static byte[] getSerializedTuple(int sourceOperatorId, long createdMillis, long emittedMillis)
+  {
+    byte[] array = new byte[SIZE];
+    array[0] = MessageType.LATENCY_MARKER_VALUE;
+    writeInt(sourceOperatorId, array, SOURCE_OPERATOR_OFFSET);
+    writeLong(createdMillis, array, CREATED_OFFSET);
+    writeLong(emittedMillis, array, EMITTED_OFFSET);
+    return array;
+  }
+
+  /**
+   * Records the time the serialized marker was received by the buffer server.
+   *
+   * @param buffer buffer containing the serialized marker
+   * @param offset offset of the message type of the marker
+   * @param millis time the marker was received
+   */
+  public static void setBufferServerMillis(byte[] buffer, int offset, long millis)
+  {
+    writeLong(millis, buffer, offset + BUFFER_SERVER_OFFSET);
+  }
+
+  private static int readInt(byte[] buffer, int offset)
+  {
+    return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8
+        | (buffer[offset + 3] & 0xff);
+  }
+
+  private static long readLong(byte[] buffer, int offset)
+  {
+    return (long)readInt(buffer, offset) << 32 | readInt(buffer, offset + 4) & 0xffffffffL;
+  }
+
+  private static void writeInt(int value, byte[] buffer, int offset)
+  {
+    buffer[offset] = (byte)(value >>> 24);
+    buffer[offset + 1] = (byte)(value >>> 16);
+    buffer[offset + 2] = (byte)(value >>> 8);
+    buffer[offset + 3] = (byte)value;
+  }
+
+  private static void writeLong(long value, byte[] buffer, int offset)
+  {
+    writeInt((int)(value >>> 32), buffer, offset);
+    writeInt((int)value, buffer, offset + 4);
+  }
+
+}
@@ -38,6 +38,9 @@ public enum MessageType
   CHECKPOINT(10),
   CODEC_STATE(11),
   CUSTOM_CONTROL(12),
+  COMPRESSED(13),
+  PAYLOAD_FRAME(14),
+  LATENCY_MARKER(15),
   NO_MESSAGE_ODD(127);
 
   public static final byte NO_MESSAGE_VALUE = 0;
@@ -53,6 +56,9 @@ public enum MessageType
   public static final byte CHECKPOINT_VALUE = 10;
   public static final byte CODEC_STATE_VALUE = 11;
   public static final byte CUSTOM_CONTROL_VALUE = 12;
+  public static final byte COMPRESSED_VALUE = 13;
+  public static final byte PAYLOAD_FRAME_VALUE = 14;
+  public static final byte LATENCY_MARKER_VALUE = 15;
   public static final byte NO_MESSAGE_ODD_VALUE = 127;
 
   public final int getNumber()
@@ -89,6 +95,12 @@ public enum MessageType
         return CODEC_STATE;
       case 12:
         return CUSTOM_CONTROL;
+      case 13:
+        return COMPRESSED;
+      case 14:
+        return PAYLOAD_FRAME;
+      case 15:
+        return LATENCY_MARKER;
       case 127:
         return NO_MESSAGE_ODD;
       default:
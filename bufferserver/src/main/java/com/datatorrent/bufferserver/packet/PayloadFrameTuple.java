@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import com.datatorrent.bufferserver.util.PartitionFilter;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+
+/**
+ * Tuple carrying several payload tuples in a single message.<p>
+ * <br>
+ * The tuple consists of the number of payloads, the partitions of all the payloads and then the data of each payload
+ * prefixed by its length. Keeping the partitions together lets the buffer server decide whether a subscriber needs the
+ * frame without walking the payloads, the frame is delivered whole and the subscriber filters the payloads of the
+ * other partitions.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class PayloadFrameTuple extends Tuple
+{
+  public PayloadFrameTuple(byte[] array, int offset, int length)
+  {
+    super(array, offset, length);
+  }
+
+  @Override
+  public MessageType getType()
+  {
+    return MessageType.PAYLOAD_FRAME;
+  }
+
+  /**
+   * @return number of payloads in the frame
+   */
+  public int getCount()
+  {
+    return VarInt.read(buffer, offset, limit, new VarInt.MutableInt());
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PayloadFrameTuple{" + getCount() + '}';
+  }
+
+  /**
+   * Reads the number of payloads of the serialized frame without creating the tuple.
+   *
+   * @param buffer buffer containing the serialized frame
+   * @param offset offset of the message type of the frame
+   * @param length length of the serialized frame
+   * @return number of payloads in the frame
+   */
+  public static int getCount(byte[] buffer, int offset, int length)
+  {
+    return VarInt.read(buffer, offset + 1, offset + length, new VarInt.MutableInt());
+  }
+
+  /**
+   * Tells whether any payload of the serialized frame belongs to the partitions of the filter.
+   *
+   * @param buffer buffer containing the serialized frame
+   * @param offset offset of the message type of the frame
+   * @param length length of the serialized frame
+   * @param filter partitions to match
+   * @return true if the partition of at least one payload matches
+   */
+  public static boolean matches(byte[] buffer, int offset, int length, PartitionFilter filter)
+  {
+    final VarInt.MutableInt partitionOffset = new VarInt.MutableInt();
+    final int count = VarInt.read(buffer, offset + 1, offset + length, partitionOffset);
+    for (int i = partitionOffset.integer, end = i + (count << 2); i < end; i += 4) {
+      if (filter.matches(readInt(buffer, i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the length of the serialized frame.
+   *
+   * @param count number of payloads
+   * @param dataLength length of the payloads, each prefixed by its length
+   * @return length of the serialized frame
+   */
+  public static int getSerializedLength(int count, int dataLength)
+  {
+    return 1 + VarInt.getSize(count) + (count << 2) + dataLength;
+  }
+
+  /**
+   * Serializes the frame into the given buffer.
+   *
+   * @param partitions partitions of the payloads
+   * @param count number of payloads
+   * @param data the payloads, each prefixed by its length
+   * @param dataLength length of the payloads
+   * @param buffer buffer the frame is serialized into
+   * @param offset offset the frame is serialized at
+   * @return offset following the frame
+   */
+  public static int writeSerializedTuple(int[] partitions, int count, byte[] data, int dataLength, byte[] buffer,
+      int offset)
+  {
+    buffer[offset++] = MessageType.PAYLOAD_FRAME_VALUE;
+    offset = VarInt.write(count, buffer, offset);
+    for (int i = 0; i < count; i++) {
+      final int partition = partitions[i];
+      buffer[offset++] = (byte)(partition >> 24);
+      buffer[offset++] = (byte)(partition >> 16);
+      buffer[offset++] = (byte)(partition >> 8);
+      buffer[offset++] = (byte)partition;
+    }
+    System.arraycopy(data, 0, buffer, offset, dataLength);
+    return offset + dataLength;
+  }
+
+  private static int readInt(byte[] buffer, int offset)
+  {
+    return buffer[offset] << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8 |
+        (buffer[offset + 3] & 0xff);
+  }
+
+  /**
+   * Walks the payloads of a serialized frame without creating any objects per payload.
+   */
+  public static class Reader
+  {
+    private final VarInt.MutableInt dataOffset = new VarInt.MutableInt();
+    private byte[] buffer;
+    private int partitionOffset;
+    private int offset;
+    private int limit;
+    private int remaining;
+
+    /**
+     * Starts reading the given serialized frame.
+     *
+     * @param buffer buffer containing the serialized frame
+     * @param offset offset of the message type of the frame
+     * @param length length of the serialized frame
+     */
+    public void reset(byte[] buffer, int offset, int length)
+    {
+      this.buffer = buffer;
+      limit = offset + length;
+      remaining = VarInt.read(buffer, offset + 1, limit, dataOffset);
+      partitionOffset = dataOffset.integer;
+      this.offset = partitionOffset + (remaining << 2);
+      if (remaining < 0 || this.offset > limit) {
+        throw new IllegalArgumentException("Invalid frame of " + remaining + " payloads and " + length + " bytes");
+      }
+    }
+
+    public boolean hasNext()
+    {
+      return remaining > 0;
+    }
+
+    /**
+     * Points the given slice to the data of the next payload.
+     *
+     * @param data slice to be pointed to the data
+     * @return partition of the payload
+     */
+    public int next(Slice data)
+    {
+      final int size = VarInt.read(buffer, offset, limit, dataOffset);
+      if (size < 0 || dataOffset.integer + size > limit) {
+        throw new IllegalArgumentException("Invalid payload of size " + size + " in the frame");
+      }
+      data.buffer = buffer;
+      data.offset = dataOffset.integer;
+      data.length = size;
+      offset = dataOffset.integer + size;
+      remaining--;
+
+      final int partition = readInt(buffer, partitionOffset);
+      partitionOffset += 4;
+      return partition;
+    }
+  }
+}
@@ -43,7 +43,25 @@ public class PayloadTuple extends Tuple
   @Override
   public int getPartition()
   {
-    return ByteBuffer.wrap(buffer, offset, 4).getInt();
+    return readPartition(buffer, offset);
+  }
+
+  /**
+   * Reads the partition of the serialized payload tuple without creating the tuple.
+   *
+   * @param buffer buffer containing the serialized tuple
+   * @param offset offset of the message type of the tuple
+   * @return partition of the tuple
+   */
+  public static int getPartition(byte[] buffer, int offset)
+  {
+    return readPartition(buffer, offset + 1);
+  }
+
+  private static int readPartition(byte[] buffer, int offset)
+  {
+    return buffer[offset] << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8 |
+        (buffer[offset + 3] & 0xff);
   }
 
   @Override
@@ -52,6 +70,23 @@ public class PayloadTuple extends Tuple
     return new Slice(buffer, offset + 4, limit - offset - 4);
   }
 
+  /**
+   * Points the given slice to the data of the serialized payload tuple without creating the tuple.
+   *
+   * @param buffer buffer containing the serialized tuple
+   * @param offset offset of the message type of the tuple
+   * @param length length of the serialized tuple
+   * @param data slice to be pointed to the data
+   * @return the given slice
+   */
+  public static Slice getData(byte[] buffer, int offset, int length, Slice data)
+  {
+    data.buffer = buffer;
+    data.offset = offset + 5;
+    data.length = length - 5;
+    return data;
+  }
+
   @Override
   public String toString()
   {
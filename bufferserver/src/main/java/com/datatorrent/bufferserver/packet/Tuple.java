@@ -76,6 +76,15 @@ public abstract class Tuple
       case CUSTOM_CONTROL:
         return new CustomControlTuple(buffer, offset, length);
 
+      case COMPRESSED:
+        return new CompressedTuple(buffer, offset, length);
+
+      case PAYLOAD_FRAME:
+        return new PayloadFrameTuple(buffer, offset, length);
+
+      case LATENCY_MARKER:
+        return new LatencyMarkerTuple(buffer, offset, length);
+
       case END_STREAM:
         return new WindowIdTuple(buffer, offset, length);
 
@@ -24,14 +24,16 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map.Entry;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -39,9 +41,11 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.internal.BlockPool;
 import com.datatorrent.bufferserver.internal.DataList;
 import com.datatorrent.bufferserver.internal.FastDataList;
 import com.datatorrent.bufferserver.internal.LogicalNode;
+import com.datatorrent.bufferserver.internal.PhysicalNode;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.PublishRequestTuple;
 import com.datatorrent.bufferserver.packet.PurgeRequestTuple;
@@ -54,7 +58,8 @@ import com.datatorrent.netlet.AbstractLengthPrependerClient;
 import com.datatorrent.netlet.AbstractServer;
 import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.netlet.EventLoop;
-import com.datatorrent.netlet.WriteOnlyLengthPrependerClient;
+import com.datatorrent.netlet.WriteOnlyClient;
+import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.netlet.util.VarInt;
 
 /**
@@ -67,6 +72,9 @@ public class Server extends AbstractServer
 {
   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024 * 1024;
   public static final int DEFAULT_NUMBER_OF_CACHED_BLOCKS = 8;
+  public static final int DEFAULT_NUMBER_OF_SPOOL_THREADS = 4;
+  private static final int MAX_GATHERED_BUFFERS = 16;
+  private static final int MAX_GATHERED_BUFFER_SIZE = 256 * 1024;
   private final int port;
   private String identity;
   private Storage storage;
@@ -89,15 +97,32 @@ public class Server extends AbstractServer
 
   public Server(EventLoop eventloop, int port, int blocksize, int numberOfCacheBlocks)
   {
+    this(eventloop, port, blocksize, numberOfCacheBlocks, DEFAULT_NUMBER_OF_SPOOL_THREADS);
+  }
+
+  /**
+   * @param numberOfCacheBlocks - number of blocks all the publishers may hold in memory before the blocks are spooled
+   * and the publishers are suspended.
+   * @param numberOfSpoolThreads - number of threads spooling the blocks. Storage operations of a publisher are
+   * executed in order while the operations of different publishers are executed in parallel.
+   */
+  public Server(EventLoop eventloop, int port, int blocksize, int numberOfCacheBlocks, int numberOfSpoolThreads)
+  {
+    if (numberOfSpoolThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of spool threads " + numberOfSpoolThreads);
+    }
     this.eventloop = eventloop;
     this.port = port;
-    this.blockSize = blocksize;
-    this.numberOfCacheBlocks = numberOfCacheBlocks;
+    this.blockPool = new BlockPool(blocksize, numberOfCacheBlocks);
     serverHelperExecutor = Executors.newSingleThreadExecutor(new NameableThreadFactory("ServerHelper"));
-    final ArrayBlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(numberOfCacheBlocks);
+    /*
+     * each data list queues at most one task at a time in the shared executor, so the work queue is bounded by the
+     * number of publishers. Once the tasks waiting in a data list reach the number of cached blocks, the publisher is
+     * suspended, so the event loop never has to run the storage operations itself.
+     */
     final NameableThreadFactory threadFactory = new NameableThreadFactory("StorageHelper");
-    storageHelperExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, workQueue, threadFactory,
-        new ThreadPoolExecutor.CallerRunsPolicy());
+    storageHelperExecutor = new ThreadPoolExecutor(numberOfSpoolThreads, numberOfSpoolThreads, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
   }
 
   public void setSpoolStorage(Storage storage)
@@ -262,8 +287,7 @@ public class Server extends AbstractServer
   private final ConcurrentHashMap<String, DataList> publisherBuffers = new ConcurrentHashMap<>(1, 0.75f, 1);
   private final ConcurrentHashMap<String, LogicalNode> subscriberGroups = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<String, AbstractLengthPrependerClient> publisherChannels = new ConcurrentHashMap<>();
-  private final int blockSize;
-  private final int numberOfCacheBlocks;
+  private final BlockPool blockPool;
 
   private void handlePurgeRequest(PurgeRequestTuple request, final AbstractLengthPrependerClient ctx) throws IOException
   {
@@ -345,8 +369,8 @@ public class Server extends AbstractServer
           DataList dl = publisherBuffers.get(upstream_identifier);
           if (dl == null) {
             dl = Tuple.FAST_VERSION.equals(request.getVersion()) ?
-                new FastDataList(upstream_identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
-                new DataList(upstream_identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+                new FastDataList(upstream_identifier, blockPool, BACK_PRESSURE_ENABLED) :
+                new DataList(upstream_identifier, blockPool, BACK_PRESSURE_ENABLED);
             DataList odl = publisherBuffers.putIfAbsent(upstream_identifier, dl);
             if (odl != null) {
               dl = odl;
@@ -468,8 +492,8 @@ public class Server extends AbstractServer
       }
     } else {
       dl = Tuple.FAST_VERSION.equals(request.getVersion()) ?
-          new FastDataList(identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
-          new DataList(identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+          new FastDataList(identifier, blockPool, BACK_PRESSURE_ENABLED) :
+          new DataList(identifier, blockPool, BACK_PRESSURE_ENABLED);
       DataList odl = publisherBuffers.putIfAbsent(identifier, dl);
       if (odl != null) {
         dl = odl;
@@ -626,36 +650,122 @@ public class Server extends AbstractServer
 
   }
 
-  private class Subscriber extends WriteOnlyLengthPrependerClient
+  /**
+   * Subscriber sends the length prefixed data it receives from the logical node as is. The queued ranges of the data
+   * list blocks are written to the channel with a single gathering write instead of being copied into the write
+   * buffer first.
+   */
+  private class Subscriber extends WriteOnlyClient implements PhysicalNode.PendingData
   {
     private LogicalNode ln;
+    private final ArrayDeque<Slice> pendingSlices = new ArrayDeque<>();
+    /*
+     * whether the slices taken from the send queue are written completely, read by the logical node.
+     */
+    private volatile boolean pending;
+    private final ByteBuffer[] buffers = new ByteBuffer[MAX_GATHERED_BUFFERS];
 
     Subscriber(LogicalNode ln, int bufferSize)
     {
-      super(1024 * 1024, bufferSize == 0 ? 256 * 1024 : bufferSize);
+      super(1024, bufferSize == 0 ? 256 * 1024 : bufferSize);
       this.ln = ln;
       ln.addConnection(this);
     }
 
+    @Override
+    public void write() throws IOException
+    {
+      final SocketChannel channel = (SocketChannel)key.channel();
+      boolean drained = false;
+      do {
+        /* set before the slices leave the send queue, so the logical node sees them pending all along */
+        pending = true;
+        Slice slice;
+        while (pendingSlices.size() < buffers.length && (slice = sendQueue.poll()) != null) {
+          pendingSlices.add(slice);
+        }
+        if (pendingSlices.isEmpty()) {
+          pending = false;
+          /*
+           * the write buffer is not used, so it only suspends the write unless more data has been queued meanwhile.
+           */
+          channelWrite();
+          if (drained) {
+            /* the logical node held up by the pending data resumes, even if the publisher does not add more */
+            final DataList dl = publisherBuffers.get(ln.getUpstream());
+            if (dl != null) {
+              dl.notifyListeners();
+            }
+          }
+          return;
+        }
+        drained = true;
+
+        int count = 0;
+        long remaining = 0;
+        for (Slice pendingSlice : pendingSlices) {
+          /*
+           * limit the size of the temporary direct buffers used by the channel to write the heap buffers.
+           */
+          final int length = Math.min(pendingSlice.length, MAX_GATHERED_BUFFER_SIZE);
+          buffers[count++] = ByteBuffer.wrap(pendingSlice.buffer, pendingSlice.offset, length);
+          remaining += length;
+        }
+        final long written = channel.write(buffers, 0, count);
+        Arrays.fill(buffers, 0, count, null);
+
+        for (long consumed = written; consumed > 0;) {
+          slice = pendingSlices.peek();
+          if (consumed < slice.length) {
+            slice.offset += consumed;
+            slice.length -= consumed;
+            break;
+          }
+          consumed -= slice.length;
+          slice.buffer = null;
+          freeQueue.offer(pendingSlices.poll());
+        }
+
+        if (written < remaining) {
+          return;
+        }
+      } while (true);
+    }
+
+    @Override
+    public boolean hasPendingData()
+    {
+      return pending || !sendQueue.isEmpty();
+    }
+
     @Override
     public void connected()
     {
       super.connected();
-      serverHelperExecutor.submit(new Runnable()
-      {
-        @Override
-        public void run()
+      try {
+        serverHelperExecutor.submit(new Runnable()
         {
-          final DataList dl = publisherBuffers.get(ln.getUpstream());
-          if (dl != null) {
-            ln.catchUp();
-            dl.addDataListener(ln);
-          } else {
-            logger.error("Disconnecting {} with no matching data list.", this);
-            ln.boot();
+          @Override
+          public void run()
+          {
+            final DataList dl = publisherBuffers.get(ln.getUpstream());
+            if (dl != null) {
+              ln.catchUp();
+              dl.addDataListener(ln);
+            } else {
+              logger.error("Disconnecting {} with no matching data list.", this);
+              ln.boot();
+            }
           }
-        }
-      });
+        });
+      } catch (RejectedExecutionException e) {
+        /*
+         * the server may be stopped between the subscribe request and the connect, a shared event loop must not
+         * be terminated because of it.
+         */
+        logger.warn("Subscriber {} connected after server {} termination. Disconnecting.", this, Server.this, e);
+        eventloop.disconnect(this);
+      }
     }
 
     @Override
@@ -732,7 +842,13 @@ public class Server extends AbstractServer
     @Override
     public void read(int len)
     {
-      readExt(len);
+      if (readExt(len) && datalist.isSpoolFull()) {
+        /*
+         * the storage operations of the data list fell behind, stop reading until they catch up instead of running
+         * them on the event loop.
+         */
+        datalist.suspendRead(this);
+      }
     }
 
     private boolean readExt(int len)
@@ -111,7 +111,9 @@ public class DiskStorage implements Storage
         throw new RuntimeException("directory " + directory.getAbsolutePath() + " could not be created!");
       }
 
-      lUniqueIdentifier = ++this.uniqueIdentifier;
+      synchronized (this) {
+        lUniqueIdentifier = ++this.uniqueIdentifier;
+      }
     }
 
     try {
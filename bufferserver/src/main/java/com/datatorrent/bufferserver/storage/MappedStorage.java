@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage that appends the blocks to preallocated memory mapped segment files.<p>
+ * <br>
+ * Unlike {@link DiskStorage} that writes every block to its own file, MappedStorage keeps an in memory directory of
+ * the stored blocks and serves them from the mapped segments. A segment is recycled as soon as all the blocks stored
+ * in it are discarded. The segment files are temporary and are deleted when the JVM exits.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class MappedStorage implements Storage
+{
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+  private final File directory;
+  private final int segmentSize;
+  private final HashMap<Integer, Entry> blocks = new HashMap<>();
+  private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+  private Segment segment;
+  private int uniqueIdentifier;
+  private int segmentCount;
+
+  public MappedStorage(String baseDirectory, int segmentSize) throws IOException
+  {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+    }
+    directory = Files.createTempDirectory(new File(baseDirectory).toPath(), "msp").toFile();
+    directory.deleteOnExit();
+    this.segmentSize = segmentSize;
+    logger.info("Using {} as the directory for spooling with segment size {}.", directory, segmentSize);
+  }
+
+  public MappedStorage() throws IOException
+  {
+    this(System.getProperty("java.io.tmpdir"), DEFAULT_SEGMENT_SIZE);
+  }
+
+  @Override
+  public Storage getInstance() throws IOException
+  {
+    return new MappedStorage(directory.getParent(), segmentSize);
+  }
+
+  @Override
+  public int store(String identifier, byte[] bytes, int startingOffset, int endingOffset)
+  {
+    final int length = endingOffset - startingOffset;
+    final Entry entry;
+    final int lUniqueIdentifier;
+    synchronized (this) {
+      final Segment segment;
+      try {
+        segment = getSegment(length);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+      entry = new Entry(identifier, segment, segment.position, length);
+      segment.position += length;
+      segment.count++;
+      if (++uniqueIdentifier == 0) {
+        uniqueIdentifier = 1;
+      }
+      lUniqueIdentifier = uniqueIdentifier;
+      blocks.put(lUniqueIdentifier, entry);
+    }
+
+    /*
+     * the region is reserved for the entry, so the copy does not need to hold the lock.
+     */
+    final ByteBuffer buffer = entry.segment.buffer.duplicate();
+    buffer.position(entry.offset);
+    buffer.put(bytes, startingOffset, length);
+    return lUniqueIdentifier;
+  }
+
+  @Override
+  public byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    final Entry entry = getEntry(identifier, uniqueIdentifier, false);
+    final ByteBuffer buffer = entry.segment.buffer.duplicate();
+    buffer.limit(entry.offset + entry.length).position(entry.offset);
+    final byte[] bytes = new byte[entry.length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public void discard(String identifier, int uniqueIdentifier)
+  {
+    getEntry(identifier, uniqueIdentifier, true);
+  }
+
+  private synchronized Entry getEntry(String identifier, int uniqueIdentifier, boolean remove)
+  {
+    final Entry entry = remove ? blocks.remove(uniqueIdentifier) : blocks.get(uniqueIdentifier);
+    if (entry == null) {
+      throw new RuntimeException("Block " + uniqueIdentifier + " for " + identifier + " does not exist!");
+    }
+    if (!entry.identifier.equals(identifier)) {
+      if (remove) {
+        blocks.put(uniqueIdentifier, entry);
+      }
+      throw new RuntimeException("Collision in the identifier name, block " + uniqueIdentifier + " was stored for [" +
+          entry.identifier + "] and requested for [" + identifier + "].");
+    }
+    if (remove && --entry.segment.count == 0 && entry.segment != segment) {
+      recycle(entry.segment);
+    }
+    return entry;
+  }
+
+  private void recycle(Segment segment)
+  {
+    logger.debug("Recycling {}", segment);
+    segment.position = 0;
+    if (segment.buffer.capacity() == segmentSize) {
+      freeSegments.push(segment);
+    } else {
+      /*
+       * oversized segment allocated for a block larger than the segment size, let it be unmapped by GC.
+       */
+      if (!segment.file.delete()) {
+        logger.warn("Segment file {} could not be deleted.", segment.file);
+      }
+    }
+  }
+
+  private Segment getSegment(int length) throws IOException
+  {
+    if (segment != null && segment.buffer.capacity() - segment.position >= length) {
+      return segment;
+    }
+    if (segment != null && segment.count == 0) {
+      recycle(segment);
+    }
+    if (length <= segmentSize && !freeSegments.isEmpty()) {
+      segment = freeSegments.pop();
+    } else {
+      segment = new Segment(new File(directory, String.valueOf(++segmentCount)), Math.max(length, segmentSize));
+    }
+    return segment;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + '@' + Integer.toHexString(hashCode()) + "{directory=" + directory +
+        ", segmentSize=" + segmentSize + '}';
+  }
+
+  private static class Segment
+  {
+    final File file;
+    final MappedByteBuffer buffer;
+    /**
+     * offset of the first available byte to write into.
+     */
+    int position;
+    /**
+     * number of blocks that are stored in the segment and are not discarded.
+     */
+    int count;
+
+    Segment(File file, int size) throws IOException
+    {
+      this.file = file;
+      file.deleteOnExit();
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(size);
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+      logger.debug("Allocated {}", this);
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Segment{file=" + file + ", position=" + position + ", count=" + count + '}';
+    }
+  }
+
+  private static class Entry
+  {
+    final String identifier;
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Entry(String identifier, Segment segment, int offset, int length)
+    {
+      this.identifier = identifier;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Entry{identifier=" + identifier + ", segment=" + segment + ", offset=" + offset + ", length=" + length +
+          '}';
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(MappedStorage.class);
+}
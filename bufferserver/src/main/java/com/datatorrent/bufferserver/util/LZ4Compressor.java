@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.Arrays;
+
+/**
+ * Compresses the data into the LZ4 block format.<p>
+ * <br>
+ * The compressor looks for the matches of at least {@link #MIN_MATCH} bytes through a hash table of the last positions
+ * of the 4 byte sequences and encodes the data as the sequences of literals followed by a back reference, as described
+ * by the LZ4 block format. It favors the speed over the ratio, which suits the data exchanged with the buffer server.
+ * The hash table is reused between the calls, so an instance is not to be shared between the threads.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class LZ4Compressor
+{
+  public static final int MIN_MATCH = 4;
+  /**
+   * the last match starts at least that many bytes before the end of the block.
+   */
+  public static final int MF_LIMIT = 12;
+  /**
+   * the last bytes of the block are always encoded as literals.
+   */
+  public static final int LAST_LITERALS = 5;
+  public static final int MAX_DISTANCE = 0xffff;
+  private static final int HASH_LOG = 12;
+  private static final int RUN_MASK = 0x0f;
+  private final int[] table = new int[1 << HASH_LOG];
+
+  /**
+   * Returns the size of the buffer large enough to hold the compressed block of the given length in the worst case.
+   *
+   * @param length length of the data to be compressed
+   * @return maximum length of the compressed block
+   */
+  public static int maxCompressedLength(int length)
+  {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * Compresses the data into a block.
+   *
+   * @param src buffer holding the data
+   * @param srcOff offset of the data
+   * @param srcLen length of the data
+   * @param dest buffer the block is written to, needs to have {@link #maxCompressedLength} bytes available
+   * @param destOff offset the block is written at
+   * @return length of the compressed block
+   */
+  public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff)
+  {
+    final int srcEnd = srcOff + srcLen;
+    final int matchLimit = srcEnd - LAST_LITERALS;
+    final int mfLimit = srcEnd - MF_LIMIT;
+    int anchor = srcOff;
+    int d = destOff;
+
+    if (srcLen > MF_LIMIT) {
+      /* the positions left over from the previous block are verified as any other candidate, but may be out of range */
+      Arrays.fill(table, srcOff);
+      int s = srcOff + 1;
+      while (s < mfLimit) {
+        final int sequence = readInt(src, s);
+        final int h = hash(sequence);
+        int ref = table[h];
+        table[h] = s;
+        if (s - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          s += 1 + ((s - anchor) >>> 6);
+          continue;
+        }
+
+        while (s > anchor && ref > srcOff && src[s - 1] == src[ref - 1]) {
+          s--;
+          ref--;
+        }
+
+        int matchLength = MIN_MATCH;
+        while (s + matchLength < matchLimit && src[s + matchLength] == src[ref + matchLength]) {
+          matchLength++;
+        }
+
+        d = writeLiterals(src, anchor, s - anchor, matchLength - MIN_MATCH, dest, d);
+        final int distance = s - ref;
+        dest[d++] = (byte)distance;
+        dest[d++] = (byte)(distance >>> 8);
+        d = writeLength(matchLength - MIN_MATCH, dest, d);
+
+        s += matchLength;
+        anchor = s;
+        if (s < mfLimit) {
+          table[hash(readInt(src, s - 2))] = s - 2;
+        }
+      }
+    }
+
+    d = writeLiterals(src, anchor, srcEnd - anchor, 0, dest, d);
+    return d - destOff;
+  }
+
+  /**
+   * Decompresses a block.
+   *
+   * @param src buffer holding the block
+   * @param srcOff offset of the block
+   * @param srcLen length of the block
+   * @param dest buffer the data is written to
+   * @param destOff offset the data is written at
+   * @param destLen maximum length of the data
+   * @return length of the decompressed data
+   * @throws IllegalArgumentException if the block is malformed or decompresses to more than destLen bytes
+   */
+  public static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+  {
+    final int srcEnd = srcOff + srcLen;
+    final int destEnd = destOff + destLen;
+    int s = srcOff;
+    int d = destOff;
+
+    try {
+      while (s < srcEnd) {
+        final int token = src[s++] & 0xff;
+
+        int literals = token >>> 4;
+        if (literals == RUN_MASK) {
+          int b;
+          do {
+            b = src[s++] & 0xff;
+            literals += b;
+          } while (b == 0xff);
+        }
+        if (s + literals > srcEnd || d + literals > destEnd) {
+          throw new IllegalArgumentException("Literals overflow at " + (s - srcOff));
+        }
+        java.lang.System.arraycopy(src, s, dest, d, literals);
+        s += literals;
+        d += literals;
+        if (s == srcEnd) {
+          break;
+        }
+
+        final int distance = (src[s++] & 0xff) | (src[s++] & 0xff) << 8;
+        int ref = d - distance;
+        if (distance == 0 || ref < destOff) {
+          throw new IllegalArgumentException("Invalid match distance " + distance + " at " + (s - srcOff));
+        }
+
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[s++] & 0xff;
+            matchLength += b;
+          } while (b == 0xff);
+        }
+        matchLength += MIN_MATCH;
+        if (d + matchLength > destEnd) {
+          throw new IllegalArgumentException("Match overflow at " + (s - srcOff));
+        }
+
+        if (distance >= matchLength) {
+          java.lang.System.arraycopy(dest, ref, dest, d, matchLength);
+          d += matchLength;
+        } else {
+          /* the match overlaps the bytes it produces */
+          for (final int end = d + matchLength; d < end;) {
+            dest[d++] = dest[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      throw new IllegalArgumentException("Truncated block", ex);
+    }
+
+    return d - destOff;
+  }
+
+  private static int writeLiterals(byte[] src, int offset, int length, int matchLength, byte[] dest, int d)
+  {
+    final int token = d++;
+    dest[token] = (byte)(Math.min(length, RUN_MASK) << 4 | Math.min(matchLength, RUN_MASK));
+    if (length >= RUN_MASK) {
+      d = writeRemainder(length - RUN_MASK, dest, d);
+    }
+    java.lang.System.arraycopy(src, offset, dest, d, length);
+    return d + length;
+  }
+
+  private static int writeLength(int length, byte[] dest, int d)
+  {
+    return length >= RUN_MASK ? writeRemainder(length - RUN_MASK, dest, d) : d;
+  }
+
+  private static int writeRemainder(int length, byte[] dest, int d)
+  {
+    while (length >= 0xff) {
+      dest[d++] = (byte)0xff;
+      length -= 0xff;
+    }
+    dest[d++] = (byte)length;
+    return d;
+  }
+
+  private static int readInt(byte[] buffer, int offset)
+  {
+    return buffer[offset] << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8 |
+        (buffer[offset + 3] & 0xff);
+  }
+
+  private static int hash(int sequence)
+  {
+    return sequence * -1640531535 >>> (32 - HASH_LOG);
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.Collection;
+
+/**
+ * Matches the partition keys against a set of {@link BitVector}s.<p>
+ * <br>
+ * When all the bit vectors share the same mask, which is the case for the partitions of a subscriber, the matching
+ * partition keys are precomputed into a bitmap indexed by the masked partition key, so a match is a single lookup.
+ * Otherwise the bit vectors are matched one by one.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class PartitionFilter
+{
+  /**
+   * largest mask for which the bitmap is used, the bitmap takes at most 8 KB.
+   */
+  public static final int MAX_LOOKUP_MASK = 0xffff;
+  private final BitVector[] partitions;
+  private final int mask;
+  private final long[] lookup;
+
+  public PartitionFilter(Collection<BitVector> partitions)
+  {
+    this.partitions = partitions.toArray(new BitVector[partitions.size()]);
+
+    int mask = this.partitions.length == 0 ? 0 : this.partitions[0].mask;
+    for (BitVector partition : this.partitions) {
+      if (partition.mask != mask) {
+        mask = -1;
+        break;
+      }
+    }
+
+    if (mask >= 0 && mask <= MAX_LOOKUP_MASK) {
+      this.mask = mask;
+      lookup = new long[(mask >>> 6) + 1];
+      for (BitVector partition : this.partitions) {
+        lookup[partition.bits >>> 6] |= 1L << partition.bits;
+      }
+    } else {
+      this.mask = 0;
+      lookup = null;
+    }
+  }
+
+  public boolean isEmpty()
+  {
+    return partitions.length == 0;
+  }
+
+  public boolean matches(int value)
+  {
+    if (lookup != null) {
+      final int index = value & mask;
+      return (lookup[index >>> 6] & 1L << index) != 0;
+    }
+    for (BitVector partition : partitions) {
+      if (partition.matches(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
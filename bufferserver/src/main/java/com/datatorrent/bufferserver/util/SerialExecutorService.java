@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the submitted tasks one at a time in the submission order using the threads of a shared executor.<p>
+ * <br>
+ * Multiple instances sharing the same executor run in parallel while the tasks of each instance stay ordered. After
+ * every task the instance yields the thread back to the shared executor, so a lane with a long queue does not starve
+ * the others.
+ * <br>
+ * The tasks are never run by the submitting thread. Once the number of the waiting tasks reaches the capacity, the
+ * instance reports itself as {@link #isFull() full} and the submitter is expected to stop submitting, the tasks
+ * submitted nevertheless are queued behind the waiting ones. {@link #available()} is invoked when the queue drains
+ * below the capacity again.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class SerialExecutorService extends AbstractExecutorService
+{
+  private final Executor executor;
+  private final int capacity;
+  private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+  private final Runnable runner = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      runNext();
+    }
+
+    @Override
+    public String toString()
+    {
+      return SerialExecutorService.this.toString();
+    }
+  };
+  private boolean running;
+  private boolean shutdown;
+  private boolean full;
+
+  public SerialExecutorService(Executor executor)
+  {
+    this(executor, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param executor executor running the tasks
+   * @param capacity number of the waiting tasks at which the instance is full
+   */
+  public SerialExecutorService(Executor executor, int capacity)
+  {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.executor = executor;
+    this.capacity = capacity;
+  }
+
+  public Executor getExecutor()
+  {
+    return executor;
+  }
+
+  /**
+   * @return number of tasks waiting to be executed
+   */
+  public int getQueueDepth()
+  {
+    synchronized (tasks) {
+      return tasks.size();
+    }
+  }
+
+  /**
+   * @return true if the number of the waiting tasks reached the capacity
+   */
+  public boolean isFull()
+  {
+    synchronized (tasks) {
+      return tasks.size() >= capacity;
+    }
+  }
+
+  /**
+   * Invoked by the thread that executed the task after which the number of the waiting tasks dropped below the
+   * capacity, provided it reached the capacity before.
+   */
+  protected void available()
+  {
+  }
+
+  @Override
+  public void execute(Runnable command)
+  {
+    synchronized (tasks) {
+      if (shutdown) {
+        throw new RejectedExecutionException("Task " + command + " rejected from " + this);
+      }
+      tasks.add(command);
+      if (tasks.size() >= capacity) {
+        full = true;
+      }
+      if (running) {
+        return;
+      }
+      running = true;
+    }
+    schedule();
+  }
+
+  private void schedule()
+  {
+    try {
+      executor.execute(runner);
+    } catch (RejectedExecutionException e) {
+      synchronized (tasks) {
+        running = false;
+        full = false;
+        tasks.clear();
+        tasks.notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  private void runNext()
+  {
+    final Runnable task;
+    synchronized (tasks) {
+      task = tasks.poll();
+      if (task == null) {
+        running = false;
+        tasks.notifyAll();
+        return;
+      }
+    }
+
+    boolean more = false;
+    boolean available = false;
+    try {
+      task.run();
+    } catch (RuntimeException e) {
+      logger.error("{}: task {} failed", this, task, e);
+    } finally {
+      synchronized (tasks) {
+        more = !tasks.isEmpty();
+        if (!more) {
+          running = false;
+          tasks.notifyAll();
+        }
+        if (full && tasks.size() < capacity) {
+          full = false;
+          available = true;
+        }
+      }
+    }
+
+    if (available) {
+      try {
+        available();
+      } catch (RuntimeException e) {
+        logger.error("{}: notification of the available capacity failed", this, e);
+      }
+    }
+
+    /*
+     * running is still set, so no other thread schedules the runner concurrently.
+     */
+    if (more) {
+      try {
+        schedule();
+      } catch (RejectedExecutionException e) {
+        logger.warn("{}: executor {} rejected pending tasks", this, executor);
+      }
+    }
+  }
+
+  @Override
+  public void shutdown()
+  {
+    synchronized (tasks) {
+      shutdown = true;
+    }
+  }
+
+  @Override
+  public List<Runnable> shutdownNow()
+  {
+    synchronized (tasks) {
+      shutdown = true;
+      List<Runnable> pending = new ArrayList<>(tasks);
+      tasks.clear();
+      return pending;
+    }
+  }
+
+  @Override
+  public boolean isShutdown()
+  {
+    synchronized (tasks) {
+      return shutdown;
+    }
+  }
+
+  @Override
+  public boolean isTerminated()
+  {
+    synchronized (tasks) {
+      return shutdown && !running;
+    }
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    final long deadline = java.lang.System.nanoTime() + unit.toNanos(timeout);
+    synchronized (tasks) {
+      while (!(shutdown && !running)) {
+        final long nanos = deadline - java.lang.System.nanoTime();
+        if (nanos <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(tasks, nanos);
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + '@' + Integer.toHexString(hashCode()) + "{executor=" + executor + '}';
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SerialExecutorService.class);
+}
@@ -0,0 +1,332 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.DataTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.packet.WindowIdTuple;
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.netlet.AbstractClient;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class DataListTest
+{
+  private static final int BASE_SECONDS = 0x7afebabe;
+  private DataList dataList;
+  private int writeOffset;
+
+  @BeforeMethod
+  public void setup()
+  {
+    dataList = new DataList("DataListTest", 64 * 1024, 8, false);
+    dataList.setAutoFlushExecutor(MoreExecutors.sameThreadExecutor());
+    writeOffset = 0;
+  }
+
+  private void publish(byte[] message)
+  {
+    final byte[] buffer = dataList.getBuffer((long)BASE_SECONDS << 32);
+    writeOffset = VarInt.write(message.length, buffer, writeOffset);
+    System.arraycopy(message, 0, buffer, writeOffset, message.length);
+    writeOffset += message.length;
+    dataList.flush(writeOffset);
+  }
+
+  private void publishWindow(int windowId, int payloads)
+  {
+    publish(BeginWindowTuple.getSerializedTuple(windowId));
+    for (int i = 0; i < payloads; i++) {
+      final byte[] payload = PayloadTuple.getSerializedTuple(0, 1);
+      payload[payload.length - 1] = (byte)i;
+      publish(payload);
+    }
+    publish(EndWindowTuple.getSerializedTuple(windowId));
+  }
+
+  /**
+   * pads the last block with a no message tuple so that the next message is published to a new block.
+   */
+  private void fillBlock()
+  {
+    final int remaining = dataList.getBlockSize() - writeOffset;
+    int size = remaining - 1;
+    while (VarInt.getSize(size) + size > remaining) {
+      size--;
+    }
+    final byte[] message = new byte[size];
+    message[0] = MessageType.NO_MESSAGE_VALUE;
+    publish(message);
+    assertEquals(writeOffset, dataList.getBlockSize());
+  }
+
+  private static Tuple getTuple(SerializedData data)
+  {
+    return Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
+  }
+
+  @Test
+  public void testSeekToWindow()
+  {
+    publish(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+    for (int windowId = 0; windowId < 10; windowId++) {
+      publishWindow(windowId, 100);
+    }
+
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 4)) {
+      assertTrue(iterator.hasNext());
+      final Tuple tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 5);
+      assertEquals(iterator.getBaseSeconds(), BASE_SECONDS);
+    }
+
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 20)) {
+      assertTrue(iterator.hasNext());
+      final Tuple tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 9);
+    }
+
+    try (DataListIterator iterator = dataList.newIterator(0)) {
+      assertTrue(iterator.hasNext());
+      assertEquals(getTuple(iterator.next()).getType(), MessageType.RESET_WINDOW);
+    }
+  }
+
+  @Test
+  public void testSeekKeepsControlTuples()
+  {
+    publish(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+    publishWindow(0, 10);
+    publish(DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, new Slice(new byte[] {1})));
+    publishWindow(1, 10);
+    publishWindow(2, 10);
+    final byte[] checkpoint = WindowIdTuple.getSerializedTuple(2);
+    checkpoint[0] = MessageType.CHECKPOINT_VALUE;
+    publish(checkpoint);
+    publishWindow(3, 10);
+    publish(DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, new Slice(new byte[] {2})));
+    publishWindow(4, 10);
+    publishWindow(5, 10);
+
+    /*
+     * codec state published in the window 1 is needed by the subscriber for the window 2
+     */
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 1)) {
+      assertTrue(iterator.hasNext());
+      assertEquals(getTuple(iterator.next()).getType(), MessageType.CODEC_STATE);
+    }
+
+    /*
+     * checkpoint resets the codec state, so the subscriber for the window 3 needs the checkpoint only
+     */
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 2)) {
+      assertTrue(iterator.hasNext());
+      assertEquals(getTuple(iterator.next()).getType(), MessageType.CHECKPOINT);
+    }
+
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 4)) {
+      assertTrue(iterator.hasNext());
+      assertEquals(getTuple(iterator.next()).getType(), MessageType.CODEC_STATE);
+      assertTrue(iterator.hasNext());
+      final Tuple tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 4);
+    }
+  }
+
+  @Test
+  public void testSeekAfterRewind() throws Exception
+  {
+    publish(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+    for (int windowId = 0; windowId < 10; windowId++) {
+      publishWindow(windowId, 10);
+    }
+
+    dataList.rewind(BASE_SECONDS, 5);
+    writeOffset = dataList.getPosition();
+    publishWindow(5, 1);
+    publishWindow(6, 1);
+
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32 | 5)) {
+      assertTrue(iterator.hasNext());
+      Tuple tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 6);
+      assertTrue(iterator.hasNext());
+      tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.PAYLOAD);
+      assertEquals(tuple.getData().buffer[tuple.getData().offset], 0);
+    }
+  }
+
+  @Test
+  public void testSharedBlockPool()
+  {
+    final BlockPool pool = new BlockPool(1024, 4);
+    dataList = new DataList("DataListTest", pool, false);
+    dataList.setAutoFlushExecutor(MoreExecutors.sameThreadExecutor());
+    final DataList other = new DataList("OtherDataList", pool, false);
+    assertSame(other.getPool(), pool);
+    assertEquals(pool.getPermits(), 2);
+
+    publish(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+    publishWindow(0, 10);
+    fillBlock();
+    final byte[] block = dataList.getBuffer((long)BASE_SECONDS << 32);
+    dataList.addBuffer(dataList.newBuffer(0));
+    writeOffset = 0;
+    assertEquals(pool.getPermits(), 1);
+    publishWindow(1, 10);
+
+    /*
+     * the purged block is returned to the pool and reused by the next allocation
+     */
+    dataList.purge((long)BASE_SECONDS << 32);
+    assertEquals(pool.getPermits(), 2);
+    assertSame(pool.allocate(0), block);
+    assertNotSame(pool.allocate(0), block);
+    assertEquals(pool.getNumBlocksReused(), 1);
+
+    try (DataListIterator iterator = dataList.newIterator((long)BASE_SECONDS << 32)) {
+      assertTrue(iterator.hasNext());
+      final Tuple tuple = getTuple(iterator.next());
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 1);
+    }
+  }
+
+  @Test
+  public void testFullSpoolSuspendsPublisher() throws Exception
+  {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      dataList.setSecondaryStorage(new DiskStorage(), executor);
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch blocked = new CountDownLatch(1);
+      dataList.storageExecutor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          started.countDown();
+          try {
+            blocked.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      });
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      assertFalse(dataList.isSpoolFull());
+
+      /*
+       * the publisher waits for the storage operations to catch up instead of running them on the event loop
+       */
+      final Runnable noop = new Runnable()
+      {
+        @Override
+        public void run()
+        {
+        }
+      };
+      for (int i = dataList.getPool().getCapacity(); i-- > 0;) {
+        dataList.storageExecutor.submit(noop);
+      }
+      assertTrue(dataList.isSpoolFull());
+      final Publisher publisher = new Publisher();
+      assertTrue(dataList.suspendRead(publisher));
+      assertTrue(publisher.suspended);
+
+      blocked.countDown();
+      final long deadline = System.currentTimeMillis() + 10000;
+      while (publisher.suspended && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertFalse(publisher.suspended, "publisher resumed");
+      assertFalse(dataList.isSpoolFull());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class Publisher extends AbstractClient
+  {
+    volatile boolean suspended;
+
+    @Override
+    public boolean suspendReadIfResumed()
+    {
+      if (suspended) {
+        return false;
+      }
+      suspended = true;
+      return true;
+    }
+
+    @Override
+    public boolean resumeReadIfSuspended()
+    {
+      if (!suspended) {
+        return false;
+      }
+      suspended = false;
+      return true;
+    }
+
+    @Override
+    public ByteBuffer buffer()
+    {
+      return ByteBuffer.allocate(0);
+    }
+
+    @Override
+    public void read(int len)
+    {
+    }
+  }
+}
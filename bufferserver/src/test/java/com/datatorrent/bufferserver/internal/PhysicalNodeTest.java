@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.bufferserver.util.VarInt;
+import com.datatorrent.netlet.WriteOnlyClient;
+import com.datatorrent.netlet.util.Slice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class PhysicalNodeTest
+{
+  private static class Client extends WriteOnlyClient
+  {
+    final List<Slice> sent = new ArrayList<>();
+    boolean full;
+    int capacity = Integer.MAX_VALUE;
+
+    @Override
+    public boolean send(byte[] array, int offset, int len)
+    {
+      if (full || sent.size() >= capacity) {
+        return false;
+      }
+      sent.add(new Slice(array, offset, len));
+      return true;
+    }
+  }
+
+  private static class PendingDataClient extends Client implements PhysicalNode.PendingData
+  {
+    boolean pending;
+
+    @Override
+    public boolean hasPendingData()
+    {
+      return pending;
+    }
+  }
+
+  /**
+   * writes the messages one after another with the var int length prefix.
+   */
+  private static List<SerializedData> write(byte[] buffer, int count, int size)
+  {
+    final List<SerializedData> messages = new ArrayList<>();
+    int offset = 0;
+    for (int i = 0; i < count; i++) {
+      final int dataOffset = VarInt.write(size, buffer, offset);
+      Arrays.fill(buffer, dataOffset, dataOffset + size, (byte)i);
+      final SerializedData data = new SerializedData(buffer, offset, dataOffset + size - offset);
+      data.dataOffset = dataOffset;
+      offset = dataOffset + size;
+      messages.add(data);
+    }
+    return messages;
+  }
+
+  @Test
+  public void testAdjacentMessagesAreBatched()
+  {
+    final byte[] buffer = new byte[1024];
+    final List<SerializedData> messages = write(buffer, 10, 20);
+    final Client client = new Client();
+    final PhysicalNode node = new PhysicalNode(client);
+
+    for (int i = 0; i < 5; i++) {
+      assertTrue(node.send(messages.get(i)));
+    }
+    /*
+     * skip a message, so the range is not contiguous anymore
+     */
+    for (int i = 6; i < 10; i++) {
+      assertTrue(node.send(messages.get(i)));
+    }
+    assertEquals(client.sent.size(), 1);
+    assertTrue(node.flush());
+    assertEquals(client.sent.size(), 2);
+
+    assertEquals(client.sent.get(0).buffer, buffer);
+    assertEquals(client.sent.get(0).offset, 0);
+    assertEquals(client.sent.get(0).length, 5 * 21);
+    assertEquals(client.sent.get(1).offset, 6 * 21);
+    assertEquals(client.sent.get(1).length, 4 * 21);
+  }
+
+  @Test
+  public void testBlockedMessageIsSentOnUnblock()
+  {
+    final byte[] buffer = new byte[1024];
+    final List<SerializedData> messages = write(buffer, 3, 20);
+    final Client client = new Client();
+    final PhysicalNode node = new PhysicalNode(client);
+
+    assertTrue(node.send(messages.get(0)));
+    client.full = true;
+    assertFalse(node.send(messages.get(2)));
+    assertFalse(node.unblock());
+    assertTrue(client.sent.isEmpty());
+
+    client.full = false;
+    assertTrue(node.unblock());
+    assertEquals(client.sent.size(), 2);
+    assertEquals(client.sent.get(0).offset, 0);
+    assertEquals(client.sent.get(0).length, 21);
+    assertEquals(client.sent.get(1).offset, 2 * 21);
+    assertEquals(client.sent.get(1).length, 21);
+  }
+
+  @Test
+  public void testMessagesWithoutLengthPrefixAreFramed()
+  {
+    final byte[] buffer = new byte[1024];
+    final List<SerializedData> messages = write(buffer, 2, 20);
+    final Client client = new Client();
+    final PhysicalNode node = new PhysicalNode(client, false);
+
+    /*
+     * pretend the length prefix is in a different format by shifting the data offset
+     */
+    final SerializedData data = messages.get(1);
+    data.offset -= 1;
+    data.length += 1;
+    assertTrue(node.send(data));
+    assertTrue(node.send(messages.get(0)));
+    assertTrue(node.flush());
+    assertEquals(client.sent.size(), 4);
+    final Slice header = client.sent.get(0);
+    assertEquals(header.length, 1);
+    assertEquals(header.buffer[header.offset], 20);
+    final Slice slice = client.sent.get(1);
+    assertEquals(slice.buffer, buffer, "data is not copied");
+    assertEquals(slice.offset, data.dataOffset);
+    assertEquals(slice.length, 20);
+    assertEquals(slice.buffer[slice.offset], 1);
+    /* the headers are written one after another into the same chunk */
+    assertEquals(client.sent.get(2).buffer, header.buffer);
+    assertEquals(client.sent.get(2).offset, header.offset + 1);
+    assertEquals(client.sent.get(3).offset, messages.get(0).dataOffset);
+  }
+
+  @Test
+  public void testBlockedDataIsNotFramedTwice()
+  {
+    final byte[] buffer = new byte[1024];
+    final List<SerializedData> messages = write(buffer, 1, 20);
+    final Client client = new Client();
+    final PhysicalNode node = new PhysicalNode(client, false);
+
+    /* the client accepts the header but not the data */
+    client.capacity = 1;
+    assertFalse(node.send(messages.get(0)));
+    assertFalse(node.unblock());
+    assertEquals(client.sent.size(), 1);
+
+    client.capacity = Integer.MAX_VALUE;
+    assertTrue(node.unblock());
+    assertEquals(client.sent.size(), 2);
+    assertEquals(client.sent.get(0).length, 1);
+    assertEquals(client.sent.get(1).buffer, buffer);
+    assertEquals(client.sent.get(1).length, 20);
+  }
+
+  @Test
+  public void testRangeIsCapped()
+  {
+    final int size = 1000;
+    final int count = 3 * PhysicalNode.MAX_RANGE_SIZE / size;
+    final byte[] buffer = new byte[count * (size + 2)];
+    final List<SerializedData> messages = write(buffer, count, size);
+    final Client client = new Client();
+    final PhysicalNode node = new PhysicalNode(client);
+
+    for (SerializedData message : messages) {
+      assertTrue(node.send(message));
+    }
+    assertTrue(node.flush());
+    assertTrue(client.sent.size() > 3, "ranges " + client.sent.size());
+    int offset = 0;
+    for (Slice slice : client.sent) {
+      assertTrue(slice.length <= PhysicalNode.MAX_RANGE_SIZE, "range length " + slice.length);
+      assertEquals(slice.offset, offset);
+      offset += slice.length;
+    }
+    assertEquals(offset, buffer.length);
+  }
+
+  @Test
+  public void testPendingDataBlocksNewRange()
+  {
+    final byte[] buffer = new byte[1024];
+    final List<SerializedData> messages = write(buffer, 3, 20);
+    final PendingDataClient client = new PendingDataClient();
+    final PhysicalNode node = new PhysicalNode(client);
+
+    assertTrue(node.send(messages.get(0)));
+    assertTrue(node.send(messages.get(1)));
+    assertTrue(node.flush());
+    client.pending = true;
+    /* the client did not write the first range yet */
+    assertFalse(node.send(messages.get(2)));
+    assertFalse(node.unblock());
+    assertEquals(client.sent.size(), 1);
+
+    client.pending = false;
+    assertTrue(node.unblock());
+    assertEquals(client.sent.size(), 2);
+    assertEquals(client.sent.get(1).offset, 2 * 21);
+    assertEquals(client.sent.get(1).length, 21);
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ *
+ */
+public class LatencyMarkerTupleTest
+{
+  @Test
+  public void testGetSerializedTuple()
+  {
+    byte[] serial = LatencyMarkerTuple.getSerializedTuple(42, 0x15e2b3c4d5eL, 0x15e2b3c4d6fL);
+    LatencyMarkerTuple tuple = (LatencyMarkerTuple)Tuple.getTuple(serial, 0, serial.length);
+
+    assertEquals(tuple.getType(), MessageType.LATENCY_MARKER, "type");
+    assertEquals(tuple.getSourceOperatorId(), 42, "source operator");
+    assertEquals(tuple.getCreatedMillis(), 0x15e2b3c4d5eL, "created");
+    assertEquals(tuple.getEmittedMillis(), 0x15e2b3c4d6fL, "emitted");
+    assertEquals(tuple.getBufferServerMillis(), 0, "buffer server");
+  }
+
+  @Test
+  public void testSetBufferServerMillis()
+  {
+    byte[] marker = LatencyMarkerTuple.getSerializedTuple(Integer.MAX_VALUE, 1, 2);
+    byte[] buffer = new byte[marker.length + 3];
+    System.arraycopy(marker, 0, buffer, 3, marker.length);
+
+    LatencyMarkerTuple.setBufferServerMillis(buffer, 3, Long.MAX_VALUE);
+    LatencyMarkerTuple tuple = (LatencyMarkerTuple)Tuple.getTuple(buffer, 3, marker.length);
+
+    assertEquals(tuple.getSourceOperatorId(), Integer.MAX_VALUE, "source operator");
+    assertEquals(tuple.getCreatedMillis(), 1, "created");
+    assertEquals(tuple.getEmittedMillis(), 2, "emitted");
+    assertEquals(tuple.getBufferServerMillis(), Long.MAX_VALUE, "buffer server");
+  }
+}
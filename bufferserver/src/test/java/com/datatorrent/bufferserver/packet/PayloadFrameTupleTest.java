@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.util.BitVector;
+import com.datatorrent.bufferserver.util.PartitionFilter;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class PayloadFrameTupleTest
+{
+  @Test
+  public void testGetSerializedTuple()
+  {
+    final int count = 200;
+    final int[] partitions = new int[count];
+    final byte[] data = new byte[count * 8];
+    int dataLength = 0;
+    for (int i = 0; i < count; i++) {
+      partitions[i] = i * 2;
+      byte[] payload = ("p" + i).getBytes();
+      dataLength = VarInt.write(payload.length, data, dataLength);
+      System.arraycopy(payload, 0, data, dataLength, payload.length);
+      dataLength += payload.length;
+    }
+
+    final int length = PayloadFrameTuple.getSerializedLength(count, dataLength);
+    final byte[] serial = new byte[length + 3];
+    assertEquals(PayloadFrameTuple.writeSerializedTuple(partitions, count, data, dataLength, serial, 3), length + 3);
+
+    Tuple tuple = Tuple.getTuple(serial, 3, length);
+    assertEquals(tuple.getType(), MessageType.PAYLOAD_FRAME, "type");
+    assertEquals(((PayloadFrameTuple)tuple).getCount(), count, "count");
+    assertEquals(PayloadFrameTuple.getCount(serial, 3, length), count, "count");
+
+    PayloadFrameTuple.Reader reader = new PayloadFrameTuple.Reader();
+    reader.reset(serial, 3, length);
+    Slice payload = new Slice(null, 0, 0);
+    for (int i = 0; i < count; i++) {
+      assertTrue(reader.hasNext(), "payload " + i);
+      assertEquals(reader.next(payload), i * 2, "partition " + i);
+      assertEquals(payload.toByteArray(), ("p" + i).getBytes(), "data " + i);
+    }
+    assertFalse(reader.hasNext(), "no more payloads");
+
+    assertTrue(PayloadFrameTuple.matches(serial, 3, length, new PartitionFilter(Arrays.asList(new BitVector(0, 1)))));
+    assertFalse(PayloadFrameTuple.matches(serial, 3, length, new PartitionFilter(Arrays.asList(new BitVector(1, 1)))));
+    assertTrue(PayloadFrameTuple.matches(serial, 3, length,
+        new PartitionFilter(Arrays.asList(new BitVector(1, 1), new BitVector(398, 0xfff)))));
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class MappedStorageTest
+{
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private static byte[] getBlock(int seed)
+  {
+    byte[] block = new byte[BLOCK_SIZE];
+    new Random(seed).nextBytes(block);
+    return block;
+  }
+
+  @Test
+  public void testStoreRetrieveDiscard() throws Exception
+  {
+    MappedStorage storage = new MappedStorage(System.getProperty("java.io.tmpdir"), 4 * BLOCK_SIZE);
+    int[] ids = new int[10];
+    for (int i = 0; i < ids.length; i++) {
+      byte[] block = getBlock(i);
+      ids[i] = storage.store("MyPublisher", block, 16, block.length);
+      assertTrue(ids[i] != 0);
+    }
+
+    for (int i = ids.length; i-- > 0;) {
+      byte[] block = getBlock(i);
+      assertTrue(Arrays.equals(storage.retrieve("MyPublisher", ids[i]), Arrays.copyOfRange(block, 16, block.length)));
+      storage.discard("MyPublisher", ids[i]);
+    }
+
+    try {
+      storage.retrieve("MyPublisher", ids[0]);
+      fail("Discarded block retrieved");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIdentifierCollision() throws Exception
+  {
+    MappedStorage storage = new MappedStorage(System.getProperty("java.io.tmpdir"), 4 * BLOCK_SIZE);
+    byte[] block = getBlock(0);
+    int id = storage.store("MyPublisher", block, 0, block.length);
+    try {
+      storage.discard("OtherPublisher", id);
+      fail("Block discarded by a different identifier");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    assertTrue(Arrays.equals(storage.retrieve("MyPublisher", id), block));
+  }
+
+  /**
+   * @return the segment files in the spool directory the storage created in the base directory
+   */
+  private static String[] getSegmentFiles(File baseDirectory)
+  {
+    File[] directories = baseDirectory.listFiles();
+    assertEquals(directories.length, 1, "spool directories");
+    String[] files = directories[0].list();
+    Arrays.sort(files);
+    return files;
+  }
+
+  @Test
+  public void testSegmentRecycling() throws Exception
+  {
+    File baseDirectory = Files.createTempDirectory("MappedStorageTest").toFile();
+    baseDirectory.deleteOnExit();
+    MappedStorage storage = new MappedStorage(baseDirectory.getPath(), 2 * BLOCK_SIZE);
+    for (int i = 0; i < 100; i++) {
+      byte[] block1 = getBlock(i % 3);
+      byte[] block2 = getBlock(i % 3 + 1);
+      int id1 = storage.store("MyPublisher", block1, 0, block1.length);
+      int id2 = storage.store("MyPublisher", block2, 0, block2.length);
+      assertTrue(Arrays.equals(storage.retrieve("MyPublisher", id1), block1), "block 1 of round " + i);
+      assertTrue(Arrays.equals(storage.retrieve("MyPublisher", id2), block2), "block 2 of round " + i);
+      storage.discard("MyPublisher", id1);
+      storage.discard("MyPublisher", id2);
+      /* the discarded segment is filled again instead of allocating a new one */
+      assertEquals(getSegmentFiles(baseDirectory), new String[] {"1"}, "segment files of round " + i);
+    }
+
+    byte[] large = new byte[3 * BLOCK_SIZE];
+    int id = storage.store("MyPublisher", large, 0, large.length);
+    assertEquals(getSegmentFiles(baseDirectory), new String[] {"1", "2"}, "oversized segment allocated");
+    assertEquals(storage.retrieve("MyPublisher", id).length, large.length);
+    storage.discard("MyPublisher", id);
+
+    byte[] block = getBlock(0);
+    id = storage.store("MyPublisher", block, 0, block.length);
+    assertEquals(getSegmentFiles(baseDirectory), new String[] {"1"}, "oversized segment deleted, the first one reused");
+    assertTrue(Arrays.equals(storage.retrieve("MyPublisher", id), block));
+    storage.discard("MyPublisher", id);
+  }
+}
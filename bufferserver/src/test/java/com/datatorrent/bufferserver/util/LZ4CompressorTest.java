@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.CompressedTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.netlet.util.Slice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class LZ4CompressorTest
+{
+  private static int roundTrip(LZ4Compressor compressor, byte[] data, int offset, int length)
+  {
+    byte[] compressed = new byte[3 + LZ4Compressor.maxCompressedLength(length)];
+    int compressedLength = compressor.compress(data, offset, length, compressed, 3);
+    assertTrue(compressedLength <= LZ4Compressor.maxCompressedLength(length), "length " + length);
+
+    byte[] decompressed = new byte[length + 2];
+    assertEquals(LZ4Compressor.decompress(compressed, 3, compressedLength, decompressed, 1, length), length);
+    assertEquals(Arrays.copyOfRange(decompressed, 1, length + 1), Arrays.copyOfRange(data, offset, offset + length));
+    return compressedLength;
+  }
+
+  @Test
+  public void testRoundTrip()
+  {
+    final Random random = new Random(0);
+    final LZ4Compressor compressor = new LZ4Compressor();
+
+    for (int length : new int[] {0, 1, 12, 13, 17, 100, 1000, 70000, 300000}) {
+      byte[] data = new byte[length + 8];
+
+      random.nextBytes(data);
+      roundTrip(compressor, data, 4, length);
+
+      /* runs of a single byte, overlapping matches and long literal runs */
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte)(i % 1000 < 500 ? 'a' : random.nextInt());
+      }
+      roundTrip(compressor, data, 4, length);
+
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < data.length) {
+        sb.append("{\"id\":").append(random.nextInt(1000)).append(",\"name\":\"name").append(random.nextInt(10))
+            .append("\",\"text\":\"the quick brown fox jumps over the lazy dog\"}");
+      }
+      data = sb.toString().getBytes();
+      int compressedLength = roundTrip(compressor, data, 0, length);
+      if (length >= 1000) {
+        assertTrue(compressedLength < length / 3, "compressed " + length + " to " + compressedLength);
+      }
+    }
+  }
+
+  @Test
+  public void testMalformed()
+  {
+    final byte[] data = "the quick brown fox jumps over the lazy dog, the quick brown fox jumps".getBytes();
+    final byte[] compressed = new byte[LZ4Compressor.maxCompressedLength(data.length)];
+    final int compressedLength = new LZ4Compressor().compress(data, 0, data.length, compressed, 0);
+    final byte[] decompressed = new byte[data.length];
+
+    try {
+      LZ4Compressor.decompress(compressed, 0, compressedLength, decompressed, 0, data.length - 1);
+      fail("decompressed into a short buffer");
+    } catch (IllegalArgumentException ex) {
+      /* expected */
+    }
+
+    try {
+      LZ4Compressor.decompress(compressed, 0, compressedLength - 3, decompressed, 0, data.length);
+      fail("decompressed a truncated block");
+    } catch (IllegalArgumentException ex) {
+      /* expected */
+    }
+  }
+
+  @Test
+  public void testCompressedTuple()
+  {
+    final byte[] data = "the quick brown fox jumps over the lazy dog, the quick brown fox jumps".getBytes();
+    final byte[] compressed = new byte[LZ4Compressor.maxCompressedLength(data.length)];
+    final Slice block = new Slice(compressed, 0, new LZ4Compressor().compress(data, 0, data.length, compressed, 0));
+
+    final int length = CompressedTuple.getSerializedLength(data.length, block.length);
+    final byte[] buffer = new byte[length + 2];
+    assertEquals(CompressedTuple.writeSerializedTuple(data.length, block, buffer, 2), length + 2);
+
+    Tuple tuple = Tuple.getTuple(buffer, 2, length);
+    assertEquals(tuple.getType(), MessageType.COMPRESSED);
+    assertEquals(((CompressedTuple)tuple).getUncompressedLength(), data.length);
+    assertEquals(tuple.getData().toByteArray(), block.toByteArray());
+
+    Slice messages = new Slice(null, 0, 0);
+    CompressedTuple.decompress(buffer, 2, length, messages);
+    assertEquals(messages.toByteArray(), data);
+
+    byte[] reused = new byte[data.length + 8];
+    messages.buffer = reused;
+    CompressedTuple.decompress(buffer, 2, length, messages);
+    assertTrue(messages.buffer == reused);
+    assertEquals(messages.toByteArray(), data);
+  }
+}
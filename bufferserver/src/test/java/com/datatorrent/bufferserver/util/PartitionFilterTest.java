@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.netlet.util.Slice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class PartitionFilterTest
+{
+  private static boolean scan(HashSet<BitVector> partitions, int value)
+  {
+    for (BitVector bv : partitions) {
+      if (bv.matches(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void verify(HashSet<BitVector> partitions, Random random)
+  {
+    final PartitionFilter filter = new PartitionFilter(partitions);
+    for (int i = 0; i < 10000; i++) {
+      final int value = random.nextInt();
+      assertEquals(filter.matches(value), scan(partitions, value), "value " + value + " partitions " + partitions);
+    }
+  }
+
+  @Test
+  public void testMatches()
+  {
+    final Random random = new Random(0);
+    final HashSet<BitVector> partitions = new HashSet<>();
+    assertTrue(new PartitionFilter(partitions).isEmpty());
+    assertFalse(new PartitionFilter(partitions).matches(0));
+
+    for (int mask : new int[] {0x1, 0x3, 0x3f, 0xf0, 0xffff, 0x1ffff, -1}) {
+      partitions.clear();
+      for (int i = 0; i < 8; i++) {
+        partitions.add(new BitVector(random.nextInt(), mask));
+      }
+      verify(partitions, random);
+    }
+
+    /*
+     * bit vectors with different masks
+     */
+    partitions.clear();
+    partitions.add(new BitVector(1, 0x1));
+    partitions.add(new BitVector(2, 0x3));
+    partitions.add(new BitVector(4, 0x7));
+    verify(partitions, random);
+  }
+
+  @Test
+  public void testGetPartition()
+  {
+    final Random random = new Random(0);
+    for (int i = 0; i < 1000; i++) {
+      final int partition = random.nextInt();
+      final byte[] tuple = PayloadTuple.getSerializedTuple(partition, 1);
+      assertEquals(PayloadTuple.getPartition(tuple, 0), partition);
+      assertEquals(Tuple.getTuple(tuple, 0, tuple.length).getPartition(), partition);
+      assertEquals(PayloadTuple.getData(tuple, 0, tuple.length, new Slice(null, 0, 0)),
+          Tuple.getTuple(tuple, 0, tuple.length).getData());
+    }
+  }
+}
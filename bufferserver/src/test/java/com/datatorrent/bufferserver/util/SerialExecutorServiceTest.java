@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class SerialExecutorServiceTest
+{
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testOrdering() throws Exception
+  {
+    final SerialExecutorService lane = new SerialExecutorService(executor);
+    final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      final int task = i;
+      lane.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          final int count = concurrent.incrementAndGet();
+          if (count > maxConcurrent.get()) {
+            maxConcurrent.set(count);
+          }
+          executed.add(task);
+          concurrent.decrementAndGet();
+        }
+      });
+    }
+    lane.shutdown();
+    assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(maxConcurrent.get(), 1);
+    assertEquals(executed.size(), 1000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals((int)executed.get(i), i);
+    }
+  }
+
+  @Test
+  public void testLanesRunInParallel() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    final SerialExecutorService slow = new SerialExecutorService(executor);
+    final SerialExecutorService fast = new SerialExecutorService(executor);
+    slow.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        started.countDown();
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    fast.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS), "fast lane is blocked by the slow lane");
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertEquals(slow.getQueueDepth(), 0);
+    blocked.countDown();
+  }
+
+  @Test
+  public void testFullLaneKeepsOrder() throws Exception
+  {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final AtomicInteger available = new AtomicInteger();
+    final SerialExecutorService lane = new SerialExecutorService(executor, 2)
+    {
+      @Override
+      protected void available()
+      {
+        available.incrementAndGet();
+      }
+    };
+    lane.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        started.countDown();
+        try {
+          blocked.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+    for (int i = 0; i < 5; i++) {
+      final int task = i;
+      lane.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          executed.add(task);
+          threads.add(Thread.currentThread());
+        }
+      });
+      assertEquals(lane.isFull(), i >= 1, "full after " + (i + 1) + " waiting tasks");
+    }
+    assertEquals(lane.getQueueDepth(), 5);
+    assertTrue(executed.isEmpty(), "task run ahead of the waiting tasks");
+
+    blocked.countDown();
+    lane.shutdown();
+    assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(executed, Arrays.asList(0, 1, 2, 3, 4));
+    assertFalse(threads.contains(Thread.currentThread()), "task run by the caller");
+    assertFalse(lane.isFull());
+    assertEquals(available.get(), 1);
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.codec;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * A tuple as it was serialized by the stream codec of the stream it was received from.<p>
+ * <br>
+ * The input ports with the {@link com.datatorrent.api.Context.PortContext#RAW_TUPLES} attribute set receive the tuples
+ * from the buffer server in this form. An operator forwarding such a tuple to an output port gets it published as is
+ * when the stream of the output port uses a codec of the same class and configuration, otherwise the tuple is
+ * deserialized with the codec it was serialized with and serialized again with the codec of the stream.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class SerializedTuple
+{
+  private final Slice data;
+  private final int partition;
+  private final transient StreamCodec<Object> codec;
+
+  /**
+   * @param data the serialized tuple
+   * @param partition the partition of the tuple, as computed by the codec
+   * @param codec the codec which serialized the tuple
+   */
+  public SerializedTuple(Slice data, int partition, StreamCodec<Object> codec)
+  {
+    this.data = data;
+    this.partition = partition;
+    this.codec = codec;
+  }
+
+  public Slice getData()
+  {
+    return data;
+  }
+
+  public int getPartition()
+  {
+    return partition;
+  }
+
+  public StreamCodec<Object> getCodec()
+  {
+    return codec;
+  }
+
+  /**
+   * Deserializes the tuple with the codec it was serialized with.
+   *
+   * @return the tuple
+   */
+  public Object deserialize()
+  {
+    if (codec == null) {
+      throw new IllegalStateException("Codec of the serialized tuple is not available");
+    }
+    return codec.fromByteArray(data);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SerializedTuple{partition=" + partition + ", data=" + data + '}';
+  }
+}
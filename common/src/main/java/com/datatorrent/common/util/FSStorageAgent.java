@@ -62,7 +62,40 @@ public class FSStorageAgent implements StorageAgent, Serializable
   protected static final String STATELESS_CHECKPOINT_WINDOW_ID = Long.toHexString(Stateless.WINDOW_ID);
   public final String path;
   protected final transient FileContext fileContext;
+  /**
+   * @deprecated the checkpoints are serialized with a {@link Kryo} instance per thread, so the operators checkpoint
+   * concurrently, this instance is no longer used.
+   */
+  @Deprecated
   protected static final transient Kryo kryo;
+  /**
+   * Size of the buffers used to serialize the checkpoints, the buffers which grew beyond it are not reused.
+   */
+  static final int BUFFER_SIZE = 4096;
+  private static final ThreadLocal<Kryo> threadKryo = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      return new Kryo();
+    }
+  };
+  private static final ThreadLocal<Output> threadOutput = new ThreadLocal<Output>()
+  {
+    @Override
+    protected Output initialValue()
+    {
+      return new Output(BUFFER_SIZE, Integer.MAX_VALUE);
+    }
+  };
+  private static final ThreadLocal<Input> threadInput = new ThreadLocal<Input>()
+  {
+    @Override
+    protected Input initialValue()
+    {
+      return new Input(BUFFER_SIZE);
+    }
+  };
 
   static {
     kryo = new Kryo();
@@ -104,7 +137,7 @@ public class FSStorageAgent implements StorageAgent, Serializable
     try {
       stream = fileContext.create(lPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
         Options.CreateOpts.CreateParent.createParent());
-      store(stream, object);
+      write(stream, object);
       stateSaved = true;
     } catch (Throwable t) {
       logger.debug("while saving {} {}", operatorId, window, t);
@@ -182,22 +215,46 @@ public class FSStorageAgent implements StorageAgent, Serializable
     return windowIds;
   }
 
+  /**
+   * Writes the checkpoint of the object to the stream of the checkpoint file.
+   *
+   * @param stream the stream of the checkpoint file
+   * @param object the object passed to {@link #save}
+   * @throws IOException
+   */
+  protected void write(OutputStream stream, Object object) throws IOException
+  {
+    store(stream, object);
+  }
+
   public static void store(OutputStream stream, Object operator)
   {
-    synchronized (kryo) {
-      Output output = new Output(4096, Integer.MAX_VALUE);
-      output.setOutputStream(stream);
-      kryo.writeClassAndObject(output, operator);
+    final Output output = threadOutput.get();
+    output.setOutputStream(stream);
+    try {
+      threadKryo.get().writeClassAndObject(output, operator);
       output.flush();
+    } finally {
+      output.setOutputStream(null);
+      if (output.getBuffer().length > BUFFER_SIZE) {
+        threadOutput.remove();
+      }
     }
   }
 
   public static Object retrieve(InputStream stream)
   {
-    synchronized (kryo) {
-      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
-      Input input = new Input(stream);
+    final Kryo kryo = threadKryo.get();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    final Input input = threadInput.get();
+    input.setInputStream(stream);
+    try {
       return kryo.readClassAndObject(input);
+    } finally {
+      input.setInputStream(null);
+      if (input.getBuffer().length > BUFFER_SIZE) {
+        threadInput.remove();
+      }
     }
   }
 
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.common.util.IncrementalCheckpointable;
+import org.apache.apex.common.util.IncrementalStorageAgent;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * <p>Storage agent which saves the checkpoints of the {@link IncrementalCheckpointable} operators as the changes
+ * since their previous checkpoint.</p>
+ * <br>
+ * Every checkpoint file starts with a header telling if it is a full snapshot or the changes, the window id of the
+ * checkpoint the changes apply to and the window id of the full snapshot the checkpoint is rebuilt from. The first
+ * checkpoint of an operator after it is deployed or restored and every {@link #getFullSnapshotInterval()}th
+ * checkpoint after it are full snapshots, so a checkpoint never depends on more than that many files. Loading a
+ * checkpoint loads the full snapshot and applies the changes saved since, in order. The files without the header,
+ * as saved by the {@link FSStorageAgent}, are loaded as full snapshots.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class IncrementalFSStorageAgent extends FSStorageAgent implements IncrementalStorageAgent
+{
+  static final int MAGIC = 0xA9E7D317;
+  static final byte FULL_SNAPSHOT = 0;
+  static final byte DELTA = 1;
+  public static final int DEFAULT_FULL_SNAPSHOT_INTERVAL = 10;
+
+  private int fullSnapshotInterval = DEFAULT_FULL_SNAPSHOT_INTERVAL;
+  /**
+   * the checkpoints saved by this agent since the last full snapshot of each operator
+   */
+  private final transient Map<Integer, Chain> chains = new ConcurrentHashMap<>();
+
+  @SuppressWarnings("unused")
+  private IncrementalFSStorageAgent()
+  {
+    super();
+  }
+
+  public IncrementalFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  @Override
+  public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    final Chain chain = chains.get(operatorId);
+    Object delta = null;
+    if (object instanceof IncrementalCheckpointable && chain != null && chain.length < fullSnapshotInterval - 1) {
+      delta = ((IncrementalCheckpointable)object).getCheckpointDelta();
+    }
+
+    if (delta == null) {
+      super.save(new Checkpoint(FULL_SNAPSHOT, windowId, windowId, object), operatorId, windowId);
+      chains.put(operatorId, new Chain(windowId));
+    } else {
+      super.save(new Checkpoint(DELTA, chain.lastWindowId, chain.baseWindowId, delta), operatorId, windowId);
+      chain.lastWindowId = windowId;
+      chain.length++;
+    }
+
+    if (object instanceof IncrementalCheckpointable) {
+      ((IncrementalCheckpointable)object).resetCheckpointDelta();
+    }
+  }
+
+  @Override
+  protected void write(OutputStream stream, Object object) throws IOException
+  {
+    final Checkpoint checkpoint = (Checkpoint)object;
+    final DataOutputStream output = new DataOutputStream(stream);
+    output.writeInt(MAGIC);
+    output.writeByte(checkpoint.kind);
+    output.writeLong(checkpoint.previousWindowId);
+    output.writeLong(checkpoint.baseWindowId);
+    output.flush();
+    store(stream, checkpoint.state);
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    /* the operator restored from the checkpoint starts a new chain with a full snapshot */
+    chains.remove(operatorId);
+
+    final Deque<Object> deltas = new ArrayDeque<>();
+    long window = windowId;
+    while (true) {
+      final FSDataInputStream stream = open(operatorId, window);
+      try {
+        final Checkpoint checkpoint = readHeader(stream);
+        if (checkpoint == null) {
+          stream.seek(0);
+          return apply(retrieve(stream), deltas);
+        } else if (checkpoint.kind == FULL_SNAPSHOT) {
+          return apply(retrieve(stream), deltas);
+        }
+        deltas.push(retrieve(stream));
+        window = checkpoint.previousWindowId;
+      } finally {
+        stream.close();
+      }
+    }
+  }
+
+  private static Object apply(Object object, Deque<Object> deltas)
+  {
+    if (!deltas.isEmpty()) {
+      logger.debug("Applying {} deltas to {}", deltas.size(), object);
+      final IncrementalCheckpointable operator = (IncrementalCheckpointable)object;
+      while (!deltas.isEmpty()) {
+        operator.applyCheckpointDelta(deltas.pop());
+      }
+    }
+    return object;
+  }
+
+  @Override
+  public long getBaseWindowId(int operatorId, long windowId) throws IOException
+  {
+    final FSDataInputStream stream = open(operatorId, windowId);
+    try {
+      final Checkpoint checkpoint = readHeader(stream);
+      return checkpoint == null || checkpoint.kind == FULL_SNAPSHOT ? windowId : checkpoint.baseWindowId;
+    } finally {
+      stream.close();
+    }
+  }
+
+  private FSDataInputStream open(int operatorId, long windowId) throws IOException
+  {
+    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
+    logger.debug("Loading: {}", lPath);
+    return fileContext.open(lPath);
+  }
+
+  /**
+   * Reads the header of the checkpoint file.
+   *
+   * @return the header without the state or null if the file has no header
+   */
+  private static Checkpoint readHeader(FSDataInputStream stream) throws IOException
+  {
+    final DataInputStream input = new DataInputStream(stream);
+    try {
+      if (input.readInt() != MAGIC) {
+        return null;
+      }
+      final byte kind = input.readByte();
+      final long previousWindowId = input.readLong();
+      final long baseWindowId = input.readLong();
+      return new Checkpoint(kind, previousWindowId, baseWindowId, null);
+    } catch (EOFException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Number of checkpoints of an operator between two consecutive full snapshots, including the full snapshot.
+   *
+   * @return the full snapshot interval
+   */
+  public int getFullSnapshotInterval()
+  {
+    return fullSnapshotInterval;
+  }
+
+  public void setFullSnapshotInterval(int fullSnapshotInterval)
+  {
+    if (fullSnapshotInterval < 1) {
+      throw new IllegalArgumentException("Invalid full snapshot interval " + fullSnapshotInterval);
+    }
+    this.fullSnapshotInterval = fullSnapshotInterval;
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    IncrementalFSStorageAgent incrementalFSStorageAgent = new IncrementalFSStorageAgent(this.path, null);
+    incrementalFSStorageAgent.setFullSnapshotInterval(fullSnapshotInterval);
+    return incrementalFSStorageAgent;
+  }
+
+  private static class Chain
+  {
+    final long baseWindowId;
+    long lastWindowId;
+    int length;
+
+    Chain(long baseWindowId)
+    {
+      this.baseWindowId = baseWindowId;
+      this.lastWindowId = baseWindowId;
+    }
+  }
+
+  private static class Checkpoint
+  {
+    final byte kind;
+    final long previousWindowId;
+    final long baseWindowId;
+    final Object state;
+
+    Checkpoint(byte kind, long previousWindowId, long baseWindowId, Object state)
+    {
+      this.kind = kind;
+      this.previousWindowId = previousWindowId;
+      this.baseWindowId = baseWindowId;
+      this.state = state;
+    }
+  }
+
+  private static final long serialVersionUID = 201710181200L;
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalFSStorageAgent.class);
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.common.util;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Operator which keeps track of the changes of its state between the checkpoints, so an
+ * {@link IncrementalStorageAgent} can save only the changes instead of the whole operator.
+ * The object describing the changes and the operator itself need to be serializable by the storage agent.
+ *
+ * @since 3.7.0
+ */
+@InterfaceStability.Evolving
+public interface IncrementalCheckpointable
+{
+  /**
+   * Get the changes of the state since the previous checkpoint.
+   *
+   * @return the changes, or null if they are not known, in which case the whole operator is saved
+   */
+  Object getCheckpointDelta();
+
+  /**
+   * Called after the operator is checkpointed, either as a full snapshot or as the changes. The operator starts
+   * collecting the changes anew.
+   */
+  void resetCheckpointDelta();
+
+  /**
+   * Apply the changes to the operator when it is restored from the checkpoint preceding them.
+   *
+   * @param delta the changes returned by {@link #getCheckpointDelta()}
+   */
+  void applyCheckpointDelta(Object delta);
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.common.util;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.datatorrent.api.StorageAgent;
+
+/**
+ * Storage agent which saves the checkpoints of the {@link IncrementalCheckpointable} operators as the changes since
+ * their previous checkpoint. Such checkpoint can only be loaded together with the checkpoints it depends on, down to
+ * the full snapshot of the operator the changes are applied to.
+ *
+ * @since 3.7.0
+ */
+@InterfaceStability.Evolving
+public interface IncrementalStorageAgent extends StorageAgent
+{
+  /**
+   * Get the window id of the full snapshot the checkpoint is rebuilt from. The checkpoints of the operator saved
+   * before the returned window are not needed to load the given checkpoint.
+   *
+   * @param operatorId
+   * @param windowId the window id of the checkpoint
+   * @return the window id of the full snapshot, windowId itself when the checkpoint is a full snapshot
+   * @throws IOException
+   */
+  long getBaseWindowId(int operatorId, long windowId) throws IOException;
+
+}
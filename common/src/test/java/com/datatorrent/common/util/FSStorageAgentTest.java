@@ -18,9 +18,17 @@
  */
 package com.datatorrent.common.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -131,4 +139,43 @@ public class FSStorageAgentTest
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
 
+  @Test
+  public void testConcurrentCheckpoints() throws Exception
+  {
+    final int numberOfOperators = 8;
+    List<Map<Integer, String>> operators = new ArrayList<>();
+    for (int i = 0; i < numberOfOperators; i++) {
+      Map<Integer, String> operator = Maps.newHashMap();
+      for (int j = 0; j < 10000; j++) {
+        operator.put(j, "value " + i + " " + j);
+      }
+      operators.add(operator);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfOperators);
+    try {
+      /* the threads reuse their serializers in the later rounds */
+      for (int round = 0; round < 3; round++) {
+        List<Future<Map<Integer, String>>> futures = new ArrayList<>();
+        for (final Map<Integer, String> operator : operators) {
+          futures.add(executor.submit(new Callable<Map<Integer, String>>()
+          {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map<Integer, String> call() throws Exception
+            {
+              ByteArrayOutputStream stream = new ByteArrayOutputStream();
+              FSStorageAgent.store(stream, operator);
+              return (Map<Integer, String>)FSStorageAgent.retrieve(new ByteArrayInputStream(stream.toByteArray()));
+            }
+          }));
+        }
+        for (int i = 0; i < numberOfOperators; i++) {
+          Assert.assertEquals("operator " + i + " round " + round, operators.get(i), futures.get(i).get());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import org.apache.apex.common.util.IncrementalCheckpointable;
+import org.apache.commons.io.FileUtils;
+
+public class IncrementalFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    IncrementalFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      applicationPath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      try {
+        FileUtils.forceMkdir(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new IncrementalFSStorageAgent(applicationPath, null);
+      storageAgent.setFullSnapshotInterval(3);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    long size(int operatorId, long windowId)
+    {
+      return new File(applicationPath + "/" + operatorId + "/" + Long.toHexString(windowId)).length();
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  public static class CountingOperator implements IncrementalCheckpointable
+  {
+    private final HashMap<Integer, Long> counts = new HashMap<>();
+    private transient HashMap<Integer, Long> changes = new HashMap<>();
+
+    void count(int key)
+    {
+      Long count = counts.get(key);
+      count = count == null ? 1 : count + 1;
+      counts.put(key, count);
+      changes.put(key, count);
+    }
+
+    @Override
+    public Object getCheckpointDelta()
+    {
+      return new HashMap<>(changes);
+    }
+
+    @Override
+    public void resetCheckpointDelta()
+    {
+      changes.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void applyCheckpointDelta(Object delta)
+    {
+      counts.putAll((Map<Integer, Long>)delta);
+    }
+  }
+
+  @Test
+  public void testIncrementalCheckpoints() throws IOException
+  {
+    CountingOperator operator = new CountingOperator();
+    for (int i = 0; i < 1000; i++) {
+      operator.count(i);
+    }
+
+    Map<Long, Map<Integer, Long>> expected = new HashMap<>();
+    for (long windowId = 1; windowId <= 7; windowId++) {
+      operator.count((int)windowId);
+      operator.count(2000);
+      testMeta.storageAgent.save(operator, 1, windowId);
+      expected.put(windowId, new HashMap<>(operator.counts));
+    }
+
+    long[] baseWindowIds = new long[] {1, 1, 1, 4, 4, 4, 7};
+    for (long windowId = 1; windowId <= 7; windowId++) {
+      Assert.assertEquals("base of " + windowId, baseWindowIds[(int)windowId - 1],
+          testMeta.storageAgent.getBaseWindowId(1, windowId));
+    }
+    Assert.assertTrue("delta smaller than snapshot", testMeta.size(1, 2) * 10 < testMeta.size(1, 1));
+
+    IncrementalFSStorageAgent restoreAgent = new IncrementalFSStorageAgent(testMeta.applicationPath, null);
+    for (long windowId = 1; windowId <= 7; windowId++) {
+      CountingOperator restored = (CountingOperator)restoreAgent.load(1, windowId);
+      Assert.assertEquals("state of " + windowId, expected.get(windowId), restored.counts);
+    }
+  }
+
+  @Test
+  public void testLoadStartsFullSnapshot() throws IOException
+  {
+    CountingOperator operator = new CountingOperator();
+    operator.count(1);
+    testMeta.storageAgent.save(operator, 1, 1);
+    operator.count(2);
+    testMeta.storageAgent.save(operator, 1, 2);
+    Assert.assertEquals(1, testMeta.storageAgent.getBaseWindowId(1, 2));
+
+    CountingOperator restored = (CountingOperator)testMeta.storageAgent.load(1, 2);
+    restored.count(3);
+    testMeta.storageAgent.save(restored, 1, 3);
+    Assert.assertEquals("restored operator saved as full snapshot", 3, testMeta.storageAgent.getBaseWindowId(1, 3));
+  }
+
+  @Test
+  public void testLegacyCheckpoint() throws IOException
+  {
+    CountingOperator operator = new CountingOperator();
+    operator.count(1);
+    new FSStorageAgent(testMeta.applicationPath, null).save(operator, 1, 1);
+
+    Assert.assertEquals(1, testMeta.storageAgent.getBaseWindowId(1, 1));
+    CountingOperator restored = (CountingOperator)testMeta.storageAgent.load(1, 1);
+    Assert.assertEquals(operator.counts, restored.counts);
+  }
+
+  @Test
+  public void testNotIncrementalOperator() throws IOException
+  {
+    HashMap<Integer, String> data = new HashMap<>();
+    data.put(1, "one");
+    testMeta.storageAgent.save(data, 1, 1);
+    data.put(2, "two");
+    testMeta.storageAgent.save(data, 1, 2);
+    Assert.assertEquals(2, testMeta.storageAgent.getBaseWindowId(1, 2));
+    Assert.assertEquals(data, testMeta.storageAgent.load(1, 2));
+  }
+}
@@ -365,6 +365,34 @@ public class StreamingAppMasterService extends CompositeService
       return (criticalPathInfo == null) ? null : criticalPathInfo.path;
     }
 
+    @AutoMetric
+    @Override
+    public long getHeartbeatMicrosMA()
+    {
+      return dnmgr.getHeartbeatStageMicros(StreamingContainerManager.HeartbeatStage.HEARTBEAT);
+    }
+
+    @AutoMetric
+    @Override
+    public long getOperatorStatsMicrosMA()
+    {
+      return dnmgr.getHeartbeatStageMicros(StreamingContainerManager.HeartbeatStage.OPERATOR_STATS);
+    }
+
+    @AutoMetric
+    @Override
+    public long getEndWindowStatsMicrosMA()
+    {
+      return dnmgr.getHeartbeatStageMicros(StreamingContainerManager.HeartbeatStage.END_WINDOW_STATS);
+    }
+
+    @AutoMetric
+    @Override
+    public long getCriticalPathMicrosMA()
+    {
+      return dnmgr.getHeartbeatStageMicros(StreamingContainerManager.HeartbeatStage.CRITICAL_PATH);
+    }
+
     @AutoMetric
     @Override
     public long getLatency()
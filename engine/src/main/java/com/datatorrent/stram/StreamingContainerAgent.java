@@ -215,6 +215,9 @@ public class StreamingContainerAgent
           portInfo.bufferServerHost = oper.getContainer().bufferServerAddress.getHostName();
           portInfo.bufferServerPort = oper.getContainer().bufferServerAddress.getPort();
           portInfo.bufferServerToken = oper.getContainer().getBufferServerToken();
+          if (streamMeta.getLocality() == Locality.NODE_LOCAL) {
+            portInfo.locality = Locality.NODE_LOCAL;
+          }
           // Build the stream codec configuration of all sinks connected to this port
           for (PTOperator.PTInput input : out.sinks) {
             // Create mappings for all non-inline operators
@@ -296,6 +299,9 @@ public class StreamingContainerAgent
           inputInfo.bufferServerHost = addr.getHostName();
           inputInfo.bufferServerPort = addr.getPort();
           inputInfo.bufferServerToken = container.getBufferServerToken();
+          if (streamMeta.getLocality() == Locality.NODE_LOCAL) {
+            inputInfo.locality = Locality.NODE_LOCAL;
+          }
         }
 
         // On the input side there is a unlikely scenario of partitions even for inline stream that is being
@@ -31,6 +31,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -65,6 +66,7 @@ import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.apex.common.util.IncrementalStorageAgent;
 import org.apache.apex.engine.api.plugin.DAGExecutionEvent;
 import org.apache.apex.engine.plugin.ApexPluginDispatcher;
 import org.apache.apex.engine.plugin.NoOpApexPluginDispatcher;
@@ -137,6 +139,7 @@ import com.datatorrent.stram.api.StramToNodeStartRecordingRequest;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.LatencySample;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ShutdownType;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
@@ -155,6 +158,7 @@ import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.plan.logical.Operators.PortContextPair;
 import com.datatorrent.stram.plan.logical.requests.LogicalPlanRequest;
 import com.datatorrent.stram.plan.physical.OperatorStatus;
+import com.datatorrent.stram.plan.physical.OperatorStatus.PortLatency;
 import com.datatorrent.stram.plan.physical.OperatorStatus.PortStatus;
 import com.datatorrent.stram.plan.physical.PTContainer;
 import com.datatorrent.stram.plan.physical.PTOperator;
@@ -166,10 +170,13 @@ import com.datatorrent.stram.plan.physical.PhysicalPlan.PlanContext;
 import com.datatorrent.stram.plan.physical.PlanModifier;
 import com.datatorrent.stram.util.ConfigUtils;
 import com.datatorrent.stram.util.FSJsonLineFile;
+import com.datatorrent.stram.util.LatencyHistogram;
 import com.datatorrent.stram.util.MovingAverage.MovingAverageLong;
+import com.datatorrent.stram.util.ShardedExecutor;
 import com.datatorrent.stram.util.SharedPubSubWebSocketClient;
 import com.datatorrent.stram.util.WebServicesClient;
 import com.datatorrent.stram.webapp.ContainerInfo;
+import com.datatorrent.stram.webapp.LatencyInfo;
 import com.datatorrent.stram.webapp.LogicalOperatorInfo;
 import com.datatorrent.stram.webapp.OperatorAggregationInfo;
 import com.datatorrent.stram.webapp.OperatorInfo;
@@ -205,6 +212,7 @@ public class StreamingContainerManager implements PlanContext
   public static final Recoverable SET_OPERATOR_PROPERTY = new SetOperatorProperty();
   public static final Recoverable SET_PHYSICAL_OPERATOR_PROPERTY = new SetPhysicalOperatorProperty();
   public static final int METRIC_QUEUE_SIZE = 1000;
+  private static final int HEARTBEAT_STAGE_SAMPLES = 100;
 
   private final FinalVars vars;
   private final PhysicalPlan plan;
@@ -248,6 +256,8 @@ public class StreamingContainerManager implements PlanContext
   private List<AppDataSource> appDataSources = null;
   private final Cache<Long, Object> commandResponse = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
   private transient ExecutorService poolExecutor;
+  private transient ShardedExecutor statsExecutor;
+  private final Map<HeartbeatStage, MovingAverageLong> heartbeatStageNanos = new EnumMap<>(HeartbeatStage.class);
   private FileContext fileContext;
 
   //logic operator name to a queue of logical metrics. this gets cleared periodically
@@ -291,6 +301,29 @@ public class StreamingContainerManager implements PlanContext
     Map<String, Object> metrics;
   }
 
+  /**
+   * Stages of the processing of the heartbeats, which are timed separately.
+   */
+  public enum HeartbeatStage
+  {
+    /**
+     * processing of a heartbeat up to the response to the container
+     */
+    HEARTBEAT,
+    /**
+     * aggregation of the stats of the windows reported in a heartbeat of an operator
+     */
+    OPERATOR_STATS,
+    /**
+     * periodic calculation of the latencies and aggregation of the metrics of the completed windows
+     */
+    END_WINDOW_STATS,
+    /**
+     * periodic search of the critical path
+     */
+    CRITICAL_PATH
+  }
+
   public static class CriticalPathInfo
   {
     long latency;
@@ -440,6 +473,13 @@ public class StreamingContainerManager implements PlanContext
 
   private void init(boolean enableEventRecording)
   {
+    for (HeartbeatStage stage : HeartbeatStage.values()) {
+      heartbeatStageNanos.put(stage, new MovingAverageLong(HEARTBEAT_STAGE_SAMPLES));
+    }
+    int statsWorkers = plan.getLogicalPlan().getValue(LogicalPlan.HEARTBEAT_STATS_WORKERS);
+    if (statsWorkers > 0) {
+      statsExecutor = new ShardedExecutor("OperatorStats", statsWorkers);
+    }
     setupWsClient();
     setupRecording(enableEventRecording);
     setupStringCodecs();
@@ -588,6 +628,9 @@ public class StreamingContainerManager implements PlanContext
     if (poolExecutor != null) {
       poolExecutor.shutdown();
     }
+    if (statsExecutor != null) {
+      statsExecutor.shutdown();
+    }
   }
 
   public void subscribeToEvents(Object listener)
@@ -835,6 +878,7 @@ public class StreamingContainerManager implements PlanContext
 
   private void calculateEndWindowStats()
   {
+    long startNanos = System.nanoTime();
     Map<Integer, PTOperator> allOperators = plan.getAllOperators();
 
     UpdateOperatorLatencyContext ctx = new UpdateOperatorLatencyContext(rpcLatencies, endWindowStatsOperatorMap);
@@ -862,7 +906,6 @@ public class StreamingContainerManager implements PlanContext
         Set<Integer> endWindowStatsOperators = endWindowStatsMap.keySet();
 
         aggregateMetrics(windowId, endWindowStatsMap);
-        criticalPathInfo = findCriticalPath();
 
         if (allOperators.keySet().containsAll(endWindowStatsOperators)) {
           if (endWindowStatsMap.size() < numOperators) {
@@ -884,6 +927,12 @@ public class StreamingContainerManager implements PlanContext
         }
         windowId = endWindowStatsOperatorMap.higherKey(windowId);
       }
+      heartbeatStageNanos.get(HeartbeatStage.END_WINDOW_STATS).add(System.nanoTime() - startNanos);
+
+      /* the latencies of the operators are the same for all the windows, the path needs to be found only once */
+      startNanos = System.nanoTime();
+      criticalPathInfo = findCriticalPath();
+      heartbeatStageNanos.get(HeartbeatStage.CRITICAL_PATH).add(System.nanoTime() - startNanos);
     }
   }
 
@@ -1467,7 +1516,8 @@ public class StreamingContainerManager implements PlanContext
   @SuppressWarnings("StatementWithEmptyBody")
   public ContainerHeartbeatResponse processHeartbeat(ContainerHeartbeat heartbeat)
   {
-    long currentTimeMillis = clock.getTime();
+    final long startNanos = System.nanoTime();
+    final long currentTimeMillis = clock.getTime();
 
     final StreamingContainerAgent sca = this.containers.get(heartbeat.getContainerId());
     if (sca == null || sca.container.getState() == PTContainer.State.KILLED) {
@@ -1533,11 +1583,10 @@ public class StreamingContainerManager implements PlanContext
       sca.deployCnt = this.deployChangeCnt;
     }
     Set<Integer> reportedOperators = Sets.newHashSetWithExpectedSize(sca.container.getOperators().size());
+    boolean resyncStats = false;
 
     for (OperatorHeartbeat shb : heartbeat.getContainerStats().operators) {
 
-      long maxEndWindowTimestamp = 0;
-
       reportedOperators.add(shb.nodeId);
       PTOperator oper = this.plan.getAllOperators().get(shb.getNodeId());
 
@@ -1547,6 +1596,11 @@ public class StreamingContainerManager implements PlanContext
         continue;
       }
 
+      if (!oper.stats.statsDecoder.decode(shb)) {
+        LOG.debug("Requesting the full stats of container {} to fill in the stats of {}", sca.container.getExternalId(), oper);
+        resyncStats = true;
+      }
+
       if (shb.requestResponse != null) {
         for (StatsListener.OperatorResponse obj : shb.requestResponse) {
           if (obj instanceof OperatorResponse) {      // This is to identify platform requests
@@ -1566,28 +1620,21 @@ public class StreamingContainerManager implements PlanContext
       }
 
       oper.stats.lastHeartbeat = shb;
-      List<ContainerStats.OperatorStats> statsList = shb.getOperatorStatsContainer();
+      if (shb.latencySamples != null) {
+        for (LatencySample sample : shb.latencySamples) {
+          PortLatency portLatency = oper.stats.inputPortLatencies.get(sample.portName);
+          if (portLatency == null) {
+            portLatency = new PortLatency();
+            oper.stats.inputPortLatencies.put(sample.portName, portLatency);
+          }
+          portLatency.add(sample);
+        }
+      }
+      final List<ContainerStats.OperatorStats> statsList = shb.getOperatorStatsContainer();
 
       if (!statsList.isEmpty()) {
-        long tuplesProcessed = 0;
-        long tuplesEmitted = 0;
-        long totalCpuTimeUsed = 0;
-        int statCount = 0;
-        long maxDequeueTimestamp = -1;
-        oper.stats.recordingId = null;
-
-        final OperatorStatus status = oper.stats;
-        status.statsRevs.checkout();
-
-        for (Map.Entry<String, PortStatus> entry : status.inputPortStatusList.entrySet()) {
-          entry.getValue().recordingId = null;
-        }
-        for (Map.Entry<String, PortStatus> entry : status.outputPortStatusList.entrySet()) {
-          entry.getValue().recordingId = null;
-        }
         for (ContainerStats.OperatorStats stats : statsList) {
           if (stats == null) {
-            LOG.warn("Operator {} statistics list contains null element", shb.getNodeId());
             continue;
           }
 
@@ -1596,186 +1643,30 @@ public class StreamingContainerManager implements PlanContext
             if (oper.getRecentCheckpoint() == null || oper.getRecentCheckpoint().windowId < stats.checkpoint.getWindowId()) {
               addCheckpoint(oper, (Checkpoint)stats.checkpoint);
               if (stats.checkpointStats != null) {
-                status.checkpointStats = stats.checkpointStats;
-                status.checkpointTimeMA.add(stats.checkpointStats.checkpointTime);
+                oper.stats.checkpointStats = stats.checkpointStats;
+                oper.stats.checkpointTimeMA.add(stats.checkpointStats.checkpointTime);
               }
               oper.failureCount = 0;
             }
           }
-
-          oper.stats.recordingId = stats.recordingId;
-
-          /* report all the other stuff */
-
-          // calculate the stats related to end window
-          EndWindowStats endWindowStats = new EndWindowStats(); // end window stats for a particular window id for a particular node
-          Collection<ContainerStats.OperatorStats.PortStats> ports = stats.inputPorts;
-          if (ports != null) {
-            Set<String> currentInputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
-            for (ContainerStats.OperatorStats.PortStats s : ports) {
-              currentInputPortSet.add(s.id);
-              PortStatus ps = status.inputPortStatusList.get(s.id);
-              if (ps == null) {
-                ps = status.new PortStatus();
-                ps.portName = s.id;
-                status.inputPortStatusList.put(s.id, ps);
-              }
-              ps.totalTuples += s.tupleCount;
-              ps.recordingId = s.recordingId;
-
-              tuplesProcessed += s.tupleCount;
-              endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
-
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
-              }
-              long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
-              ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
-              ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
-              ps.queueSizeMA.add(s.queueSize);
-
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
-              if (maxEndWindowTimestamp < s.endWindowTimestamp) {
-                maxEndWindowTimestamp = s.endWindowTimestamp;
-              }
-              if (s.endWindowTimestamp > maxDequeueTimestamp) {
-                maxDequeueTimestamp = s.endWindowTimestamp;
-              }
-            }
-            // need to remove dead ports, for unifiers
-            Iterator<Map.Entry<String, PortStatus>> it = status.inputPortStatusList.entrySet().iterator();
-            while (it.hasNext()) {
-              Map.Entry<String, PortStatus> entry = it.next();
-              if (!currentInputPortSet.contains(entry.getKey())) {
-                it.remove();
-              }
-            }
-          }
-
-          ports = stats.outputPorts;
-          if (ports != null) {
-            Set<String> currentOutputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
-            for (ContainerStats.OperatorStats.PortStats s : ports) {
-              currentOutputPortSet.add(s.id);
-              PortStatus ps = status.outputPortStatusList.get(s.id);
-              if (ps == null) {
-                ps = status.new PortStatus();
-                ps.portName = s.id;
-                status.outputPortStatusList.put(s.id, ps);
-              }
-              ps.totalTuples += s.tupleCount;
-              ps.recordingId = s.recordingId;
-
-              tuplesEmitted += s.tupleCount;
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
-              }
-              long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
-              ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
-              ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
-
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
-              if (maxEndWindowTimestamp < s.endWindowTimestamp) {
-                maxEndWindowTimestamp = s.endWindowTimestamp;
-              }
-            }
-            if (ports.size() > 0) {
-              endWindowStats.emitTimestamp = ports.iterator().next().endWindowTimestamp;
-            }
-            // need to remove dead ports, for unifiers
-            Iterator<Map.Entry<String, PortStatus>> it = status.outputPortStatusList.entrySet().iterator();
-            while (it.hasNext()) {
-              Map.Entry<String, PortStatus> entry = it.next();
-              if (!currentOutputPortSet.contains(entry.getKey())) {
-                it.remove();
-              }
-            }
-          }
-
-          // for output operator, just take the maximum dequeue time for emit timestamp.
-          // (we don't know the latency for output operators because they don't emit tuples)
-          if (endWindowStats.emitTimestamp < 0) {
-            endWindowStats.emitTimestamp = maxDequeueTimestamp;
-          }
-
-          if (status.currentWindowId.get() != stats.windowId) {
-            status.lastWindowIdChangeTms = currentTimeMillis;
-            status.currentWindowId.set(stats.windowId);
-          }
-          totalCpuTimeUsed += stats.cpuTimeUsed;
-          statCount++;
-
-          if (oper.getOperatorMeta().getValue(OperatorContext.COUNTERS_AGGREGATOR) != null) {
-            endWindowStats.counters = stats.counters;
-          }
-          if (oper.getOperatorMeta().getMetricAggregatorMeta() != null &&
-              oper.getOperatorMeta().getMetricAggregatorMeta().getAggregator() != null) {
-            endWindowStats.metrics = stats.metrics;
-          }
-
-          if (stats.windowId > currentEndWindowStatsWindowId) {
-            Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
-            if (endWindowStatsMap == null) {
-              endWindowStatsMap = new ConcurrentSkipListMap<>();
-              Map<Integer, EndWindowStats> endWindowStatsMapPrevious =
-                  endWindowStatsOperatorMap.putIfAbsent(stats.windowId, endWindowStatsMap);
-              if (endWindowStatsMapPrevious != null) {
-                endWindowStatsMap = endWindowStatsMapPrevious;
-              }
-            }
-            endWindowStatsMap.put(shb.getNodeId(), endWindowStats);
-
-            Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
-            int numOperators = plan.getAllOperators().size();
-            if (allCurrentOperators.containsAll(endWindowStatsMap.keySet()) && endWindowStatsMap.size() == numOperators) {
-              completeEndWindowStatsWindowId = stats.windowId;
-            }
-          }
         }
 
-        status.totalTuplesProcessed.add(tuplesProcessed);
-        status.totalTuplesEmitted.add(tuplesEmitted);
-        OperatorMeta logicalOperator = oper.getOperatorMeta();
-        LogicalOperatorStatus logicalStatus = logicalOperator.getStatus();
-        if (!oper.isUnifier()) {
-          logicalStatus.totalTuplesProcessed += tuplesProcessed;
-          logicalStatus.totalTuplesEmitted += tuplesEmitted;
-        }
-        long lastMaxEndWindowTimestamp = operatorLastEndWindowTimestamps.containsKey(oper.getId()) ? operatorLastEndWindowTimestamps.get(oper.getId()) : lastStatsTimestamp;
-        if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
-          double tuplesProcessedPMSMA = 0.0;
-          double tuplesEmittedPMSMA = 0.0;
-          if (statCount != 0) {
-            //LOG.debug("CPU for {}: {} / {} - {}", oper.getId(), totalCpuTimeUsed, maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
-            status.cpuNanosPMSMA.add(totalCpuTimeUsed, maxEndWindowTimestamp - lastMaxEndWindowTimestamp);
-          }
-
-          for (PortStatus ps : status.inputPortStatusList.values()) {
-            tuplesProcessedPMSMA += ps.tuplesPMSMA.getAvg();
-          }
-          for (PortStatus ps : status.outputPortStatusList.values()) {
-            tuplesEmittedPMSMA += ps.tuplesPMSMA.getAvg();
-          }
-          status.tuplesProcessedPSMA.set(Math.round(tuplesProcessedPMSMA * 1000));
-          status.tuplesEmittedPSMA.set(Math.round(tuplesEmittedPMSMA * 1000));
+        if (statsExecutor == null) {
+          processOperatorStats(oper, statsList, currentTimeMillis);
         } else {
-          //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(),
-          // maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
+          final PTOperator operator = oper;
+          statsExecutor.execute(oper.getId(), new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              /* the operator may have been removed from the plan in the meantime */
+              if (plan.getAllOperators().get(operator.getId()) == operator) {
+                processOperatorStats(operator, statsList, currentTimeMillis);
+              }
+            }
+          });
         }
-        operatorLastEndWindowTimestamps.put(oper.getId(), maxEndWindowTimestamp);
-        status.listenerStats.add(statsList);
-        this.reportStats.put(oper, oper);
-
-        status.statsRevs.commit();
-      }
-      if (lastStatsTimestamp < maxEndWindowTimestamp) {
-        lastStatsTimestamp = maxEndWindowTimestamp;
       }
     }
 
@@ -1812,11 +1703,244 @@ public class StreamingContainerManager implements PlanContext
     rsp.committedWindowId = committedWindowId;
     rsp.stackTraceRequired = sca.stackTraceRequested;
     sca.stackTraceRequested = false;
+    rsp.resyncStats = resyncStats;
 
     apexPluginDispatcher.dispatch(new DAGExecutionEvent.HeartbeatExecutionEvent(heartbeat));
+    heartbeatStageNanos.get(HeartbeatStage.HEARTBEAT).add(System.nanoTime() - startNanos);
     return rsp;
   }
 
+  /**
+   * Waits for the stats of the heartbeats processed so far to be aggregated.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @VisibleForTesting
+  void awaitOperatorStats() throws InterruptedException
+  {
+    if (statsExecutor != null) {
+      statsExecutor.awaitTasks();
+    }
+  }
+
+  /**
+   * Aggregates the stats of the windows reported in a heartbeat of the operator, on the thread processing the heartbeat
+   * or on the stats worker of the operator when the {@link LogicalPlan#HEARTBEAT_STATS_WORKERS} are configured.
+   */
+  private void processOperatorStats(PTOperator oper, List<ContainerStats.OperatorStats> statsList, long currentTimeMillis)
+  {
+    long startNanos = System.nanoTime();
+    long maxEndWindowTimestamp = 0;
+    long tuplesProcessed = 0;
+    long tuplesEmitted = 0;
+    long totalCpuTimeUsed = 0;
+    long totalAllocatedBytes = 0;
+    int statCount = 0;
+    long maxDequeueTimestamp = -1;
+    oper.stats.recordingId = null;
+
+    final OperatorStatus status = oper.stats;
+    status.statsRevs.checkout();
+
+    for (Map.Entry<String, PortStatus> entry : status.inputPortStatusList.entrySet()) {
+      entry.getValue().recordingId = null;
+    }
+    for (Map.Entry<String, PortStatus> entry : status.outputPortStatusList.entrySet()) {
+      entry.getValue().recordingId = null;
+    }
+    for (ContainerStats.OperatorStats stats : statsList) {
+      if (stats == null) {
+        LOG.warn("Operator {} statistics list contains null element", oper.getId());
+        continue;
+      }
+
+      oper.stats.recordingId = stats.recordingId;
+
+      /* report all the other stuff */
+
+      // calculate the stats related to end window
+      EndWindowStats endWindowStats = new EndWindowStats(); // end window stats for a particular window id for a particular node
+      Collection<ContainerStats.OperatorStats.PortStats> ports = stats.inputPorts;
+      if (ports != null) {
+        Set<String> currentInputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
+        for (ContainerStats.OperatorStats.PortStats s : ports) {
+          currentInputPortSet.add(s.id);
+          PortStatus ps = status.inputPortStatusList.get(s.id);
+          if (ps == null) {
+            ps = status.new PortStatus();
+            ps.portName = s.id;
+            status.inputPortStatusList.put(s.id, ps);
+          }
+          ps.totalTuples += s.tupleCount;
+          ps.recordingId = s.recordingId;
+
+          tuplesProcessed += s.tupleCount;
+          endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
+
+          Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
+          Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
+          if (lastEndWindowTimestamp == null) {
+            lastEndWindowTimestamp = lastStatsTimestamp;
+          }
+          long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
+          //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+          ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
+          ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
+          ps.uncompressedBytes += s.uncompressedBytes;
+          ps.compressedBytes += s.compressedBytes;
+          ps.compressionNanos += s.compressionNanos;
+          ps.queueSizeMA.add(s.queueSize);
+
+          operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+          if (maxEndWindowTimestamp < s.endWindowTimestamp) {
+            maxEndWindowTimestamp = s.endWindowTimestamp;
+          }
+          if (s.endWindowTimestamp > maxDequeueTimestamp) {
+            maxDequeueTimestamp = s.endWindowTimestamp;
+          }
+        }
+        // need to remove dead ports, for unifiers
+        Iterator<Map.Entry<String, PortStatus>> it = status.inputPortStatusList.entrySet().iterator();
+        while (it.hasNext()) {
+          Map.Entry<String, PortStatus> entry = it.next();
+          if (!currentInputPortSet.contains(entry.getKey())) {
+            it.remove();
+          }
+        }
+      }
+
+      ports = stats.outputPorts;
+      if (ports != null) {
+        Set<String> currentOutputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
+        for (ContainerStats.OperatorStats.PortStats s : ports) {
+          currentOutputPortSet.add(s.id);
+          PortStatus ps = status.outputPortStatusList.get(s.id);
+          if (ps == null) {
+            ps = status.new PortStatus();
+            ps.portName = s.id;
+            status.outputPortStatusList.put(s.id, ps);
+          }
+          ps.totalTuples += s.tupleCount;
+          ps.recordingId = s.recordingId;
+
+          tuplesEmitted += s.tupleCount;
+          Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
+          Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
+          if (lastEndWindowTimestamp == null) {
+            lastEndWindowTimestamp = lastStatsTimestamp;
+          }
+          long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
+          //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+          ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
+          ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
+          ps.uncompressedBytes += s.uncompressedBytes;
+          ps.compressedBytes += s.compressedBytes;
+          ps.compressionNanos += s.compressionNanos;
+
+          operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+          if (maxEndWindowTimestamp < s.endWindowTimestamp) {
+            maxEndWindowTimestamp = s.endWindowTimestamp;
+          }
+        }
+        if (ports.size() > 0) {
+          endWindowStats.emitTimestamp = ports.iterator().next().endWindowTimestamp;
+        }
+        // need to remove dead ports, for unifiers
+        Iterator<Map.Entry<String, PortStatus>> it = status.outputPortStatusList.entrySet().iterator();
+        while (it.hasNext()) {
+          Map.Entry<String, PortStatus> entry = it.next();
+          if (!currentOutputPortSet.contains(entry.getKey())) {
+            it.remove();
+          }
+        }
+      }
+
+      // for output operator, just take the maximum dequeue time for emit timestamp.
+      // (we don't know the latency for output operators because they don't emit tuples)
+      if (endWindowStats.emitTimestamp < 0) {
+        endWindowStats.emitTimestamp = maxDequeueTimestamp;
+      }
+
+      if (status.currentWindowId.get() != stats.windowId) {
+        status.lastWindowIdChangeTms = currentTimeMillis;
+        status.currentWindowId.set(stats.windowId);
+      }
+      totalCpuTimeUsed += stats.cpuTimeUsed;
+      totalAllocatedBytes += stats.allocatedBytes;
+      status.gcCollectionCount.add(stats.gcCollectionCount);
+      status.gcCollectionTime.add(stats.gcCollectionTime);
+      statCount++;
+
+      if (oper.getOperatorMeta().getValue(OperatorContext.COUNTERS_AGGREGATOR) != null) {
+        endWindowStats.counters = stats.counters;
+      }
+      if (oper.getOperatorMeta().getMetricAggregatorMeta() != null &&
+          oper.getOperatorMeta().getMetricAggregatorMeta().getAggregator() != null) {
+        endWindowStats.metrics = stats.metrics;
+      }
+
+      if (stats.windowId > currentEndWindowStatsWindowId) {
+        Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
+        if (endWindowStatsMap == null) {
+          endWindowStatsMap = new ConcurrentSkipListMap<>();
+          Map<Integer, EndWindowStats> endWindowStatsMapPrevious =
+              endWindowStatsOperatorMap.putIfAbsent(stats.windowId, endWindowStatsMap);
+          if (endWindowStatsMapPrevious != null) {
+            endWindowStatsMap = endWindowStatsMapPrevious;
+          }
+        }
+        endWindowStatsMap.put(oper.getId(), endWindowStats);
+
+        Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
+        int numOperators = plan.getAllOperators().size();
+        if (allCurrentOperators.containsAll(endWindowStatsMap.keySet()) && endWindowStatsMap.size() == numOperators) {
+          completeEndWindowStatsWindowId = stats.windowId;
+        }
+      }
+    }
+
+    status.totalTuplesProcessed.add(tuplesProcessed);
+    status.totalTuplesEmitted.add(tuplesEmitted);
+    status.totalAllocatedBytes.add(totalAllocatedBytes);
+    OperatorMeta logicalOperator = oper.getOperatorMeta();
+    LogicalOperatorStatus logicalStatus = logicalOperator.getStatus();
+    if (!oper.isUnifier()) {
+      logicalStatus.totalTuplesProcessed += tuplesProcessed;
+      logicalStatus.totalTuplesEmitted += tuplesEmitted;
+    }
+    long lastMaxEndWindowTimestamp = operatorLastEndWindowTimestamps.containsKey(oper.getId()) ? operatorLastEndWindowTimestamps.get(oper.getId()) : lastStatsTimestamp;
+    if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
+      double tuplesProcessedPMSMA = 0.0;
+      double tuplesEmittedPMSMA = 0.0;
+      if (statCount != 0) {
+        //LOG.debug("CPU for {}: {} / {} - {}", oper.getId(), totalCpuTimeUsed, maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
+        status.cpuNanosPMSMA.add(totalCpuTimeUsed, maxEndWindowTimestamp - lastMaxEndWindowTimestamp);
+        status.allocatedBytesPMSMA.add(totalAllocatedBytes, maxEndWindowTimestamp - lastMaxEndWindowTimestamp);
+      }
+
+      for (PortStatus ps : status.inputPortStatusList.values()) {
+        tuplesProcessedPMSMA += ps.tuplesPMSMA.getAvg();
+      }
+      for (PortStatus ps : status.outputPortStatusList.values()) {
+        tuplesEmittedPMSMA += ps.tuplesPMSMA.getAvg();
+      }
+      status.tuplesProcessedPSMA.set(Math.round(tuplesProcessedPMSMA * 1000));
+      status.tuplesEmittedPSMA.set(Math.round(tuplesEmittedPMSMA * 1000));
+    } else {
+      //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(),
+      // maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
+    }
+    operatorLastEndWindowTimestamps.put(oper.getId(), maxEndWindowTimestamp);
+    status.listenerStats.add(statsList);
+    this.reportStats.put(oper, oper);
+
+    status.statsRevs.commit();
+    if (lastStatsTimestamp < maxEndWindowTimestamp) {
+      lastStatsTimestamp = maxEndWindowTimestamp;
+    }
+    heartbeatStageNanos.get(HeartbeatStage.OPERATOR_STATS).add(System.nanoTime() - startNanos);
+  }
+
   static class UpdateOperatorLatencyContext
   {
     Map<String, MovingAverageLong> rpcLatencies;
@@ -2267,9 +2391,12 @@ public class StreamingContainerManager implements PlanContext
 
   private void purgeCheckpoints()
   {
+    Set<PTOperator> incrementalOperators = new HashSet<>();
     for (Pair<PTOperator, Long> p : purgeCheckpoints) {
       final PTOperator operator = p.getFirst();
-      if (!operator.isOperatorStateLess()) {
+      if (isIncremental(operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT))) {
+        incrementalOperators.add(operator);
+      } else if (!operator.isOperatorStateLess()) {
         final long windowId = p.getSecond();
         Runnable r = new Runnable()
         {
@@ -2287,6 +2414,49 @@ public class StreamingContainerManager implements PlanContext
       }
     }
     purgeCheckpoints.clear();
+
+    for (PTOperator operator : incrementalOperators) {
+      final long recoveryWindowId = operator.getRecoveryCheckpoint().windowId;
+      if (!operator.isOperatorStateLess() && recoveryWindowId != Stateless.WINDOW_ID) {
+        purgeIncrementalCheckpoints(operator, recoveryWindowId);
+      }
+    }
+  }
+
+  private static boolean isIncremental(StorageAgent agent)
+  {
+    if (agent instanceof CascadeStorageAgent) {
+      agent = ((CascadeStorageAgent)agent).getCurrentStorageAgent();
+    }
+    return agent instanceof IncrementalStorageAgent;
+  }
+
+  /**
+   * The checkpoints saved as changes depend on the preceding checkpoints down to the full snapshot, only the
+   * checkpoints older than the full snapshot the recovery checkpoint is rebuilt from can be deleted. The checkpoints
+   * kept for that reason are deleted once a more recent full snapshot becomes the base of the recovery checkpoint.
+   */
+  private void purgeIncrementalCheckpoints(final PTOperator operator, final long recoveryWindowId)
+  {
+    Runnable r = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        IncrementalStorageAgent agent = (IncrementalStorageAgent)operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT);
+        try {
+          long baseWindowId = agent.getBaseWindowId(operator.getId(), recoveryWindowId);
+          for (long windowId : agent.getWindowIds(operator.getId())) {
+            if (windowId < baseWindowId) {
+              agent.delete(operator.getId(), windowId);
+            }
+          }
+        } catch (IOException ex) {
+          LOG.error("Failed to purge checkpoints for operator {} before windowId {}", operator, recoveryWindowId, ex);
+        }
+      }
+    };
+    poolExecutor.submit(r);
   }
 
   /**
@@ -2549,12 +2719,17 @@ public class StreamingContainerManager implements PlanContext
     oi.tuplesProcessedPSMA = os.tuplesProcessedPSMA.get();
     oi.tuplesEmittedPSMA = os.tuplesEmittedPSMA.get();
     oi.cpuPercentageMA = os.cpuNanosPMSMA.getAvg() / 10000;
+    oi.allocatedBytesPSMA = Math.round(os.allocatedBytesPMSMA.getAvg() * 1000);
+    oi.totalAllocatedBytes = os.totalAllocatedBytes.get();
+    oi.gcCollectionCount = os.gcCollectionCount.get();
+    oi.gcCollectionTime = os.gcCollectionTime.get();
     oi.latencyMA = os.latencyMA.getAvg();
     oi.failureCount = operator.failureCount;
     oi.recoveryWindowId = toWsWindowId(operator.getRecoveryCheckpoint().windowId);
     oi.currentWindowId = toWsWindowId(os.currentWindowId.get());
     if (os.lastHeartbeat != null) {
       oi.lastHeartbeat = os.lastHeartbeat.getGeneratedTms();
+      oi.restoreTime = os.lastHeartbeat.restoreTimeMillis;
     }
     if (os.checkpointStats != null) {
       oi.checkpointTime = os.checkpointStats.checkpointTime;
@@ -2568,6 +2743,10 @@ public class StreamingContainerManager implements PlanContext
       pinfo.totalTuples = ps.totalTuples;
       pinfo.tuplesPSMA = Math.round(ps.tuplesPMSMA.getAvg() * 1000);
       pinfo.bufferServerBytesPSMA = Math.round(ps.bufferServerBytesPMSMA.getAvg() * 1000);
+      if (ps.compressedBytes > 0) {
+        pinfo.compressionRatio = (double)ps.uncompressedBytes / ps.compressedBytes;
+        pinfo.compressionTimeMillis = TimeUnit.NANOSECONDS.toMillis(ps.compressionNanos);
+      }
       pinfo.queueSizeMA = ps.queueSizeMA.getAvg();
       pinfo.recordingId = ps.recordingId;
       oi.addPort(pinfo);
@@ -2579,6 +2758,10 @@ public class StreamingContainerManager implements PlanContext
       pinfo.totalTuples = ps.totalTuples;
       pinfo.tuplesPSMA = Math.round(ps.tuplesPMSMA.getAvg() * 1000);
       pinfo.bufferServerBytesPSMA = Math.round(ps.bufferServerBytesPMSMA.getAvg() * 1000);
+      if (ps.compressedBytes > 0) {
+        pinfo.compressionRatio = (double)ps.uncompressedBytes / ps.compressedBytes;
+        pinfo.compressionTimeMillis = TimeUnit.NANOSECONDS.toMillis(ps.compressionNanos);
+      }
       pinfo.recordingId = ps.recordingId;
       oi.addPort(pinfo);
     }
@@ -2706,6 +2889,99 @@ public class StreamingContainerManager implements PlanContext
     return latency + maxUnifierLatency;
   }
 
+  /**
+   * Returns the latencies sampled on the input ports of the physical operator.
+   *
+   * @param operatorId id of the physical operator
+   * @return the latencies, null if the operator does not exist
+   */
+  public LatencyInfo getOperatorLatencyInfo(int operatorId)
+  {
+    PTOperator o = this.plan.getAllOperators().get(operatorId);
+    if (o == null) {
+      return null;
+    }
+    LatencyInfo li = new LatencyInfo();
+    PortLatency total = new PortLatency();
+    for (Map.Entry<String, PortLatency> e : o.stats.inputPortLatencies.entrySet()) {
+      total.merge(e.getValue());
+      li.ports.add(fillPortLatencyInfo(o, e.getKey(), e.getValue()));
+    }
+    fillLatencyInfo(li, total);
+    return li;
+  }
+
+  /**
+   * Returns the latencies sampled on the sinks of the logical stream, including the unifiers on the stream.
+   *
+   * @param streamName name of the logical stream
+   * @return the latencies, null if the stream does not exist
+   */
+  public LatencyInfo getStreamLatencyInfo(String streamName)
+  {
+    LogicalPlan.StreamMeta streamMeta = getLogicalPlan().getStream(streamName);
+    if (streamMeta == null) {
+      return null;
+    }
+    LatencyInfo li = new LatencyInfo();
+    PortLatency total = new PortLatency();
+    for (PTOperator o : this.plan.getAllOperators().values()) {
+      for (PTInput input : o.getInputs()) {
+        if (input.logicalStream != streamMeta) {
+          continue;
+        }
+        String portName = input.portName;
+        if (o.isUnifier()) {
+          portName = StreamingContainer.getUnifierInputPortName(input.portName, input.source.source.getId(), input.source.portName);
+        }
+        PortLatency portLatency = o.stats.inputPortLatencies.get(portName);
+        if (portLatency != null) {
+          total.merge(portLatency);
+          li.ports.add(fillPortLatencyInfo(o, portName, portLatency));
+        }
+      }
+    }
+    fillLatencyInfo(li, total);
+    return li;
+  }
+
+  private static void fillLatencyInfo(LatencyInfo li, PortLatency portLatency)
+  {
+    li.endToEnd = fillLatencyHistogramInfo(portLatency.endToEnd);
+    li.publisher = fillLatencyHistogramInfo(portLatency.publisher);
+    li.bufferServer = fillLatencyHistogramInfo(portLatency.bufferServer);
+    li.queue = fillLatencyHistogramInfo(portLatency.queue);
+  }
+
+  private static LatencyInfo.Port fillPortLatencyInfo(PTOperator o, String portName, PortLatency portLatency)
+  {
+    LatencyInfo.Port p = new LatencyInfo.Port();
+    p.operatorId = String.valueOf(o.getId());
+    p.portName = portName;
+    p.endToEnd = fillLatencyHistogramInfo(portLatency.endToEnd);
+    p.publisher = fillLatencyHistogramInfo(portLatency.publisher);
+    p.bufferServer = fillLatencyHistogramInfo(portLatency.bufferServer);
+    p.queue = fillLatencyHistogramInfo(portLatency.queue);
+    return p;
+  }
+
+  private static LatencyInfo.Histogram fillLatencyHistogramInfo(LatencyHistogram histogram)
+  {
+    LatencyInfo.Histogram h = new LatencyInfo.Histogram();
+    h.count = histogram.getCount();
+    h.p50 = histogram.getPercentile(50);
+    h.p90 = histogram.getPercentile(90);
+    h.p99 = histogram.getPercentile(99);
+    h.max = histogram.getMax();
+    long[] counts = histogram.getCounts();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        h.buckets.put(String.valueOf(LatencyHistogram.getBucketUpperBound(i)), counts[i]);
+      }
+    }
+    return h;
+  }
+
   public List<StreamInfo> getStreamInfoList()
   {
     List<StreamInfo> infoList = new ArrayList<>();
@@ -3086,6 +3362,17 @@ public class StreamingContainerManager implements PlanContext
 
   }
 
+  /**
+   * Moving average of the time spent in a stage of the processing of the heartbeats.
+   *
+   * @param stage the stage of the processing
+   * @return average time in microseconds
+   */
+  public long getHeartbeatStageMicros(HeartbeatStage stage)
+  {
+    return TimeUnit.NANOSECONDS.toMicros(heartbeatStageNanos.get(stage).getAvg());
+  }
+
   public CriticalPathInfo getCriticalPathInfo()
   {
     return criticalPathInfo;
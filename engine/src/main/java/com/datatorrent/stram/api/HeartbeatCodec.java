@@ -0,0 +1,541 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.datatorrent.api.Stats;
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener.OperatorResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.LatencySample;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ShutdownType;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+
+/**
+ * Binary encoding of the heartbeat messages exchanged between the containers and the application master.<p>
+ * <br>
+ * A message starts with the version of the encoding followed by the fields of the message and of the stats it
+ * carries in a fixed order, the numbers as variable length integers. A string repeated within a message, such as a
+ * port or metric name reported for every window, is written once and referred to by its index afterwards. The
+ * values of an open type, such as the
+ * operator metrics, are tagged with their type when it is a common one and Java serialized otherwise. The requests
+ * and responses of the operators, which are rarely present, are Java serialized as well.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class HeartbeatCodec
+{
+  /**
+   * version of the encoding, to be incremented whenever the encoding of the messages changes
+   */
+  public static final byte VERSION = 7;
+
+  private static final byte NULL = 0;
+  private static final byte LONG = 1;
+  private static final byte INTEGER = 2;
+  private static final byte DOUBLE = 3;
+  private static final byte FLOAT = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte STRING = 6;
+  private static final byte CHECKPOINT = 7;
+  private static final byte SERIALIZED = 8;
+
+  private static final int NULL_STRING = 0;
+  private static final int NEW_STRING = 1;
+
+  private final DataOutput out;
+  private final DataInput in;
+  /**
+   * strings of the message, such as the port and metric names repeated for every window, are written once and
+   * referred to by their index afterwards
+   */
+  private final Map<String, Integer> writtenStrings;
+  private final List<String> readStrings;
+
+  private HeartbeatCodec(DataOutput out, DataInput in)
+  {
+    this.out = out;
+    this.in = in;
+    writtenStrings = out == null ? null : new HashMap<String, Integer>();
+    readStrings = in == null ? null : new ArrayList<String>();
+  }
+
+  public static void write(DataOutput out, ContainerHeartbeat heartbeat) throws IOException
+  {
+    new HeartbeatCodec(out, null).writeHeartbeat(heartbeat);
+  }
+
+  public static void readFields(DataInput in, ContainerHeartbeat heartbeat) throws IOException
+  {
+    new HeartbeatCodec(null, in).readHeartbeat(heartbeat);
+  }
+
+  public static void write(DataOutput out, ContainerHeartbeatResponse response) throws IOException
+  {
+    new HeartbeatCodec(out, null).writeResponse(response);
+  }
+
+  public static void readFields(DataInput in, ContainerHeartbeatResponse response) throws IOException
+  {
+    new HeartbeatCodec(null, in).readResponse(response);
+  }
+
+  private void writeHeartbeat(ContainerHeartbeat heartbeat) throws IOException
+  {
+    out.writeByte(VERSION);
+    writeString(heartbeat.bufferServerHost);
+    WritableUtils.writeVInt(out, heartbeat.bufferServerPort);
+    writeString(heartbeat.jvmName);
+    WritableUtils.writeVInt(out, heartbeat.memoryMBFree);
+    out.writeBoolean(heartbeat.restartRequested);
+    WritableUtils.writeVLong(out, heartbeat.gcCollectionTime);
+    WritableUtils.writeVLong(out, heartbeat.gcCollectionCount);
+    WritableUtils.writeVLong(out, heartbeat.sentTms);
+    writeString(heartbeat.stackTrace);
+    writeContainerStats(heartbeat.stats);
+  }
+
+  private void readHeartbeat(ContainerHeartbeat heartbeat) throws IOException
+  {
+    readVersion();
+    heartbeat.bufferServerHost = readString();
+    heartbeat.bufferServerPort = WritableUtils.readVInt(in);
+    heartbeat.jvmName = readString();
+    heartbeat.memoryMBFree = WritableUtils.readVInt(in);
+    heartbeat.restartRequested = in.readBoolean();
+    heartbeat.gcCollectionTime = WritableUtils.readVLong(in);
+    heartbeat.gcCollectionCount = WritableUtils.readVLong(in);
+    heartbeat.sentTms = WritableUtils.readVLong(in);
+    heartbeat.stackTrace = readString();
+    heartbeat.stats = readContainerStats();
+  }
+
+  private void writeResponse(ContainerHeartbeatResponse response) throws IOException
+  {
+    out.writeByte(VERSION);
+    WritableUtils.writeVInt(out, response.shutdown == null ? -1 : response.shutdown.ordinal());
+    writeSerialized(response.nodeRequests);
+    out.writeBoolean(response.hasPendingRequests);
+    if (response.undeployRequest == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, response.undeployRequest.size());
+      for (Integer operatorId : response.undeployRequest) {
+        WritableUtils.writeVInt(out, operatorId);
+      }
+    }
+    writeSerialized(response.deployRequest);
+    WritableUtils.writeVLong(out, response.committedWindowId);
+    out.writeBoolean(response.stackTraceRequired);
+    out.writeBoolean(response.resyncStats);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readResponse(ContainerHeartbeatResponse response) throws IOException
+  {
+    readVersion();
+    int shutdown = WritableUtils.readVInt(in);
+    response.shutdown = shutdown < 0 ? null : ShutdownType.values()[shutdown];
+    response.nodeRequests = (List<StramToNodeRequest>)readSerialized();
+    response.hasPendingRequests = in.readBoolean();
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      response.undeployRequest = null;
+    } else {
+      response.undeployRequest = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        response.undeployRequest.add(WritableUtils.readVInt(in));
+      }
+    }
+    response.deployRequest = (List<OperatorDeployInfo>)readSerialized();
+    response.committedWindowId = WritableUtils.readVLong(in);
+    response.stackTraceRequired = in.readBoolean();
+    response.resyncStats = in.readBoolean();
+  }
+
+  private void readVersion() throws IOException
+  {
+    byte version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported heartbeat encoding version " + version + ", expected " + VERSION);
+    }
+  }
+
+  private void writeContainerStats(ContainerStats stats) throws IOException
+  {
+    if (stats == null) {
+      out.writeBoolean(false);
+      return;
+    }
+    out.writeBoolean(true);
+    writeString(stats.id);
+    WritableUtils.writeVInt(out, stats.operators.size());
+    for (OperatorHeartbeat operator : stats.operators) {
+      writeOperatorHeartbeat(operator);
+    }
+  }
+
+  private ContainerStats readContainerStats() throws IOException
+  {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    ContainerStats stats = new ContainerStats(readString());
+    int size = WritableUtils.readVInt(in);
+    stats.operators.ensureCapacity(size);
+    for (int i = 0; i < size; i++) {
+      stats.operators.add(readOperatorHeartbeat());
+    }
+    return stats;
+  }
+
+  private void writeOperatorHeartbeat(OperatorHeartbeat heartbeat) throws IOException
+  {
+    WritableUtils.writeVInt(out, heartbeat.nodeId);
+    WritableUtils.writeVLong(out, heartbeat.generatedTms);
+    WritableUtils.writeVLong(out, heartbeat.intervalMs);
+    WritableUtils.writeVInt(out, heartbeat.state == null ? -1 : heartbeat.state.ordinal());
+    if (heartbeat.windowStats == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, heartbeat.windowStats.size());
+      for (OperatorStats stats : heartbeat.windowStats) {
+        writeOperatorStats(stats);
+      }
+    }
+    writeSerialized(heartbeat.requestResponse);
+    WritableUtils.writeVLong(out, heartbeat.baseWindowId);
+    if (heartbeat.deltaStats == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      long[] words = heartbeat.deltaStats.toLongArray();
+      WritableUtils.writeVInt(out, words.length);
+      for (long word : words) {
+        WritableUtils.writeVLong(out, word);
+      }
+    }
+    WritableUtils.writeVLong(out, heartbeat.restoreTimeMillis);
+    if (heartbeat.latencySamples == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, heartbeat.latencySamples.size());
+      for (LatencySample sample : heartbeat.latencySamples) {
+        writeString(sample.portName);
+        WritableUtils.writeVInt(out, sample.sourceOperatorId);
+        WritableUtils.writeVLong(out, sample.endToEndMillis);
+        WritableUtils.writeVLong(out, sample.publisherMillis);
+        WritableUtils.writeVLong(out, sample.bufferServerMillis);
+        WritableUtils.writeVLong(out, sample.queueMillis);
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private OperatorHeartbeat readOperatorHeartbeat() throws IOException
+  {
+    OperatorHeartbeat heartbeat = new OperatorHeartbeat();
+    heartbeat.nodeId = WritableUtils.readVInt(in);
+    heartbeat.generatedTms = WritableUtils.readVLong(in);
+    heartbeat.intervalMs = WritableUtils.readVLong(in);
+    int state = WritableUtils.readVInt(in);
+    heartbeat.state = state < 0 ? null : OperatorHeartbeat.DeployState.values()[state];
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      heartbeat.windowStats = null;
+    } else {
+      heartbeat.windowStats.ensureCapacity(size);
+      for (int i = 0; i < size; i++) {
+        heartbeat.windowStats.add(readOperatorStats());
+      }
+    }
+    heartbeat.requestResponse = (ArrayList<OperatorResponse>)readSerialized();
+    heartbeat.baseWindowId = WritableUtils.readVLong(in);
+    size = WritableUtils.readVInt(in);
+    if (size >= 0) {
+      long[] words = new long[size];
+      for (int i = 0; i < size; i++) {
+        words[i] = WritableUtils.readVLong(in);
+      }
+      heartbeat.deltaStats = BitSet.valueOf(words);
+    }
+    heartbeat.restoreTimeMillis = WritableUtils.readVLong(in);
+    size = WritableUtils.readVInt(in);
+    if (size >= 0) {
+      heartbeat.latencySamples = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        LatencySample sample = new LatencySample();
+        sample.portName = readString();
+        sample.sourceOperatorId = WritableUtils.readVInt(in);
+        sample.endToEndMillis = WritableUtils.readVLong(in);
+        sample.publisherMillis = WritableUtils.readVLong(in);
+        sample.bufferServerMillis = WritableUtils.readVLong(in);
+        sample.queueMillis = WritableUtils.readVLong(in);
+        heartbeat.latencySamples.add(sample);
+      }
+    }
+    return heartbeat;
+  }
+
+  @SuppressWarnings("deprecation")
+  private void writeOperatorStats(OperatorStats stats) throws IOException
+  {
+    WritableUtils.writeVLong(out, stats.windowId);
+    writeValue(stats.checkpoint);
+    writePortStats(stats.inputPorts);
+    writePortStats(stats.outputPorts);
+    WritableUtils.writeVLong(out, stats.cpuTimeUsed);
+    WritableUtils.writeVLong(out, stats.allocatedBytes);
+    WritableUtils.writeVLong(out, stats.gcCollectionCount);
+    WritableUtils.writeVLong(out, stats.gcCollectionTime);
+    if (stats.checkpointStats == null) {
+      out.writeBoolean(false);
+    } else {
+      out.writeBoolean(true);
+      WritableUtils.writeVLong(out, stats.checkpointStats.checkpointStartTime);
+      WritableUtils.writeVLong(out, stats.checkpointStats.checkpointTime);
+    }
+    writeValue(stats.counters);
+    if (stats.metrics == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, stats.metrics.size());
+      for (Map.Entry<String, Object> entry : stats.metrics.entrySet()) {
+        writeString(entry.getKey());
+        writeValue(entry.getValue());
+      }
+    }
+    writeString(stats.recordingId);
+  }
+
+  @SuppressWarnings("deprecation")
+  private OperatorStats readOperatorStats() throws IOException
+  {
+    OperatorStats stats = new OperatorStats();
+    stats.windowId = WritableUtils.readVLong(in);
+    stats.checkpoint = (Stats.Checkpoint)readValue();
+    stats.inputPorts = readPortStats();
+    stats.outputPorts = readPortStats();
+    stats.cpuTimeUsed = WritableUtils.readVLong(in);
+    stats.allocatedBytes = WritableUtils.readVLong(in);
+    stats.gcCollectionCount = WritableUtils.readVLong(in);
+    stats.gcCollectionTime = WritableUtils.readVLong(in);
+    if (in.readBoolean()) {
+      stats.checkpointStats = new CheckpointStats();
+      stats.checkpointStats.checkpointStartTime = WritableUtils.readVLong(in);
+      stats.checkpointStats.checkpointTime = WritableUtils.readVLong(in);
+    }
+    stats.counters = readValue();
+    int size = WritableUtils.readVInt(in);
+    if (size >= 0) {
+      stats.metrics = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        stats.metrics.put(readString(), readValue());
+      }
+    }
+    stats.recordingId = readString();
+    return stats;
+  }
+
+  private void writePortStats(List<PortStats> ports) throws IOException
+  {
+    if (ports == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+    WritableUtils.writeVInt(out, ports.size());
+    for (PortStats port : ports) {
+      writeString(port.id);
+      WritableUtils.writeVInt(out, port.tupleCount);
+      WritableUtils.writeVLong(out, port.endWindowTimestamp);
+      WritableUtils.writeVLong(out, port.bufferServerBytes);
+      WritableUtils.writeVLong(out, port.uncompressedBytes);
+      WritableUtils.writeVLong(out, port.compressedBytes);
+      WritableUtils.writeVLong(out, port.compressionNanos);
+      WritableUtils.writeVInt(out, port.queueSize);
+      writeString(port.recordingId);
+    }
+  }
+
+  private ArrayList<PortStats> readPortStats() throws IOException
+  {
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      return null;
+    }
+    ArrayList<PortStats> ports = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      PortStats port = new PortStats(readString());
+      port.tupleCount = WritableUtils.readVInt(in);
+      port.endWindowTimestamp = WritableUtils.readVLong(in);
+      port.bufferServerBytes = WritableUtils.readVLong(in);
+      port.uncompressedBytes = WritableUtils.readVLong(in);
+      port.compressedBytes = WritableUtils.readVLong(in);
+      port.compressionNanos = WritableUtils.readVLong(in);
+      port.queueSize = WritableUtils.readVInt(in);
+      port.recordingId = readString();
+      ports.add(port);
+    }
+    return ports;
+  }
+
+  private void writeString(String string) throws IOException
+  {
+    if (string == null) {
+      WritableUtils.writeVInt(out, NULL_STRING);
+      return;
+    }
+    Integer index = writtenStrings.get(string);
+    if (index == null) {
+      writtenStrings.put(string, writtenStrings.size());
+      WritableUtils.writeVInt(out, NEW_STRING);
+      Text.writeString(out, string);
+    } else {
+      WritableUtils.writeVInt(out, index + 2);
+    }
+  }
+
+  private String readString() throws IOException
+  {
+    int index = WritableUtils.readVInt(in);
+    switch (index) {
+      case NULL_STRING:
+        return null;
+      case NEW_STRING:
+        String string = Text.readString(in);
+        readStrings.add(string);
+        return string;
+      default:
+        return readStrings.get(index - 2);
+    }
+  }
+
+  /**
+   * Writes a value of an open type, tagged with its type.
+   */
+  private void writeValue(Object value) throws IOException
+  {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value.getClass() == Long.class) {
+      out.writeByte(LONG);
+      WritableUtils.writeVLong(out, (Long)value);
+    } else if (value.getClass() == Integer.class) {
+      out.writeByte(INTEGER);
+      WritableUtils.writeVInt(out, (Integer)value);
+    } else if (value.getClass() == Double.class) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double)value);
+    } else if (value.getClass() == Float.class) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float)value);
+    } else if (value.getClass() == Boolean.class) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if (value.getClass() == String.class) {
+      out.writeByte(STRING);
+      writeString((String)value);
+    } else if (value.getClass() == Checkpoint.class) {
+      Checkpoint checkpoint = (Checkpoint)value;
+      out.writeByte(CHECKPOINT);
+      WritableUtils.writeVLong(out, checkpoint.windowId);
+      WritableUtils.writeVInt(out, checkpoint.applicationWindowCount);
+      WritableUtils.writeVInt(out, checkpoint.checkpointWindowCount);
+    } else {
+      out.writeByte(SERIALIZED);
+      writeSerialized(value);
+    }
+  }
+
+  private Object readValue() throws IOException
+  {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case LONG:
+        return WritableUtils.readVLong(in);
+      case INTEGER:
+        return WritableUtils.readVInt(in);
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case BOOLEAN:
+        return in.readBoolean();
+      case STRING:
+        return readString();
+      case CHECKPOINT:
+        return new Checkpoint(WritableUtils.readVLong(in), WritableUtils.readVInt(in), WritableUtils.readVInt(in));
+      case SERIALIZED:
+        return readSerialized();
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  private void writeSerialized(Object object) throws IOException
+  {
+    if (object == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(object);
+    }
+    WritableUtils.writeVInt(out, bos.size());
+    out.write(bos.toByteArray());
+  }
+
+  private Object readSerialized() throws IOException
+  {
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[size];
+    in.readFully(bytes);
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return ois.readObject();
+    } catch (ClassNotFoundException ex) {
+      throw new IOException(ex);
+    }
+  }
+}
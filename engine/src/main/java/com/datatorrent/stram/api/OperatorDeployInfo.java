@@ -233,6 +233,11 @@ public class OperatorDeployInfo implements Serializable, OperatorContext
     public String bufferServerHost;
     public int bufferServerPort;
     public byte[] bufferServerToken;
+    /**
+     * Set to NODE_LOCAL when the subscribers are on the same host, the publisher then shares the messages through
+     * memory besides the buffer server.
+     */
+    public Locality locality;
     public Map<Integer, StreamCodec<?>> streamCodecs = new HashMap<>();
     /**
      * Context attributes for output port
@@ -246,6 +251,7 @@ public class OperatorDeployInfo implements Serializable, OperatorContext
               .append("portName", this.portName)
               .append("streamId", this.declaredStreamId)
               .append("bufferServer", this.bufferServerHost)
+              .append("locality", this.locality)
               .toString();
     }
 
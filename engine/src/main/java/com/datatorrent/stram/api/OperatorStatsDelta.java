@@ -0,0 +1,283 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+
+/**
+ * Delta encoding of the operator stats reported in the container heartbeats.<p>
+ * <br>
+ * The metrics and counters of an operator, in particular of an idle one, rarely change from one window to the next.
+ * The container leaves out the metrics that are equal to the ones of the previous window of the operator, and the
+ * counters when they are all equal, and flags the window in {@link OperatorHeartbeat#deltaStats}. The first window of
+ * a heartbeat refers to the last window of the operator in the previous heartbeat acknowledged by the master, which
+ * is identified by {@link OperatorHeartbeat#baseWindowId}.
+ * <br>
+ * The master fills in the values left out from the previous window it received. When it does not have that window,
+ * for example after it was restarted or when it ignored a heartbeat, it drops the values it cannot rebuild and
+ * requests a full resync through {@link StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse#resyncStats}.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class OperatorStatsDelta
+{
+  /**
+   * base window id of an operator without any acknowledged window
+   */
+  public static final long NO_WINDOW = -1;
+  /**
+   * flag of a window whose counters are left out as unchanged
+   */
+  static final int COUNTERS = 0;
+  /**
+   * flag of a window whose metrics contain only the changed ones
+   */
+  static final int METRICS = 1;
+  static final int FLAGS = 2;
+  /**
+   * types of the values compared as they are, the others are compared serialized
+   */
+  private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.asList(Long.class, Integer.class,
+      Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class, String.class));
+
+  /**
+   * Values of the last window of an operator the others refer to.
+   */
+  static class Window
+  {
+    final long windowId;
+    final Object counters;
+    final Map<String, Object> metrics;
+
+    Window(long windowId, Object counters, Map<String, Object> metrics)
+    {
+      this.windowId = windowId;
+      this.counters = counters;
+      this.metrics = metrics;
+    }
+  }
+
+  /**
+   * The counters are deprecated in favor of the metrics, yet they are reported for the operators which still set
+   * them, so they are delta encoded all the same. The deprecated field is accessed here only.
+   */
+  @SuppressWarnings("deprecation")
+  static Object getCounters(OperatorStats stats)
+  {
+    return stats.counters;
+  }
+
+  @SuppressWarnings("deprecation")
+  static void setCounters(OperatorStats stats, Object counters)
+  {
+    stats.counters = counters;
+  }
+
+  private static boolean isFlagged(BitSet deltaStats, int window, int flag)
+  {
+    return deltaStats != null && deltaStats.get(window * FLAGS + flag);
+  }
+
+  /**
+   * Leaves out the unchanged stats of the operators of a container, used by the container.
+   */
+  public static class Encoder
+  {
+    private Map<Integer, Window> acknowledged = new HashMap<>();
+    private Map<Integer, Window> pending = new HashMap<>();
+
+    /**
+     * Leaves out the unchanged stats of the heartbeats of the operators. The windows become the reference of the
+     * next heartbeat once this one is {@link #acknowledge acknowledged}.
+     *
+     * @param stats the stats of the container, modified in place
+     */
+    public void encode(ContainerStats stats)
+    {
+      pending = new HashMap<>();
+      for (OperatorHeartbeat heartbeat : stats.operators) {
+        Window previous = acknowledged.get(heartbeat.nodeId);
+        heartbeat.baseWindowId = previous == null ? NO_WINDOW : previous.windowId;
+        List<OperatorStats> windows = heartbeat.windowStats;
+        for (int i = 0; i < windows.size(); i++) {
+          OperatorStats window = windows.get(i);
+          if (window == null) {
+            continue;
+          }
+          Window current = new Window(window.windowId, snapshot(getCounters(window)), snapshot(window.metrics));
+          if (previous != null) {
+            if (current.counters != null && isUnchanged(previous.counters, current.counters)) {
+              setCounters(window, null);
+              flag(heartbeat, i, COUNTERS);
+            }
+            if (window.metrics != null && previous.metrics != null
+                && window.metrics.keySet().containsAll(previous.metrics.keySet())) {
+              Map<String, Object> changed = new HashMap<>();
+              for (Map.Entry<String, Object> entry : window.metrics.entrySet()) {
+                if (!isUnchanged(previous.metrics.get(entry.getKey()), current.metrics.get(entry.getKey()))) {
+                  changed.put(entry.getKey(), entry.getValue());
+                }
+              }
+              window.metrics = changed;
+              flag(heartbeat, i, METRICS);
+            }
+          }
+          previous = current;
+        }
+        if (previous != null) {
+          pending.put(heartbeat.nodeId, previous);
+        }
+      }
+    }
+
+    /**
+     * Copies the value the next windows are compared to. The operators usually report the same mutable counters and
+     * metrics objects every window, so keeping a reference would compare them with themselves.
+     *
+     * @param value the counters or a metric
+     * @return the immutable values as they are and the other ones serialized, a new object when they do not serialize
+     */
+    private static Object snapshot(Object value)
+    {
+      if (value == null || IMMUTABLE_TYPES.contains(value.getClass())) {
+        return value;
+      }
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(value);
+      } catch (IOException ex) {
+        /* never equal to anything, the value is always sent */
+        return new Object();
+      }
+      return bos.toByteArray();
+    }
+
+    private static Map<String, Object> snapshot(Map<String, Object> metrics)
+    {
+      if (metrics == null) {
+        return null;
+      }
+      Map<String, Object> snapshot = new HashMap<>(metrics.size() * 2);
+      for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+        snapshot.put(entry.getKey(), snapshot(entry.getValue()));
+      }
+      return snapshot;
+    }
+
+    private static boolean isUnchanged(Object previous, Object current)
+    {
+      if (previous instanceof byte[] && current instanceof byte[]) {
+        return Arrays.equals((byte[])previous, (byte[])current);
+      }
+      return previous != null && previous.equals(current);
+    }
+
+    private static void flag(OperatorHeartbeat heartbeat, int window, int flag)
+    {
+      if (heartbeat.deltaStats == null) {
+        heartbeat.deltaStats = new BitSet();
+      }
+      heartbeat.deltaStats.set(window * FLAGS + flag);
+    }
+
+    /**
+     * Called once the master processed the last encoded heartbeat.
+     */
+    public void acknowledge()
+    {
+      acknowledged = pending;
+    }
+
+    /**
+     * Called when the master requests the full stats, the next heartbeat does not leave out anything.
+     */
+    public void resync()
+    {
+      acknowledged = new HashMap<>();
+    }
+  }
+
+  /**
+   * Fills in the stats left out of the heartbeats of an operator, used by the master.
+   */
+  public static class Decoder
+  {
+    private Window previous;
+
+    /**
+     * Fills in the stats left out of a heartbeat of the operator.
+     *
+     * @param heartbeat the heartbeat of the operator, modified in place
+     * @return false when some of the stats could not be filled in and were dropped, the full stats are to be requested
+     */
+    public boolean decode(OperatorHeartbeat heartbeat)
+    {
+      boolean complete = true;
+      if (previous != null && previous.windowId != heartbeat.baseWindowId) {
+        previous = null;
+      }
+      List<OperatorStats> windows = heartbeat.windowStats;
+      for (int i = 0; i < windows.size(); i++) {
+        OperatorStats window = windows.get(i);
+        if (window == null) {
+          continue;
+        }
+        boolean known = true;
+        if (isFlagged(heartbeat.deltaStats, i, COUNTERS)) {
+          if (previous == null) {
+            known = false;
+          } else {
+            setCounters(window, previous.counters);
+          }
+        }
+        if (isFlagged(heartbeat.deltaStats, i, METRICS)) {
+          if (previous == null || previous.metrics == null) {
+            window.metrics = null;
+            known = false;
+          } else {
+            Map<String, Object> metrics = new HashMap<>(previous.metrics);
+            metrics.putAll(window.metrics);
+            window.metrics = metrics;
+          }
+        }
+        if (known) {
+          previous = new Window(window.windowId, getCounters(window), window.metrics);
+        } else {
+          previous = null;
+          complete = false;
+        }
+      }
+      return complete;
+    }
+  }
+}
@@ -18,9 +18,12 @@
  */
 package com.datatorrent.stram.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.apache.apex.log.LogFileInformation;
@@ -186,6 +189,70 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
      * Return the response of the request
      */
     public ArrayList<StatsListener.OperatorResponse> requestResponse;
+
+    /**
+     * Id of the window acknowledged by the master which the first window of the stats refers to, see
+     * {@link OperatorStatsDelta}.
+     */
+    public long baseWindowId = OperatorStatsDelta.NO_WINDOW;
+
+    /**
+     * Flags of the windows whose stats leave out the values unchanged since the previous window, null when all the
+     * windows carry the full stats.
+     */
+    public BitSet deltaStats;
+
+    /**
+     * Time in milliseconds spent retrieving the checkpoint of the operator and restoring the operator from it when the
+     * container deployed the operator.
+     */
+    public long restoreTimeMillis;
+
+    /**
+     * Latency of the markers received by the operator during the heartbeat interval, null when there were none.
+     */
+    public ArrayList<LatencySample> latencySamples;
+  }
+
+  /**
+   * Latency of a marker received on an input port of an operator, see
+   * {@link com.datatorrent.stram.plan.logical.LogicalPlan#LATENCY_TRACING_INTERVAL_MILLIS}. The hops between the
+   * containers include the difference between their clocks.
+   */
+  class LatencySample implements Serializable
+  {
+    private static final long serialVersionUID = 201710180000L;
+
+    /**
+     * Input port which received the marker.
+     */
+    public String portName;
+
+    /**
+     * Id of the input operator which created the marker.
+     */
+    public int sourceOperatorId;
+
+    /**
+     * Time in milliseconds from the creation of the marker to the operator taking it from the input port.
+     */
+    public long endToEndMillis;
+
+    /**
+     * Time in milliseconds from the upstream operator emitting the marker to the buffer server receiving it, or to the
+     * input port receiving it when the stream does not go through the buffer server.
+     */
+    public long publisherMillis;
+
+    /**
+     * Time in milliseconds from the buffer server receiving the marker to the input port receiving it.
+     */
+    public long bufferServerMillis;
+
+    /**
+     * Time in milliseconds the marker spent in the queue of the input port waiting for the operator.
+     */
+    public long queueMillis;
   }
 
   class ContainerStats implements Stats
@@ -256,6 +323,18 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     }
 
     public String stackTrace;
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.readFields(in, this);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(out, this);
+    }
   }
 
   /**
@@ -403,6 +482,24 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     public long committedWindowId = -1;
 
     public boolean stackTraceRequired = false;
+
+    /**
+     * Set when the master could not fill in the operator stats left out as unchanged, the container sends the full
+     * stats in the next heartbeat.
+     */
+    public boolean resyncStats = false;
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.readFields(in, this);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(out, this);
+    }
   }
 
   /**
@@ -810,6 +810,14 @@ public class ApexCli
         null,
         new Arg[]{new Arg("container-id")},
         "Get the stack trace for the container"));
+    connectedCommands.put("get-operator-latency", new CommandSpec(new GetOperatorLatencyCommand(),
+        new Arg[]{new Arg("operator-id")},
+        null,
+        "Get the latencies sampled on the input ports of a physical operator"));
+    connectedCommands.put("get-stream-latency", new CommandSpec(new GetStreamLatencyCommand(),
+        new Arg[]{new Arg("stream-name")},
+        null,
+        "Get the latencies sampled on the sinks of a stream"));
 
     //
     // Logical plan change command specification starts here
@@ -3505,6 +3513,41 @@ public class ApexCli
 
   }
 
+  private class GetOperatorLatencyCommand implements Command
+  {
+    @Override
+    public void execute(String[] args, ConsoleReader reader) throws Exception
+    {
+      if (!NumberUtils.isDigits(args[1])) {
+        throw new CliException("Operator ID must be a number");
+      }
+      StramAgent.StramUriSpec uriSpec = new StramAgent.StramUriSpec();
+      uriSpec = uriSpec.path(StramWebServices.PATH_PHYSICAL_PLAN_OPERATORS).path(args[1]).path(StramWebServices.PATH_LATENCY);
+      try {
+        printJson(getResource(uriSpec, currentApp));
+      } catch (Exception ex) {
+        throw new CliException("Webservice call to AppMaster failed.", ex);
+      }
+    }
+
+  }
+
+  private class GetStreamLatencyCommand implements Command
+  {
+    @Override
+    public void execute(String[] args, ConsoleReader reader) throws Exception
+    {
+      StramAgent.StramUriSpec uriSpec = new StramAgent.StramUriSpec();
+      uriSpec = uriSpec.path(StramWebServices.PATH_PHYSICAL_PLAN_STREAMS).path(URLEncoder.encode(args[1], "UTF-8")).path(StramWebServices.PATH_LATENCY);
+      try {
+        printJson(getResource(uriSpec, currentApp));
+      } catch (Exception ex) {
+        throw new CliException("Webservice call to AppMaster failed.", ex);
+      }
+    }
+
+  }
+
   private class GetAppPackageInfoCommand implements Command
   {
     @Override
@@ -50,6 +50,8 @@ public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStrea
   private final Output state;
   private final Input input;
   private final DataStatePair dataStatePair;
+  private final Slice dataSlice;
+  private final Slice stateSlice;
 
   @SuppressWarnings("OverridableMethodCallInConstructor")
   public DefaultStatefulStreamCodec()
@@ -65,6 +67,8 @@ public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStrea
     this.pairs = classResolver.pairs;
     classResolver.init();
     dataStatePair = new DataStatePair();
+    dataSlice = new Slice(null, 0, 0);
+    stateSlice = new Slice(null, 0, 0);
   }
 
   @Override
@@ -122,12 +126,17 @@ public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStrea
       }
       pairs.clear();
 
-      dataStatePair.state = new Slice(state.getBuffer(), 0, state.position());
+      stateSlice.buffer = state.getBuffer();
+      stateSlice.length = state.position();
+      dataStatePair.state = stateSlice;
     } else {
       dataStatePair.state = null;
     }
 
-    dataStatePair.data = new Slice(data.getBuffer(), 0, data.position());
+    /* the slices are reused, the buffers of the outputs may have been replaced while growing */
+    dataSlice.buffer = data.getBuffer();
+    dataSlice.length = data.position();
+    dataStatePair.data = dataSlice;
     return dataStatePair;
   }
 
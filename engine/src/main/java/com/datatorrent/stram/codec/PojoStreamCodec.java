@@ -0,0 +1,443 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.codec;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Throwables;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Stream codec for the tuples of a known POJO class.<p>
+ * <br>
+ * The codec writes the fields of the tuple one after the other in a layout fixed by the class, without any class
+ * information, through the field accessors resolved when the codec is first used. The primitive and string
+ * fields are written directly, the other fields are delegated to Kryo, which writes the class of the value only when
+ * the declared type of the field is not final. The tuple class needs a no argument constructor.
+ * <br>
+ * The partition of a tuple is the hash of its key fields when configured, and its hash code otherwise.
+ * <br>
+ * When the codec is set on an input port without a tuple class, the class is taken from the
+ * {@link com.datatorrent.api.Context.PortContext#TUPLE_CLASS} of the port, or of the output port of the stream, when
+ * the DAG is validated.
+ * <br>
+ *
+ * @param <T> type of the tuples
+ * @since 3.7.0
+ */
+public class PojoStreamCodec<T> implements StreamCodec<T>, Serializable
+{
+  private static final long serialVersionUID = 201710180000L;
+  private static final Class<?>[] REGISTERED_CLASSES = {Date.class, ArrayList.class, LinkedList.class,
+      HashMap.class, LinkedHashMap.class, TreeMap.class, HashSet.class, LinkedHashSet.class, TreeSet.class, byte[].class, int[].class, long[].class, double[].class, String[].class};
+  private Class<T> tupleClass;
+  private String[] keyFields;
+  private transient Constructor<T> constructor;
+  private transient FieldCodec[] fields;
+  private transient FieldCodec[] keys;
+  private transient Output output;
+  private transient Input input;
+  private transient Kryo kryo;
+
+  /**
+   * Creates the codec of the tuple class declared on the port.
+   */
+  public PojoStreamCodec()
+  {
+  }
+
+  /**
+   * @param tupleClass class of the tuples
+   * @param keyFields names of the fields the partition of the tuples is computed from
+   */
+  public PojoStreamCodec(Class<T> tupleClass, String... keyFields)
+  {
+    this.tupleClass = tupleClass;
+    this.keyFields = keyFields.length == 0 ? null : keyFields;
+  }
+
+  public Class<T> getTupleClass()
+  {
+    return tupleClass;
+  }
+
+  public String[] getKeyFields()
+  {
+    return keyFields == null ? new String[0] : keyFields.clone();
+  }
+
+  /**
+   * Creates a codec of the same configuration for the given tuple class.
+   *
+   * @param tupleClass class of the tuples
+   * @return the codec
+   */
+  public <U> PojoStreamCodec<U> withTupleClass(Class<U> tupleClass)
+  {
+    return new PojoStreamCodec<>(tupleClass, getKeyFields());
+  }
+
+  @Override
+  public Object fromByteArray(Slice fragment)
+  {
+    if (fragment.length == 0) {
+      return null;
+    }
+    if (fields == null) {
+      init();
+    }
+    input.setBuffer(fragment.buffer, fragment.offset, fragment.length);
+    try {
+      T tuple = constructor.newInstance();
+      for (FieldCodec field : fields) {
+        field.read(input, tuple, kryo);
+      }
+      kryo.reset();
+      return tuple;
+    } catch (Exception ex) {
+      throw Throwables.propagate(ex);
+    }
+  }
+
+  @Override
+  public Slice toByteArray(T tuple)
+  {
+    if (tuple == null) {
+      return new Slice(null, 0, 0);
+    }
+    if (fields == null) {
+      init();
+    }
+    output.clear();
+    try {
+      for (FieldCodec field : fields) {
+        field.write(output, tuple, kryo);
+      }
+      kryo.reset();
+    } catch (IllegalAccessException ex) {
+      throw Throwables.propagate(ex);
+    }
+    /* the output buffer is reused for the next tuple, while the callers may hold on to the slice */
+    return new Slice(output.toBytes());
+  }
+
+  @Override
+  public int getPartition(T tuple)
+  {
+    if (keyFields == null) {
+      return tuple.hashCode();
+    }
+    if (fields == null) {
+      init();
+    }
+    try {
+      int hash = 1;
+      for (FieldCodec key : keys) {
+        hash = 31 * hash + key.hash(tuple);
+      }
+      return hash;
+    } catch (IllegalAccessException ex) {
+      throw Throwables.propagate(ex);
+    }
+  }
+
+  private void init()
+  {
+    if (tupleClass == null) {
+      throw new IllegalStateException("Tuple class is not set");
+    }
+    try {
+      constructor = tupleClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+    } catch (NoSuchMethodException ex) {
+      throw new IllegalArgumentException("No accessible default constructor in " + tupleClass, ex);
+    }
+
+    /* the fields of the super classes first, by name within a class, so the layout does not depend on the JVM */
+    List<Field> layout = new ArrayList<>();
+    for (Class<?> c = tupleClass; c != Object.class; c = c.getSuperclass()) {
+      List<Field> declared = new ArrayList<>();
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+          declared.add(field);
+        }
+      }
+      Collections.sort(declared, new Comparator<Field>()
+      {
+        @Override
+        public int compare(Field f1, Field f2)
+        {
+          return f1.getName().compareTo(f2.getName());
+        }
+      });
+      layout.addAll(0, declared);
+    }
+    if (layout.isEmpty()) {
+      throw new IllegalArgumentException("No fields to serialize in " + tupleClass);
+    }
+
+    fields = new FieldCodec[layout.size()];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = new FieldCodec(layout.get(i));
+    }
+    keys = new FieldCodec[keyFields == null ? 0 : keyFields.length];
+    for (int i = 0; i < keys.length; i++) {
+      for (FieldCodec field : fields) {
+        if (field.name.equals(keyFields[i])) {
+          keys[i] = field;
+        }
+      }
+      if (keys[i] == null) {
+        throw new IllegalArgumentException("No field " + keyFields[i] + " in " + tupleClass);
+      }
+    }
+
+    output = new Output(4096, -1);
+    input = new Input();
+    kryo = new Kryo();
+    kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    /* the object fields of a tuple are one graph, the references are reset once per tuple */
+    kryo.setAutoReset(false);
+    /*
+     * the common value classes and the concrete field types are registered in the same order on both ends, so the
+     * values of these classes are written with the registered id instead of the class name
+     */
+    for (Class<?> c : REGISTERED_CLASSES) {
+      kryo.register(c);
+    }
+    for (FieldCodec field : fields) {
+      if (field.kind >= FieldCodec.FINAL_CLASS && (field.type.isArray() || !Modifier.isAbstract(field.type.getModifiers()))) {
+        kryo.register(field.type);
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PojoStreamCodec<?> that = (PojoStreamCodec<?>)o;
+    return tupleClass == that.tupleClass && Arrays.equals(keyFields, that.keyFields);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * (tupleClass == null ? 0 : tupleClass.hashCode()) + Arrays.hashCode(keyFields);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PojoStreamCodec{tupleClass=" + tupleClass + ", keyFields=" + Arrays.toString(keyFields) + '}';
+  }
+
+  /**
+   * Reads and writes a field of the tuple through the typed accessors of the field, which do not box the
+   * primitive values.
+   */
+  private static class FieldCodec
+  {
+    private static final int BOOLEAN = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int CHAR = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int STRING = 8;
+    private static final int FINAL_CLASS = 9;
+    private static final int OBJECT = 10;
+
+    final Field field;
+    final String name;
+    final Class<?> type;
+    final int kind;
+
+    FieldCodec(Field field)
+    {
+      this.field = field;
+      name = field.getName();
+      type = field.getType();
+      if (type == boolean.class) {
+        kind = BOOLEAN;
+      } else if (type == byte.class) {
+        kind = BYTE;
+      } else if (type == short.class) {
+        kind = SHORT;
+      } else if (type == char.class) {
+        kind = CHAR;
+      } else if (type == int.class) {
+        kind = INT;
+      } else if (type == long.class) {
+        kind = LONG;
+      } else if (type == float.class) {
+        kind = FLOAT;
+      } else if (type == double.class) {
+        kind = DOUBLE;
+      } else if (type == String.class) {
+        kind = STRING;
+      } else if (Modifier.isFinal(type.getModifiers())) {
+        kind = FINAL_CLASS;
+      } else {
+        kind = OBJECT;
+      }
+
+      field.setAccessible(true);
+    }
+
+    void write(Output output, Object tuple, Kryo kryo) throws IllegalAccessException
+    {
+      switch (kind) {
+        case BOOLEAN:
+          output.writeBoolean(field.getBoolean(tuple));
+          break;
+        case BYTE:
+          output.writeByte(field.getByte(tuple));
+          break;
+        case SHORT:
+          output.writeShort(field.getShort(tuple));
+          break;
+        case CHAR:
+          output.writeChar(field.getChar(tuple));
+          break;
+        case INT:
+          output.writeVarInt(field.getInt(tuple), false);
+          break;
+        case LONG:
+          output.writeVarLong(field.getLong(tuple), false);
+          break;
+        case FLOAT:
+          output.writeFloat(field.getFloat(tuple));
+          break;
+        case DOUBLE:
+          output.writeDouble(field.getDouble(tuple));
+          break;
+        case STRING:
+          output.writeString((String)field.get(tuple));
+          break;
+        case FINAL_CLASS:
+          kryo.writeObjectOrNull(output, field.get(tuple), type);
+          break;
+        default:
+          kryo.writeClassAndObject(output, field.get(tuple));
+          break;
+      }
+    }
+
+    void read(Input input, Object tuple, Kryo kryo) throws IllegalAccessException
+    {
+      switch (kind) {
+        case BOOLEAN:
+          field.setBoolean(tuple, input.readBoolean());
+          break;
+        case BYTE:
+          field.setByte(tuple, input.readByte());
+          break;
+        case SHORT:
+          field.setShort(tuple, input.readShort());
+          break;
+        case CHAR:
+          field.setChar(tuple, input.readChar());
+          break;
+        case INT:
+          field.setInt(tuple, input.readVarInt(false));
+          break;
+        case LONG:
+          field.setLong(tuple, input.readVarLong(false));
+          break;
+        case FLOAT:
+          field.setFloat(tuple, input.readFloat());
+          break;
+        case DOUBLE:
+          field.setDouble(tuple, input.readDouble());
+          break;
+        case STRING:
+          field.set(tuple, input.readString());
+          break;
+        case FINAL_CLASS:
+          field.set(tuple, kryo.readObjectOrNull(input, type));
+          break;
+        default:
+          field.set(tuple, kryo.readClassAndObject(input));
+          break;
+      }
+    }
+
+    /**
+     * Hash of the value of the field, equal to the hash code of the boxed value.
+     */
+    int hash(Object tuple) throws IllegalAccessException
+    {
+      switch (kind) {
+        case BOOLEAN:
+          return field.getBoolean(tuple) ? 1231 : 1237;
+        case BYTE:
+          return field.getByte(tuple);
+        case SHORT:
+          return field.getShort(tuple);
+        case CHAR:
+          return field.getChar(tuple);
+        case INT:
+          return field.getInt(tuple);
+        case LONG: {
+          long value = field.getLong(tuple);
+          return (int)(value ^ (value >>> 32));
+        }
+        case FLOAT:
+          return Float.floatToIntBits(field.getFloat(tuple));
+        case DOUBLE: {
+          long value = Double.doubleToLongBits(field.getDouble(tuple));
+          return (int)(value ^ (value >>> 32));
+        }
+        default: {
+          Object value = field.get(tuple);
+          return value == null ? 0 : value.hashCode();
+        }
+      }
+    }
+  }
+}
@@ -31,6 +31,9 @@ public interface StatefulStreamCodec<T> extends StreamCodec<T>
 {
   /**
    * A convenience class which is used to hold 2 different values associated with each serialize/deserialize operation.
+   *
+   * The pair and its slices may be reused by the codec and the caller from one operation to the next, so they are only
+   * valid until the next call and must not be retained.
    */
   class DataStatePair
   {
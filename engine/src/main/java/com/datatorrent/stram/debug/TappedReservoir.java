@@ -19,6 +19,8 @@
 package com.datatorrent.stram.debug;
 
 import com.datatorrent.api.Sink;
+import com.datatorrent.stram.engine.NodeWaitStrategy;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.SweepableReservoir;
 import com.datatorrent.stram.tuple.Tuple;
 
@@ -27,7 +29,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class TappedReservoir extends MuxSink implements SweepableReservoir
+public class TappedReservoir extends MuxSink implements SignallingReservoir
 {
   public final SweepableReservoir reservoir;
   private Sink<Object> sink;
@@ -56,6 +58,14 @@ public class TappedReservoir extends MuxSink implements SweepableReservoir
     return reservoir.sweep();
   }
 
+  @Override
+  public void setWaitStrategy(NodeWaitStrategy waitStrategy)
+  {
+    if (reservoir instanceof SignallingReservoir) {
+      ((SignallingReservoir)reservoir).setWaitStrategy(waitStrategy);
+    }
+  }
+
   @Override
   public int getCount(boolean reset)
   {
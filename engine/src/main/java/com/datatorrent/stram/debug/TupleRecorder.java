@@ -493,6 +493,10 @@ public class TupleRecorder
       if (payload instanceof Tuple) {
         Tuple tuple = (Tuple)payload;
         MessageType messageType = tuple.getType();
+        if (messageType == MessageType.LATENCY_MARKER) {
+          /* the latency markers are left out of the recordings */
+          return;
+        }
         if (messageType == MessageType.BEGIN_WINDOW) {
           beginWindow(tuple.getWindowId());
         }
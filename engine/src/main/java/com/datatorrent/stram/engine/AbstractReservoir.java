@@ -19,6 +19,7 @@
 package com.datatorrent.stram.engine;
 
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -33,6 +34,7 @@ import org.jctools.queues.SpscArrayQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.BatchEnabledSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.UnsafeBlockingQueue;
@@ -47,11 +49,15 @@ import static java.lang.Thread.sleep;
  *
  * @since 3.4.0
  */
-public abstract class AbstractReservoir implements SweepableReservoir, BlockingQueue<Object>
+public abstract class AbstractReservoir implements SignallingReservoir, BlockingQueue<Object>
 {
   private static final Logger logger = LoggerFactory.getLogger(AbstractReservoir.class);
   static final String reservoirClassNameProperty = "com.datatorrent.stram.engine.Reservoir";
   private static final int SPSC_ARRAY_BLOCKING_QUEUE_CAPACITY_THRESHOLD = 64 * 1024;
+  /**
+   * maximum number of data tuples handed to a {@link BatchEnabledSink} at once
+   */
+  public static final int MAX_BATCH_SIZE = 1024;
 
   /**
    * Reservoir factory. Constructs concrete implementation of {@link AbstractReservoir} based on
@@ -91,6 +97,8 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
   private Sink<Object> sink;
   private String id;
   protected int count;
+  private volatile NodeWaitStrategy waitStrategy;
+  private Object[] batch;
 
   protected AbstractReservoir(final String id)
   {
@@ -151,6 +159,68 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     return sink;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setWaitStrategy(NodeWaitStrategy waitStrategy)
+  {
+    this.waitStrategy = waitStrategy;
+  }
+
+  /**
+   * Wakes up the node waiting for the tuples, implementations call it after adding tuples to the reservoir.
+   */
+  protected void signal()
+  {
+    final NodeWaitStrategy waitStrategy = this.waitStrategy;
+    if (waitStrategy != null) {
+      waitStrategy.signal();
+    }
+  }
+
+  /**
+   * Hands the data tuples at the head of the reservoir to the sink in batches, the implementations call it from
+   * {@link #sweep} when the sink is a {@link BatchEnabledSink}.
+   *
+   * @param sink the sink of the reservoir
+   * @return the control tuple at the head of the reservoir or null if the reservoir was drained
+   */
+  protected Tuple sweep(final BatchEnabledSink<Object> sink)
+  {
+    Object[] batch = this.batch;
+    if (batch == null) {
+      batch = this.batch = new Object[Math.max(1, Math.min(MAX_BATCH_SIZE, size() + remainingCapacity()))];
+    }
+
+    Object o = null;
+    int size;
+    do {
+      size = 0;
+      while (size < batch.length && (o = peek()) != null && !(o instanceof Tuple)) {
+        batch[size++] = poll();
+      }
+      if (size > 0) {
+        putBatch(sink, batch, size);
+      }
+    } while (size == batch.length);
+    return (Tuple)o;
+  }
+
+  /**
+   * Hands a batch of data tuples polled from the reservoir to the sink.
+   *
+   * @param sink the sink of the reservoir
+   * @param batch array holding the tuples, the references are cleared once the sink returns
+   * @param size number of the tuples in the array
+   */
+  protected void putBatch(final BatchEnabledSink<Object> sink, final Object[] batch, final int size)
+  {
+    count += size;
+    sink.putBatch(batch, size);
+    Arrays.fill(batch, 0, size, null);
+  }
+
   @Override
   public String toString()
   {
@@ -180,6 +250,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       Object o;
       final SpscArrayQueue<Object> queue = this.queue;
       final Sink<Object> sink = getSink();
+      if (sink instanceof BatchEnabledSink) {
+        return sweep((BatchEnabledSink<Object>)sink);
+      }
       while ((o = queue.peek()) != null) {
         if (o instanceof Tuple) {
           return (Tuple)o;
@@ -193,7 +266,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return queue.add(o);
+      final boolean added = queue.add(o);
+      signal();
+      return added;
     }
 
     @Override
@@ -236,7 +311,11 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean offer(Object o)
     {
-      return queue.offer(o);
+      if (queue.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -248,6 +327,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
         sleep(spinMillis);
         spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
       }
+      signal();
     }
 
     @Override
@@ -403,6 +483,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       final ReentrantLock lock = this.lock;
       final SpscArrayQueue<Object> queue = getQueue();
       final Sink<Object> sink = getSink();
+      if (sink instanceof BatchEnabledSink) {
+        return sweep((BatchEnabledSink<Object>)sink);
+      }
       lock.lock();
       try {
         while ((o = queue.peek()) != null) {
@@ -422,6 +505,23 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       }
     }
 
+    /**
+     * The batches are polled without the lock, the producer blocked on the full queue is woken up once per batch
+     * before the batch is processed.
+     */
+    @Override
+    protected void putBatch(final BatchEnabledSink<Object> sink, final Object[] batch, final int size)
+    {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+        notFull.signal();
+      } finally {
+        lock.unlock();
+      }
+      super.putBatch(sink, batch, size);
+    }
+
     @Override
     public void put(Object o) throws InterruptedException
     {
@@ -437,6 +537,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
           lock.unlock();
         }
       }
+      signal();
     }
 
     @Override
@@ -480,6 +581,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       Object o;
       final ArrayBlockingQueue<Object> queue = this.queue;
       final Sink<Object> sink = getSink();
+      if (sink instanceof BatchEnabledSink) {
+        return sweep((BatchEnabledSink<Object>)sink);
+      }
       while ((o = queue.peek()) != null) {
         if (o instanceof Tuple) {
           return (Tuple)o;
@@ -493,25 +597,36 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return queue.add(o);
+      final boolean added = queue.add(o);
+      signal();
+      return added;
     }
 
     @Override
     public boolean offer(Object o)
     {
-      return queue.offer(o);
+      if (queue.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
     public void put(Object o) throws InterruptedException
     {
       queue.put(o);
+      signal();
     }
 
     @Override
     public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException
     {
-      return queue.offer(o, timeout, unit);
+      if (queue.offer(o, timeout, unit)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -681,6 +796,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     {
       final CircularBuffer<Object> circularBuffer = this.circularBuffer;
       final Sink<Object> sink = getSink();
+      if (sink instanceof BatchEnabledSink) {
+        return sweep((BatchEnabledSink<Object>)sink);
+      }
       final int size = circularBuffer.size();
       for (int i = 0; i < size; i++) {
         if (circularBuffer.peekUnsafe() instanceof Tuple) {
@@ -697,7 +815,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return circularBuffer.add(o);
+      final boolean added = circularBuffer.add(o);
+      signal();
+      return added;
     }
 
     @Override
@@ -742,19 +862,28 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean offer(Object o)
     {
-      return circularBuffer.offer(o);
+      if (circularBuffer.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
     public void put(Object o) throws InterruptedException
     {
       circularBuffer.put(o);
+      signal();
     }
 
     @Override
     public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException
     {
-      return circularBuffer.offer(o, timeout, unit);
+      if (circularBuffer.offer(o, timeout, unit)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -98,6 +98,7 @@ public class BufferServerStatsSubscriber
             ByteCounterStream stream = inputStreams.get(ps.id);
             if (stream != null) {
               ps.bufferServerBytes = stream.getByteCount(true);
+              addCompressionStats(ps, stream);
             }
           }
         }
@@ -105,10 +106,11 @@ public class BufferServerStatsSubscriber
         if (os.outputPorts != null) {
           for (PortStats ps : os.outputPorts) {
             List<ByteCounterStream> portStreams = outputStreams.get(ps.id);
-            if (outputStreams != null) {
+            if (portStreams != null) {
               ps.bufferServerBytes = 0;
               for (ByteCounterStream stream : portStreams) {
-                ps.bufferServerBytes = stream.getByteCount(true);
+                ps.bufferServerBytes += stream.getByteCount(true);
+                addCompressionStats(ps, stream);
               }
             }
           }
@@ -117,4 +119,14 @@ public class BufferServerStatsSubscriber
     }
   }
 
+  private static void addCompressionStats(PortStats ps, ByteCounterStream stream)
+  {
+    if (stream instanceof CompressedStream) {
+      CompressedStream compressedStream = (CompressedStream)stream;
+      ps.uncompressedBytes += compressedStream.getUncompressedByteCount(true);
+      ps.compressedBytes += compressedStream.getCompressedByteCount(true);
+      ps.compressionNanos += compressedStream.getCompressionNanos(true);
+    }
+  }
+
 }
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+/**
+ * Stream which may compress the tuples it exchanges with the buffer server.<p>
+ * <br>
+ * The counts cover only the compressed tuples, so the compression ratio of the stream is the ratio of the
+ * uncompressed to the compressed byte count.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public interface CompressedStream extends ByteCounterStream
+{
+  /**
+   * @param reset whether to reset the count
+   * @return number of bytes of the tuples before the compression
+   */
+  long getUncompressedByteCount(boolean reset);
+
+  /**
+   * @param reset whether to reset the count
+   * @return number of bytes of the tuples after the compression
+   */
+  long getCompressedByteCount(boolean reset);
+
+  /**
+   * @param reset whether to reset the time
+   * @return time in nanoseconds spent compressing or decompressing the tuples
+   */
+  long getCompressionNanos(boolean reset);
+}
@@ -35,7 +35,9 @@ import org.apache.apex.api.ControlAwareDefaultInputPort;
 import org.apache.apex.api.operator.ControlTuple;
 import org.apache.commons.lang.UnhandledException;
 
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
 import com.datatorrent.api.ControlTupleEnabledSink;
@@ -53,6 +55,7 @@ import com.datatorrent.stram.debug.TappedReservoir;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.tuple.CustomControlTuple;
+import com.datatorrent.stram.tuple.LatencyMarkerTuple;
 import com.datatorrent.stram.tuple.ResetWindowTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
@@ -233,8 +236,7 @@ public class GenericNode extends Node<Operator>
   {
     doCheckpoint = false;
 
-    final long maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    long spinMillis = 0;
+    final NodeWaitStrategy waitStrategy = newWaitStrategy();
     final boolean handleIdleTime = operator instanceof IdleTimeHandler;
     int totalQueues = inputs.size();
     int regularQueues = totalQueues;
@@ -247,6 +249,18 @@ public class GenericNode extends Node<Operator>
 
     ArrayList<Map.Entry<String, SweepableReservoir>> activeQueues = new ArrayList<>();
     activeQueues.addAll(inputs.entrySet());
+    final Iterable<SweepableReservoir> activeReservoirs = Iterables.transform(activeQueues,
+        new Function<Map.Entry<String, SweepableReservoir>, SweepableReservoir>()
+        {
+          @Override
+          public SweepableReservoir apply(Map.Entry<String, SweepableReservoir> input)
+          {
+            return input.getValue();
+          }
+        });
+    for (SweepableReservoir reservoir : inputs.values()) {
+      signalOnArrival(waitStrategy, reservoir);
+    }
 
     int expectingBeginWindow = activeQueues.size();
     int receivedEndWindow = 0;
@@ -266,9 +280,14 @@ public class GenericNode extends Node<Operator>
         while (buffers.hasNext()) {
           Map.Entry<String, SweepableReservoir> activePortEntry = buffers.next();
           SweepableReservoir activePort = activePortEntry.getValue();
+          int count = activePort.getCount(false);
           Tuple t = activePort.sweep();
+          if (activePort.getCount(false) != count) {
+            /* the data tuples are delivered within the sweep */
+            waitStrategy.reset();
+          }
           if (t != null) {
-            spinMillis = 0;
+            waitStrategy.reset();
             boolean delay = (operator instanceof Operator.DelayOperator);
             long windowAhead = 0;
             if (delay) {
@@ -449,6 +468,11 @@ public class GenericNode extends Node<Operator>
                 }
                 break;
 
+              case LATENCY_MARKER:
+                activePort.remove();
+                processLatencyMarker(activePortEntry.getKey(), (LatencyMarkerTuple)t, !delay);
+                break;
+
               case CHECKPOINT:
                 activePort.remove();
                 long checkpointWindow = t.getWindowId();
@@ -575,6 +599,7 @@ public class GenericNode extends Node<Operator>
                       DeferredInputConnection dic = dici.next();
                       if (e.getKey().equals(dic.portname)) {
                         connectInputPort(dic.portname, dic.reservoir);
+                        signalOnArrival(waitStrategy, dic.reservoir);
                         dici.remove();
                         activeQueues.add(new AbstractMap.SimpleEntry<>(dic.portname, dic.reservoir));
                         break activequeue;
@@ -676,7 +701,7 @@ public class GenericNode extends Node<Operator>
           for (Map.Entry<String, SweepableReservoir> cb : activeQueues) {
             need2sleep = cb.getValue().isEmpty();
             if (!need2sleep) {
-              spinMillis = 0;
+              waitStrategy.reset();
               break;
             }
           }
@@ -685,8 +710,7 @@ public class GenericNode extends Node<Operator>
             if (handleIdleTime && insideWindow) {
               ((IdleTimeHandler)operator).handleIdleTime();
             } else {
-              Thread.sleep(spinMillis);
-              spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+              waitStrategy.idle(activeReservoirs);
             }
           }
         }
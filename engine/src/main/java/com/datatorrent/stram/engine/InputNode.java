@@ -19,6 +19,8 @@
 package com.datatorrent.stram.engine;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +34,8 @@ import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.tuple.LatencyMarkerTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
 /**
@@ -67,13 +71,16 @@ public class InputNode extends Node<InputOperator>
   @SuppressWarnings(value = {"SleepWhileInLoop", "BroadCatchBlock", "TooBroadCatch"})
   public final void run()
   {
-    long maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    long spinMillis = 0;
+    final NodeWaitStrategy waitStrategy = newWaitStrategy();
+    List<SweepableReservoir> reservoirs = Collections.singletonList(controlTuples);
+    signalOnArrival(waitStrategy, controlTuples);
     final boolean handleIdleTime = operator instanceof IdleTimeHandler;
 
     boolean insideApplicationWindow = applicationWindowCount != 0;
     boolean doCheckpoint = false;
     boolean insideStreamingWindow = false;
+    final int latencyTracingIntervalMillis = context.getValue(LogicalPlan.LATENCY_TRACING_INTERVAL_MILLIS);
+    long nextLatencyMarkerMillis = 0;
 
     calculateNextCheckpointWindow();
 
@@ -94,16 +101,25 @@ public class InputNode extends Node<InputOperator>
               generatedTuples += cs.getCount(false);
             }
 
+            if (latencyTracingIntervalMillis > 0) {
+              long now = System.currentTimeMillis();
+              if (now >= nextLatencyMarkerMillis) {
+                emitLatencyMarker(new LatencyMarkerTuple(id, now, now));
+                nextLatencyMarkerMillis = now + latencyTracingIntervalMillis;
+              }
+            }
+
             if (generatedTuples == 0) {
               if (handleIdleTime) {
                 ((IdleTimeHandler)operator).handleIdleTime();
               } else {
-                Thread.sleep(spinMillis);
-                spinMillis = Math.min(spinMillis + 1, maxSpinMillis);
+                waitStrategy.idle(reservoirs);
               }
             } else {
-              spinMillis = 0;
+              waitStrategy.reset();
             }
+          } else if (waitStrategy.isSignalled()) {
+            waitStrategy.idle(reservoirs);
           } else {
             Thread.sleep(0);
           }
@@ -188,6 +204,8 @@ public class InputNode extends Node<InputOperator>
                 alive = false;
               } else {
                 controlTuples = deferredInputConnections.remove(0);
+                reservoirs = Collections.singletonList(controlTuples);
+                signalOnArrival(waitStrategy, controlTuples);
               }
               break;
 
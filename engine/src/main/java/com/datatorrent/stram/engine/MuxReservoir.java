@@ -77,10 +77,22 @@ public abstract class MuxReservoir
 
   protected abstract Queue getQueue();
 
-  class SubReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  /**
+   * Wakes up the nodes waiting on the reservoirs, called after adding tuples to the queue.
+   */
+  protected void signal()
+  {
+    final SubReservoir[] reservoirs = this.reservoirs;
+    for (int i = reservoirs.length; i-- > 0;) {
+      reservoirs[i].signal();
+    }
+  }
+
+  class SubReservoir extends CircularBuffer<Object> implements SignallingReservoir
   {
     int count;
     private Sink<Object> sink;
+    private volatile NodeWaitStrategy waitStrategy;
 
     SubReservoir(int capacity)
     {
@@ -112,6 +124,20 @@ public abstract class MuxReservoir
       }
     }
 
+    @Override
+    public void setWaitStrategy(NodeWaitStrategy waitStrategy)
+    {
+      this.waitStrategy = waitStrategy;
+    }
+
+    void signal()
+    {
+      final NodeWaitStrategy waitStrategy = this.waitStrategy;
+      if (waitStrategy != null) {
+        waitStrategy.signal();
+      }
+    }
+
     @Override
     public Tuple sweep()
     {
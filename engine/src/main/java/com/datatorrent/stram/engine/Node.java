@@ -22,6 +22,7 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
@@ -75,12 +76,14 @@ import com.datatorrent.common.util.Pair;
 import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.LatencySample;
 import com.datatorrent.stram.debug.MuxSink;
 import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.plan.logical.Operators.PortContextPair;
 import com.datatorrent.stram.plan.logical.Operators.PortMappingDescriptor;
 import com.datatorrent.stram.tuple.EndStreamTuple;
 import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.LatencyMarkerTuple;
 
 /**
  * <p>
@@ -99,6 +102,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
    * if the Component is capable of providing only 1 output, call it OUTPUT.
    */
   public static final String OUTPUT = "output";
+  private static final int MAX_LATENCY_SAMPLES = 1024;
   protected int APPLICATION_WINDOW_COUNT; /* this is write once variable */
 
   protected int DAG_CHECKPOINT_WINDOW_COUNT; /* this is write once variable */
@@ -117,7 +121,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   public long currentWindowId;
   protected long endWindowEmitTime;
   protected long lastSampleCpuTime;
+  protected long lastSampleAllocatedBytes;
+  protected long lastSampleGcCollectionCount;
+  protected long lastSampleGcCollectionTime;
   protected ThreadMXBean tmb;
+  private final List<GarbageCollectorMXBean> garbageCollectorMXBeans;
   protected HashMap<SweepableReservoir, Long> endWindowDequeueTimes; // end window dequeue time for input ports
   protected Checkpoint checkpoint;
   public int applicationWindowCount;
@@ -134,6 +142,16 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   protected Stats.CheckpointStats checkpointStats;
   public long firstWindowMillis;
   public long windowWidthMillis;
+  /**
+   * time spent retrieving the checkpoint of the operator and restoring the operator from it when it was deployed
+   */
+  public long restoreTimeMillis;
+  /**
+   * latency of the markers received since the last heartbeat, the samples are dropped when the heartbeats do not keep
+   * up with them
+   */
+  public final BlockingQueue<LatencySample> latencySamples;
+  private final HashMap<Integer, Long> forwardedLatencyMarkers;
 
   public Node(OPERATOR operator, OperatorContext context)
   {
@@ -149,7 +167,10 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
 
     endWindowDequeueTimes = new HashMap<>();
     tmb = ManagementFactory.getThreadMXBean();
+    garbageCollectorMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
     commandResponse = new LinkedBlockingQueue<>();
+    latencySamples = new LinkedBlockingQueue<>(MAX_LATENCY_SAMPLES);
+    forwardedLatencyMarkers = new HashMap<>();
 
     metricFields = Lists.newArrayList();
     for (Field field : ReflectionUtils.getDeclaredFieldsIncludingInherited(operator.getClass())) {
@@ -180,6 +201,30 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     return operator;
   }
 
+  /**
+   * Creates the wait strategy the run loop uses when there is no work, as configured on the operator.
+   *
+   * @return the wait strategy
+   */
+  protected NodeWaitStrategy newWaitStrategy()
+  {
+    return NodeWaitStrategy.newInstance(context.getValue(OperatorContext.WAIT_STRATEGY),
+        context.getValue(OperatorContext.SPIN_MILLIS));
+  }
+
+  /**
+   * Registers the wait strategy with the reservoir if the strategy needs to be signalled when tuples arrive.
+   *
+   * @param waitStrategy the wait strategy of the node
+   * @param reservoir the reservoir the node consumes from
+   */
+  protected static void signalOnArrival(NodeWaitStrategy waitStrategy, SweepableReservoir reservoir)
+  {
+    if (waitStrategy.isSignalled() && reservoir instanceof SignallingReservoir) {
+      ((SignallingReservoir)reservoir).setWaitStrategy(waitStrategy);
+    }
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
@@ -389,6 +434,48 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     controlTupleCount++;
   }
 
+  protected void emitLatencyMarker(LatencyMarkerTuple marker)
+  {
+    for (int s = sinks.length; s-- > 0; ) {
+      sinks[s].put(marker);
+    }
+    controlTupleCount++;
+  }
+
+  /**
+   * Records the latency of a marker received on an input port and sends the marker downstream unless it already went
+   * through the operator on another port.
+   *
+   * @param portName input port which received the marker
+   * @param marker the marker
+   * @param forward whether the operator forwards the markers
+   */
+  protected void processLatencyMarker(String portName, LatencyMarkerTuple marker, boolean forward)
+  {
+    long now = System.currentTimeMillis();
+    LatencySample sample = new LatencySample();
+    sample.portName = portName;
+    sample.sourceOperatorId = marker.getSourceOperatorId();
+    sample.endToEndMillis = Math.max(0, now - marker.getCreatedMillis());
+    if (marker.getBufferServerMillis() == 0) {
+      sample.publisherMillis = Math.max(0, marker.getReceivedMillis() - marker.getEmittedMillis());
+    } else {
+      sample.publisherMillis = Math.max(0, marker.getBufferServerMillis() - marker.getEmittedMillis());
+      sample.bufferServerMillis = Math.max(0, marker.getReceivedMillis() - marker.getBufferServerMillis());
+    }
+    sample.queueMillis = Math.max(0, now - marker.getReceivedMillis());
+    latencySamples.offer(sample);
+
+    if (forward) {
+      /* the markers of a source are created one after the other, the older ones came through another port */
+      Long createdMillis = forwardedLatencyMarkers.get(marker.getSourceOperatorId());
+      if (createdMillis == null || createdMillis < marker.getCreatedMillis()) {
+        forwardedLatencyMarkers.put(marker.getSourceOperatorId(), marker.getCreatedMillis());
+        emitLatencyMarker(new LatencyMarkerTuple(marker.getSourceOperatorId(), marker.getCreatedMillis(), now));
+      }
+    }
+  }
+
   protected void handleRequests(long windowId)
   {
     /*
@@ -459,6 +546,22 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     stats.cpuTimeUsed = currentCpuTime - lastSampleCpuTime;
     lastSampleCpuTime = currentCpuTime;
 
+    long currentAllocatedBytes = getCurrentThreadAllocatedBytes();
+    stats.allocatedBytes = Math.max(0, currentAllocatedBytes - lastSampleAllocatedBytes);
+    lastSampleAllocatedBytes = currentAllocatedBytes;
+
+    long gcCollectionCount = 0;
+    long gcCollectionTime = 0;
+    for (GarbageCollectorMXBean bean : garbageCollectorMXBeans) {
+      /* the collectors report -1 for the values they do not track */
+      gcCollectionCount += Math.max(0, bean.getCollectionCount());
+      gcCollectionTime += Math.max(0, bean.getCollectionTime());
+    }
+    stats.gcCollectionCount = gcCollectionCount - lastSampleGcCollectionCount;
+    stats.gcCollectionTime = gcCollectionTime - lastSampleGcCollectionTime;
+    lastSampleGcCollectionCount = gcCollectionCount;
+    lastSampleGcCollectionTime = gcCollectionTime;
+
     if (checkpoint != null) {
       stats.checkpoint = checkpoint;
       stats.checkpointStats = checkpointStats;
@@ -485,6 +588,22 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     context.report(stats, windowId);
   }
 
+  /**
+   * Returns the bytes allocated so far by the current thread.
+   *
+   * @return the allocated bytes, 0 when the JVM does not measure the allocations per thread
+   */
+  private long getCurrentThreadAllocatedBytes()
+  {
+    if (tmb instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean)tmb;
+      if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return 0;
+  }
+
   protected void activateSinks()
   {
     int size = outputs.size();
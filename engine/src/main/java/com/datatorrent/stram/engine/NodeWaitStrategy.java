@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.datatorrent.api.Context.WaitStrategy;
+
+/**
+ * <p>Strategy used by the run loop of a node to wait for the work.</p>
+ * <br>
+ * The node calls {@link #idle} every time it finds no tuples on any of its reservoirs and {@link #reset} every time it
+ * finds some. The strategies that block the node are woken up by the {@link SignallingReservoir}s the node consumes
+ * from through {@link #signal}.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public abstract class NodeWaitStrategy
+{
+  protected final long maxSpinMillis;
+
+  protected NodeWaitStrategy(long maxSpinMillis)
+  {
+    this.maxSpinMillis = maxSpinMillis;
+  }
+
+  /**
+   * Creates the wait strategy for a node.
+   *
+   * @param strategy the configured {@link WaitStrategy}
+   * @param maxSpinMillis maximum time in milliseconds the node may wait before polling its reservoirs again
+   * @return the wait strategy
+   */
+  public static NodeWaitStrategy newInstance(WaitStrategy strategy, long maxSpinMillis)
+  {
+    switch (strategy) {
+      case SLEEP:
+        return new Sleep(maxSpinMillis);
+      case SPIN:
+        return new Spin(maxSpinMillis);
+      case YIELD:
+        return new Yield(maxSpinMillis);
+      case PARK:
+        return new Park(maxSpinMillis);
+      case BLOCK:
+        return new Block(maxSpinMillis);
+      default:
+        throw new IllegalArgumentException("Unsupported wait strategy " + strategy);
+    }
+  }
+
+  /**
+   * Waits as there was no work found.
+   *
+   * @param reservoirs the reservoirs the node is waiting on, a blocking strategy checks them once more before blocking
+   * @throws InterruptedException if the node is interrupted while waiting
+   */
+  public abstract void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException;
+
+  /**
+   * Resets the backoff, called when the node found some work.
+   */
+  public void reset()
+  {
+  }
+
+  /**
+   * Tells if the strategy needs to be {@link #signal signalled} when tuples are added to the reservoirs.
+   *
+   * @return true if the node waiting may be blocked until signalled
+   */
+  public boolean isSignalled()
+  {
+    return false;
+  }
+
+  /**
+   * Wakes up the node waiting in {@link #idle}. Called by the producers after they add tuples to the reservoirs.
+   */
+  public void signal()
+  {
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{maxSpinMillis=" + maxSpinMillis + '}';
+  }
+
+  /**
+   * Sleeps for a period increasing by a millisecond every time no work is found, up to the max spin millis.
+   */
+  static class Sleep extends NodeWaitStrategy
+  {
+    private long spinMillis;
+
+    Sleep(long maxSpinMillis)
+    {
+      super(maxSpinMillis);
+    }
+
+    @Override
+    public void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException
+    {
+      Thread.sleep(spinMillis);
+      spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+    }
+
+    @Override
+    public void reset()
+    {
+      spinMillis = 0;
+    }
+  }
+
+  /**
+   * Returns immediately, so the node polls the reservoirs in a busy loop.
+   */
+  static class Spin extends NodeWaitStrategy
+  {
+    Spin(long maxSpinMillis)
+    {
+      super(maxSpinMillis);
+    }
+
+    @Override
+    public void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException
+    {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /**
+   * Yields the processor to the other threads.
+   */
+  static class Yield extends NodeWaitStrategy
+  {
+    Yield(long maxSpinMillis)
+    {
+      super(maxSpinMillis);
+    }
+
+    @Override
+    public void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException
+    {
+      Thread.yield();
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /**
+   * Parks the thread for a period starting at a microsecond and doubling every time no work is found, up to the max
+   * spin millis.
+   */
+  static class Park extends NodeWaitStrategy
+  {
+    static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private final long maxParkNanos;
+    private long parkNanos = MIN_PARK_NANOS;
+
+    Park(long maxSpinMillis)
+    {
+      super(maxSpinMillis);
+      maxParkNanos = Math.max(MIN_PARK_NANOS, TimeUnit.MILLISECONDS.toNanos(maxSpinMillis));
+    }
+
+    @Override
+    public void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException
+    {
+      LockSupport.parkNanos(this, parkNanos);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      parkNanos = Math.min(maxParkNanos, parkNanos << 1);
+    }
+
+    @Override
+    public void reset()
+    {
+      parkNanos = MIN_PARK_NANOS;
+    }
+  }
+
+  /**
+   * Blocks until a producer signals that it added tuples, waiting at most the max spin millis so the reservoirs that
+   * do not signal are still polled.
+   */
+  static class Block extends NodeWaitStrategy
+  {
+    private final long timeoutMillis;
+    private volatile boolean waiting;
+    private volatile boolean signalled;
+
+    Block(long maxSpinMillis)
+    {
+      super(maxSpinMillis);
+      timeoutMillis = Math.max(1, maxSpinMillis);
+    }
+
+    @Override
+    public void idle(Iterable<? extends Reservoir<?>> reservoirs) throws InterruptedException
+    {
+      waiting = true;
+      try {
+        /*
+         * the producers add the tuples before they check if the node is waiting, so looking at the reservoirs after
+         * announcing the wait does not miss the tuples added in the meantime. The reservoirs fed from a shared queue
+         * may look empty, those are covered by the signal which is cleared only after the wait.
+         */
+        for (Reservoir<?> reservoir : reservoirs) {
+          if (!reservoir.isEmpty()) {
+            return;
+          }
+        }
+        synchronized (this) {
+          if (!signalled) {
+            wait(timeoutMillis);
+          }
+        }
+      } finally {
+        waiting = false;
+        signalled = false;
+      }
+    }
+
+    @Override
+    public boolean isSignalled()
+    {
+      return true;
+    }
+
+    @Override
+    public void signal()
+    {
+      signalled = true;
+      if (waiting) {
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    }
+  }
+}
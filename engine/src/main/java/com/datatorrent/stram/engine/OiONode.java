@@ -37,6 +37,7 @@ import com.datatorrent.api.Sink;
 import com.datatorrent.stram.plan.logical.Operators.PortContextPair;
 import com.datatorrent.stram.stream.OiOStream;
 import com.datatorrent.stram.tuple.CustomControlTuple;
+import com.datatorrent.stram.tuple.LatencyMarkerTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
 /**
@@ -139,6 +140,10 @@ public class OiONode extends GenericNode
           }
           break;
 
+        case LATENCY_MARKER:
+          processLatencyMarker(getPortName(reservoir), (LatencyMarkerTuple)t, true);
+          break;
+
         case CHECKPOINT:
           dagCheckpointOffsetCount = 0;
           if (lastCheckpointWindowId < t.getWindowId() && !doCheckpoint) {
@@ -216,6 +221,16 @@ public class OiONode extends GenericNode
     return new ControlSink(reservoir);
   }
 
+  private String getPortName(SweepableReservoir reservoir)
+  {
+    for (Entry<String, SweepableReservoir> e : inputs.entrySet()) {
+      if (e.getValue() == reservoir) {
+        return e.getKey();
+      }
+    }
+    return null;
+  }
+
   @SuppressWarnings("unused")
   private static final Logger logger = LoggerFactory.getLogger(OiONode.class);
 }
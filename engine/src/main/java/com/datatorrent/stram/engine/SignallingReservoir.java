@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+/**
+ * <p>Reservoir that wakes up the node consuming from it when tuples are added.</p>
+ *
+ * @since 3.7.0
+ */
+public interface SignallingReservoir extends SweepableReservoir
+{
+  /**
+   * Set the wait strategy of the node consuming from this reservoir. The reservoir signals the strategy every time
+   * tuples are added to it.
+   *
+   * @param waitStrategy the wait strategy to signal or null to stop signalling
+   */
+  void setWaitStrategy(NodeWaitStrategy waitStrategy);
+
+}
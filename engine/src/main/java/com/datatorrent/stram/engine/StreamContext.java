@@ -18,6 +18,7 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.Collections;
@@ -50,6 +51,11 @@ public class StreamContext extends DefaultAttributeMap implements Context
   public static final Attribute<byte[]> BUFFER_SERVER_TOKEN = new Attribute<>(null, null);
   public static final Attribute<EventLoop> EVENT_LOOP = new Attribute<>(null, null);
   public static final Attribute<StreamCodec<?>> CODEC = new Attribute<StreamCodec<?>>(new DefaultStatefulStreamCodec<>(), null);
+  /**
+   * file of the shared memory ring the publisher also writes the messages to, or the subscriber reads them from.
+   */
+  public static final Attribute<File> SHARED_MEMORY_RING = new Attribute<>(null, null);
+  public static final Attribute<Integer> SHARED_MEMORY_RING_SIZE = new Attribute<>(32 * 1024 * 1024, null);
 
   @Override
   public AttributeMap getAttributes()
@@ -18,7 +18,9 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.Thread.State;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
@@ -37,7 +39,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +61,8 @@ import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.log4j.LogManager;
 
+import com.google.common.base.Throwables;
+
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Component;
 import com.datatorrent.api.Context;
@@ -71,7 +80,9 @@ import com.datatorrent.api.StringCodec;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.MappedStorage;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.netlet.util.Slice;
@@ -91,6 +102,7 @@ import com.datatorrent.stram.api.ContainerEvent.StreamDeactivationEvent;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OperatorType;
 import com.datatorrent.stram.api.OperatorDeployInfo.UnifierDeployInfo;
+import com.datatorrent.stram.api.OperatorStatsDelta;
 import com.datatorrent.stram.api.RequestFactory;
 import com.datatorrent.stram.api.StramToNodeChangeLoggersRequest;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol;
@@ -116,6 +128,8 @@ import com.datatorrent.stram.stream.MuxStream;
 import com.datatorrent.stram.stream.OiOStream;
 import com.datatorrent.stram.stream.PartitionAwareSink;
 import com.datatorrent.stram.stream.PartitionAwareSinkForPersistence;
+import com.datatorrent.stram.stream.SharedMemoryRing;
+import com.datatorrent.stram.stream.SharedMemorySubscriber;
 import com.datatorrent.stram.util.LoggerUtil;
 
 import net.engio.mbassy.bus.MBassador;
@@ -146,6 +160,7 @@ public class StreamingContainer extends YarnContainerMain
   private final Map<Stream, StreamContext> activeStreams = new ConcurrentHashMap<>();
   private final Map<WindowGenerator, Object> activeGenerators = new ConcurrentHashMap<>();
   private int heartbeatIntervalMillis = 1000;
+  private OperatorStatsDelta.Encoder statsEncoder;
   private volatile boolean exitHeartbeatLoop = false;
   private final Object heartbeatTrigger = new Object();
   public static DefaultEventLoop eventloop;
@@ -159,6 +174,11 @@ public class StreamingContainer extends YarnContainerMain
   private int checkpointWindowCount;
   private boolean fastPublisherSubscriber;
   private StreamingContainerContext containerContext;
+  /**
+   * directory of the shared memory rings of the node local streams, null if the rings are not used.
+   */
+  private File sharedMemoryDirectory;
+  private static final String SHARED_MEMORY_RING_PREFIX = "apex-";
   private List<StramToNodeRequest> nodeRequests;
   private final HashMap<String, Object> singletons;
   private final MBassador<ContainerEvent> eventBus; // event bus for publishing container events
@@ -201,6 +221,20 @@ public class StreamingContainer extends YarnContainerMain
     checkpointWindowCount = ctx.getValue(Context.DAGContext.CHECKPOINT_WINDOW_COUNT);
 
     fastPublisherSubscriber = ctx.getValue(LogicalPlan.FAST_PUBLISHER_SUBSCRIBER);
+    if (ctx.getValue(LogicalPlan.HEARTBEAT_STATS_DELTA)) {
+      statsEncoder = new OperatorStatsDelta.Encoder();
+    }
+
+    if (ctx.getValue(LogicalPlan.SHARED_MEMORY_STREAMS)) {
+      File directory = new File(ctx.getValue(LogicalPlan.SHARED_MEMORY_DIRECTORY));
+      if (directory.isDirectory() && directory.canWrite()) {
+        sharedMemoryDirectory = directory;
+        /* the rings of the containers killed on this host, of this or any other application */
+        SharedMemoryRing.deleteStale(directory, SHARED_MEMORY_RING_PREFIX);
+      } else {
+        logger.info("Node local streams are carried by the buffer server, {} is not a writable directory", directory);
+      }
+    }
 
     Map<Class<?>, Class<? extends StringCodec<?>>> codecs = ctx.getValue(Context.DAGContext.STRING_CODECS);
     StringCodecs.loadConverters(codecs);
@@ -224,10 +258,12 @@ public class StreamingContainer extends YarnContainerMain
           blockCount = bufferServerRAM / blocksize;
         }
         // start buffer server, if it was not set externally
-        bufferServer = new Server(eventloop, 0, blocksize * 1024 * 1024, blockCount);
+        bufferServer = new Server(eventloop, 0, blocksize * 1024 * 1024, blockCount,
+            ctx.getValue(LogicalPlan.BUFFER_SERVER_SPOOL_THREADS));
         bufferServer.setAuthToken(ctx.getValue(StreamingContainerContext.BUFFER_SERVER_TOKEN));
         if (ctx.getValue(Context.DAGContext.BUFFER_SPOOLING)) {
-          bufferServer.setSpoolStorage(new DiskStorage());
+          bufferServer.setSpoolStorage(ctx.getValue(LogicalPlan.MAPPED_SPOOL_STORAGE) ? new MappedStorage() :
+              new DiskStorage());
         }
         bufferServerAddress = NetUtils.getConnectAddress(bufferServer.run());
         logger.debug("Buffer server started: {}", bufferServerAddress);
@@ -592,6 +628,10 @@ public class StreamingContainer extends YarnContainerMain
       eventloop.stop();
     }
 
+    if (sharedMemoryDirectory != null) {
+      SharedMemoryRing.deleteStale(sharedMemoryDirectory, getSharedMemoryRingName(""));
+    }
+
     gens.clear();
   }
 
@@ -660,6 +700,11 @@ public class StreamingContainer extends YarnContainerMain
           hb.setNodeId(e.getKey());
           hb.setGeneratedTms(currentTime);
           hb.setIntervalMs(heartbeatIntervalMillis);
+          hb.restoreTimeMillis = e.getValue().restoreTimeMillis;
+          if (!e.getValue().latencySamples.isEmpty()) {
+            hb.latencySamples = new ArrayList<>(e.getValue().latencySamples.size());
+            e.getValue().latencySamples.drainTo(hb.latencySamples);
+          }
           if (e.getValue().commandResponse.size() > 0) {
             BlockingQueue<StatsListener.OperatorResponse> commandResponse = e.getValue().commandResponse;
             ArrayList<StatsListener.OperatorResponse> response = new ArrayList<>();
@@ -689,6 +734,10 @@ public class StreamingContainer extends YarnContainerMain
          */
         eventBus.publish(new ContainerStatsEvent(stats));
 
+        if (statsEncoder != null) {
+          statsEncoder.encode(stats);
+        }
+
         msg.setContainerStats(stats);
 
         // heartbeat call and follow-up processing
@@ -699,6 +748,15 @@ public class StreamingContainer extends YarnContainerMain
 
         rsp = umbilical.processHeartbeat(msg);
 
+        if (statsEncoder != null) {
+          if (rsp.resyncStats) {
+            logger.debug("Sending the full operator stats as requested");
+            statsEncoder.resync();
+          } else {
+            statsEncoder.acknowledge();
+          }
+        }
+
         if (rsp.stackTraceRequired) {
           stackTrace = StramUtils.getStackTrace().toString();
         } else {
@@ -915,6 +973,7 @@ public class StreamingContainer extends YarnContainerMain
 
   private void deployNodes(List<OperatorDeployInfo> nodeList) throws IOException
   {
+    ArrayList<NodeRestore> restores = new ArrayList<>(nodeList.size());
     for (OperatorDeployInfo ndi : nodeList) {
       StorageAgent backupAgent = getValue(OperatorContext.STORAGE_AGENT, ndi);
       assert (backupAgent != null);
@@ -931,8 +990,13 @@ public class StreamingContainer extends YarnContainerMain
 
       OperatorContext ctx = new OperatorContext(ndi.id, ndi.name, ndi.contextAttributes, parentContext);
       ctx.attributes.put(OperatorContext.ACTIVATION_WINDOW_ID, ndi.checkpoint.windowId);
-      logger.debug("Restoring operator {} to checkpoint {} stateless={}.", ndi.id, Codec.getStringWindowId(ndi.checkpoint.windowId), ctx.stateless);
-      Node<?> node = Node.retrieveNode(backupAgent.load(ndi.id, ctx.stateless ? Stateless.WINDOW_ID : ndi.checkpoint.windowId), ctx, ndi.type);
+      restores.add(new NodeRestore(ndi, ctx, backupAgent));
+    }
+
+    List<Node<?>> restoredNodes = restoreNodes(restores);
+    for (int i = 0; i < restoredNodes.size(); i++) {
+      OperatorDeployInfo ndi = nodeList.get(i);
+      Node<?> node = restoredNodes.get(i);
       node.currentWindowId = ndi.checkpoint.windowId;
       node.applicationWindowCount = ndi.checkpoint.applicationWindowCount;
       node.firstWindowMillis = firstWindowMillis;
@@ -944,9 +1008,74 @@ public class StreamingContainer extends YarnContainerMain
     }
   }
 
+  /**
+   * Restores the operators from their checkpoints on up to {@link LogicalPlan#CHECKPOINT_RESTORE_THREADS} threads, so
+   * a container deploying several stateful operators waits for the largest of the checkpoints rather than for all of
+   * them in turn.
+   *
+   * @param restores the restores of the operators
+   * @return the nodes of the restored operators, in the order of the restores
+   * @throws IOException if a checkpoint cannot be retrieved
+   */
+  private List<Node<?>> restoreNodes(List<NodeRestore> restores) throws IOException
+  {
+    ArrayList<Node<?>> restoredNodes = new ArrayList<>(restores.size());
+    int threads = Math.min(restores.size(), containerContext.getValue(LogicalPlan.CHECKPOINT_RESTORE_THREADS));
+    if (threads <= 1) {
+      for (NodeRestore restore : restores) {
+        restoredNodes.add(restore.call());
+      }
+      return restoredNodes;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new NameableThreadFactory("CheckpointRestore"));
+    try {
+      for (Future<Node<?>> future : executor.invokeAll(restores)) {
+        restoredNodes.add(future.get());
+      }
+      return restoredNodes;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while restoring the operators");
+    } catch (ExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause(), IOException.class);
+      throw new RuntimeException(ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Retrieves the checkpoint of an operator and restores the operator from it.
+   */
+  private static class NodeRestore implements Callable<Node<?>>
+  {
+    private final OperatorDeployInfo ndi;
+    private final OperatorContext ctx;
+    private final StorageAgent backupAgent;
+
+    NodeRestore(OperatorDeployInfo ndi, OperatorContext ctx, StorageAgent backupAgent)
+    {
+      this.ndi = ndi;
+      this.ctx = ctx;
+      this.backupAgent = backupAgent;
+    }
+
+    @Override
+    public Node<?> call() throws IOException
+    {
+      logger.debug("Restoring operator {} to checkpoint {} stateless={}.", ndi.id, Codec.getStringWindowId(ndi.checkpoint.windowId), ctx.stateless);
+      long start = System.currentTimeMillis();
+      Node<?> node = Node.retrieveNode(backupAgent.load(ndi.id, ctx.stateless ? Stateless.WINDOW_ID : ndi.checkpoint.windowId), ctx, ndi.type);
+      node.restoreTimeMillis = System.currentTimeMillis() - start;
+      logger.debug("Restored operator {} in {} ms.", ndi.id, node.restoreTimeMillis);
+      return node;
+    }
+  }
+
   private HashMap.SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher(
       String connIdentifier, StreamCodec<?> streamCodec, long finishedWindowId, int queueCapacity,
-      OperatorDeployInfo.OutputDeployInfo nodi)
+      OperatorDeployInfo.OutputDeployInfo nodi, OperatorDeployInfo ndi)
       throws UnknownHostException
   {
     String sinkIdentifier = "tcp://".concat(nodi.bufferServerHost).concat(":").concat(String.valueOf(nodi.bufferServerPort)).concat("/").concat(connIdentifier);
@@ -957,6 +1086,12 @@ public class StreamingContainer extends YarnContainerMain
     bssc.setSinkId(sinkIdentifier);
     bssc.setFinishedWindowId(finishedWindowId);
     bssc.put(StreamContext.CODEC, streamCodec);
+    bssc.put(PortContext.BUFFER_SERVER_COMPRESSION, getValue(PortContext.BUFFER_SERVER_COMPRESSION, nodi, ndi));
+    bssc.put(PortContext.PAYLOAD_FRAME_SIZE, getValue(PortContext.PAYLOAD_FRAME_SIZE, nodi, ndi));
+    if (nodi.locality == Locality.NODE_LOCAL && sharedMemoryDirectory != null && !fastPublisherSubscriber) {
+      bssc.put(StreamContext.SHARED_MEMORY_RING, getSharedMemoryRing(nodi.bufferServerPort, connIdentifier));
+      bssc.put(StreamContext.SHARED_MEMORY_RING_SIZE, containerContext.getValue(LogicalPlan.SHARED_MEMORY_RING_SIZE));
+    }
     bssc.put(StreamContext.EVENT_LOOP, eventloop);
     bssc.setBufferServerAddress(InetSocketAddress.createUnresolved(nodi.bufferServerHost, nodi.bufferServerPort));
     bssc.put(StreamContext.BUFFER_SERVER_TOKEN, nodi.bufferServerToken);
@@ -969,6 +1104,21 @@ public class StreamingContainer extends YarnContainerMain
     return new HashMap.SimpleEntry<>(sinkIdentifier, new ComponentContextPair<>(publisher, bssc));
   }
 
+  /**
+   * Returns the file of the shared memory ring of a publisher, named after the application, the buffer server and the
+   * publisher so the subscribers on the same host find it.
+   */
+  private File getSharedMemoryRing(int bufferServerPort, String connIdentifier)
+  {
+    return new File(sharedMemoryDirectory, getSharedMemoryRingName(bufferServerPort + "-" + connIdentifier));
+  }
+
+  private String getSharedMemoryRingName(String suffix)
+  {
+    String name = SHARED_MEMORY_RING_PREFIX + containerContext.getValue(LogicalPlan.APPLICATION_ID) + '-' + suffix;
+    return name.replaceAll("[^\\w.-]", "_");
+  }
+
   private HashMap<String, ComponentContextPair<Stream, StreamContext>> deployOutputStreams(
       List<OperatorDeployInfo> nodeList, HashMap<String, ArrayList<String>> groupedInputStreams)
       throws Exception
@@ -1005,7 +1155,8 @@ public class StreamingContainer extends YarnContainerMain
           String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
 
           SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher =
-              deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
+              deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi,
+              ndi);
           newStreams.put(sourceIdentifier, deployBufferServerPublisher.getValue());
           node.connectOutputPort(nodi.portName, deployBufferServerPublisher.getValue().component);
         } else {
@@ -1044,7 +1195,8 @@ public class StreamingContainer extends YarnContainerMain
               String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
 
               SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher =
-                  deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
+                  deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi,
+                  ndi);
               newStreams.put(deployBufferServerPublisher.getKey(), deployBufferServerPublisher.getValue());
 
               String sinkIdentifier = pair.context.getSinkId();
@@ -1158,15 +1310,28 @@ public class StreamingContainer extends YarnContainerMain
             context.setPortId(nidi.portName);
             context.put(StreamContext.CODEC, streamCodec);
             context.put(StreamContext.EVENT_LOOP, eventloop);
+            /* the unifiers merge the tuples of the upstream partitions, those are always deserialized */
+            if (ndi.type != OperatorDeployInfo.OperatorType.UNIFIER) {
+              context.put(PortContext.RAW_TUPLES, getValue(PortContext.RAW_TUPLES, nidi, ndi));
+            }
             context.setPartitions(nidi.partitionMask, nidi.partitionKeys);
             //context.setSourceId(sourceIdentifier);
             context.setSourceId(connIdentifier);
             context.setSinkId(sinkIdentifier);
             context.setFinishedWindowId(checkpoint.windowId);
 
-            BufferServerSubscriber subscriber = fastPublisherSubscriber
-                ? new FastSubscriber("tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier), queueCapacity)
-                : new BufferServerSubscriber("tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier), queueCapacity);
+            String subscriberId = "tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier);
+            BufferServerSubscriber subscriber;
+            if (fastPublisherSubscriber) {
+              subscriber = new FastSubscriber(subscriberId, queueCapacity);
+            } else if (nidi.locality == Locality.NODE_LOCAL && sharedMemoryDirectory != null
+                && NetUtils.isLocalAddress(InetAddress.getByName(nidi.bufferServerHost))) {
+              /* the publisher runs on this host, the messages are read from its ring while it keeps up */
+              context.put(StreamContext.SHARED_MEMORY_RING, getSharedMemoryRing(nidi.bufferServerPort, connIdentifier));
+              subscriber = new SharedMemorySubscriber(subscriberId, queueCapacity);
+            } else {
+              subscriber = new BufferServerSubscriber(subscriberId, queueCapacity);
+            }
             if (streamCodec instanceof StreamCodecWrapperForPersistance) {
               subscriber.acquireReservoirForPersistStream(sinkIdentifier, queueCapacity, streamCodec);
             }
@@ -92,6 +92,7 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
 
     queue.put(new ResetWindowTuple(baseSeconds | windowWidthMillis));
     queue.put(new Tuple(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
+    signal();
   }
 
   /**
@@ -112,6 +113,7 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
     } else {
       advanceWindow();
       queue.put(new Tuple(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
+      signal();
     }
   }
 
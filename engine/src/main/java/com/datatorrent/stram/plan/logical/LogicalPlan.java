@@ -94,6 +94,7 @@ import com.datatorrent.api.StringCodec;
 import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.common.experimental.AppData;
 import com.datatorrent.common.metric.MetricsAggregator;
 import com.datatorrent.common.metric.SingleMetricAggregator;
@@ -101,6 +102,8 @@ import com.datatorrent.common.metric.sum.DoubleSumAggregator;
 import com.datatorrent.common.metric.sum.LongSumAggregator;
 import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.common.util.Pair;
+import com.datatorrent.stram.codec.PojoStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.engine.DefaultUnifier;
 import com.datatorrent.stram.engine.Slider;
 
@@ -161,6 +164,57 @@ public class LogicalPlan implements Serializable, DAG
    * Then it can be moved back to DAGContext.
    */
   public static Attribute<Boolean> FAST_PUBLISHER_SUBSCRIBER = new Attribute<>(false);
+  /**
+   * A flag to specify whether the buffer server spools the blocks to the memory mapped segment files instead of a
+   * file per block. Applicable only when {@link #BUFFER_SPOOLING} is enabled.
+   */
+  public static Attribute<Boolean> MAPPED_SPOOL_STORAGE = new Attribute<>(false);
+  /**
+   * Number of threads of the buffer server spooling the blocks, the blocks of a publisher are spooled in order while
+   * the blocks of different publishers are spooled in parallel. Applicable only when {@link #BUFFER_SPOOLING} is
+   * enabled.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_SPOOL_THREADS =
+      new Attribute<>(Server.DEFAULT_NUMBER_OF_SPOOL_THREADS);
+  /**
+   * A flag to specify whether the containers leave out of the heartbeats the operator metrics and counters which did
+   * not change since the previous window reported to the master.
+   */
+  public static Attribute<Boolean> HEARTBEAT_STATS_DELTA = new Attribute<>(true);
+  /**
+   * Number of threads of the application master aggregating the operator stats reported in the heartbeats, the
+   * operators are spread across the threads by their id. When not set, the stats are aggregated by the thread
+   * processing the heartbeat before it responds to the container.
+   */
+  public static Attribute<Integer> HEARTBEAT_STATS_WORKERS = new Attribute<>(0);
+  /**
+   * A flag to specify whether the publishers of the node local streams also share the messages with the subscribers
+   * through the memory mapped rings in {@link #SHARED_MEMORY_DIRECTORY}. The subscribers read the ring instead of the
+   * buffer server as long as the publisher does not overtake them. Disabled by default, as every publisher maps a ring
+   * of {@link #SHARED_MEMORY_RING_SIZE} bytes, which takes the memory of the host rather than of the container.
+   */
+  public static Attribute<Boolean> SHARED_MEMORY_STREAMS = new Attribute<>(false);
+  /**
+   * Directory of the shared memory rings, shared by all the containers of a host. The node local streams are carried
+   * by the buffer server alone when the directory does not exist.
+   */
+  public static Attribute<String> SHARED_MEMORY_DIRECTORY = new Attribute<>("/dev/shm");
+  /**
+   * Size of the shared memory ring of a publisher in bytes.
+   */
+  public static Attribute<Integer> SHARED_MEMORY_RING_SIZE = new Attribute<>(32 * 1024 * 1024);
+  /**
+   * Number of threads of a container retrieving the checkpoints of the operators it deploys and restoring the operators
+   * from them, by default the checkpoints are retrieved one after the other. Set it higher only when the storage agents
+   * of the operators support loading several checkpoints at the same time, as the file system based agents do.
+   */
+  public static Attribute<Integer> CHECKPOINT_RESTORE_THREADS = new Attribute<>(1);
+  /**
+   * Interval in milliseconds at which the input operators inject a latency marker in their output streams. The
+   * operators record the latency of the markers they receive and the application master aggregates it in histograms
+   * per operator and stream. The tracing is disabled when set to 0.
+   */
+  public static Attribute<Integer> LATENCY_TRACING_INTERVAL_MILLIS = new Attribute<>(0);
   public static Attribute<Long> HDFS_TOKEN_LIFE_TIME = new Attribute<>(604800000L);
   public static Attribute<Long> RM_TOKEN_LIFE_TIME = new Attribute<>(YarnConfiguration.DELEGATION_TOKEN_MAX_LIFETIME_DEFAULT);
   public static Attribute<String> PRINCIPAL = new Attribute<>(null, StringCodec.String2String.getInstance());
@@ -1696,6 +1750,25 @@ public class LogicalPlan implements Serializable, DAG
     }
   }
 
+  /**
+   * Returns a sink of the stream whose operator is partitioned by the keys of the tuples, each partition of such a
+   * sink subscribes to the stream with its own mask.
+   *
+   * @param sm the stream
+   * @return the partitioned sink or null if there is none
+   */
+  private static InputPortMeta getPartitionedSink(StreamMeta sm)
+  {
+    for (InputPortMeta sink : sm.getSinks()) {
+      OperatorMeta om = sink.getOperatorMeta();
+      if (!sink.getValue(PortContext.PARTITION_PARALLEL) && (om.getValue(OperatorContext.PARTITIONER) != null
+          || om.attributes != null && !om.attributes.contains(OperatorContext.PARTITIONER) && Partitioner.class.isAssignableFrom(om.getOperator().getClass()))) {
+        return sink;
+      }
+    }
+    return null;
+  }
+
   /**
    * Validate the plan. Includes checks that required ports are connected,
    * required configuration parameters specified, graph free of cycles etc.
@@ -1792,6 +1865,24 @@ public class LogicalPlan implements Serializable, DAG
               throw new ValidationException("Attribute " + PortContext.TUPLE_CLASS.getName() + " missing on port : " + n.name + "." + pm.getPortName());
             }
           }
+
+          // the POJO codec without a tuple class serializes the class declared on the port or the upstream port
+          StreamCodec<?> streamCodec = pm.getStreamCodec();
+          if (streamCodec instanceof PojoStreamCodec && ((PojoStreamCodec<?>)streamCodec).getTupleClass() == null) {
+            Class<?> tupleClass = pm.attributes.get(PortContext.TUPLE_CLASS);
+            if (tupleClass == null) {
+              tupleClass = sm.getSource().attributes.get(PortContext.TUPLE_CLASS);
+            }
+            if (tupleClass == null) {
+              throw new ValidationException("Attribute " + PortContext.TUPLE_CLASS.getName() + " required by " + streamCodec + " missing on port : " + n.name + "." + pm.getPortName());
+            }
+            pm.attributes.put(STREAM_CODEC, ((PojoStreamCodec<?>)streamCodec).withTupleClass(tupleClass));
+          }
+
+          // the serialized tuples are forwarded without the state of a stateful codec
+          if (pm.getValue(PortContext.RAW_TUPLES) && (streamCodec == null || streamCodec instanceof StatefulStreamCodec)) {
+            throw new ValidationException("Attribute " + PortContext.RAW_TUPLES.getSimpleName() + " requires a " + PortContext.STREAM_CODEC.getSimpleName() + " which is not stateful on port : " + n.name + "." + pm.getPortName());
+          }
         }
       }
 
@@ -1813,6 +1904,22 @@ public class LogicalPlan implements Serializable, DAG
               throw new ValidationException("Attribute " + PortContext.TUPLE_CLASS.getName() + " missing on port : " + n.name + "." + pm.getPortName());
             }
           }
+
+          // the buffer server cannot look inside a compressed batch, every partition would receive all of them
+          if (pm.getValue(PortContext.BUFFER_SERVER_COMPRESSION)) {
+            InputPortMeta sink = getPartitionedSink(n.outputStreams.get(pm));
+            if (sink != null) {
+              throw new ValidationException("Attribute " + PortContext.BUFFER_SERVER_COMPRESSION.getSimpleName() + " cannot be set on port : " + n.name + "." + pm.getPortName() + " connected to the partitioned port : " + sink.getOperatorMeta().getName() + "." + sink.getPortName());
+            }
+          }
+
+          // a frame goes whole to every partition owning one of its tuples, which is nearly every partition
+          if (pm.getValue(PortContext.PAYLOAD_FRAME_SIZE) > 1) {
+            InputPortMeta sink = getPartitionedSink(n.outputStreams.get(pm));
+            if (sink != null) {
+              throw new ValidationException("Attribute " + PortContext.PAYLOAD_FRAME_SIZE.getSimpleName() + " greater than 1 cannot be set on port : " + n.name + "." + pm.getPortName() + " connected to the partitioned port : " + sink.getOperatorMeta().getName() + "." + sink.getPortName());
+            }
+          }
         }
       }
     }
@@ -29,11 +29,14 @@ import com.datatorrent.api.Stats.OperatorStats;
 import com.datatorrent.api.StatsListener;
 import com.datatorrent.api.StatsListener.BatchedOperatorStats;
 
+import com.datatorrent.stram.api.OperatorStatsDelta;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.LatencySample;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat.DeployState;
 import com.datatorrent.stram.engine.OperatorContext;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.physical.StatsRevisions.VersionedLong;
+import com.datatorrent.stram.util.LatencyHistogram;
 import com.datatorrent.stram.util.MovingAverage.MovingAverageLong;
 import com.datatorrent.stram.util.MovingAverage.TimedMovingAverageLong;
 
@@ -54,6 +57,9 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     public final TimedMovingAverageLong tuplesPMSMA;
     public final TimedMovingAverageLong bufferServerBytesPMSMA;
     public final MovingAverageLong queueSizeMA;
+    public long uncompressedBytes;
+    public long compressedBytes;
+    public long compressionNanos;
 
     public PortStatus()
     {
@@ -63,6 +69,33 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     }
   }
 
+  /**
+   * Latencies sampled by the markers arriving on an input port.
+   */
+  public static class PortLatency
+  {
+    public final LatencyHistogram endToEnd = new LatencyHistogram();
+    public final LatencyHistogram publisher = new LatencyHistogram();
+    public final LatencyHistogram bufferServer = new LatencyHistogram();
+    public final LatencyHistogram queue = new LatencyHistogram();
+
+    public void add(LatencySample sample)
+    {
+      endToEnd.add(sample.endToEndMillis);
+      publisher.add(sample.publisherMillis);
+      bufferServer.add(sample.bufferServerMillis);
+      queue.add(sample.queueMillis);
+    }
+
+    public void merge(PortLatency other)
+    {
+      endToEnd.merge(other.endToEnd);
+      publisher.merge(other.publisher);
+      bufferServer.merge(other.bufferServer);
+      queue.merge(other.queue);
+    }
+  }
+
   private final int operatorId;
   public final StatsRevisions statsRevs = new StatsRevisions();
   public OperatorHeartbeat lastHeartbeat;
@@ -71,19 +104,28 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
   public final VersionedLong currentWindowId = statsRevs.newVersionedLong();
   public final VersionedLong tuplesProcessedPSMA = statsRevs.newVersionedLong();
   public final VersionedLong tuplesEmittedPSMA = statsRevs.newVersionedLong();
+  public final VersionedLong totalAllocatedBytes = statsRevs.newVersionedLong();
+  /**
+   * garbage collections in the containers of the operator while it was running
+   */
+  public final VersionedLong gcCollectionCount = statsRevs.newVersionedLong();
+  public final VersionedLong gcCollectionTime = statsRevs.newVersionedLong();
   public String recordingId;
   public Stats.CheckpointStats checkpointStats;
   public final MovingAverageLong checkpointTimeMA;
   public final TimedMovingAverageLong cpuNanosPMSMA;
+  public final TimedMovingAverageLong allocatedBytesPMSMA;
   public final MovingAverageLong latencyMA;
   public final Map<String, PortStatus> inputPortStatusList = new ConcurrentHashMap<>();
   public final Map<String, PortStatus> outputPortStatusList = new ConcurrentHashMap<>();
+  public final Map<String, PortLatency> inputPortLatencies = new ConcurrentHashMap<>();
   public List<OperatorStats> lastWindowedStats = Collections.emptyList();
   public final ConcurrentLinkedQueue<List<OperatorStats>> listenerStats = new ConcurrentLinkedQueue<>();
   public volatile long lastWindowIdChangeTms = 0;
   public final int windowProcessingTimeoutMillis;
   public final ConcurrentLinkedQueue<StatsListener.OperatorResponse> responses = new ConcurrentLinkedQueue<>();
   public List<StatsListener.OperatorResponse> operatorResponses;
+  public final OperatorStatsDelta.Decoder statsDecoder = new OperatorStatsDelta.Decoder();
 
   private final LogicalPlan.OperatorMeta operatorMeta;
   private final int throughputCalculationInterval;
@@ -100,6 +142,7 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     int heartbeatInterval = dag.getValue(LogicalPlan.HEARTBEAT_INTERVAL_MILLIS);
 
     cpuNanosPMSMA = new TimedMovingAverageLong(throughputCalculationMaxSamples, throughputCalculationInterval);
+    allocatedBytesPMSMA = new TimedMovingAverageLong(throughputCalculationMaxSamples, throughputCalculationInterval);
     latencyMA = new MovingAverageLong(throughputCalculationInterval / heartbeatInterval);
     checkpointTimeMA = new MovingAverageLong(throughputCalculationInterval / heartbeatInterval);
     this.windowProcessingTimeoutMillis = dag.getValue(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS)
@@ -18,57 +18,160 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
+import org.apache.commons.lang3.SerializationUtils;
 
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Publisher;
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
-import com.datatorrent.bufferserver.packet.DataTuple;
+import com.datatorrent.bufferserver.packet.CompressedTuple;
 import com.datatorrent.bufferserver.packet.EndStreamTuple;
 import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.LatencyMarkerTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
-import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.PayloadFrameTuple;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.WindowIdTuple;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.LZ4Compressor;
+import com.datatorrent.common.codec.SerializedTuple;
 import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
-import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.CompressedStream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.tuple.CustomControlTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Implements tuple flow of node to then buffer server in a logical stream<p>
  * <br>
  * Extends SocketOutputStream as buffer server and node communicate via a socket<br>
  * This buffer server is a write instance of a stream and hence would take care of persistence and retaining tuples till they are consumed<br>
  * Partitioning is managed by this instance of the buffer server<br>
+ * When the stream is compressed, the payload tuples are batched and each batch is sent compressed as a single message
+ * before any other tuple or once it reaches {@link #COMPRESSION_BATCH_SIZE}<br>
+ * When the payload tuples are framed, up to the frame size of them are packed into a single message which is sent
+ * before any other tuple or once it reaches {@link #FRAME_SIZE} bytes, the frames are batched when compressed<br>
+ * When the stream has subscribers on the same host, the messages are also written to a {@link SharedMemoryRing} those
+ * subscribers read from, the buffer server still gets all the messages to serve the other subscribers and the replay<br>
  * <br>
  *
  * @since 0.3.2
  */
-public class BufferServerPublisher extends Publisher implements ByteCounterStream
+public class BufferServerPublisher extends Publisher implements CompressedStream
 {
   private StreamCodec<Object> serde;
+  /**
+   * size of the chunks the messages are serialized into.
+   */
+  public static final int CHUNK_SIZE = 64 * 1024;
+  /**
+   * size of the batches of payload tuples compressed together.
+   */
+  public static final int COMPRESSION_BATCH_SIZE = 64 * 1024;
+  /**
+   * maximum size of the data of the payload tuples packed into a frame.
+   */
+  public static final int FRAME_SIZE = 64 * 1024;
+  public static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  public static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
   private final AtomicLong publishedByteCount;
   private EventLoop eventloop;
   private int count;
   private StatefulStreamCodec<Object> statefulSerde;
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  private int chunkOffset;
+  private LZ4Compressor compressor;
+  private byte[] batch;
+  private int batchOffset;
+  private final Slice block;
+  private int frameCapacity;
+  private int[] framePartitions;
+  private byte[] frameData;
+  private int frameCount;
+  private int frameDataLength;
+  private volatile SharedMemoryRing ring;
+  private long windowId;
+  private final VarInt.MutableInt messageOffset;
+  private final AtomicLong uncompressedByteCount;
+  private final AtomicLong compressedByteCount;
+  private final AtomicLong compressionNanos;
+  /**
+   * serialized configuration of the stream codec, null when the codec cannot be serialized.
+   */
+  private byte[] serdeConfiguration;
+  private StreamCodec<Object> forwardedCodec;
+  private boolean forwardable;
 
   public BufferServerPublisher(String sourceId, int queueCapacity)
   {
     super(sourceId, queueCapacity);
     this.publishedByteCount = new AtomicLong(0);
+    this.block = new Slice(null, 0, 0);
+    this.uncompressedByteCount = new AtomicLong(0);
+    this.compressedByteCount = new AtomicLong(0);
+    this.compressionNanos = new AtomicLong(0);
+    this.messageOffset = new VarInt.MutableInt();
+  }
+
+  /**
+   * Whether the tuples serialized by the given codec can be published as they are. Each port deserializes its own
+   * instance of the stream codec, so the codecs are compared by class and configuration rather than by identity.
+   * The outcome is kept for the last codec instance seen, which is the codec of the upstream port in practice, and
+   * the configuration of the stream codec is serialized once at setup.
+   *
+   * @param codec the codec which serialized the tuple
+   * @return true if the stream codec would have produced the same bytes and partition
+   */
+  private boolean isForwardable(StreamCodec<Object> codec)
+  {
+    if (codec != forwardedCodec) {
+      forwardedCodec = codec;
+      forwardable = serde != null && codec != null && (serde == codec || serde.equals(codec) || isSameConfiguration(codec));
+    }
+    return forwardable;
+  }
+
+  private boolean isSameConfiguration(StreamCodec<Object> codec)
+  {
+    if (serdeConfiguration == null || codec.getClass() != serde.getClass()) {
+      return false;
+    }
+    final byte[] configuration = getConfiguration(codec);
+    return configuration != null && Arrays.equals(serdeConfiguration, configuration);
+  }
+
+  /**
+   * @return the serialized codec, null when the codec or any of its fields cannot be serialized
+   */
+  private static byte[] getConfiguration(StreamCodec<Object> codec)
+  {
+    if (!(codec instanceof Serializable)) {
+      return null;
+    }
+    try {
+      return SerializationUtils.serialize((Serializable)codec);
+    } catch (RuntimeException ex) {
+      /* a SerializationException for a field that is not serializable, anything a custom writeObject throws */
+      logger.debug("Codec {} cannot be compared by its configuration", codec, ex);
+      return null;
+    }
   }
 
   /**
@@ -76,13 +179,23 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
    * @param payload
    */
   @Override
-  @SuppressWarnings("SleepWhileInLoop")
   public void put(Object payload)
   {
     count++;
-    byte[] array;
+    if (payload instanceof SerializedTuple) {
+      final SerializedTuple serialized = (SerializedTuple)payload;
+      if (isForwardable(serialized.getCodec())) {
+        /* serialized by the same codec, the tuple is forwarded as is */
+        send(serialized.getPartition(), serialized.getData());
+        return;
+      }
+      payload = serialized.deserialize();
+    }
+
     if (payload instanceof Tuple) {
       final Tuple t = (Tuple)payload;
+      byte[] array;
+      flush();
 
       switch (t.getType()) {
         case CHECKPOINT:
@@ -94,6 +207,7 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
           break;
 
         case BEGIN_WINDOW:
+          windowId = t.getWindowId();
           array = BeginWindowTuple.getSerializedTuple((int)t.getWindowId());
           break;
 
@@ -103,73 +217,262 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
 
         case CUSTOM_CONTROL:
           if (statefulSerde == null) {
-            array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                .getSerializedTuple(MessageType.CUSTOM_CONTROL_VALUE, serde.toByteArray(payload));
+            send(MessageType.CUSTOM_CONTROL_VALUE, serde.toByteArray(payload));
           } else {
             DataStatePair dsp = statefulSerde.toDataStatePair(payload);
             if (dsp.state != null) {
-              array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                  .getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-              try {
-                while (!write(array)) {
-                  sleep(5);
-                }
-              } catch (InterruptedException ie) {
-                throw new RuntimeException(ie);
-              }
+              send(MessageType.CODEC_STATE_VALUE, dsp.state);
             }
-            array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                .getSerializedTuple(MessageType.CUSTOM_CONTROL_VALUE, dsp.data);
+            send(MessageType.CUSTOM_CONTROL_VALUE, dsp.data);
           }
-          break;
+          return;
 
         case END_STREAM:
           array = EndStreamTuple.getSerializedTuple((int)t.getWindowId());
           break;
 
+        case LATENCY_MARKER:
+          com.datatorrent.stram.tuple.LatencyMarkerTuple lmt = (com.datatorrent.stram.tuple.LatencyMarkerTuple)t;
+          array = LatencyMarkerTuple.getSerializedTuple(lmt.getSourceOperatorId(), lmt.getCreatedMillis(),
+              lmt.getEmittedMillis());
+          break;
+
         case RESET_WINDOW:
           com.datatorrent.stram.tuple.ResetWindowTuple rwt = (com.datatorrent.stram.tuple.ResetWindowTuple)t;
           array = ResetWindowTuple.getSerializedTuple(rwt.getBaseSeconds(), rwt.getIntervalMillis());
+          final SharedMemoryRing ring = this.ring;
+          if (ring != null) {
+            ring.setWindowWidth(rwt.getIntervalMillis());
+          }
           break;
 
         default:
           throw new UnsupportedOperationException("this data type is not handled in the stream");
       }
+
+      int offset = reserve(array.length);
+      System.arraycopy(array, 0, chunk, offset, array.length);
+      send(offset + array.length);
+    } else if (statefulSerde == null) {
+      send(serde.getPartition(payload), serde.toByteArray(payload));
     } else {
-      if (statefulSerde == null) {
-        array = PayloadTuple.getSerializedTuple(serde.getPartition(payload), serde.toByteArray(payload));
-      } else {
-        DataStatePair dsp = statefulSerde.toDataStatePair(payload);
-        /*
-         * if there is any state write that for the subscriber before we write the data.
-         */
-        if (dsp.state != null) {
-          array = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-          try {
-            while (!write(array)) {
-              sleep(5);
-            }
-          } catch (InterruptedException ie) {
-            throw new RuntimeException(ie);
-          }
+      DataStatePair dsp = statefulSerde.toDataStatePair(payload);
+      /*
+       * if there is any state write that for the subscriber before we write the data.
+       */
+      if (dsp.state != null) {
+        send(MessageType.CODEC_STATE_VALUE, dsp.state);
+      }
+      /*
+       * Now that the state if any has been sent, we can proceed with the actual data we want to send.
+       */
+      send(statefulSerde.getPartition(payload), dsp.data);
+    }
+  }
+
+  /**
+   * Serializes the payload tuple of the given partition into the current chunk and sends it, or adds it to the batch
+   * when the stream is compressed.
+   */
+  private void send(int partition, Slice data)
+  {
+    if (framePartitions != null) {
+      final int size = VarInt.getSize(data.length) + data.length;
+      if (size <= frameData.length) {
+        if (size > frameData.length - frameDataLength) {
+          flushFrame();
         }
-        /*
-         * Now that the state if any has been sent, we can proceed with the actual data we want to send.
-         */
-        array = PayloadTuple.getSerializedTuple(statefulSerde.getPartition(payload), dsp.data);
+        framePartitions[frameCount++] = partition;
+        frameDataLength = VarInt.write(data.length, frameData, frameDataLength);
+        System.arraycopy(data.buffer, data.offset, frameData, frameDataLength, data.length);
+        frameDataLength += data.length;
+        if (frameCount == frameCapacity) {
+          flushFrame();
+        }
+        return;
       }
+      /* a tuple larger than the frame is sent on its own */
+      flushFrame();
     }
 
-    try {
-      while (!write(array)) {
-        sleep(5);
+    if (compressor == null) {
+      final int offset = reserve(data.length + 5);
+      send(writePayload(partition, data, chunk, offset));
+    } else {
+      final int offset = reserveBatch(data.length + 5);
+      batchOffset = writePayload(partition, data, batch, offset);
+    }
+  }
+
+  private static int writePayload(int partition, Slice data, byte[] buffer, int offset)
+  {
+    buffer[offset++] = MessageType.PAYLOAD_VALUE;
+    buffer[offset++] = (byte)(partition >> 24);
+    buffer[offset++] = (byte)(partition >> 16);
+    buffer[offset++] = (byte)(partition >> 8);
+    buffer[offset++] = (byte)partition;
+    System.arraycopy(data.buffer, data.offset, buffer, offset, data.length);
+    return offset + data.length;
+  }
+
+  /**
+   * Serializes the data tuple of the given type into the current chunk and sends it.
+   */
+  private void send(byte type, Slice data)
+  {
+    flush();
+    int offset = reserve(data.length + 1);
+    chunk[offset++] = type;
+    System.arraycopy(data.buffer, data.offset, chunk, offset, data.length);
+    send(offset + data.length);
+  }
+
+  /**
+   * Reserves the space for a message of the given size in the current chunk and writes the length of the message.
+   * The chunk is replaced once full, the messages sent from it keep it reachable until they are written to the socket.
+   *
+   * @param size size of the message
+   * @return offset in the chunk the message is to be serialized at
+   */
+  private int reserve(int size)
+  {
+    if (VarInt.getSize(size) + size > chunk.length - chunkOffset) {
+      chunk = new byte[Math.max(CHUNK_SIZE, VarInt.getSize(size) + size)];
+      chunkOffset = 0;
+    }
+    return VarInt.write(size, chunk, chunkOffset);
+  }
+
+  /**
+   * Reserves the space for a message of the given size in the batch and writes the length of the message. The batch
+   * is flushed once full, a message larger than the batch gets a batch of its own.
+   *
+   * @param size size of the message
+   * @return offset in the batch the message is to be serialized at
+   */
+  private int reserveBatch(int size)
+  {
+    final int messageSize = VarInt.getSize(size) + size;
+    if (messageSize > batch.length - batchOffset) {
+      flushBatch();
+      if (messageSize > batch.length) {
+        batch = new byte[messageSize];
+      }
+    }
+    return VarInt.write(size, batch, batchOffset);
+  }
+
+  /**
+   * Sends the pending frame and the pending batch, called before any tuple which is neither framed nor batched.
+   */
+  private void flush()
+  {
+    flushFrame();
+    flushBatch();
+  }
+
+  /**
+   * Serializes the framed payload tuples as a single message, which is sent or added to the batch when the stream is
+   * compressed.
+   */
+  private void flushFrame()
+  {
+    if (frameCount == 0) {
+      return;
+    }
+
+    final int size = PayloadFrameTuple.getSerializedLength(frameCount, frameDataLength);
+    if (compressor == null) {
+      final int offset = reserve(size);
+      send(PayloadFrameTuple.writeSerializedTuple(framePartitions, frameCount, frameData, frameDataLength, chunk,
+          offset));
+    } else {
+      final int offset = reserveBatch(size);
+      batchOffset = PayloadFrameTuple.writeSerializedTuple(framePartitions, frameCount, frameData, frameDataLength,
+          batch, offset);
+    }
+    frameCount = 0;
+    frameDataLength = 0;
+  }
+
+  /**
+   * Compresses the batched messages into the current chunk and sends them as a single message. The messages are sent
+   * as they are if they do not compress.
+   */
+  private void flushBatch()
+  {
+    if (batchOffset == 0) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+    final int maxCompressedLength = LZ4Compressor.maxCompressedLength(batchOffset);
+    if (block.buffer == null || block.buffer.length < maxCompressedLength) {
+      block.buffer = new byte[maxCompressedLength];
+    }
+    block.length = compressor.compress(batch, 0, batchOffset, block.buffer, 0);
+
+    final int size = CompressedTuple.getSerializedLength(batchOffset, block.length);
+    final int end;
+    if (size < batchOffset) {
+      final int offset = reserve(size);
+      end = CompressedTuple.writeSerializedTuple(batchOffset, block, chunk, offset);
+      compressedByteCount.addAndGet(VarInt.getSize(size) + size);
+    } else {
+      if (batchOffset > chunk.length - chunkOffset) {
+        chunk = new byte[Math.max(CHUNK_SIZE, batchOffset)];
+        chunkOffset = 0;
+      }
+      System.arraycopy(batch, 0, chunk, chunkOffset, batchOffset);
+      end = chunkOffset + batchOffset;
+      compressedByteCount.addAndGet(batchOffset);
+    }
+    uncompressedByteCount.addAndGet(batchOffset);
+    compressionNanos.addAndGet(System.nanoTime() - start);
+    batchOffset = 0;
+    send(end);
+  }
+
+  /**
+   * Sends the message serialized in the chunk from the chunk offset up to the given offset. While the send queue is
+   * full the operator thread parks for a period starting at {@link #MIN_PARK_NANOS} and doubling up to
+   * {@link #MAX_PARK_NANOS}, so it resumes shortly after the queue drains.
+   *
+   * @param end offset in the chunk the message ends at
+   */
+  private void send(int end)
+  {
+    final int offset = chunkOffset;
+    final int size = end - offset;
+    long parkNanos = MIN_PARK_NANOS;
+    while (!send(chunk, offset, size)) {
+      LockSupport.parkNanos(this, parkNanos);
+      if (Thread.interrupted()) {
+        throw new RuntimeException(new InterruptedException());
       }
-      publishedByteCount.addAndGet(array.length);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
+      parkNanos = Math.min(MAX_PARK_NANOS, parkNanos << 1);
+    }
+    chunkOffset = end;
+    publishedByteCount.addAndGet(size);
+    final SharedMemoryRing ring = this.ring;
+    if (ring != null) {
+      writeRing(ring, offset, end);
     }
   }
 
+  /**
+   * Writes the messages sent from the chunk to the shared memory ring, tagged with the current window.
+   */
+  private void writeRing(SharedMemoryRing ring, int offset, int end)
+  {
+    while (offset < end) {
+      final int size = VarInt.read(chunk, offset, end, messageOffset);
+      ring.write(windowId, chunk, messageOffset.integer, size);
+      offset = messageOffset.integer + size;
+    }
+    ring.flush();
+  }
+
   @Override
   public boolean putControl(ControlTuple payload)
   {
@@ -192,11 +495,27 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
 
     logger.debug("Registering publisher: {} {} windowId={} server={}", new Object[] {context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getBufferServerAddress()});
     super.activate(null, context.getFinishedWindowId());
+
+    File ringFile = context.get(StreamContext.SHARED_MEMORY_RING);
+    if (ringFile != null) {
+      windowId = context.getFinishedWindowId();
+      try {
+        ring = SharedMemoryRing.create(ringFile, context.getValue(StreamContext.SHARED_MEMORY_RING_SIZE), windowId);
+        logger.debug("Publishing {} to {}", context.getSourceId(), ring);
+      } catch (IOException ex) {
+        /* the subscribers do not find the ring and read from the buffer server */
+        logger.warn("Cannot create the shared memory ring {}", ringFile, ex);
+      }
+    }
   }
 
   @Override
   public void deactivate()
   {
+    if (ring != null) {
+      ring.delete();
+      ring = null;
+    }
     setToken(null);
     eventloop.disconnect(this);
   }
@@ -218,6 +537,16 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
       statefulSerde = ((StatefulStreamCodec<Object>)codec).newInstance();
     } else {
       serde = (StreamCodec<Object>)codec;
+      serdeConfiguration = getConfiguration(serde);
+    }
+    if (context.getValue(PortContext.BUFFER_SERVER_COMPRESSION)) {
+      compressor = new LZ4Compressor();
+      batch = new byte[COMPRESSION_BATCH_SIZE];
+    }
+    frameCapacity = context.getValue(PortContext.PAYLOAD_FRAME_SIZE);
+    if (frameCapacity > 1) {
+      framePartitions = new int[frameCapacity];
+      frameData = new byte[FRAME_SIZE];
     }
   }
 
@@ -236,6 +565,24 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     return publishedByteCount.get();
   }
 
+  @Override
+  public long getUncompressedByteCount(boolean reset)
+  {
+    return reset ? uncompressedByteCount.getAndSet(0) : uncompressedByteCount.get();
+  }
+
+  @Override
+  public long getCompressedByteCount(boolean reset)
+  {
+    return reset ? compressedByteCount.getAndSet(0) : compressedByteCount.get();
+  }
+
+  @Override
+  public long getCompressionNanos(boolean reset)
+  {
+    return reset ? compressionNanos.getAndSet(0) : compressionNanos.get();
+  }
+
   @Override
   public int getCount(boolean reset)
   {
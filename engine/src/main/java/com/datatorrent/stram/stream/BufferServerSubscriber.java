@@ -20,6 +20,9 @@ package com.datatorrent.stram.stream;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicLong;
@@ -29,16 +32,30 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
 
+import com.datatorrent.api.BatchEnabledSink;
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Subscriber;
+import com.datatorrent.bufferserver.packet.CompressedTuple;
+import com.datatorrent.bufferserver.packet.LatencyMarkerTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadFrameTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.PartitionFilter;
+import com.datatorrent.common.codec.SerializedTuple;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
-import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.AbstractReservoir;
+import com.datatorrent.stram.engine.CompressedStream;
+import com.datatorrent.stram.engine.NodeWaitStrategy;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
 import com.datatorrent.stram.engine.WindowGenerator;
@@ -54,23 +71,46 @@ import com.datatorrent.stram.tuple.Tuple;
  * <br>
  * Extends SocketInputStream as buffer server and node communicate via a socket<br>
  * This buffer server is a read instance of a stream and takes care of connectivity with upstream buffer server<br>
+ * The compressed batches of tuples are delivered to all the subscribers by the buffer server, the subscriber
+ * decompresses them and filters the payload tuples of its partitions<br>
+ * The frames of payload tuples are delivered whole when any of their tuples belongs to the partitions of the
+ * subscriber, which unpacks them and filters the remaining tuples the same way<br>
  *
  * @since 0.3.2
  */
-public class BufferServerSubscriber extends Subscriber implements ByteCounterStream
+public class BufferServerSubscriber extends Subscriber implements CompressedStream
 {
+  /**
+   * returned for the messages which do not yield a tuple, as the payload tuples may be null.
+   */
+  private static final Object NO_TUPLE = new Object();
   private boolean suspended;
   private long baseSeconds;
   protected StreamCodec<Object> serde;
   protected StatefulStreamCodec<Object> statefulSerde;
   protected EventLoop eventloop;
   private final DataStatePair dsp;
+  private final Slice payload;
+  private boolean rawTuples;
+  private PartitionFilter partitionFilter;
+  /**
+   * set when the messages are not filtered by the buffer server, the payload tuples of the other partitions are then
+   * dropped by the subscriber.
+   */
+  protected boolean unfiltered;
+  private final Slice messages;
+  private final Slice message;
+  private final VarInt.MutableInt messageOffset;
+  private final PayloadFrameTuple.Reader frameReader;
   CircularBuffer<Slice> offeredFragments;
   CircularBuffer<Slice> polledFragments;
   CircularBuffer<Slice> freeFragments;
   private final ArrayDeque<CircularBuffer<Slice>> backlog;
   private int lastWindowId = WindowGenerator.MAX_WINDOW_ID;
-  private final AtomicLong readByteCount;
+  final AtomicLong readByteCount;
+  private final AtomicLong uncompressedByteCount;
+  private final AtomicLong compressedByteCount;
+  private final AtomicLong compressionNanos;
 
   public BufferServerSubscriber(String id, int queueCapacity)
   {
@@ -79,8 +119,20 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     this.reservoirMap = new HashMap<>();
     this.readByteCount = new AtomicLong(0);
     this.dsp = new DataStatePair();
+    this.payload = new Slice(null, 0, 0);
+    this.messages = new Slice(null, 0, 0);
+    this.message = new Slice(null, 0, 0);
+    this.messageOffset = new VarInt.MutableInt();
+    this.frameReader = new PayloadFrameTuple.Reader();
+    this.uncompressedByteCount = new AtomicLong(0);
+    this.compressedByteCount = new AtomicLong(0);
+    this.compressionNanos = new AtomicLong(0);
     polledFragments = offeredFragments = new CircularBuffer<>(queueCapacity);
     freeFragments = new CircularBuffer<>(queueCapacity);
+    /* the fragments are recycled once the messages are consumed, only the backlog allocates more */
+    for (int i = freeFragments.capacity(); i-- > 0;) {
+      freeFragments.add(new Slice(null, 0, 0));
+    }
     backlog = new ArrayDeque<>();
   }
 
@@ -93,14 +145,27 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
 
   @Override
   public void activate(StreamContext context)
+  {
+    activate(context, context.getFinishedWindowId(), context.getPartitionMask(), context.getPartitions());
+  }
+
+  /**
+   * Subscribes to the buffer server for the messages following the given window.
+   *
+   * @param context context of the stream
+   * @param windowId id of the window to subscribe after
+   * @param mask partition mask or 0 to receive the messages of all the partitions
+   * @param partitions partitions to receive the messages of
+   */
+  protected void activate(StreamContext context, long windowId, int mask, Collection<Integer> partitions)
   {
     setToken(context.get(StreamContext.BUFFER_SERVER_TOKEN));
     InetSocketAddress address = context.getBufferServerAddress();
     eventloop = context.get(StreamContext.EVENT_LOOP);
     eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
 
-    logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getPartitionMask(), context.getPartitions(), context.getBufferServerAddress()});
-    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity());
+    logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(windowId), mask, partitions, context.getBufferServerAddress()});
+    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), mask, partitions, windowId, freeFragments.capacity());
   }
 
   @Override
@@ -127,6 +192,11 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         offeredFragments.add(f);
       }
     }
+
+    final BufferReservoir[] reservoirs = this.reservoirs;
+    for (int i = reservoirs.length; i-- > 0;) {
+      reservoirs[i].signal();
+    }
   }
 
   @Override
@@ -141,7 +211,54 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     } else {
       serde = (StreamCodec<Object>)codec;
     }
+    /* the persisted streams look inside the tuples to find out which ones to persist */
+    rawTuples = context.getValue(PortContext.RAW_TUPLES) && !(codec instanceof StreamCodecWrapperForPersistance);
+    if (rawTuples && serde == null) {
+      throw new IllegalArgumentException("Raw tuples require a stream codec which is not stateful, found " + codec);
+    }
     baseSeconds = context.getFinishedWindowId() & 0xffffffff00000000L;
+
+    /* the buffer server does not look inside the compressed batches to filter the payload tuples */
+    Collection<Integer> partitions = context.getPartitions();
+    if (context.getPartitionMask() != 0 && partitions != null && !partitions.isEmpty()) {
+      ArrayList<BitVector> bitVectors = new ArrayList<>(partitions.size());
+      for (Integer partition : partitions) {
+        bitVectors.add(new BitVector(partition, context.getPartitionMask()));
+      }
+      partitionFilter = new PartitionFilter(bitVectors);
+    }
+  }
+
+  /**
+   * Decompresses the batch of messages the fragment carries, the messages are then processed before the next fragment.
+   */
+  private void decompress(Slice fm)
+  {
+    final long start = System.nanoTime();
+    /* the codecs may keep the slices of the tuple data, so the buffer is not reused */
+    messages.buffer = null;
+    CompressedTuple.decompress(fm.buffer, fm.offset, fm.length, messages);
+    compressionNanos.addAndGet(System.nanoTime() - start);
+    compressedByteCount.addAndGet(fm.length + VarInt.getSize(fm.length));
+    uncompressedByteCount.addAndGet(messages.length);
+  }
+
+  /**
+   * Points the message slice to the next decompressed message.
+   */
+  private Slice nextMessage()
+  {
+    final int limit = messages.offset + messages.length;
+    final int size = VarInt.read(messages.buffer, messages.offset, limit, messageOffset);
+    if (size <= 0 || messageOffset.integer + size > limit) {
+      throw new IllegalArgumentException("Invalid message of size " + size + " in the compressed batch");
+    }
+    message.buffer = messages.buffer;
+    message.offset = messageOffset.integer;
+    message.length = size;
+    messages.offset = message.offset + size;
+    messages.length = limit - messages.offset;
+    return message;
   }
 
   @Override
@@ -229,6 +346,24 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return 0;
   }
 
+  @Override
+  public long getUncompressedByteCount(boolean reset)
+  {
+    return reset ? uncompressedByteCount.getAndSet(0) : uncompressedByteCount.get();
+  }
+
+  @Override
+  public long getCompressedByteCount(boolean reset)
+  {
+    return reset ? compressedByteCount.getAndSet(0) : compressedByteCount.get();
+  }
+
+  @Override
+  public long getCompressionNanos(boolean reset)
+  {
+    return reset ? compressionNanos.getAndSet(0) : compressionNanos.get();
+  }
+
   @Override
   public long getByteCount(boolean reset)
   {
@@ -239,10 +374,12 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return readByteCount.get();
   }
 
-  class BufferReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  class BufferReservoir extends CircularBuffer<Object> implements SignallingReservoir
   {
     protected boolean skipObject = false;
     private Sink<Object> sink;
+    private volatile NodeWaitStrategy waitStrategy;
+    private Object[] batch;
     int count;
 
     BufferReservoir(int capacity)
@@ -275,26 +412,45 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       }
     }
 
+    @Override
+    public void setWaitStrategy(NodeWaitStrategy waitStrategy)
+    {
+      this.waitStrategy = waitStrategy;
+    }
+
+    void signal()
+    {
+      final NodeWaitStrategy waitStrategy = this.waitStrategy;
+      if (waitStrategy != null) {
+        waitStrategy.signal();
+      }
+    }
+
     @Override
     public Tuple sweep()
     {
       final int size = size();
       if (size > 0) {
-        for (int i = 0; i < size; i++) {
-          if (peekUnsafe() instanceof Tuple) {
-            count += i;
-            return (Tuple)peekUnsafe();
+        if (sink instanceof BatchEnabledSink) {
+          final Tuple t = sweep((BatchEnabledSink<Object>)sink, size);
+          if (t != null) {
+            return t;
+          }
+        } else {
+          for (int i = 0; i < size; i++) {
+            if (peekUnsafe() instanceof Tuple) {
+              count += i;
+              return (Tuple)peekUnsafe();
+            }
+            sink.put(pollUnsafe());
           }
-          sink.put(pollUnsafe());
-        }
 
-        count += size;
+          count += size;
+        }
       }
 
       synchronized (backlog) {
-        /* find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver */
-        int min = polledFragments.size();
-        if (min == 0) {
+        if (polledFragments.isEmpty() && messages.length == 0 && !frameReader.hasNext()) {
           if (offeredFragments == polledFragments) {
             if (suspended) {
               resumeRead();
@@ -303,9 +459,14 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
             return null;
           }
           polledFragments = backlog.remove();
-          min = polledFragments.size();
         }
 
+        /*
+         * find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver,
+         * a compressed batch or a frame yields several tuples so the capacity rather than the number of fragments bounds
+         * the tuples
+         */
+        int min = Integer.MAX_VALUE;
         for (int i = reservoirs.length; i-- > 0;) {
           if (reservoirs[i].remainingCapacity() < min) {
             min = reservoirs[i].remainingCapacity();
@@ -313,61 +474,70 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         }
 
         while (min-- > 0) {
-          Slice fm = polledFragments.pollUnsafe();
-          com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
           Object o;
-          switch (data.getType()) {
-            case NO_MESSAGE:
-              freeFragments.offer(fm);
+          if (frameReader.hasNext()) {
+            final int partition = frameReader.next(payload);
+            if (partitionFilter != null && !partitionFilter.matches(partition)) {
+              min++;
               continue;
-
-            case CODEC_STATE:
-              dsp.state = data.getData();
-              freeFragments.offer(fm);
+            }
+            if (rawTuples) {
+              o = new SerializedTuple(new Slice(Arrays.copyOfRange(payload.buffer, payload.offset,
+                  payload.offset + payload.length)), partition, serde);
+            } else {
+              o = processPayload(payload);
+            }
+          } else if (messages.length > 0) {
+            final Slice fm = nextMessage();
+            if (fm.buffer[fm.offset] == MessageType.PAYLOAD_FRAME_VALUE) {
+              frameReader.reset(fm.buffer, fm.offset, fm.length);
+              min++;
               continue;
-
-            case RESET_WINDOW:
-              baseSeconds = (long)data.getBaseSeconds() << 32;
-              if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
-                freeFragments.offer(fm);
-                continue;
-              }
-              o = new ResetWindowTuple(baseSeconds | data.getWindowWidth());
-              break;
-
-            case PAYLOAD:
-              o = processPayload(data);
-              break;
-
-            case CHECKPOINT:
-              if (statefulSerde != null) {
-                statefulSerde.resetState();
-              }
-              o = new CheckpointTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case END_WINDOW:
-              //logger.debug("received {}", data);
-              o = new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
-              break;
-
-            case CUSTOM_CONTROL:
-              o = processPayload(data);
-              break;
-
-            case END_STREAM:
-              o = new EndStreamTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case BEGIN_WINDOW:
-              o = new Tuple(data.getType(), baseSeconds | data.getWindowId());
-              break;
-
-            default:
-              throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
+            }
+            if (partitionFilter != null && fm.buffer[fm.offset] == MessageType.PAYLOAD_VALUE
+                && !partitionFilter.matches(PayloadTuple.getPartition(fm.buffer, fm.offset))) {
+              min++;
+              continue;
+            }
+            o = processMessage(fm);
+          } else if (polledFragments.isEmpty()) {
+            break;
+          } else {
+            /* the read buffers are not reused, so the batches and frames outlive the recycled fragments */
+            final Slice fm = polledFragments.pollUnsafe();
+            switch (fm.buffer[fm.offset]) {
+              case MessageType.COMPRESSED_VALUE:
+                decompress(fm);
+                o = NO_TUPLE;
+                min++;
+                break;
+
+              case MessageType.PAYLOAD_FRAME_VALUE:
+                frameReader.reset(fm.buffer, fm.offset, fm.length);
+                o = NO_TUPLE;
+                min++;
+                break;
+
+              case MessageType.PAYLOAD_VALUE:
+                if (unfiltered && partitionFilter != null
+                    && !partitionFilter.matches(PayloadTuple.getPartition(fm.buffer, fm.offset))) {
+                  o = NO_TUPLE;
+                  min++;
+                } else {
+                  o = processMessage(fm);
+                }
+                break;
+
+              default:
+                o = processMessage(fm);
+                break;
+            }
+            freeFragments.offer(fm);
           }
 
-          freeFragments.offer(fm);
+          if (o == NO_TUPLE) {
+            continue;
+          }
           if (skipObject) {
             skipObject = false;
           } else {
@@ -381,13 +551,122 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       return null;
     }
 
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    /**
+     * Hands the data tuples at the head of the reservoir to the sink in batches.
+     *
+     * @param sink the sink of the reservoir
+     * @param size number of the tuples in the reservoir
+     * @return the control tuple at the head of the reservoir or null if the tuples were all handed to the sink
+     */
+    private Tuple sweep(final BatchEnabledSink<Object> sink, final int size)
+    {
+      Object[] batch = this.batch;
+      if (batch == null) {
+        batch = this.batch = new Object[Math.max(1, Math.min(AbstractReservoir.MAX_BATCH_SIZE, capacity()))];
+      }
+
+      int length = 0;
+      for (int i = 0; i < size; i++) {
+        if (peekUnsafe() instanceof Tuple) {
+          putBatch(sink, batch, length);
+          return (Tuple)peekUnsafe();
+        }
+        batch[length++] = pollUnsafe();
+        if (length == batch.length) {
+          putBatch(sink, batch, length);
+          length = 0;
+        }
+      }
+      putBatch(sink, batch, length);
+      return null;
+    }
+
+    private void putBatch(final BatchEnabledSink<Object> sink, final Object[] batch, final int length)
+    {
+      if (length > 0) {
+        count += length;
+        sink.putBatch(batch, length);
+        Arrays.fill(batch, 0, length, null);
+      }
+    }
+
+    /**
+     * Deserializes a message received from the buffer server.
+     *
+     * @param fm the message, the slice is reused for the next message
+     * @return the deserialized tuple or {@link #NO_TUPLE} if the message does not yield any
+     */
+    private Object processMessage(Slice fm)
+    {
+      if (fm.buffer[fm.offset] == MessageType.PAYLOAD_VALUE) {
+        if (rawTuples) {
+          /* the fragment points to the read buffer of the subscriber, the serialized tuple keeps a copy */
+          return new SerializedTuple(new Slice(Arrays.copyOfRange(fm.buffer, fm.offset + 5, fm.offset + fm.length)),
+              PayloadTuple.getPartition(fm.buffer, fm.offset), serde);
+        }
+        /* the payload tuples are the bulk of the messages, their data is read without creating the packet tuple */
+        return processPayload(PayloadTuple.getData(fm.buffer, fm.offset, fm.length, payload));
+      }
+
+      com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
+      switch (data.getType()) {
+        case NO_MESSAGE:
+          return NO_TUPLE;
+
+        case CODEC_STATE:
+          dsp.state = data.getData();
+          return NO_TUPLE;
+
+        case RESET_WINDOW:
+          baseSeconds = (long)data.getBaseSeconds() << 32;
+          if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
+            return NO_TUPLE;
+          }
+          return new ResetWindowTuple(baseSeconds | data.getWindowWidth());
+
+        case CHECKPOINT:
+          if (statefulSerde != null) {
+            statefulSerde.resetState();
+          }
+          return new CheckpointTuple(baseSeconds | data.getWindowId());
+
+        case END_WINDOW:
+          //logger.debug("received {}", data);
+          return new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
+
+        case CUSTOM_CONTROL:
+          return processPayload(data.getData());
+
+        case END_STREAM:
+          return new EndStreamTuple(baseSeconds | data.getWindowId());
+
+        case BEGIN_WINDOW:
+          return new Tuple(data.getType(), baseSeconds | data.getWindowId());
+
+        case LATENCY_MARKER:
+          LatencyMarkerTuple lmt = (LatencyMarkerTuple)data;
+          return new com.datatorrent.stram.tuple.LatencyMarkerTuple(lmt.getSourceOperatorId(), lmt.getCreatedMillis(),
+              lmt.getEmittedMillis(), lmt.getBufferServerMillis(), System.currentTimeMillis());
+
+        default:
+          throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
+      }
+    }
+
+    /**
+     * Deserializes the data of a payload or custom control tuple.
+     *
+     * @param data data of the tuple, the slice is reused for the next tuple
+     * @return the deserialized tuple
+     */
+    protected Object processPayload(Slice data)
     {
       Object o;
       if (statefulSerde == null) {
-        o = serde.fromByteArray(data.getData());
+        /* a stream codec may keep the slice it is given */
+        o = serde.fromByteArray(new Slice(data.buffer, data.offset, data.length));
       } else {
-        dsp.data = data.getData();
+        dsp.data = data;
         o = statefulSerde.fromDataStatePair(dsp);
       }
       return o;
@@ -418,9 +697,9 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     }
 
     @Override
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    protected Object processPayload(Slice data)
     {
-      Object o = wrapperStreamCodec.fromByteArray(data.getData());
+      Object o = wrapperStreamCodec.fromByteArray(new Slice(data.buffer, data.offset, data.length));
       if (!wrapperStreamCodec.shouldCaptureEvent(o)) {
         skipObject = true;
       }
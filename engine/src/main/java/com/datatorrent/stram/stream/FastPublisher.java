@@ -37,6 +37,7 @@ import com.esotericsoftware.kryo.io.Output;
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
 import com.datatorrent.bufferserver.packet.EndStreamTuple;
 import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.LatencyMarkerTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.packet.PublishRequestTuple;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
@@ -240,6 +241,12 @@ public class FastPublisher extends Kryo implements ClientListener, Stream
           array = EndStreamTuple.getSerializedTuple((int)t.getWindowId());
           break;
 
+        case LATENCY_MARKER:
+          com.datatorrent.stram.tuple.LatencyMarkerTuple lmt = (com.datatorrent.stram.tuple.LatencyMarkerTuple)t;
+          array = LatencyMarkerTuple.getSerializedTuple(lmt.getSourceOperatorId(), lmt.getCreatedMillis(),
+              lmt.getEmittedMillis());
+          break;
+
         case RESET_WINDOW:
           com.datatorrent.stram.tuple.ResetWindowTuple rwt = (com.datatorrent.stram.tuple.ResetWindowTuple)t;
           array = ResetWindowTuple.getSerializedTuple(rwt.getBaseSeconds(), rwt.getIntervalMillis());
@@ -0,0 +1,517 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ring of buffer server messages in a memory mapped file, written by a publisher and read by the subscribers running
+ * in other containers on the same host.<p>
+ * <br>
+ * The ring is written by a single writer which never waits for the readers, the oldest messages are overwritten once
+ * the ring is full. Every message is stored with the id of the window it belongs to, so a reader can find the window
+ * it needs to start from. The readers track their own positions and find out that they were overtaken by the writer
+ * by comparing the position of the message they read with the head of the ring, which the writer moves ahead before it
+ * overwrites the messages. A reader overtaken by the writer, or which does not find its window in the ring, reads the
+ * stream from the buffer server instead.
+ * <br>
+ * The ring file consists of a header followed by the messages, each stored as its length, its window id and the
+ * message itself. A message which does not fit before the end of the file is stored at the beginning of the file.
+ * The positions are logical offsets which grow with every message and never wrap.
+ * <br>
+ * The publisher holds a lock on the ring file until it deletes the ring, so the files left behind by the publishers
+ * which died are told apart from the live rings and removed by {@link #deleteStale}.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class SharedMemoryRing implements Closeable
+{
+  /**
+   * returned by {@link Cursor#next} when there is no message to read yet.
+   */
+  public static final int NONE = -1;
+  /**
+   * returned by {@link Cursor#next} when the writer overwrote the message the cursor was about to read.
+   */
+  public static final int LAPPED = -2;
+  private static final int MAGIC = 0x41525231;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int START_WINDOW_OFFSET = 8;
+  private static final int WINDOW_WIDTH_OFFSET = 16;
+  private static final int CLOSED_OFFSET = 20;
+  private static final int HEAD_OFFSET = 24;
+  private static final int TAIL_OFFSET = 32;
+  private static final int DATA_OFFSET = 64;
+  private static final int RECORD_HEADER_SIZE = 12;
+  private static final int PADDING = -1;
+  private static final long STALE_TEMP_FILE_MILLIS = 60000;
+  /**
+   * rings written in this process, the lock of a ring is released by closing any channel of the file in this process.
+   */
+  private static final ConcurrentMap<File, SharedMemoryRing> WRITTEN_RINGS = new ConcurrentHashMap<>();
+  private final File file;
+  private final Object fileKey;
+  private final MappedByteBuffer buffer;
+  private final ByteBuffer data;
+  private final int capacity;
+  private final RandomAccessFile lockedFile;
+  /**
+   * orders the accesses to the mapped buffer, the atomic increment is a full fence for both the compiler and the
+   * processor.
+   */
+  private final AtomicInteger fence = new AtomicInteger();
+  private long head;
+  private long tail;
+
+  private SharedMemoryRing(File file, Object fileKey, MappedByteBuffer buffer, int capacity, RandomAccessFile lockedFile)
+  {
+    this.file = file;
+    this.fileKey = fileKey;
+    this.buffer = buffer;
+    this.capacity = capacity;
+    this.lockedFile = lockedFile;
+    data = buffer.duplicate();
+  }
+
+  /**
+   * Creates the ring to be written by a publisher. The ring is created under a temporary name and then renamed, so
+   * the readers find either the previous ring or the complete new one. The readers of the previous ring keep reading
+   * it until they find out it was replaced.
+   *
+   * @param file the ring file
+   * @param capacity number of bytes available for the messages
+   * @param startWindowId id of the window the publisher starts after
+   * @return the ring
+   * @throws IOException if the ring file cannot be created
+   */
+  public static SharedMemoryRing create(File file, int capacity, long startWindowId) throws IOException
+  {
+    if (capacity < 1024) {
+      throw new IllegalArgumentException("Invalid ring capacity " + capacity);
+    }
+    final File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    final RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+    final SharedMemoryRing ring;
+    try {
+      raf.getChannel().lock();
+      raf.setLength(DATA_OFFSET + (long)capacity);
+      final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+      buffer.putInt(CAPACITY_OFFSET, capacity);
+      buffer.putLong(START_WINDOW_OFFSET, startWindowId);
+      buffer.putInt(MAGIC_OFFSET, MAGIC);
+      ring = new SharedMemoryRing(file, getFileKey(temp), buffer, capacity, raf);
+      WRITTEN_RINGS.put(file.getAbsoluteFile(), ring);
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      WRITTEN_RINGS.remove(file.getAbsoluteFile());
+      raf.close();
+      if (!temp.delete()) {
+        logger.warn("Ring file {} could not be deleted.", temp);
+      }
+      throw ex;
+    }
+    file.deleteOnExit();
+    return ring;
+  }
+
+  /**
+   * Opens the ring written by a publisher in another container.
+   *
+   * @param file the ring file
+   * @return the ring or null if there is no valid ring in the file
+   * @throws IOException if the ring file cannot be mapped
+   */
+  public static SharedMemoryRing open(File file) throws IOException
+  {
+    /* a ring replaced after the key is read is taken for replaced, which is safe */
+    final Object fileKey = getFileKey(file);
+    if (fileKey == null) {
+      return null;
+    }
+    final MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      final long length = raf.length();
+      if (length <= DATA_OFFSET || length > Integer.MAX_VALUE) {
+        return null;
+      }
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+    } catch (FileNotFoundException ex) {
+      return null;
+    }
+
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(CAPACITY_OFFSET) != buffer.capacity() - DATA_OFFSET) {
+      return null;
+    }
+    return new SharedMemoryRing(file, fileKey, buffer, buffer.getInt(CAPACITY_OFFSET), null);
+  }
+
+  private static Object getFileKey(File file) throws IOException
+  {
+    try {
+      final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      /* the file systems without the keys do not tell the replaced files apart, their modification times differ */
+      return attributes.fileKey() == null ? attributes.lastModifiedTime() : attributes.fileKey();
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the ring file was deleted or replaced by the ring of another publisher
+   */
+  public boolean isReplaced()
+  {
+    try {
+      return !fileKey.equals(getFileKey(file));
+    } catch (IOException ex) {
+      logger.debug("Ring file {} is not accessible.", file, ex);
+      return true;
+    }
+  }
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return id of the window the publisher started after, the ring holds all the windows after it until its head moves
+   */
+  public long getStartWindowId()
+  {
+    return buffer.getLong(START_WINDOW_OFFSET);
+  }
+
+  /**
+   * @return width of the streaming windows in milliseconds or 0 if not known yet
+   */
+  public int getWindowWidth()
+  {
+    return buffer.getInt(WINDOW_WIDTH_OFFSET);
+  }
+
+  public void setWindowWidth(int windowWidth)
+  {
+    buffer.putInt(WINDOW_WIDTH_OFFSET, windowWidth);
+  }
+
+  /**
+   * @return true if the publisher stopped writing the ring
+   */
+  public boolean isClosed()
+  {
+    return buffer.getInt(CLOSED_OFFSET) != 0;
+  }
+
+  /**
+   * @return position of the oldest message in the ring
+   */
+  public long getHead()
+  {
+    fence.incrementAndGet();
+    return buffer.getLong(HEAD_OFFSET);
+  }
+
+  /**
+   * @return position following the newest message in the ring
+   */
+  public long getTail()
+  {
+    final long tail = buffer.getLong(TAIL_OFFSET);
+    fence.incrementAndGet();
+    return tail;
+  }
+
+  /**
+   * Appends the message to the ring, the message is visible to the readers after the next {@link #flush}. A message
+   * larger than half of the ring is not stored, the readers are made to skip over it so they read it from the buffer
+   * server instead.
+   *
+   * @param windowId id of the window the message belongs to
+   * @param bytes buffer containing the message
+   * @param offset offset of the message in the buffer
+   * @param length length of the message
+   */
+  public void write(long windowId, byte[] bytes, int offset, int length)
+  {
+    final int size = RECORD_HEADER_SIZE + length;
+    if (size > capacity >> 1) {
+      /* the readers which have not read all the previous messages are behind the head */
+      tail += size;
+      head = tail;
+      buffer.putLong(HEAD_OFFSET, head);
+      fence.incrementAndGet();
+      return;
+    }
+
+    final int index = (int)(tail % capacity);
+    final int remaining = capacity - index;
+    long start = tail;
+    if (remaining < size) {
+      start += remaining;
+    }
+    final long end = start + size;
+    if (head < end - capacity) {
+      /* move the head past the messages about to be overwritten before overwriting them */
+      do {
+        head += getRecordLength(head);
+      } while (head < end - capacity);
+      buffer.putLong(HEAD_OFFSET, head);
+      fence.incrementAndGet();
+    }
+
+    if (start != tail && remaining >= RECORD_HEADER_SIZE) {
+      buffer.putInt(DATA_OFFSET + index, PADDING);
+    }
+    final int startIndex = DATA_OFFSET + (int)(start % capacity);
+    buffer.putInt(startIndex, length);
+    buffer.putLong(startIndex + 4, windowId);
+    data.position(startIndex + RECORD_HEADER_SIZE);
+    data.put(bytes, offset, length);
+    tail = end;
+  }
+
+  /**
+   * Makes the messages written so far visible to the readers.
+   */
+  public void flush()
+  {
+    fence.incrementAndGet();
+    buffer.putLong(TAIL_OFFSET, tail);
+  }
+
+  /**
+   * Returns the length of the record at the given position including the padding before the next record.
+   */
+  private int getRecordLength(long position)
+  {
+    final int index = (int)(position % capacity);
+    final int remaining = capacity - index;
+    if (remaining < RECORD_HEADER_SIZE) {
+      return remaining;
+    }
+    final int length = buffer.getInt(DATA_OFFSET + index);
+    return length == PADDING ? remaining : RECORD_HEADER_SIZE + length;
+  }
+
+  /**
+   * Marks the ring closed, the readers switch to the buffer server once they read all the messages.
+   */
+  @Override
+  public void close()
+  {
+    flush();
+    buffer.putInt(CLOSED_OFFSET, 1);
+    fence.incrementAndGet();
+  }
+
+  /**
+   * Closes the ring and deletes the ring file, the readers which mapped the file keep reading it until they find out
+   * it was closed.
+   */
+  public void delete()
+  {
+    close();
+    /* the file may have been replaced by the ring of another publisher */
+    if (!isReplaced() && !file.delete()) {
+      logger.warn("Ring file {} could not be deleted.", file);
+    }
+    if (lockedFile != null) {
+      WRITTEN_RINGS.remove(file.getAbsoluteFile(), this);
+      try {
+        lockedFile.close();
+      } catch (IOException ex) {
+        logger.debug("Lock of the ring file {} could not be released.", file, ex);
+      }
+    }
+  }
+
+  /**
+   * Deletes the ring files which are not locked by their publishers, left behind by the publishers which died before
+   * they deleted their rings.
+   *
+   * @param directory the directory of the rings
+   * @param prefix the prefix of the names of the ring files to check
+   * @return the number of the files deleted
+   */
+  public static int deleteStale(File directory, final String prefix)
+  {
+    final File[] files = directory.listFiles(new FilenameFilter()
+    {
+      @Override
+      public boolean accept(File dir, String name)
+      {
+        return name.startsWith(prefix);
+      }
+    });
+    if (files == null) {
+      return 0;
+    }
+
+    int deleted = 0;
+    for (File file : files) {
+      final boolean temp = file.getName().endsWith(".tmp");
+      if (WRITTEN_RINGS.containsKey(file.getAbsoluteFile())
+          || temp && System.currentTimeMillis() - file.lastModified() < STALE_TEMP_FILE_MILLIS) {
+        /* a ring being created may not be locked yet */
+        continue;
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        final FileLock lock = raf.getChannel().tryLock();
+        if (lock != null && (temp || raf.length() > DATA_OFFSET && raf.readInt() == MAGIC) && file.delete()) {
+          logger.info("Deleted the stale ring file {}", file);
+          deleted++;
+        }
+      } catch (OverlappingFileLockException ex) {
+        logger.debug("Ring file {} is locked by this process.", file);
+      } catch (IOException ex) {
+        logger.debug("Ring file {} is not accessible.", file, ex);
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * @return a cursor positioned at the oldest message in the ring
+   */
+  public Cursor newCursor()
+  {
+    return new Cursor(getHead());
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{file=" + file + ", capacity=" + capacity + '}';
+  }
+
+  /**
+   * Reads the messages of the ring in order. A cursor is used by a single thread.
+   */
+  public class Cursor
+  {
+    private final ByteBuffer view;
+    private long position;
+    private long windowId;
+    private int length;
+
+    Cursor(long position)
+    {
+      view = buffer.duplicate();
+      this.position = position;
+    }
+
+    /**
+     * @return position of the next message
+     */
+    public long getPosition()
+    {
+      return position;
+    }
+
+    /**
+     * @return id of the window of the message found by the last {@link #next}
+     */
+    public long getWindowId()
+    {
+      return windowId;
+    }
+
+    /**
+     * Finds the next message.
+     *
+     * @return length of the message, {@link #NONE} if there is no message to read yet or {@link #LAPPED} if the
+     * message was overwritten
+     */
+    public int next()
+    {
+      final long tail = getTail();
+      while (position < tail) {
+        final int index = (int)(position % capacity);
+        final int remaining = capacity - index;
+        if (remaining < RECORD_HEADER_SIZE) {
+          position += remaining;
+          continue;
+        }
+        length = view.getInt(DATA_OFFSET + index);
+        windowId = view.getLong(DATA_OFFSET + index + 4);
+        if (position < getHead()) {
+          return LAPPED;
+        }
+        if (length == PADDING) {
+          position += remaining;
+          continue;
+        }
+        if (length < 0 || length > remaining - RECORD_HEADER_SIZE) {
+          throw new IllegalStateException("Invalid message of length " + length + " at " + position + " in " +
+              SharedMemoryRing.this);
+        }
+        return length;
+      }
+      return position > tail ? LAPPED : NONE;
+    }
+
+    /**
+     * Copies the message found by the last {@link #next} and moves to the following message.
+     *
+     * @param bytes buffer to copy the message to, it needs to have the space for the length returned by next
+     * @param offset offset in the buffer to copy the message to
+     * @return true if the message was copied, false if it was overwritten while being copied
+     */
+    public boolean read(byte[] bytes, int offset)
+    {
+      view.position(DATA_OFFSET + (int)(position % capacity) + RECORD_HEADER_SIZE);
+      view.get(bytes, offset, length);
+      if (position < getHead()) {
+        return false;
+      }
+      position += RECORD_HEADER_SIZE + length;
+      return true;
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryRing.class);
+}
@@ -0,0 +1,384 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.stram.engine.StreamContext;
+
+/**
+ * Subscriber which reads the messages of a publisher running on the same host from its {@link SharedMemoryRing}.<p>
+ * <br>
+ * The ring is read by a thread of the subscriber which starts from the window following the finished window of the
+ * stream, just as the buffer server would. The subscriber switches to the buffer server when it cannot read the ring:
+ * when the ring does not show up in time, does not hold the windows or the codec state the subscriber needs, or when
+ * the publisher overwrites the messages before the subscriber reads them. The switch happens once and for good.
+ * <br>
+ * After the switch the buffer server replays the stream from the last window read completely from the ring. The
+ * messages of the partially read window are dropped up to where the ring left off, so every message is delivered once.
+ * The subscriber receives the messages of all the partitions, so its messages are the same as the ones in the ring,
+ * and drops the payload tuples of the other partitions.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class SharedMemorySubscriber extends BufferServerSubscriber
+{
+  /**
+   * time the subscriber waits for the publisher to create the ring before it reads from the buffer server.
+   */
+  public static final long RING_WAIT_MILLIS = 5000;
+  /**
+   * interval of the checks whether an idle ring was replaced by the ring of a redeployed publisher.
+   */
+  public static final long RING_CHECK_MILLIS = 1000;
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private StreamContext context;
+  private Thread reader;
+  private volatile boolean alive;
+  private volatile boolean subscribed;
+  private byte[] chunk;
+  private int chunkOffset;
+  /*
+   * progress of the ring, the buffer server replays the stream from the finished window and the messages of the
+   * window in progress are skipped.
+   */
+  private boolean delivering;
+  private long finishedWindowId;
+  private int windowMessages;
+  private boolean checkpointDelivered;
+  private boolean endStreamDelivered;
+  private byte[] resetWindow;
+  /*
+   * replay of the buffer server after the switch.
+   */
+  private boolean catchingUp;
+  private byte[] replayedResetWindow;
+  private int skippedMessages;
+
+  public SharedMemorySubscriber(String id, int queueCapacity)
+  {
+    super(id, queueCapacity);
+    unfiltered = true;
+  }
+
+  @Override
+  public void activate(final StreamContext context)
+  {
+    this.context = context;
+    finishedWindowId = context.getFinishedWindowId();
+    alive = true;
+    reader = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          SharedMemoryRing ring = openRing(context.get(StreamContext.SHARED_MEMORY_RING));
+          if (ring != null) {
+            read(ring);
+          }
+          subscribe();
+        } catch (InterruptedException ex) {
+          logger.debug("Stopped reading {}", context.getSinkId());
+        } catch (IOException | RuntimeException ex) {
+          logger.warn("Cannot read the shared memory ring of {}", context.getSinkId(), ex);
+          subscribe();
+        }
+      }
+    }, "ring:" + context.getSinkId());
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  @Override
+  public void deactivate()
+  {
+    alive = false;
+    if (reader != null) {
+      reader.interrupt();
+      try {
+        reader.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      reader = null;
+    }
+    if (subscribed) {
+      super.deactivate();
+    }
+  }
+
+  /**
+   * @return true if the subscriber switched to the buffer server
+   */
+  public boolean isSubscribed()
+  {
+    return subscribed;
+  }
+
+  private SharedMemoryRing openRing(File file) throws IOException, InterruptedException
+  {
+    final long deadline = System.currentTimeMillis() + RING_WAIT_MILLIS;
+    SharedMemoryRing ring;
+    while ((ring = SharedMemoryRing.open(file)) == null || ring.isClosed()) {
+      if (System.currentTimeMillis() > deadline) {
+        logger.debug("Ring {} not found", file);
+        return null;
+      }
+      Thread.sleep(10);
+    }
+    return ring;
+  }
+
+  /**
+   * Reads the messages from the ring until it cannot be read any more.
+   */
+  private void read(SharedMemoryRing ring) throws InterruptedException
+  {
+    final SharedMemoryRing.Cursor cursor = ring.newCursor();
+    final boolean complete = cursor.getPosition() == 0;
+    if (complete && ring.getStartWindowId() > finishedWindowId) {
+      logger.debug("Ring {} starts after window {}", ring, Codec.getStringWindowId(finishedWindowId));
+      return;
+    }
+    /* a stateful codec needs the state sent since the last checkpoint */
+    boolean stateComplete = complete || serde != null;
+    boolean first = true;
+    long parkNanos = BufferServerPublisher.MIN_PARK_NANOS;
+    long checkMillis = System.currentTimeMillis() + RING_CHECK_MILLIS;
+
+    logger.debug("Reading {} after window {}", ring, Codec.getStringWindowId(finishedWindowId));
+    while (alive) {
+      final boolean closed = ring.isClosed();
+      final int length = cursor.next();
+      if (length == SharedMemoryRing.NONE) {
+        if (closed) {
+          logger.debug("Ring {} closed", ring);
+          return;
+        }
+        if (System.currentTimeMillis() > checkMillis) {
+          if (ring.isReplaced()) {
+            logger.debug("Ring {} replaced", ring);
+            return;
+          }
+          checkMillis = System.currentTimeMillis() + RING_CHECK_MILLIS;
+        }
+        park(parkNanos);
+        parkNanos = Math.min(BufferServerPublisher.MAX_PARK_NANOS, parkNanos << 1);
+        continue;
+      }
+      parkNanos = BufferServerPublisher.MIN_PARK_NANOS;
+      if (length == SharedMemoryRing.LAPPED) {
+        logger.debug("Overtaken by the publisher of {}", ring);
+        return;
+      }
+
+      if (chunk == null || chunk.length - chunkOffset < length) {
+        /* the fragments delivered from the chunk keep it reachable, it is not reused */
+        chunk = new byte[Math.max(CHUNK_SIZE, length)];
+        chunkOffset = 0;
+      }
+      if (!cursor.read(chunk, chunkOffset)) {
+        logger.debug("Overtaken by the publisher of {}", ring);
+        return;
+      }
+      final int offset = chunkOffset;
+      chunkOffset += length;
+      final long windowId = cursor.getWindowId();
+      final byte type = chunk[offset];
+
+      if (first) {
+        first = false;
+        if (!complete && windowId > finishedWindowId) {
+          logger.debug("Ring {} does not hold window {}", ring, Codec.getStringWindowId(finishedWindowId + 1));
+          return;
+        }
+        if (!complete && type != MessageType.RESET_WINDOW_VALUE) {
+          /* the reset window message was overwritten, the base seconds come from the window of the message */
+          if (ring.getWindowWidth() <= 0) {
+            return;
+          }
+          resetWindow = ResetWindowTuple.getSerializedTuple((int)(windowId >> 32), ring.getWindowWidth());
+          deliver(resetWindow, 0, resetWindow.length);
+        }
+      }
+
+      if (delivering) {
+        switch (type) {
+          case MessageType.BEGIN_WINDOW_VALUE:
+            windowMessages = 1;
+            break;
+
+          case MessageType.END_WINDOW_VALUE:
+            finishedWindowId = windowId;
+            windowMessages = 0;
+            checkpointDelivered = false;
+            break;
+
+          default:
+            if (windowMessages > 0) {
+              windowMessages++;
+            }
+            break;
+        }
+      } else {
+        /* catch up with the window the same way the buffer server does */
+        if (type == MessageType.BEGIN_WINDOW_VALUE && windowId > finishedWindowId) {
+          if (!stateComplete) {
+            logger.debug("Ring {} does not hold the codec state for window {}", ring, Codec.getStringWindowId(windowId));
+            return;
+          }
+          delivering = true;
+          windowMessages = 1;
+        } else if (type == MessageType.CHECKPOINT_VALUE) {
+          stateComplete = true;
+        } else if (type != MessageType.RESET_WINDOW_VALUE && type != MessageType.CODEC_STATE_VALUE
+            && type != MessageType.END_STREAM_VALUE) {
+          continue;
+        }
+      }
+
+      switch (type) {
+        case MessageType.CHECKPOINT_VALUE:
+          checkpointDelivered = true;
+          break;
+
+        case MessageType.END_STREAM_VALUE:
+          endStreamDelivered = true;
+          break;
+
+        case MessageType.RESET_WINDOW_VALUE:
+          resetWindow = Arrays.copyOfRange(chunk, offset, offset + length);
+          break;
+
+        default:
+          break;
+      }
+      deliver(chunk, offset, length);
+    }
+    throw new InterruptedException();
+  }
+
+  private void park(long nanos) throws InterruptedException
+  {
+    LockSupport.parkNanos(this, nanos);
+    if (Thread.interrupted() || !alive) {
+      throw new InterruptedException();
+    }
+  }
+
+  /**
+   * Passes the message read from the ring to the subscriber, waiting while the subscriber is full.
+   */
+  private void deliver(byte[] buffer, int offset, int length) throws InterruptedException
+  {
+    long parkNanos = BufferServerPublisher.MIN_PARK_NANOS;
+    while (offeredFragments.remainingCapacity() == 0) {
+      park(parkNanos);
+      parkNanos = Math.min(BufferServerPublisher.MAX_PARK_NANOS, parkNanos << 1);
+    }
+    readByteCount.addAndGet(length);
+    super.onMessage(buffer, offset, length);
+  }
+
+  /**
+   * Switches to the buffer server, which replays the stream from the last window finished in the ring.
+   */
+  private void subscribe()
+  {
+    if (!alive) {
+      return;
+    }
+    catchingUp = true;
+    skippedMessages = delivering ? windowMessages : 0;
+    logger.debug("Subscribing {} to the buffer server after window {} skipping {} messages", context.getSinkId(),
+        Codec.getStringWindowId(finishedWindowId), skippedMessages);
+    subscribed = true;
+    activate(context, finishedWindowId, 0, null);
+  }
+
+  @Override
+  public void onMessage(byte[] buffer, int offset, int length)
+  {
+    if (catchingUp || skippedMessages > 0) {
+      final byte type = buffer[offset];
+      if (type == MessageType.NO_MESSAGE_VALUE || type == MessageType.NO_MESSAGE_ODD_VALUE) {
+        return;
+      }
+
+      if (catchingUp) {
+        /* the messages of the windows the ring delivered, the buffer server sends those preceding the window */
+        switch (type) {
+          case MessageType.BEGIN_WINDOW_VALUE:
+            catchingUp = false;
+            if (replayedResetWindow != null && !Arrays.equals(replayedResetWindow, resetWindow)) {
+              super.onMessage(replayedResetWindow, 0, replayedResetWindow.length);
+            }
+            break;
+
+          case MessageType.RESET_WINDOW_VALUE:
+            replayedResetWindow = Arrays.copyOfRange(buffer, offset, offset + length);
+            return;
+
+          case MessageType.CODEC_STATE_VALUE:
+            super.onMessage(buffer, offset, length);
+            return;
+
+          case MessageType.CHECKPOINT_VALUE:
+            if (delivering && !checkpointDelivered
+                && Tuple.getTuple(buffer, offset, length).getWindowId() == (int)finishedWindowId) {
+              checkpointDelivered = true;
+              super.onMessage(buffer, offset, length);
+            }
+            return;
+
+          case MessageType.END_STREAM_VALUE:
+            if (!endStreamDelivered) {
+              endStreamDelivered = true;
+              super.onMessage(buffer, offset, length);
+            }
+            return;
+
+          default:
+            return;
+        }
+      }
+
+      if (skippedMessages > 0) {
+        /* the messages the ring delivered of the window in progress */
+        skippedMessages--;
+        return;
+      }
+    }
+    super.onMessage(buffer, offset, length);
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemorySubscriber.class);
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.tuple;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+
+/**
+ * Control tuple injected by the input operators to trace the latency of the streams.<p>
+ * <br>
+ * Every operator receiving the marker records how long it took to reach it and sends a copy emitted at that time
+ * downstream, so the latency is known from the source as well as for the last hop. The times are in milliseconds.
+ * <br>
+ *
+ * @see com.datatorrent.stram.plan.logical.LogicalPlan#LATENCY_TRACING_INTERVAL_MILLIS
+ * @since 3.7.0
+ */
+public class LatencyMarkerTuple extends Tuple
+{
+  private final int sourceOperatorId;
+  private final long createdMillis;
+  private final long emittedMillis;
+  private final long bufferServerMillis;
+  private final long receivedMillis;
+
+  /**
+   * Creates the marker emitted by an operator, which is received as soon as it is emitted unless it is sent through
+   * the buffer server.
+   *
+   * @param sourceOperatorId id of the input operator which created the marker
+   * @param createdMillis time the marker was created
+   * @param emittedMillis time the marker is emitted
+   */
+  public LatencyMarkerTuple(int sourceOperatorId, long createdMillis, long emittedMillis)
+  {
+    this(sourceOperatorId, createdMillis, emittedMillis, 0, emittedMillis);
+  }
+
+  /**
+   * Creates the marker received from a stream.
+   *
+   * @param sourceOperatorId id of the input operator which created the marker
+   * @param createdMillis time the marker was created
+   * @param emittedMillis time the marker was emitted by the upstream operator
+   * @param bufferServerMillis time the marker was received by the buffer server, 0 if it was not
+   * @param receivedMillis time the marker was received by the subscriber
+   */
+  public LatencyMarkerTuple(int sourceOperatorId, long createdMillis, long emittedMillis, long bufferServerMillis,
+      long receivedMillis)
+  {
+    super(MessageType.LATENCY_MARKER, 0);
+    this.sourceOperatorId = sourceOperatorId;
+    this.createdMillis = createdMillis;
+    this.emittedMillis = emittedMillis;
+    this.bufferServerMillis = bufferServerMillis;
+    this.receivedMillis = receivedMillis;
+  }
+
+  public int getSourceOperatorId()
+  {
+    return sourceOperatorId;
+  }
+
+  public long getCreatedMillis()
+  {
+    return createdMillis;
+  }
+
+  public long getEmittedMillis()
+  {
+    return emittedMillis;
+  }
+
+  public long getBufferServerMillis()
+  {
+    return bufferServerMillis;
+  }
+
+  public long getReceivedMillis()
+  {
+    return receivedMillis;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LatencyMarkerTuple{sourceOperatorId=" + sourceOperatorId + ", createdMillis=" + createdMillis
+        + ", emittedMillis=" + emittedMillis + ", bufferServerMillis=" + bufferServerMillis + ", receivedMillis="
+        + receivedMillis + '}';
+  }
+}
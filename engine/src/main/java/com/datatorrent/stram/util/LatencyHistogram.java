@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>Histogram of latencies in milliseconds with the buckets growing by the powers of two.</p>
+ * <br>
+ * The bucket 0 counts the latencies of 0 milliseconds and the bucket i the latencies in [2^(i-1), 2^i) milliseconds,
+ * so the percentiles are reported with the precision of the bucket they fall in.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class LatencyHistogram implements java.io.Serializable
+{
+  private static final long serialVersionUID = 201710180000L;
+  public static final int BUCKETS = 40;
+  private final long[] counts = new long[BUCKETS];
+  private long count;
+  private long max;
+
+  /**
+   * Returns the bucket the latency is counted in.
+   *
+   * @param millis latency in milliseconds
+   * @return index of the bucket
+   */
+  public static int getBucket(long millis)
+  {
+    if (millis <= 0) {
+      return 0;
+    }
+    return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(millis));
+  }
+
+  /**
+   * Returns the highest latency counted in the bucket.
+   *
+   * @param bucket index of the bucket
+   * @return upper bound of the bucket in milliseconds, inclusive
+   */
+  public static long getBucketUpperBound(int bucket)
+  {
+    return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  public synchronized void add(long millis)
+  {
+    counts[getBucket(millis)]++;
+    count++;
+    if (millis > max) {
+      max = millis;
+    }
+  }
+
+  public void merge(LatencyHistogram other)
+  {
+    long[] otherCounts;
+    long otherCount;
+    long otherMax;
+    /* copy the other one first so the two locks are never held together */
+    synchronized (other) {
+      otherCounts = other.counts.clone();
+      otherCount = other.count;
+      otherMax = other.max;
+    }
+    synchronized (this) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += otherCounts[i];
+      }
+      count += otherCount;
+      if (otherMax > max) {
+        max = otherMax;
+      }
+    }
+  }
+
+  public synchronized long getCount()
+  {
+    return count;
+  }
+
+  public synchronized long getMax()
+  {
+    return max;
+  }
+
+  public synchronized long[] getCounts()
+  {
+    return counts.clone();
+  }
+
+  /**
+   * Returns the latency below which the given percentage of the samples falls.
+   *
+   * @param percentile percentage between 0 and 100
+   * @return upper bound of the bucket holding the percentile capped at the max latency, 0 when there are no samples
+   */
+  public synchronized long getPercentile(double percentile)
+  {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long)Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank && seen > 0) {
+        return Math.min(max, getBucketUpperBound(i));
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "LatencyHistogram{count=" + count + ", max=" + max + ", counts=" + Arrays.toString(counts) + '}';
+  }
+}
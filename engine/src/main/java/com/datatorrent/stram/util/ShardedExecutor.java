@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.datatorrent.common.util.NameableThreadFactory;
+
+/**
+ * Executes the tasks on a fixed number of threads, the tasks of the same key on the same thread.<p>
+ * <br>
+ * The tasks submitted with the same key are executed in the order they were submitted and never concurrently, so the
+ * state they update does not need further synchronization as long as it is partitioned by the key.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class ShardedExecutor
+{
+  private final ExecutorService[] shards;
+
+  /**
+   * @param name name of the threads
+   * @param numberOfShards number of threads
+   */
+  public ShardedExecutor(String name, int numberOfShards)
+  {
+    if (numberOfShards < 1) {
+      throw new IllegalArgumentException("Invalid number of shards " + numberOfShards);
+    }
+    shards = new ExecutorService[numberOfShards];
+    NameableThreadFactory threadFactory = new NameableThreadFactory(name, true);
+    for (int i = 0; i < numberOfShards; i++) {
+      shards[i] = Executors.newSingleThreadExecutor(threadFactory);
+    }
+  }
+
+  public int getNumberOfShards()
+  {
+    return shards.length;
+  }
+
+  public void execute(int key, Runnable task)
+  {
+    shards[(key & Integer.MAX_VALUE) % shards.length].execute(task);
+  }
+
+  /**
+   * Waits for the tasks submitted so far to complete.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void awaitTasks() throws InterruptedException
+  {
+    Future<?>[] barriers = new Future<?>[shards.length];
+    for (int i = 0; i < shards.length; i++) {
+      barriers[i] = shards[i].submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+        }
+      });
+    }
+    for (Future<?> barrier : barriers) {
+      try {
+        barrier.get();
+      } catch (ExecutionException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  public void shutdown()
+  {
+    for (ExecutorService shard : shards) {
+      shard.shutdown();
+    }
+  }
+
+  /**
+   * Waits for the tasks submitted before the shutdown to complete.
+   *
+   * @param timeout maximum time to wait for each of the shards
+   * @param unit unit of the timeout
+   * @return true if all the tasks completed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    boolean terminated = true;
+    for (ExecutorService shard : shards) {
+      terminated &= shard.awaitTermination(timeout, unit);
+    }
+    return terminated;
+  }
+}
@@ -130,6 +130,46 @@ public class AppInfo
       return null;
     }
 
+    /**
+     * @return average time in microseconds spent in the processing of a container heartbeat up to the response
+     */
+    @javax.xml.bind.annotation.XmlElement
+    @AutoMetric
+    public long getHeartbeatMicrosMA()
+    {
+      return 0;
+    }
+
+    /**
+     * @return average time in microseconds spent in the aggregation of the stats reported in a heartbeat of an operator
+     */
+    @javax.xml.bind.annotation.XmlElement
+    @AutoMetric
+    public long getOperatorStatsMicrosMA()
+    {
+      return 0;
+    }
+
+    /**
+     * @return average time in microseconds spent in the periodic aggregation of the end window stats
+     */
+    @javax.xml.bind.annotation.XmlElement
+    @AutoMetric
+    public long getEndWindowStatsMicrosMA()
+    {
+      return 0;
+    }
+
+    /**
+     * @return average time in microseconds spent in the periodic search of the critical path
+     */
+    @javax.xml.bind.annotation.XmlElement
+    @AutoMetric
+    public long getCriticalPathMicrosMA()
+    {
+      return 0;
+    }
+
     @javax.xml.bind.annotation.XmlElement
     public long getCurrentWindowId()
     {
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.webapp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * <p>Latencies sampled by the latency markers on the input ports of an operator or the sinks of a stream.</p>
+ * <br>
+ * The totals merge the samples of all the listed ports. The end to end latency is measured since the marker was
+ * created by the input operator, the other latencies are the time the marker spent on its last hop: from the emit to
+ * the buffer server, in the buffer server and in the queue of the port.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+@XmlRootElement(name = "latency")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class LatencyInfo
+{
+  public static class Histogram
+  {
+    public long count;
+    public long p50;
+    public long p90;
+    public long p99;
+    public long max;
+    /**
+     * count of the samples by the upper bound, inclusive, of the bucket in milliseconds, the empty buckets are left out
+     */
+    public Map<String, Long> buckets = new LinkedHashMap<>();
+  }
+
+  public static class Port
+  {
+    public String operatorId;
+    public String portName;
+    public Histogram endToEnd;
+    public Histogram publisher;
+    public Histogram bufferServer;
+    public Histogram queue;
+  }
+
+  public Histogram endToEnd;
+  public Histogram publisher;
+  public Histogram bufferServer;
+  public Histogram queue;
+  public List<Port> ports = new ArrayList<>();
+}
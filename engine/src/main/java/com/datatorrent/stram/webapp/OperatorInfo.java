@@ -69,6 +69,21 @@ public class OperatorInfo
   public long tuplesEmittedPSMA;
   @RecordField(type = "stats")
   public double cpuPercentageMA;
+  /**
+   * rate of the allocations of the operator thread in bytes per second and the bytes allocated since it was deployed
+   */
+  @RecordField(type = "stats")
+  public long allocatedBytesPSMA;
+  @RecordField(type = "stats")
+  public long totalAllocatedBytes;
+  /**
+   * garbage collections in the containers of the operator while it was running, shared with the other operators of
+   * the containers
+   */
+  @RecordField(type = "stats")
+  public long gcCollectionCount;
+  @RecordField(type = "stats")
+  public long gcCollectionTime;
   @RecordField(type = "stats")
   public long latencyMA;
   public String status;
@@ -93,6 +108,8 @@ public class OperatorInfo
   public long checkpointTime;
   @RecordField(type = "stats")
   public long checkpointTimeMA;
+  @RecordField(type = "stats")
+  public long restoreTime;
 
   /**
    * @param info
@@ -37,6 +37,12 @@ public class PortInfo
   public long totalTuples;
   public long tuplesPSMA;
   public long bufferServerBytesPSMA;
+  /**
+   * ratio of the uncompressed to the compressed bytes and the time spent compressing or decompressing them, set when
+   * the stream of the port is compressed
+   */
+  public double compressionRatio;
+  public long compressionTimeMillis;
   public long queueSizeMA;
   public String recordingId;
 }
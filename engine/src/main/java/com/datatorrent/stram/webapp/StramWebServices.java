@@ -126,6 +126,7 @@ public class StramWebServices
   public static final String PATH_ALERTS = "alerts";
   public static final String PATH_LOGGERS = "loggers";
   public static final String PATH_STACKTRACE = "stackTrace";
+  public static final String PATH_LATENCY = "latency";
   public static final long WAIT_TIME = 5000;
   public static final long STACK_TRACE_WAIT_TIME = 1000;
   public static final long STACK_TRACE_ATTEMPTS = 10;
@@ -265,6 +266,32 @@ public class StramWebServices
     return new JSONObject(objectMapper.writeValueAsString(oi));
   }
 
+  @GET
+  @Path(PATH_PHYSICAL_PLAN_OPERATORS + "/{operatorId:\\d+}/" + PATH_LATENCY)
+  @Produces(MediaType.APPLICATION_JSON)
+  public JSONObject getOperatorLatencyInfo(@PathParam("operatorId") int operatorId) throws Exception
+  {
+    init();
+    LatencyInfo li = dagManager.getOperatorLatencyInfo(operatorId);
+    if (li == null) {
+      throw new NotFoundException();
+    }
+    return new JSONObject(objectMapper.writeValueAsString(li));
+  }
+
+  @GET
+  @Path(PATH_PHYSICAL_PLAN_STREAMS + "/{streamName}/" + PATH_LATENCY)
+  @Produces(MediaType.APPLICATION_JSON)
+  public JSONObject getStreamLatencyInfo(@PathParam("streamName") String streamName) throws Exception
+  {
+    init();
+    LatencyInfo li = dagManager.getStreamLatencyInfo(streamName);
+    if (li == null) {
+      throw new NotFoundException();
+    }
+    return new JSONObject(objectMapper.writeValueAsString(li));
+  }
+
   @GET
   @Path(PATH_PHYSICAL_PLAN_OPERATORS + "/{operatorId:\\d+}/ports")
   @Produces(MediaType.APPLICATION_JSON)
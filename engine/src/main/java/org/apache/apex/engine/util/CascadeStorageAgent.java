@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.common.util.AsyncStorageAgent;
+import org.apache.apex.common.util.IncrementalStorageAgent;
 
 import com.google.common.collect.Maps;
 
@@ -43,7 +44,7 @@ import com.datatorrent.api.StorageAgent;
  *
  * @since 3.6.0
  */
-public class CascadeStorageAgent implements StorageAgent, AsyncStorageAgent, Serializable
+public class CascadeStorageAgent implements StorageAgent, AsyncStorageAgent, IncrementalStorageAgent, Serializable
 {
   private static final long serialVersionUID = 985557590735264920L;
   private static final Logger logger = LoggerFactory.getLogger(CascadeStorageAgent.class);
@@ -146,6 +147,16 @@ public class CascadeStorageAgent implements StorageAgent, AsyncStorageAgent, Ser
     return current.load(operatorId, windowId);
   }
 
+  @Override
+  public long getBaseWindowId(int operatorId, long windowId) throws IOException
+  {
+    StorageAgent agent = isCheckpointFromParent(operatorId, windowId) ? parent : current;
+    if (agent instanceof IncrementalStorageAgent) {
+      return ((IncrementalStorageAgent)agent).getBaseWindowId(operatorId, windowId);
+    }
+    return windowId;
+  }
+
   @Override
   public long[] getWindowIds(int operatorId) throws IOException
   {
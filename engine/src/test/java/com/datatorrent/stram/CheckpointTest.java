@@ -33,6 +33,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.apex.common.util.IncrementalCheckpointable;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.SystemClock;
 
@@ -52,6 +53,7 @@ import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.BaseOperator;
 import com.datatorrent.common.util.DefaultDelayOperator;
 import com.datatorrent.common.util.FSStorageAgent;
+import com.datatorrent.common.util.IncrementalFSStorageAgent;
 import com.datatorrent.stram.MockContainer.MockOperatorStats;
 import com.datatorrent.stram.StreamingContainerManager.UpdateCheckpointsContext;
 import com.datatorrent.stram.api.Checkpoint;
@@ -180,6 +182,78 @@ public class CheckpointTest
     }
   }
 
+  private static class IncrementalInputOperator extends BaseOperator implements InputOperator, IncrementalCheckpointable
+  {
+    private final ArrayList<Long> windowIds = new ArrayList<>();
+    private transient ArrayList<Long> newWindowIds = new ArrayList<>();
+
+    @Override
+    public void beginWindow(long windowId)
+    {
+      windowIds.add(windowId);
+      newWindowIds.add(windowId);
+      if (windowIds.size() == 20) {
+        BaseOperator.shutdown();
+      }
+    }
+
+    @Override
+    public void emitTuples()
+    {
+    }
+
+    @Override
+    public Object getCheckpointDelta()
+    {
+      return new ArrayList<>(newWindowIds);
+    }
+
+    @Override
+    public void resetCheckpointDelta()
+    {
+      newWindowIds.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void applyCheckpointDelta(Object delta)
+    {
+      windowIds.addAll((List<Long>)delta);
+    }
+  }
+
+  /**
+   * Test that the checkpoints the recovery checkpoint depends on are not purged.
+   * @throws Exception
+   */
+  @Test
+  public void testIncrementalCheckpoints() throws Exception
+  {
+    IncrementalFSStorageAgent storageAgent = new IncrementalFSStorageAgent(testMeta.getPath(), null);
+    storageAgent.setFullSnapshotInterval(4);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, storageAgent);
+    dag.setAttribute(LogicalPlan.CHECKPOINT_WINDOW_COUNT, 1);
+    dag.setAttribute(LogicalPlan.HEARTBEAT_INTERVAL_MILLIS, 50);
+    dag.setAttribute(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS, 50);
+
+    IncrementalInputOperator o1 = dag.addOperator("o1", new IncrementalInputOperator());
+
+    StramLocalCluster sc = new StramLocalCluster(dag);
+    sc.setHeartbeatMonitoringEnabled(false);
+    sc.run();
+
+    PTOperator o1p1 = sc.dnmgr.getPhysicalPlan().getOperators(dag.getMeta(o1)).get(0);
+    Assert.assertFalse("checkpoints " + o1p1, o1p1.checkpoints.isEmpty());
+    for (Checkpoint cp : o1p1.checkpoints) {
+      IncrementalInputOperator restored = (IncrementalInputOperator)storageAgent.load(o1p1.getId(), cp.windowId);
+      List<Long> windowIds = restored.windowIds;
+      Assert.assertEquals("last window of " + cp, cp.windowId, (long)windowIds.get(windowIds.size() - 1));
+      for (int i = 1; i < windowIds.size(); i++) {
+        Assert.assertEquals("windows of " + cp + " " + windowIds, windowIds.get(i - 1) + 1, (long)windowIds.get(i));
+      }
+    }
+  }
+
   @Stateless
   public static class StatelessOperator extends GenericTestOperator
   {
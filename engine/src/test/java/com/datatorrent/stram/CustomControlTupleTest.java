@@ -43,6 +43,7 @@ import com.datatorrent.api.StreamingApplication;
 import com.datatorrent.api.annotation.ApplicationAnnotation;
 import com.datatorrent.common.partitioner.StatelessPartitioner;
 import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 
 public class CustomControlTupleTest
 {
@@ -237,6 +238,21 @@ public class CustomControlTupleTest
     }
   }
 
+  @ApplicationAnnotation(name = "TestNodeLocal")
+  public static class Application6 implements StreamingApplication
+  {
+    @Override
+    public void populateDAG(DAG dag, Configuration conf)
+    {
+      Generator randomGenerator = dag.addOperator("randomGenerator", Generator.class);
+      DefaultProcessor processor = dag.addOperator("process", DefaultProcessor.class);
+      ControlAwareReceiver receiver = dag.addOperator("receiver", ControlAwareReceiver.class);
+      dag.setAttribute(LogicalPlan.SHARED_MEMORY_STREAMS, true);
+      dag.addStream("genToProcessor", randomGenerator.out, processor.input).setLocality(DAG.Locality.NODE_LOCAL);
+      dag.addStream("ProcessorToReceiver", processor.output, receiver.input).setLocality(DAG.Locality.NODE_LOCAL);
+    }
+  }
+
   public void testApp(StreamingApplication app) throws Exception
   {
     try {
@@ -297,6 +313,13 @@ public class CustomControlTupleTest
     testApp(new Application5());
   }
 
+  @Test
+  public void testNodeLocal() throws Exception
+  {
+    immediate = false;
+    testApp(new Application6());
+  }
+
   @Test
   public void testDefaultPropagationImmediate() throws Exception
   {
@@ -586,10 +586,22 @@ public class StreamingContainerManagerTest
 
   @Test
   public void testProcessHeartbeat() throws Exception
+  {
+    testProcessHeartbeat(0);
+  }
+
+  @Test
+  public void testProcessHeartbeatStatsWorkers() throws Exception
+  {
+    testProcessHeartbeat(2);
+  }
+
+  private void testProcessHeartbeat(int statsWorkers) throws Exception
   {
     TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
     dag.setOperatorAttribute(o1, OperatorContext.STATS_LISTENERS, Arrays.asList(new StatsListener[]{new PartitioningTest.PartitionLoadWatch()}));
     dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    dag.setAttribute(LogicalPlan.HEARTBEAT_STATS_WORKERS, statsWorkers);
 
     StreamingContainerManager scm = new StreamingContainerManager(dag);
     PhysicalPlan plan = scm.getPhysicalPlan();
@@ -632,6 +644,7 @@ public class StreamingContainerManagerTest
     ohb.windowStats = Lists.newArrayList(stats);
     cstats.operators.add(ohb);
     scm.processHeartbeat(hb); // activate operator
+    scm.awaitOperatorStats();
 
     Assert.assertEquals(PTContainer.State.ACTIVE, o1p1.getContainer().getState());
     Assert.assertEquals("state " + o1p1, PTOperator.State.ACTIVE, o1p1.getState());
@@ -660,6 +673,7 @@ public class StreamingContainerManagerTest
     cstats.operators.clear();
     cstats.operators.add(ohb);
     scm.processHeartbeat(hb);
+    scm.awaitOperatorStats();
 
     Assert.assertEquals("tuples " + o1p1, 2, o1p1.stats.totalTuplesEmitted.get());
     Assert.assertEquals("window " + o1p1, 4, o1p1.stats.currentWindowId.get());
@@ -668,7 +682,7 @@ public class StreamingContainerManagerTest
     scm.processEvents();
     Assert.assertEquals("statsQueue " + o1p1, 0, o1p1.stats.listenerStats.size());
     Assert.assertEquals("lastStats " + o1p1, 2, o1p1.stats.lastWindowedStats.size());
-
+    scm.teardown();
   }
 
   public static class TestStaticPartitioningSerDe extends DefaultStatefulStreamCodec<Object>
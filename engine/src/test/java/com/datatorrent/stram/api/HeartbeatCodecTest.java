@@ -0,0 +1,339 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.LatencySample;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ShutdownType;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+
+public class HeartbeatCodecTest
+{
+  public static class CustomMetric implements Serializable
+  {
+    private static final long serialVersionUID = 201710180000L;
+    final long sum;
+    final long count;
+
+    CustomMetric(long sum, long count)
+    {
+      this.sum = sum;
+      this.count = count;
+    }
+  }
+
+  private static ContainerHeartbeat newHeartbeat(int numberOfOperators, int numberOfWindows)
+  {
+    ContainerHeartbeat hb = new ContainerHeartbeat();
+    hb.bufferServerHost = "node17.cluster";
+    hb.bufferServerPort = 41235;
+    hb.jvmName = "12345@node17.cluster";
+    hb.memoryMBFree = 713;
+    hb.gcCollectionTime = 1234;
+    hb.gcCollectionCount = 56;
+    hb.stats = new ContainerStats("container_1507651203458_0001_01_000002");
+    for (int i = 0; i < numberOfOperators; i++) {
+      OperatorHeartbeat ohb = new OperatorHeartbeat();
+      ohb.nodeId = i + 1;
+      ohb.generatedTms = 1508284800000L + i;
+      ohb.intervalMs = 500;
+      ohb.state = OperatorHeartbeat.DeployState.ACTIVE;
+      ohb.restoreTimeMillis = 1500 * i;
+      for (int w = 0; w < numberOfWindows; w++) {
+        OperatorStats stats = new OperatorStats();
+        stats.windowId = 0x59e6b1c200000000L + w;
+        stats.checkpoint = new Checkpoint(0x59e6b1c200000000L, 0, 60);
+        stats.cpuTimeUsed = 12345678L;
+        stats.allocatedBytes = (3L << 30) + w;
+        stats.gcCollectionCount = w;
+        stats.gcCollectionTime = 20L * w;
+        stats.inputPorts = new ArrayList<>();
+        stats.outputPorts = new ArrayList<>();
+        PortStats input = new PortStats("input");
+        input.tupleCount = 1000 + w;
+        input.endWindowTimestamp = 1508284800000L + w;
+        input.queueSize = 12;
+        input.bufferServerBytes = 123456;
+        input.uncompressedBytes = 345678;
+        input.compressedBytes = 123000;
+        input.compressionNanos = 987654;
+        stats.inputPorts.add(input);
+        PortStats output = new PortStats("output");
+        output.tupleCount = 2000 + w;
+        output.endWindowTimestamp = 1508284800000L + w;
+        stats.outputPorts.add(output);
+        stats.metrics = new HashMap<>();
+        stats.metrics.put("tuplesPerSec", 1000.5 + w);
+        stats.metrics.put("count", (long)w);
+        ohb.windowStats.add(stats);
+      }
+      hb.stats.addNodeStats(ohb);
+    }
+    return hb;
+  }
+
+  private static <T extends Writable> T roundTrip(Writable message, T copy) throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    message.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    copy.readFields(in);
+    Assert.assertEquals("bytes read", out.getLength(), in.getPosition());
+    return copy;
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testContainerHeartbeat() throws IOException
+  {
+    ContainerHeartbeat hb = newHeartbeat(2, 2);
+    hb.restartRequested = true;
+    hb.stackTrace = "stack trace";
+    OperatorStats stats = hb.stats.operators.get(0).windowStats.get(0);
+    stats.checkpointStats = new CheckpointStats();
+    stats.checkpointStats.checkpointStartTime = 1508284800000L;
+    stats.checkpointStats.checkpointTime = 25;
+    stats.recordingId = "recording";
+    stats.inputPorts.get(0).recordingId = "port recording";
+    stats.counters = Arrays.asList(1, 2, 3);
+    stats.metrics.put("int", 1);
+    stats.metrics.put("float", 1.5f);
+    stats.metrics.put("boolean", true);
+    stats.metrics.put("string", "value");
+    stats.metrics.put("null", null);
+    stats.metrics.put("custom", new CustomMetric(10, 3));
+    hb.stats.operators.get(0).latencySamples = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      LatencySample sample = new LatencySample();
+      sample.portName = "input";
+      sample.sourceOperatorId = 3;
+      sample.endToEndMillis = 120 + i;
+      sample.publisherMillis = 2;
+      sample.bufferServerMillis = 15;
+      sample.queueMillis = 100 + i;
+      hb.stats.operators.get(0).latencySamples.add(sample);
+    }
+    hb.stats.operators.get(1).state = OperatorHeartbeat.DeployState.FAILED;
+    hb.stats.operators.get(1).windowStats.get(1).checkpoint = Checkpoint.INITIAL_CHECKPOINT;
+
+    ContainerHeartbeat copy = roundTrip(hb, new ContainerHeartbeat());
+    Assert.assertEquals("bufferServerHost", hb.bufferServerHost, copy.bufferServerHost);
+    Assert.assertEquals("bufferServerPort", hb.bufferServerPort, copy.bufferServerPort);
+    Assert.assertEquals("jvmName", hb.jvmName, copy.jvmName);
+    Assert.assertEquals("memoryMBFree", hb.memoryMBFree, copy.memoryMBFree);
+    Assert.assertTrue("restartRequested", copy.restartRequested);
+    Assert.assertEquals("gcCollectionTime", hb.gcCollectionTime, copy.gcCollectionTime);
+    Assert.assertEquals("gcCollectionCount", hb.gcCollectionCount, copy.gcCollectionCount);
+    Assert.assertEquals("sentTms", hb.sentTms, copy.sentTms);
+    Assert.assertEquals("stackTrace", hb.stackTrace, copy.stackTrace);
+    Assert.assertEquals("container id", hb.getContainerId(), copy.getContainerId());
+    Assert.assertEquals("operators", hb.stats.operators.size(), copy.stats.operators.size());
+
+    for (int i = 0; i < hb.stats.operators.size(); i++) {
+      OperatorHeartbeat expected = hb.stats.operators.get(i);
+      OperatorHeartbeat actual = copy.stats.operators.get(i);
+      Assert.assertEquals("nodeId", expected.nodeId, actual.nodeId);
+      Assert.assertEquals("generatedTms", expected.generatedTms, actual.generatedTms);
+      Assert.assertEquals("intervalMs", expected.intervalMs, actual.intervalMs);
+      Assert.assertEquals("state", expected.state, actual.state);
+      Assert.assertEquals("restoreTimeMillis", expected.restoreTimeMillis, actual.restoreTimeMillis);
+      Assert.assertNull("requestResponse", actual.requestResponse);
+      if (expected.latencySamples == null) {
+        Assert.assertNull("latencySamples", actual.latencySamples);
+      } else {
+        Assert.assertEquals("latencySamples", expected.latencySamples.size(), actual.latencySamples.size());
+        for (int s = 0; s < expected.latencySamples.size(); s++) {
+          LatencySample e = expected.latencySamples.get(s);
+          LatencySample a = actual.latencySamples.get(s);
+          Assert.assertEquals("portName", e.portName, a.portName);
+          Assert.assertEquals("sourceOperatorId", e.sourceOperatorId, a.sourceOperatorId);
+          Assert.assertEquals("endToEndMillis", e.endToEndMillis, a.endToEndMillis);
+          Assert.assertEquals("publisherMillis", e.publisherMillis, a.publisherMillis);
+          Assert.assertEquals("bufferServerMillis", e.bufferServerMillis, a.bufferServerMillis);
+          Assert.assertEquals("queueMillis", e.queueMillis, a.queueMillis);
+        }
+      }
+      Assert.assertEquals("windows", expected.windowStats.size(), actual.windowStats.size());
+      for (int w = 0; w < expected.windowStats.size(); w++) {
+        OperatorStats e = expected.windowStats.get(w);
+        OperatorStats a = actual.windowStats.get(w);
+        Assert.assertEquals("windowId", e.windowId, a.windowId);
+        Assert.assertEquals("checkpoint", e.checkpoint, a.checkpoint);
+        Assert.assertEquals("cpuTimeUsed", e.cpuTimeUsed, a.cpuTimeUsed);
+        Assert.assertEquals("allocatedBytes", e.allocatedBytes, a.allocatedBytes);
+        Assert.assertEquals("gcCollectionCount", e.gcCollectionCount, a.gcCollectionCount);
+        Assert.assertEquals("gcCollectionTime", e.gcCollectionTime, a.gcCollectionTime);
+        Assert.assertEquals("recordingId", e.recordingId, a.recordingId);
+        Assert.assertEquals("counters", e.counters, a.counters);
+        Assert.assertEquals("metrics", e.metrics.keySet(), a.metrics.keySet());
+        for (Map.Entry<String, Object> entry : e.metrics.entrySet()) {
+          if (entry.getValue() instanceof CustomMetric) {
+            Assert.assertEquals("custom metric", 10, ((CustomMetric)a.metrics.get(entry.getKey())).sum);
+          } else {
+            Assert.assertEquals("metric " + entry.getKey(), entry.getValue(), a.metrics.get(entry.getKey()));
+          }
+        }
+        if (e.checkpointStats == null) {
+          Assert.assertNull("checkpointStats", a.checkpointStats);
+        } else {
+          Assert.assertEquals("checkpointStartTime", e.checkpointStats.checkpointStartTime, a.checkpointStats.checkpointStartTime);
+          Assert.assertEquals("checkpointTime", e.checkpointStats.checkpointTime, a.checkpointStats.checkpointTime);
+        }
+        Assert.assertEquals("input ports", e.inputPorts.toString(), a.inputPorts.toString());
+        Assert.assertEquals("output ports", e.outputPorts.toString(), a.outputPorts.toString());
+        Assert.assertEquals("port recordingId", e.inputPorts.get(0).recordingId, a.inputPorts.get(0).recordingId);
+      }
+    }
+
+    ContainerHeartbeat empty = roundTrip(new ContainerHeartbeat(), new ContainerHeartbeat());
+    Assert.assertNull("stats", empty.stats);
+    Assert.assertNull("bufferServerHost", empty.bufferServerHost);
+  }
+
+  @Test
+  public void testContainerHeartbeatResponse() throws IOException
+  {
+    ContainerHeartbeatResponse response = new ContainerHeartbeatResponse();
+    ContainerHeartbeatResponse copy = roundTrip(response, new ContainerHeartbeatResponse());
+    Assert.assertNull("shutdown", copy.shutdown);
+    Assert.assertNull("nodeRequests", copy.nodeRequests);
+    Assert.assertNull("undeployRequest", copy.undeployRequest);
+    Assert.assertNull("deployRequest", copy.deployRequest);
+    Assert.assertEquals("committedWindowId", -1, copy.committedWindowId);
+
+    response.shutdown = ShutdownType.WAIT_TERMINATE;
+    response.hasPendingRequests = true;
+    response.stackTraceRequired = true;
+    response.committedWindowId = 0x59e6b1c200000001L;
+    response.undeployRequest = Arrays.asList(1, 2, 300);
+    StramToNodeRequest request = new StramToNodeRequest();
+    request.setOperatorId(5);
+    request.setRequestType(StramToNodeRequest.RequestType.START_RECORDING);
+    response.nodeRequests = Arrays.asList(request);
+    OperatorDeployInfo deployInfo = new OperatorDeployInfo();
+    deployInfo.id = 7;
+    deployInfo.name = "operator";
+    response.deployRequest = Arrays.asList(deployInfo);
+
+    copy = roundTrip(response, new ContainerHeartbeatResponse());
+    Assert.assertEquals("shutdown", response.shutdown, copy.shutdown);
+    Assert.assertTrue("hasPendingRequests", copy.hasPendingRequests);
+    Assert.assertTrue("stackTraceRequired", copy.stackTraceRequired);
+    Assert.assertEquals("committedWindowId", response.committedWindowId, copy.committedWindowId);
+    Assert.assertEquals("undeployRequest", response.undeployRequest, copy.undeployRequest);
+    Assert.assertEquals("nodeRequests", 1, copy.nodeRequests.size());
+    Assert.assertEquals("operatorId", 5, copy.nodeRequests.get(0).getOperatorId());
+    Assert.assertEquals("requestType", request.getRequestType(), copy.nodeRequests.get(0).getRequestType());
+    Assert.assertEquals("deployRequest", 1, copy.deployRequest.size());
+    Assert.assertEquals("deploy id", 7, copy.deployRequest.get(0).id);
+    Assert.assertEquals("deploy name", "operator", copy.deployRequest.get(0).name);
+  }
+
+  @Test
+  public void testLargeString() throws IOException
+  {
+    /* the stack trace of a container with many threads is well above the 64 KB limit of writeUTF */
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 200 * 1024) {
+      sb.append("\u00e9thread-").append(sb.length()).append(" at com.datatorrent.stram.engine.GenericNode.run\n");
+    }
+    ContainerHeartbeat hb = newHeartbeat(1, 1);
+    hb.stackTrace = sb.toString();
+    ContainerHeartbeat copy = roundTrip(hb, new ContainerHeartbeat());
+    Assert.assertEquals("stackTrace", hb.stackTrace, copy.stackTrace);
+  }
+
+  @Test
+  public void testUnsupportedVersion() throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    new ContainerHeartbeat().write(out);
+    out.getData()[0] = HeartbeatCodec.VERSION + 1;
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    try {
+      new ContainerHeartbeat().readFields(in);
+      Assert.fail("unsupported version accepted");
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("version"));
+    }
+  }
+
+  /**
+   * Size of the Java serialization of the public fields of the message, the encoding used before.
+   */
+  private static int javaSerializedSize(Object message) throws Exception
+  {
+    Map<String, Object> properties = new HashMap<>();
+    for (Field field : message.getClass().getFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        properties.put(field.getName(), field.get(message));
+      }
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(properties);
+    }
+    return bos.size();
+  }
+
+  private static int binarySize(Writable message) throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    message.write(out);
+    return out.getLength();
+  }
+
+  @Test
+  public void testEncodingSize() throws Exception
+  {
+    for (int[] shape : new int[][]{{1, 1}, {10, 5}}) {
+      ContainerHeartbeat hb = newHeartbeat(shape[0], shape[1]);
+      int javaBytes = javaSerializedSize(hb);
+      int binaryBytes = binarySize(hb);
+      Assert.assertTrue(shape[0] + " operators " + shape[1] + " windows: binary " + binaryBytes + " Java " + javaBytes,
+          binaryBytes * 2 < javaBytes);
+    }
+  }
+}
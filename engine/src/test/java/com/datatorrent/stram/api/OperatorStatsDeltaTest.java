@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+
+public class OperatorStatsDeltaTest
+{
+  private static final long WINDOW_ID = 0x59e6b1c200000000L;
+
+  private long windowId = WINDOW_ID;
+
+  private ContainerStats newStats(int numberOfWindows, long count)
+  {
+    ContainerStats stats = new ContainerStats("container");
+    OperatorHeartbeat ohb = new OperatorHeartbeat();
+    ohb.nodeId = 1;
+    for (int i = 0; i < numberOfWindows; i++) {
+      OperatorStats window = new OperatorStats();
+      window.windowId = windowId++;
+      OperatorStatsDelta.setCounters(window, "counters");
+      window.metrics = new HashMap<>();
+      window.metrics.put("count", count);
+      window.metrics.put("name", "idle");
+      ohb.windowStats.add(window);
+    }
+    stats.addNodeStats(ohb);
+    return stats;
+  }
+
+  private static ContainerStats roundTrip(ContainerStats stats) throws IOException
+  {
+    ContainerHeartbeat hb = new ContainerHeartbeat();
+    hb.stats = stats;
+    DataOutputBuffer out = new DataOutputBuffer();
+    hb.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    ContainerHeartbeat copy = new ContainerHeartbeat();
+    copy.readFields(in);
+    return copy.stats;
+  }
+
+  private static void assertWindows(ContainerStats stats, long count)
+  {
+    for (OperatorStats window : stats.operators.get(0).windowStats) {
+      Assert.assertEquals("counters", "counters", OperatorStatsDelta.getCounters(window));
+      Map<String, Object> metrics = new HashMap<>();
+      metrics.put("count", count);
+      metrics.put("name", "idle");
+      Assert.assertEquals("metrics", metrics, window.metrics);
+    }
+  }
+
+  @Test
+  public void testDelta() throws IOException
+  {
+    OperatorStatsDelta.Encoder encoder = new OperatorStatsDelta.Encoder();
+    OperatorStatsDelta.Decoder decoder = new OperatorStatsDelta.Decoder();
+
+    /* the first heartbeat refers to its own windows only */
+    ContainerStats stats = newStats(3, 1);
+    encoder.encode(stats);
+    OperatorHeartbeat ohb = stats.operators.get(0);
+    Assert.assertEquals("base window", OperatorStatsDelta.NO_WINDOW, ohb.baseWindowId);
+    Assert.assertEquals("full first window", 2, ohb.windowStats.get(0).metrics.size());
+    Assert.assertEquals("unchanged metrics left out", 0, ohb.windowStats.get(1).metrics.size());
+    Assert.assertNull("unchanged counters left out", OperatorStatsDelta.getCounters(ohb.windowStats.get(2)));
+    stats = roundTrip(stats);
+    Assert.assertTrue("complete", decoder.decode(stats.operators.get(0)));
+    assertWindows(stats, 1);
+    encoder.acknowledge();
+
+    /* the next heartbeat refers to the acknowledged one and sends only the changed metric */
+    stats = newStats(2, 2);
+    encoder.encode(stats);
+    ohb = stats.operators.get(0);
+    Assert.assertEquals("base window", WINDOW_ID + 2, ohb.baseWindowId);
+    Assert.assertEquals("changed metrics", 1, ohb.windowStats.get(0).metrics.size());
+    stats = roundTrip(stats);
+    Assert.assertTrue("complete", decoder.decode(stats.operators.get(0)));
+    assertWindows(stats, 2);
+    encoder.acknowledge();
+
+    /* an operator without any window keeps its reference */
+    stats = newStats(0, 2);
+    encoder.encode(stats);
+    Assert.assertTrue("complete", decoder.decode(roundTrip(stats).operators.get(0)));
+    encoder.acknowledge();
+    stats = newStats(1, 2);
+    encoder.encode(stats);
+    Assert.assertTrue("complete", decoder.decode(stats.operators.get(0)));
+    assertWindows(stats, 2);
+  }
+
+  @Test
+  public void testMutableCounters() throws IOException
+  {
+    OperatorStatsDelta.Encoder encoder = new OperatorStatsDelta.Encoder();
+    OperatorStatsDelta.Decoder decoder = new OperatorStatsDelta.Decoder();
+
+    /* the operators report the same counters and metric objects every window, updated in place */
+    HashMap<String, Long> counters = new HashMap<>();
+    ArrayList<Long> sizes = new ArrayList<>();
+    for (long count = 1; count <= 3; count++) {
+      counters.put("count", count);
+      sizes.add(count);
+      ContainerStats stats = new ContainerStats("container");
+      OperatorHeartbeat ohb = new OperatorHeartbeat();
+      ohb.nodeId = 1;
+      OperatorStats window = new OperatorStats();
+      window.windowId = windowId++;
+      OperatorStatsDelta.setCounters(window, counters);
+      window.metrics = new HashMap<>();
+      window.metrics.put("sizes", sizes);
+      ohb.windowStats.add(window);
+      stats.addNodeStats(ohb);
+
+      encoder.encode(stats);
+      Assert.assertNotNull("changed counters sent " + count, OperatorStatsDelta.getCounters(ohb.windowStats.get(0)));
+      Assert.assertTrue("changed metric sent " + count, ohb.windowStats.get(0).metrics.containsKey("sizes"));
+      stats = roundTrip(stats);
+      Assert.assertTrue("complete", decoder.decode(stats.operators.get(0)));
+      Assert.assertEquals("counters", counters, OperatorStatsDelta.getCounters(stats.operators.get(0).windowStats.get(0)));
+      Assert.assertEquals("metrics", sizes, stats.operators.get(0).windowStats.get(0).metrics.get("sizes"));
+      encoder.acknowledge();
+    }
+
+    /* left out again once they stop changing */
+    ContainerStats stats = newStats(0, 0);
+    OperatorStats window = new OperatorStats();
+    window.windowId = windowId++;
+    OperatorStatsDelta.setCounters(window, counters);
+    stats.operators.get(0).windowStats.add(window);
+    encoder.encode(stats);
+    Assert.assertNull("unchanged counters left out", OperatorStatsDelta.getCounters(window));
+    stats = roundTrip(stats);
+    Assert.assertTrue("complete", decoder.decode(stats.operators.get(0)));
+    Assert.assertEquals("counters", counters, OperatorStatsDelta.getCounters(stats.operators.get(0).windowStats.get(0)));
+  }
+
+  @Test
+  public void testResync() throws IOException
+  {
+    OperatorStatsDelta.Encoder encoder = new OperatorStatsDelta.Encoder();
+    encoder.encode(newStats(2, 1));
+    encoder.acknowledge();
+
+    /* a restarted master does not have the window the heartbeat refers to */
+    OperatorStatsDelta.Decoder decoder = new OperatorStatsDelta.Decoder();
+    ContainerStats stats = newStats(2, 1);
+    encoder.encode(stats);
+    stats = roundTrip(stats);
+    Assert.assertFalse("incomplete", decoder.decode(stats.operators.get(0)));
+    for (OperatorStats window : stats.operators.get(0).windowStats) {
+      Assert.assertNull("dropped metrics", window.metrics);
+    }
+
+    encoder.resync();
+    stats = newStats(2, 1);
+    encoder.encode(stats);
+    Assert.assertEquals("base window", OperatorStatsDelta.NO_WINDOW, stats.operators.get(0).baseWindowId);
+    Assert.assertTrue("complete", decoder.decode(roundTrip(stats).operators.get(0)));
+    encoder.acknowledge();
+
+    /* a heartbeat the master did not process is detected from the base window */
+    encoder.encode(newStats(1, 1));
+    encoder.acknowledge();
+    stats = newStats(1, 1);
+    encoder.encode(stats);
+    Assert.assertFalse("incomplete", decoder.decode(roundTrip(stats).operators.get(0)));
+  }
+}
@@ -39,6 +39,7 @@ import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.stram.codec.DefaultStatefulStreamCodec.ClassIdPair;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.support.StramTestSupport;
 
 /**
  *
@@ -235,4 +236,22 @@ public class DefaultStatefulStreamCodecTest
     Assert.assertNotEquals("Codec and newCodec are not same ", codec, newCodec);
     Assert.assertEquals("Class of codec and newCodec is same ", newCodec.getClass(), codec.getClass());
   }
+
+  @Test
+  public void testAllocation()
+  {
+    DefaultStatefulStreamCodec<Object> coder = new DefaultStatefulStreamCodec<>();
+    DefaultStatefulStreamCodec<Object> decoder = coder.newInstance();
+
+    /* the small integers are cached, so they do not allocate when deserialized either */
+    long allocated = 0;
+    for (int round = 0; round < 2; round++) {
+      allocated = StramTestSupport.getAllocatedBytes();
+      for (int i = 0; i < 100000; i++) {
+        Assert.assertEquals(i & 0x3f, decoder.fromDataStatePair(coder.toDataStatePair(i & 0x3f)));
+      }
+      allocated = StramTestSupport.getAllocatedBytes() - allocated;
+    }
+    Assert.assertTrue("allocated " + allocated + " bytes", allocated < 100000);
+  }
 }
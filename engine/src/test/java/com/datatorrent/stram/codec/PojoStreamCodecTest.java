@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import javax.validation.ValidationException;
+
+import org.junit.Test;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.engine.GenericTestOperator;
+import com.datatorrent.stram.engine.TestGeneratorInputOperator;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PojoStreamCodecTest
+{
+  public static class Base
+  {
+    private long id;
+    protected String name;
+    private final int version;
+    static int ignored;
+
+    public Base()
+    {
+      version = 1;
+    }
+
+    public Base(long id, String name, int version)
+    {
+      this.id = id;
+      this.name = name;
+      this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Base base = (Base)o;
+      return id == base.id && version == base.version && Objects.equals(name, base.name);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (int)id;
+    }
+  }
+
+  public static class Pojo extends Base
+  {
+    boolean flag;
+    byte b;
+    short s;
+    char c;
+    int i;
+    float f;
+    double d;
+    Integer boxed;
+    Date date;
+    List<String> list;
+    int[] array;
+    transient String notSerialized;
+
+    public Pojo()
+    {
+    }
+
+    Pojo(long id, String name)
+    {
+      super(id, name, 3);
+      flag = true;
+      b = -2;
+      s = 300;
+      c = 'x';
+      i = -123456;
+      f = 1.5f;
+      d = -2.25;
+      boxed = 42;
+      date = new Date(id);
+      list = new ArrayList<>(Arrays.asList(name, "b"));
+      array = new int[] {1, 2, 3};
+      notSerialized = "transient";
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (!super.equals(o)) {
+        return false;
+      }
+      Pojo pojo = (Pojo)o;
+      return flag == pojo.flag && b == pojo.b && s == pojo.s && c == pojo.c && i == pojo.i && f == pojo.f && d == pojo.d &&
+          Objects.equals(boxed, pojo.boxed) && Objects.equals(date, pojo.date) && Objects.equals(list, pojo.list) &&
+          Arrays.equals(array, pojo.array);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return super.hashCode();
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception
+  {
+    PojoStreamCodec<Pojo> codec = new PojoStreamCodec<>(Pojo.class);
+    Pojo pojo = new Pojo(7, "a");
+    Pojo copy = (Pojo)codec.fromByteArray(codec.toByteArray(pojo));
+    assertEquals(pojo, copy);
+    assertNull(copy.notSerialized);
+
+    /* a slice stays valid after the codec serialized another tuple */
+    Slice first = codec.toByteArray(pojo);
+    codec.toByteArray(new Pojo(8, "b"));
+    assertEquals(pojo, codec.fromByteArray(first));
+
+    Pojo empty = new Pojo();
+    assertEquals(empty, codec.fromByteArray(codec.toByteArray(empty)));
+    assertNull(codec.fromByteArray(codec.toByteArray(null)));
+
+    /* the codec shipped to the containers is java serialized before it is used */
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(codec);
+    oos.close();
+    @SuppressWarnings("unchecked")
+    PojoStreamCodec<Pojo> deserialized = (PojoStreamCodec<Pojo>)new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+    assertEquals(codec, deserialized);
+    Slice slice = codec.toByteArray(pojo);
+    assertEquals(pojo, deserialized.fromByteArray(new Slice(Arrays.copyOfRange(slice.buffer, slice.offset, slice.offset + slice.length))));
+  }
+
+  @Test
+  public void testPartition()
+  {
+    PojoStreamCodec<Pojo> codec = new PojoStreamCodec<>(Pojo.class);
+    Pojo pojo = new Pojo(7, "a");
+    assertEquals(pojo.hashCode(), codec.getPartition(pojo));
+
+    codec = new PojoStreamCodec<>(Pojo.class, "name", "i", "id");
+    assertEquals(Arrays.hashCode(new Object[] {pojo.name, pojo.i, 7L}), codec.getPartition(pojo));
+    Pojo other = new Pojo(7, "a");
+    other.d = 5;
+    assertEquals(codec.getPartition(pojo), codec.getPartition(other));
+
+    try {
+      new PojoStreamCodec<>(Pojo.class, "missing").getPartition(pojo);
+      fail("partition of a missing field");
+    } catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTupleClassFromPort()
+  {
+    LogicalPlan dag = new LogicalPlan();
+    TestGeneratorInputOperator input = dag.addOperator("input", TestGeneratorInputOperator.class);
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("s1", input.outport, o1.inport1);
+    dag.addStream("s2", o1.outport1, o2.inport1);
+    dag.setInputPortAttribute(o1.inport1, PortContext.STREAM_CODEC, new PojoStreamCodec<>());
+    dag.setInputPortAttribute(o2.inport1, PortContext.STREAM_CODEC, new PojoStreamCodec<>());
+    dag.setOutputPortAttribute(o1.outport1, PortContext.TUPLE_CLASS, Pojo.class);
+    dag.setInputPortAttribute(o2.inport1, PortContext.TUPLE_CLASS, Base.class);
+
+    try {
+      dag.validate();
+      fail("tuple class missing on s1");
+    } catch (ValidationException ex) {
+      // expected
+    }
+
+    dag.setOutputPortAttribute(input.outport, PortContext.TUPLE_CLASS, Pojo.class);
+    dag.validate();
+    StreamCodec<?> codec = dag.getMeta(o1).getMeta(o1.inport1).getValue(PortContext.STREAM_CODEC);
+    assertSame(Pojo.class, ((PojoStreamCodec<?>)codec).getTupleClass());
+    codec = dag.getMeta(o2).getMeta(o2.inport1).getValue(PortContext.STREAM_CODEC);
+    assertSame("port tuple class preferred", Base.class, ((PojoStreamCodec<?>)codec).getTupleClass());
+  }
+}
@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.locks.Condition;
@@ -34,6 +36,7 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.Sink;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.stram.tuple.Tuple;
@@ -227,6 +230,70 @@ public class AbstractReservoirTest
     reservoir.add(o);
   }
 
+  @SuppressWarnings("unused")
+  private Object batchTestParameters()
+  {
+    return new Object[][] {
+        {null},
+        {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayQueueReservoir"},
+        {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayBlockingQueueReservoir"},
+        {"com.datatorrent.stram.engine.AbstractReservoir$ArrayBlockingQueueReservoir"},
+        {"com.datatorrent.stram.engine.AbstractReservoir$CircularBufferReservoir"}
+    };
+  }
+
+  @Test
+  @Parameters(method = "batchTestParameters")
+  public void testSweepBatches(final String reservoirClassName)
+  {
+    final AbstractReservoir reservoir = newReservoir(reservoirClassName, 4096);
+    final List<Object> tuples = new ArrayList<>();
+    final List<Integer> batches = new ArrayList<>();
+    final DefaultInputPort<Object> port = new DefaultInputPort<Object>()
+    {
+      @Override
+      public void process(Object tuple)
+      {
+        tuples.add(tuple);
+      }
+
+      @Override
+      public void process(Object[] tuples, int count)
+      {
+        batches.add(count);
+        super.process(tuples, count);
+      }
+    };
+    setSink(reservoir, port);
+
+    final int size = 2 * AbstractReservoir.MAX_BATCH_SIZE + 10;
+    for (int i = 0; i < size; i++) {
+      assertTrue(reservoir.add(i));
+    }
+    final Tuple t = new Tuple(BEGIN_WINDOW, 0L);
+    assertTrue(reservoir.add(t));
+    assertTrue(reservoir.add(size));
+
+    assertEquals(t, reservoir.sweep());
+    assertEquals(size, tuples.size());
+    for (int i = 0; i < size; i++) {
+      assertEquals(i, tuples.get(i));
+    }
+    assertEquals(3, batches.size());
+    assertEquals(AbstractReservoir.MAX_BATCH_SIZE, (int)batches.get(0));
+    assertEquals(AbstractReservoir.MAX_BATCH_SIZE, (int)batches.get(1));
+    assertEquals(10, (int)batches.get(2));
+    assertEquals(size, reservoir.getCount(false));
+    assertEquals(size, port.getCount(false));
+
+    assertEquals(t, reservoir.remove());
+    assertNull(reservoir.sweep());
+    assertEquals(size + 1, tuples.size());
+    assertEquals(size, tuples.get(size));
+    assertEquals(size + 1, reservoir.getCount(false));
+    assertTrue(reservoir.isEmpty());
+  }
+
   @Test
   @Ignore
   @Parameters(method = "performanceTestParameters")
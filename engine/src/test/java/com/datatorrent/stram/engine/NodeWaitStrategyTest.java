@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Context.WaitStrategy;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.tuple.Tuple;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnitParamsRunner.class)
+public class NodeWaitStrategyTest
+{
+  private static final int COUNT = 2000;
+  private static final long INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final int SPIN_MILLIS = 50;
+
+  public static class LatencyOperator extends BaseOperator
+  {
+    final long[] latencies = new long[COUNT];
+    volatile int received;
+
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        latencies[received++] = System.nanoTime() - tuple;
+      }
+    };
+  }
+
+  @Test
+  @Parameters(method = "strategies")
+  public void testLatency(final WaitStrategy strategy) throws Exception
+  {
+    final LatencyOperator operator = new LatencyOperator();
+    final DefaultAttributeMap attributes = new DefaultAttributeMap();
+    attributes.put(OperatorContext.WAIT_STRATEGY, strategy);
+    attributes.put(OperatorContext.SPIN_MILLIS, SPIN_MILLIS);
+    final GenericNode node = new GenericNode(operator, new com.datatorrent.stram.engine.OperatorContext(0, "operator",
+        attributes, null));
+    node.setId(1);
+    node.firstWindowMillis = 0;
+    node.windowWidthMillis = 100;
+    final AbstractReservoir reservoir = AbstractReservoir.newReservoir(strategy.name(), 4096);
+    node.connectInputPort("input", reservoir);
+
+    Thread thread = new Thread(strategy.name())
+    {
+      @Override
+      public void run()
+      {
+        node.activate();
+        node.run();
+        node.deactivate();
+      }
+    };
+    thread.start();
+
+    reservoir.add(new Tuple(MessageType.BEGIN_WINDOW, 1L));
+    for (int i = 0; i < COUNT; i++) {
+      LockSupport.parkNanos(INTERVAL_NANOS);
+      reservoir.put(System.nanoTime());
+    }
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (operator.received < COUNT && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    reservoir.add(new Tuple(MessageType.END_WINDOW, 1L));
+    node.shutdown();
+    thread.join();
+    assertEquals("tuples received", COUNT, operator.received);
+
+    final long[] latencies = operator.latencies;
+    Arrays.sort(latencies);
+    final long p50 = TimeUnit.NANOSECONDS.toMicros(latencies[COUNT / 2]);
+    logger.info("{} latency p50 {} us, p99 {} us, p999 {} us, max {} us", strategy, p50,
+        TimeUnit.NANOSECONDS.toMicros(latencies[COUNT * 99 / 100]),
+        TimeUnit.NANOSECONDS.toMicros(latencies[COUNT * 999 / 1000]),
+        TimeUnit.NANOSECONDS.toMicros(latencies[COUNT - 1]));
+    if (strategy != WaitStrategy.SLEEP) {
+      /* the back-off restarts with every delivered tuple instead of creeping up to SPIN_MILLIS */
+      assertTrue(strategy + " latency p50 " + p50 + " us", p50 < TimeUnit.MILLISECONDS.toMicros(SPIN_MILLIS) / 10);
+    }
+  }
+
+  @Test
+  public void testBlockIsSignalled() throws Exception
+  {
+    final AbstractReservoir reservoir = AbstractReservoir.newReservoir("test", 16);
+    final NodeWaitStrategy waitStrategy = NodeWaitStrategy.newInstance(WaitStrategy.BLOCK, 60000);
+    Node.signalOnArrival(waitStrategy, reservoir);
+    final List<SweepableReservoir> reservoirs = Collections.<SweepableReservoir>singletonList(reservoir);
+
+    Thread producer = new Thread("producer")
+    {
+      @Override
+      public void run()
+      {
+        try {
+          Thread.sleep(100);
+          reservoir.put(1);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    producer.start();
+
+    final long start = System.currentTimeMillis();
+    waitStrategy.idle(reservoirs);
+    final long elapsed = System.currentTimeMillis() - start;
+    producer.join();
+    assertTrue("woken up in " + elapsed + " ms", elapsed < 30000);
+    assertEquals(1, reservoir.size(false));
+
+    /* a signal received while the node is busy is not lost */
+    reservoir.remove();
+    reservoir.put(2);
+    reservoir.remove();
+    final long again = System.currentTimeMillis();
+    waitStrategy.idle(reservoirs);
+    assertTrue("signal lost", System.currentTimeMillis() - again < 30000);
+  }
+
+  @SuppressWarnings("unused")
+  private Object[] strategies()
+  {
+    return WaitStrategy.values();
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(NodeWaitStrategyTest.class);
+}
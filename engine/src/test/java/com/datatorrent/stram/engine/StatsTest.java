@@ -45,6 +45,7 @@ import com.datatorrent.stram.engine.StatsTest.TestOperator.TestInputStatsListene
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.physical.PTOperator;
 import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.webapp.LatencyInfo;
 
 /**
  * Tests the stats generated in the system.
@@ -199,9 +200,11 @@ public class StatsTest
     try {
       int outputPortTupleCount = 0;
       long outputPortBufferServerBytes = 0L;
+      long allocatedBytes = 0L;
 
       for (Iterator<OperatorStats> it = testInputStatsListener.inputOperatorStats.iterator(); it.hasNext(); ) {
         OperatorStats operatorStats = it.next();
+        allocatedBytes += operatorStats.allocatedBytes;
         for (PortStats outputPortStats : operatorStats.outputPorts) {
           outputPortTupleCount += outputPortStats.tupleCount;
           outputPortBufferServerBytes += outputPortStats.bufferServerBytes;
@@ -220,6 +223,7 @@ public class StatsTest
       }
 
       Assert.assertEquals("Tuple Count emitted", tupleCount, outputPortTupleCount);
+      Assert.assertTrue("Allocated bytes", allocatedBytes > 0);
       Assert.assertTrue("Buffer server bytes", inputPortBufferServerBytes > 0);
 
       Assert.assertEquals("Tuple Count processed", tupleCount, inputPortTupleCount);
@@ -313,4 +317,53 @@ public class StatsTest
   {
     baseTestForQueueSize(0, null, null);
   }
+
+  /**
+   * Verify the latency markers reach the master through the container local and the buffer server streams.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLatencyTracing() throws Exception
+  {
+    LogicalPlan dag = new LogicalPlan();
+    String workingDir = new File("target/testLatencyTracing").getAbsolutePath();
+    dag.setAttribute(Context.OperatorContext.STORAGE_AGENT, new AsyncFSStorageAgent(workingDir, null));
+    dag.setAttribute(LogicalPlan.LATENCY_TRACING_INTERVAL_MILLIS, 50);
+    TestOperator testOper = dag.addOperator("TestOperator", TestOperator.class);
+    testOper.setMaxTuples(0);
+    GenericTestOperator oper1 = dag.addOperator("Operator1", GenericTestOperator.class);
+    GenericTestOperator oper2 = dag.addOperator("Operator2", GenericTestOperator.class);
+    dag.addStream("LocalStream", testOper.outport, oper1.inport1).setLocality(DAG.Locality.CONTAINER_LOCAL);
+    dag.addStream("RemoteStream", oper1.outport1, oper2.inport1);
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.runAsync();
+    final StreamingContainerManager dnmgr = lc.getStreamingContainerManager();
+    try {
+      boolean sampled = StramTestSupport.awaitCompletion(new StramTestSupport.WaitCondition()
+      {
+        @Override
+        public boolean isComplete()
+        {
+          return dnmgr.getStreamLatencyInfo("LocalStream").endToEnd.count > 0
+              && dnmgr.getStreamLatencyInfo("RemoteStream").endToEnd.count > 0;
+        }
+      }, StramTestSupport.DEFAULT_TIMEOUT_MILLIS);
+      Assert.assertTrue("latency samples of both streams", sampled);
+
+      LatencyInfo remote = dnmgr.getStreamLatencyInfo("RemoteStream");
+      Assert.assertEquals("sinks " + remote.ports, 1, remote.ports.size());
+      Assert.assertEquals(GenericTestOperator.IPORT1, remote.ports.get(0).portName);
+      Assert.assertEquals(remote.endToEnd.count, remote.bufferServer.count);
+      Assert.assertFalse("buckets", remote.endToEnd.buckets.isEmpty());
+      Assert.assertTrue("end to end " + remote.endToEnd.max, remote.endToEnd.max >= remote.queue.max);
+
+      int oper2Id = dnmgr.getPhysicalPlan().getOperators(dag.getMeta(oper2)).get(0).getId();
+      Assert.assertTrue(dnmgr.getOperatorLatencyInfo(oper2Id).endToEnd.count > 0);
+      Assert.assertNull(dnmgr.getStreamLatencyInfo("NoSuchStream"));
+    } finally {
+      lc.shutdown();
+    }
+  }
 }
@@ -20,9 +20,13 @@ package com.datatorrent.stram.engine;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -40,8 +44,10 @@ import com.datatorrent.api.Operator.CheckpointListener;
 import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.stram.StramLocalCluster;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.webapp.OperatorInfo;
 
 /**
  *
@@ -51,6 +57,8 @@ public class StreamingContainerTest
   private static final Logger logger =  LoggerFactory.getLogger(StreamingContainerTest.class);
   private static Set<String> committedWindowIds = Collections.synchronizedSet(new HashSet<String>());
   private static Set<String> checkpointedWindowIds = Collections.synchronizedSet(new HashSet<String>());
+  private static final AtomicInteger loadingCheckpoints = new AtomicInteger();
+  private static final AtomicInteger maxLoadingCheckpoints = new AtomicInteger();
 
   @Test
   public void testCommitted() throws IOException, ClassNotFoundException
@@ -90,6 +98,82 @@ public class StreamingContainerTest
     Assert.assertTrue("No Committed Windows", committedWindowIds.contains(op2Name));
   }
 
+  @Test
+  public void testConcurrentRestore() throws IOException, ClassNotFoundException
+  {
+    LogicalPlan lp = new LogicalPlan();
+    String workingDir = new File("target/testConcurrentRestore").getAbsolutePath();
+    lp.setAttribute(Context.OperatorContext.STORAGE_AGENT, new SlowStorageAgent(workingDir));
+    lp.setAttribute(LogicalPlan.CHECKPOINT_RESTORE_THREADS, 2);
+    TestGeneratorInputOperator input = lp.addOperator("input", TestGeneratorInputOperator.class);
+    GenericTestOperator operator1 = lp.addOperator("operator1", GenericTestOperator.class);
+    GenericTestOperator operator2 = lp.addOperator("operator2", GenericTestOperator.class);
+    GenericTestOperator operator3 = lp.addOperator("operator3", GenericTestOperator.class);
+    lp.addStream("input", input.outport, operator1.inport1).setLocality(Locality.CONTAINER_LOCAL);
+    lp.addStream("intermediate", operator1.outport1, operator2.inport1).setLocality(Locality.CONTAINER_LOCAL);
+    lp.addStream("output", operator2.outport1, operator3.inport1).setLocality(Locality.CONTAINER_LOCAL);
+
+    loadingCheckpoints.set(0);
+    maxLoadingCheckpoints.set(0);
+    final StramLocalCluster lc = new StramLocalCluster(lp);
+    lc.setExitCondition(new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call() throws Exception
+      {
+        List<OperatorInfo> operators = lc.getStreamingContainerManager().getOperatorInfoList();
+        for (OperatorInfo oi : operators) {
+          if (oi.restoreTime < SlowStorageAgent.LOAD_MILLIS) {
+            return false;
+          }
+        }
+        return operators.size() == 4;
+      }
+    });
+    lc.run(30000);
+
+    Assert.assertEquals("checkpoints loaded at the same time", 2, maxLoadingCheckpoints.get());
+    for (OperatorInfo oi : lc.getStreamingContainerManager().getOperatorInfoList()) {
+      Assert.assertTrue("restore time of " + oi.name + " " + oi.restoreTime,
+          oi.restoreTime >= SlowStorageAgent.LOAD_MILLIS);
+    }
+  }
+
+  private static class SlowStorageAgent extends FSStorageAgent
+  {
+    static final long LOAD_MILLIS = 500;
+
+    private SlowStorageAgent(String path)
+    {
+      super(path, null);
+    }
+
+    @Override
+    public Object load(int operatorId, long windowId) throws IOException
+    {
+      int loading = loadingCheckpoints.incrementAndGet();
+      try {
+        for (int max = maxLoadingCheckpoints.get(); loading > max; max = maxLoadingCheckpoints.get()) {
+          maxLoadingCheckpoints.compareAndSet(max, loading);
+        }
+        Thread.sleep(LOAD_MILLIS);
+        return super.load(operatorId, windowId);
+      } catch (InterruptedException ex) {
+        throw new InterruptedIOException();
+      } finally {
+        loadingCheckpoints.decrementAndGet();
+      }
+    }
+
+    @Override
+    public Object readResolve()
+    {
+      return new SlowStorageAgent(path);
+    }
+
+    private static final long serialVersionUID = 201710181600L;
+  }
+
   private static class CommitAwareOperator extends BaseOperator implements CheckpointListener, InputOperator
   {
     private transient String name;
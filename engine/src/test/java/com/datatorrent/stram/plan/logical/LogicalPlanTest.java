@@ -570,6 +570,68 @@ public class LogicalPlanTest
 
   }
 
+  @Test
+  public void testRawTuplesValidation()
+  {
+    TestGeneratorInputOperator input = dag.addOperator("input", TestGeneratorInputOperator.class);
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    dag.addStream("stream1", input.outport, o1.inport1);
+    dag.setInputPortAttribute(o1.inport1, PortContext.RAW_TUPLES, true);
+
+    try {
+      dag.validate();
+      Assert.fail("should raise raw tuples require a stateless codec");
+    } catch (ValidationException e) {
+      Assert.assertEquals("", "Attribute RAW_TUPLES requires a STREAM_CODEC which is not stateful on port : o1.inport1", e.getMessage());
+    }
+
+    dag.setInputPortAttribute(o1.inport1, PortContext.STREAM_CODEC, new DefaultKryoStreamCodec<>());
+    dag.validate();
+  }
+
+  @Test
+  public void testCompressionValidation()
+  {
+    TestGeneratorInputOperator input = dag.addOperator("input", TestGeneratorInputOperator.class);
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    dag.addStream("stream1", input.outport, o1.inport1);
+    dag.setOutputPortAttribute(input.outport, PortContext.BUFFER_SERVER_COMPRESSION, true);
+    dag.validate();
+
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(2));
+    try {
+      dag.validate();
+      Assert.fail("should raise compression on a partitioned stream");
+    } catch (ValidationException e) {
+      Assert.assertEquals("", "Attribute BUFFER_SERVER_COMPRESSION cannot be set on port : input.outport connected to the partitioned port : o1.inport1", e.getMessage());
+    }
+
+    /* the parallel partitions subscribe to the whole stream of their upstream partition */
+    dag.setInputPortAttribute(o1.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.validate();
+  }
+
+  @Test
+  public void testPayloadFrameValidation()
+  {
+    TestGeneratorInputOperator input = dag.addOperator("input", TestGeneratorInputOperator.class);
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    dag.addStream("stream1", input.outport, o1.inport1);
+    dag.setOutputPortAttribute(input.outport, PortContext.PAYLOAD_FRAME_SIZE, 64);
+    dag.validate();
+
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(2));
+    try {
+      dag.validate();
+      Assert.fail("should raise frames on a partitioned stream");
+    } catch (ValidationException e) {
+      Assert.assertEquals("", "Attribute PAYLOAD_FRAME_SIZE greater than 1 cannot be set on port : input.outport connected to the partitioned port : o1.inport1", e.getMessage());
+    }
+
+    dag.setOutputPortAttribute(input.outport, PortContext.PAYLOAD_FRAME_SIZE, 1);
+    dag.validate();
+  }
+
   @Test
   public void testAtMostOnceProcessingModeValidation()
   {
@@ -0,0 +1,596 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.apex.api.operator.ControlTuple;
+import org.apache.commons.lang3.SerializationUtils;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.Sink;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.common.codec.SerializedTuple;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.plan.logical.DefaultKryoStreamCodec;
+import com.datatorrent.stram.tuple.CustomControlTuple;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.ResetWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+public class BufferServerPublisherTest
+{
+  private static final int COUNT = 20000;
+  private static DefaultEventLoop eventloop;
+  private static Server bufferServer;
+  private static InetSocketAddress address;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public static class TestControlTuple implements ControlTuple
+  {
+    int value;
+
+    @Override
+    public DeliveryType getDeliveryType()
+    {
+      return DeliveryType.IMMEDIATE;
+    }
+  }
+
+  @BeforeClass
+  public static void setup() throws IOException
+  {
+    eventloop = DefaultEventLoop.createEventLoop("BufferServerPublisherTest");
+    eventloop.start();
+    bufferServer = new Server(eventloop, 0);
+    address = bufferServer.run();
+  }
+
+  @AfterClass
+  public static void teardown()
+  {
+    bufferServer.stop();
+    eventloop.stop();
+  }
+
+  @Test
+  public void testStatefulCodec() throws Exception
+  {
+    testPublish("stateful", new DefaultStatefulStreamCodec<>(), false, 1);
+  }
+
+  @Test
+  public void testStatelessCodec() throws Exception
+  {
+    testPublish("stateless", new DefaultKryoStreamCodec<>(), false, 1);
+  }
+
+  @Test
+  public void testCompression() throws Exception
+  {
+    testPublish("compressed.stateful", new DefaultStatefulStreamCodec<>(), true, 1);
+    testPublish("compressed.stateless", new DefaultKryoStreamCodec<>(), true, 1);
+  }
+
+  @Test
+  public void testFrames() throws Exception
+  {
+    testPublish("framed.stateful", new DefaultStatefulStreamCodec<>(), false, 100);
+    testPublish("framed.stateless", new DefaultKryoStreamCodec<>(), false, 1000);
+    testPublish("framed.compressed", new DefaultKryoStreamCodec<>(), true, 100);
+  }
+
+  /**
+   * Publishes more tuples than fit in a chunk through a small send queue and verifies they arrive in order.
+   */
+  private void testPublish(String id, StreamCodec<Object> codec, boolean compression, int frameSize) throws Exception
+  {
+    final List<Object> received = new ArrayList<>();
+    final String sourceId = "publisher." + id;
+
+    StreamContext ossContext = new StreamContext(id);
+    ossContext.setSourceId(sourceId);
+    ossContext.setSinkId("subscriber." + id);
+    ossContext.setBufferServerAddress(address);
+    ossContext.put(StreamContext.CODEC, codec);
+    ossContext.put(StreamContext.EVENT_LOOP, eventloop);
+    ossContext.put(PortContext.BUFFER_SERVER_COMPRESSION, compression);
+    ossContext.put(PortContext.PAYLOAD_FRAME_SIZE, frameSize);
+
+    BufferServerPublisher oss = new BufferServerPublisher(sourceId, 16);
+    oss.setup(ossContext);
+    oss.activate(ossContext);
+
+    StringBuilder padding = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      padding.append('x');
+    }
+    oss.put(new Tuple(MessageType.BEGIN_WINDOW, 1L));
+    for (int i = 0; i < COUNT; i++) {
+      oss.put(padding.toString() + i);
+      if (i == COUNT / 2) {
+        TestControlTuple control = new TestControlTuple();
+        control.value = i;
+        oss.put(new CustomControlTuple(control));
+      }
+    }
+    oss.put(new EndWindowTuple(1L));
+    if (compression) {
+      Assert.assertTrue("uncompressed bytes", oss.getUncompressedByteCount(false) > COUNT * 100);
+      Assert.assertTrue("compressed bytes", oss.getCompressedByteCount(false) * 4 < oss.getUncompressedByteCount(false));
+      Assert.assertTrue("published bytes", oss.getByteCount(false) < oss.getUncompressedByteCount(false));
+      Assert.assertTrue("compression time", oss.getCompressionNanos(false) > 0);
+    } else {
+      Assert.assertTrue("published bytes", oss.getByteCount(false) > COUNT * 100);
+      Assert.assertEquals("uncompressed bytes", 0, oss.getUncompressedByteCount(false));
+    }
+
+    StreamContext issContext = new StreamContext(id);
+    issContext.setSourceId(sourceId);
+    issContext.setSinkId("subscriber." + id);
+    issContext.setFinishedWindowId(-1);
+    issContext.setBufferServerAddress(address);
+    issContext.put(StreamContext.CODEC, codec);
+    issContext.put(StreamContext.EVENT_LOOP, eventloop);
+
+    BufferServerSubscriber iss = new BufferServerSubscriber("subscriber." + id, 1024);
+    iss.setup(issContext);
+    /* a compressed batch yields more tuples than fit in the reservoir */
+    SweepableReservoir reservoir = iss.acquireReservoir("testReservoir", 1024);
+    reservoir.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    iss.activate(issContext);
+
+    CustomControlTuple control = null;
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (System.currentTimeMillis() < deadline) {
+      Tuple t = reservoir.sweep();
+      if (t == null) {
+        Thread.sleep(5);
+        continue;
+      }
+      reservoir.remove();
+      if (t instanceof CustomControlTuple) {
+        Assert.assertEquals("tuples before control tuple", COUNT / 2 + 1, received.size());
+        control = (CustomControlTuple)t;
+      } else if (t instanceof EndWindowTuple) {
+        break;
+      }
+    }
+
+    eventloop.disconnect(oss);
+    eventloop.disconnect(iss);
+
+    Assert.assertEquals("received tuples", COUNT, received.size());
+    for (int i = 0; i < COUNT; i++) {
+      Assert.assertEquals("tuple " + i, padding.toString() + i, received.get(i));
+    }
+    Assert.assertNotNull("control tuple", control);
+    Assert.assertEquals("control tuple", COUNT / 2, ((TestControlTuple)control.getUserObject()).value);
+    Assert.assertEquals("decompressed bytes", oss.getUncompressedByteCount(false), iss.getUncompressedByteCount(false));
+    Assert.assertEquals("received compressed bytes", oss.getCompressedByteCount(false), iss.getCompressedByteCount(false));
+  }
+
+  @Test
+  public void testCompressedPartitions() throws Exception
+  {
+    final List<Object> tuples = new ArrayList<>();
+    final List<List<Object>> partitions = new ArrayList<>();
+    partitions.add(new ArrayList<>());
+    partitions.add(new ArrayList<>());
+    for (int i = 0; i < 1000; i++) {
+      tuples.add(i);
+      partitions.get(i & 1).add(i);
+    }
+
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<>();
+    publish("compressed.partitioned", codec, tuples, true, 1);
+    /* the buffer server delivers the compressed batches to both partitions, each subscriber filters its tuples */
+    for (int partition = 0; partition < 2; partition++) {
+      StreamContext context = newSubscriberContext("compressed.partitioned", codec, "subscriber" + partition);
+      context.setPartitions(1, Collections.singleton(partition));
+      Assert.assertEquals("partition " + partition, partitions.get(partition), subscribe(context, 500));
+    }
+  }
+
+  @Test
+  public void testFramedPartitions() throws Exception
+  {
+    /* the frames of the first and the last tuples hold a single partition, those in the middle hold both */
+    final List<Object> tuples = new ArrayList<>();
+    final List<List<Object>> partitions = new ArrayList<>();
+    partitions.add(new ArrayList<>());
+    partitions.add(new ArrayList<>());
+    for (int i = 0; i < 500; i += 2) {
+      tuples.add(i);
+    }
+    for (int i = 500; i < 1000; i++) {
+      tuples.add(i);
+    }
+    for (int i = 1; i < 500; i += 2) {
+      tuples.add(i);
+    }
+    for (Object tuple : tuples) {
+      partitions.get((Integer)tuple & 1).add(tuple);
+    }
+
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<>();
+    publish("framed.partitioned", codec, tuples, false, 50);
+    for (int partition = 0; partition < 2; partition++) {
+      StreamContext context = newSubscriberContext("framed.partitioned", codec, "subscriber" + partition);
+      context.setPartitions(1, Collections.singleton(partition));
+      Assert.assertEquals("partition " + partition, partitions.get(partition), subscribe(context, 500));
+    }
+  }
+
+  public static class CountingCodec extends DefaultKryoStreamCodec<Object>
+  {
+    private static final long serialVersionUID = 201710180000L;
+    transient int serialized;
+    boolean partitioned = true;
+
+    @Override
+    public Slice toByteArray(Object o)
+    {
+      serialized++;
+      return super.toByteArray(o);
+    }
+
+    @Override
+    public int getPartition(Object o)
+    {
+      return partitioned ? super.getPartition(o) : 0;
+    }
+  }
+
+  public static class UnserializableCodec extends CountingCodec
+  {
+    private static final long serialVersionUID = 201710180000L;
+    final Object lock = new Object();
+  }
+
+  @Test
+  public void testRawTuples() throws Exception
+  {
+    final List<Object> tuples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      tuples.add("tuple" + i);
+    }
+
+    /* every port deserializes its own instance of the codec */
+    CountingCodec codec = new CountingCodec();
+    publish("raw.source", SerializationUtils.clone(codec), tuples, false, 1);
+    List<Object> raw = subscribe("raw.source", SerializationUtils.clone(codec), true, tuples.size());
+    for (int i = 0; i < tuples.size(); i++) {
+      SerializedTuple tuple = (SerializedTuple)raw.get(i);
+      Assert.assertEquals("partition " + i, codec.getPartition(tuples.get(i)), tuple.getPartition());
+      Assert.assertEquals("tuple " + i, tuples.get(i), tuple.deserialize());
+    }
+
+    /* published again with a codec of the same configuration the tuples are not serialized again */
+    CountingCodec forwardCodec = SerializationUtils.clone(codec);
+    publish("raw.forward", forwardCodec, raw, true, 1);
+    Assert.assertEquals("serialized tuples", 0, forwardCodec.serialized);
+    Assert.assertEquals(tuples, subscribe("raw.forward", SerializationUtils.clone(codec), false, tuples.size()));
+
+    /* a codec configured differently serializes the tuples again */
+    CountingCodec unpartitioned = SerializationUtils.clone(codec);
+    unpartitioned.partitioned = false;
+    publish("raw.unpartitioned", unpartitioned, raw, false, 1);
+    Assert.assertEquals("serialized tuples", tuples.size(), unpartitioned.serialized);
+    Assert.assertEquals(tuples, subscribe("raw.unpartitioned", unpartitioned, false, tuples.size()));
+
+    /* a codec that cannot be serialized is not compared by its configuration, the tuples are serialized again */
+    UnserializableCodec source = new UnserializableCodec();
+    List<Object> unserializableRaw = new ArrayList<>();
+    for (Object tuple : tuples) {
+      unserializableRaw.add(new SerializedTuple(source.toByteArray(tuple), source.getPartition(tuple), source));
+    }
+    UnserializableCodec unserializable = new UnserializableCodec();
+    publish("raw.unserializable", unserializable, unserializableRaw, false, 1);
+    Assert.assertEquals("serialized tuples", tuples.size(), unserializable.serialized);
+    Assert.assertEquals(tuples, subscribe("raw.unserializable", codec, false, tuples.size()));
+
+    publish("raw.framed", codec, tuples, false, 100);
+    raw = subscribe("raw.framed", codec, true, tuples.size());
+    for (int i = 0; i < tuples.size(); i++) {
+      SerializedTuple tuple = (SerializedTuple)raw.get(i);
+      Assert.assertEquals("framed partition " + i, codec.getPartition(tuples.get(i)), tuple.getPartition());
+      Assert.assertEquals("framed tuple " + i, tuples.get(i), tuple.deserialize());
+    }
+
+    DefaultStatefulStreamCodec<Object> stateful = new DefaultStatefulStreamCodec<>();
+    publish("raw.stateful", stateful, raw, false, 1);
+    Assert.assertEquals(tuples, subscribe("raw.stateful", stateful, false, tuples.size()));
+  }
+
+  @Test
+  public void testSharedMemoryRing() throws Exception
+  {
+    testSharedMemoryRing("ring.stateful", new DefaultStatefulStreamCodec<>());
+    testSharedMemoryRing("ring.stateless", new DefaultKryoStreamCodec<>());
+  }
+
+  private void testSharedMemoryRing(String id, StreamCodec<Object> codec) throws Exception
+  {
+    final List<Object> tuples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      tuples.add("tuple" + i);
+    }
+    File ring = new File(folder.getRoot(), id);
+    BufferServerPublisher publisher = newPublisher(newPublisherContext(id, codec, ring, 1024 * 1024));
+    publish(publisher, tuples, 1L);
+
+    StreamContext context = newSubscriberContext(id, codec, "subscriber." + id);
+    context.put(StreamContext.SHARED_MEMORY_RING, ring);
+    SharedMemorySubscriber subscriber = new SharedMemorySubscriber(context.getSinkId(), 1024);
+    Assert.assertEquals(tuples, receive(subscriber, context, tuples.size()));
+    Assert.assertFalse("read from the buffer server", subscriber.isSubscribed());
+    subscriber.deactivate();
+
+    publisher.deactivate();
+    Assert.assertFalse("ring deleted", ring.exists());
+  }
+
+  @Test
+  public void testSharedMemoryRingPartitions() throws Exception
+  {
+    final List<Object> tuples = new ArrayList<>();
+    final List<List<Object>> partitions = new ArrayList<>();
+    partitions.add(new ArrayList<>());
+    partitions.add(new ArrayList<>());
+    for (int i = 0; i < 1000; i++) {
+      tuples.add(i);
+      partitions.get(i & 1).add(i);
+    }
+
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<>();
+    File ring = new File(folder.getRoot(), "ring.partitioned");
+    BufferServerPublisher publisher = newPublisher(newPublisherContext("ring.partitioned", codec, ring, 1024 * 1024));
+    publish(publisher, tuples, 1L);
+    /* the ring holds the tuples of all the partitions, each subscriber filters its tuples */
+    for (int partition = 0; partition < 2; partition++) {
+      StreamContext context = newSubscriberContext("ring.partitioned", codec, "subscriber" + partition);
+      context.setPartitions(1, Collections.singleton(partition));
+      context.put(StreamContext.SHARED_MEMORY_RING, ring);
+      SharedMemorySubscriber subscriber = new SharedMemorySubscriber(context.getSinkId(), 1024);
+      Assert.assertEquals("partition " + partition, partitions.get(partition), receive(subscriber, context, 500));
+      Assert.assertFalse("read from the buffer server", subscriber.isSubscribed());
+      subscriber.deactivate();
+    }
+    publisher.deactivate();
+  }
+
+  @Test
+  public void testSharedMemoryRingOvertaken() throws Exception
+  {
+    testSharedMemoryRingOvertaken("overtaken.stateful", new DefaultStatefulStreamCodec<>());
+    testSharedMemoryRingOvertaken("overtaken.stateless", new DefaultKryoStreamCodec<>());
+  }
+
+  /**
+   * Publishes the windows to a ring too small to hold them while the subscriber is not consumed, so the subscriber is
+   * overtaken in the middle of a window and switches to the buffer server.
+   */
+  private void testSharedMemoryRingOvertaken(String id, StreamCodec<Object> codec) throws Exception
+  {
+    File ring = new File(folder.getRoot(), id);
+    BufferServerPublisher publisher = newPublisher(newPublisherContext(id, codec, ring, 4096));
+    publisher.put(new ResetWindowTuple(500));
+
+    StreamContext context = newSubscriberContext(id, codec, "subscriber." + id);
+    context.put(StreamContext.SHARED_MEMORY_RING, ring);
+    SharedMemorySubscriber subscriber = new SharedMemorySubscriber(context.getSinkId(), 16);
+    final List<Object> received = new ArrayList<>();
+    SweepableReservoir reservoir = newReservoir(subscriber, context, 1024, received);
+
+    final List<Object> tuples = new ArrayList<>();
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      List<Object> window = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        window.add("tuple" + windowId + '.' + i);
+      }
+      publish(publisher, window, windowId);
+      tuples.addAll(window);
+      if (windowId == 1) {
+        /* the subscriber reads the first messages from the ring */
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (subscriber.readByteCount.get() == 0 && System.currentTimeMillis() < deadline) {
+          Thread.sleep(5);
+        }
+        Assert.assertTrue("read from the ring", subscriber.readByteCount.get() > 0);
+      }
+    }
+
+    final long deadline = System.currentTimeMillis() + 30000;
+    int windows = 0;
+    while (windows < 5 && System.currentTimeMillis() < deadline) {
+      Tuple t = reservoir.sweep();
+      if (t == null) {
+        Thread.sleep(5);
+        continue;
+      }
+      reservoir.remove();
+      if (t instanceof EndWindowTuple) {
+        windows++;
+      }
+    }
+    Assert.assertTrue("read from the buffer server", subscriber.isSubscribed());
+    subscriber.deactivate();
+    publisher.deactivate();
+    Assert.assertEquals(tuples, received);
+  }
+
+  private StreamContext newPublisherContext(String id, StreamCodec<Object> codec, File ring, int ringSize)
+  {
+    StreamContext context = new StreamContext(id);
+    context.setSourceId(id);
+    context.setSinkId("subscriber." + id);
+    context.setFinishedWindowId(-1);
+    context.setBufferServerAddress(address);
+    context.put(StreamContext.CODEC, codec);
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    context.put(StreamContext.SHARED_MEMORY_RING, ring);
+    context.put(StreamContext.SHARED_MEMORY_RING_SIZE, ringSize);
+    return context;
+  }
+
+  private BufferServerPublisher newPublisher(StreamContext context)
+  {
+    BufferServerPublisher publisher = new BufferServerPublisher(context.getSourceId(), 16);
+    publisher.setup(context);
+    publisher.activate(context);
+    return publisher;
+  }
+
+  private void publish(BufferServerPublisher publisher, List<Object> tuples, long windowId)
+  {
+    publisher.put(new Tuple(MessageType.BEGIN_WINDOW, windowId));
+    for (Object tuple : tuples) {
+      publisher.put(tuple);
+    }
+    publisher.put(new EndWindowTuple(windowId));
+  }
+
+  private void publish(String id, StreamCodec<Object> codec, List<Object> tuples, boolean compression, int frameSize)
+  {
+    StreamContext context = new StreamContext(id);
+    context.setSourceId(id);
+    context.setSinkId("subscriber." + id);
+    context.setBufferServerAddress(address);
+    context.put(StreamContext.CODEC, codec);
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    context.put(PortContext.BUFFER_SERVER_COMPRESSION, compression);
+    context.put(PortContext.PAYLOAD_FRAME_SIZE, frameSize);
+
+    BufferServerPublisher publisher = new BufferServerPublisher(id, 16);
+    publisher.setup(context);
+    publisher.activate(context);
+    publisher.put(new Tuple(MessageType.BEGIN_WINDOW, 1L));
+    for (Object tuple : tuples) {
+      publisher.put(tuple);
+    }
+    publisher.put(new EndWindowTuple(1L));
+  }
+
+  private StreamContext newSubscriberContext(String id, StreamCodec<Object> codec, String sinkId)
+  {
+    StreamContext context = new StreamContext(id);
+    context.setSourceId(id);
+    context.setSinkId(sinkId);
+    context.setFinishedWindowId(-1);
+    context.setBufferServerAddress(address);
+    context.put(StreamContext.CODEC, codec);
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    return context;
+  }
+
+  private List<Object> subscribe(String id, StreamCodec<Object> codec, boolean rawTuples, int count) throws Exception
+  {
+    StreamContext context = newSubscriberContext(id, codec, "subscriber." + id);
+    context.put(PortContext.RAW_TUPLES, rawTuples);
+    return subscribe(context, count);
+  }
+
+  private List<Object> subscribe(StreamContext context, int count) throws Exception
+  {
+    BufferServerSubscriber subscriber = new BufferServerSubscriber(context.getSinkId(), 1024);
+    List<Object> received = receive(subscriber, context, count);
+    eventloop.disconnect(subscriber);
+    return received;
+  }
+
+  private SweepableReservoir newReservoir(BufferServerSubscriber subscriber, StreamContext context, int capacity,
+      final List<Object> received)
+  {
+    subscriber.setup(context);
+    SweepableReservoir reservoir = subscriber.acquireReservoir("testReservoir", capacity);
+    reservoir.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    subscriber.activate(context);
+    return reservoir;
+  }
+
+  /**
+   * Receives the tuples of the first window published to the stream.
+   */
+  private List<Object> receive(BufferServerSubscriber subscriber, StreamContext context, int count) throws Exception
+  {
+    final List<Object> received = new ArrayList<>();
+    SweepableReservoir reservoir = newReservoir(subscriber, context, count, received);
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (System.currentTimeMillis() < deadline) {
+      Tuple t = reservoir.sweep();
+      if (t == null) {
+        Thread.sleep(5);
+        continue;
+      }
+      reservoir.remove();
+      if (t instanceof EndWindowTuple) {
+        break;
+      }
+    }
+    Assert.assertEquals("received tuples", count, received.size());
+    return received;
+  }
+}
@@ -31,7 +31,10 @@ import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.support.StramTestSupport;
 
 /**
  *
@@ -122,5 +125,67 @@ public class BufferServerSubscriberTest
     Assert.assertEquals("10  received", 10, list.size());
   }
 
+  @Test
+  public void testAllocation()
+  {
+    final DefaultStatefulStreamCodec<Object> coder = new DefaultStatefulStreamCodec<>();
+    final int[] received = new int[1];
+    Sink<Object> sink = new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received[0]++;
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+
+    };
+
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 1024)
+    {
+      {
+        statefulSerde = coder.newInstance();
+      }
+
+      @Override
+      public void suspendRead()
+      {
+        throw new IllegalStateException("read suspended");
+      }
+
+    };
+
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 1024);
+    reservoir.setSink(sink);
+
+    /* the small integers are cached, so they do not allocate when deserialized */
+    byte[][] messages = new byte[64][];
+    for (int i = 0; i < messages.length; i++) {
+      DataStatePair dsp = coder.toDataStatePair(i);
+      Assert.assertNull("integer registered", dsp.state);
+      messages[i] = PayloadTuple.getSerializedTuple(coder.getPartition(i), dsp.data);
+    }
+
+    long allocated = 0;
+    for (int round = 0; round < 2; round++) {
+      allocated = StramTestSupport.getAllocatedBytes();
+      for (int i = 0; i < 2000; i++) {
+        for (byte[] message : messages) {
+          bss.onMessage(message, 0, message.length);
+        }
+        reservoir.sweep(); /* the messages make it to the reservoir */
+        reservoir.sweep(); /* and to the sink */
+      }
+      allocated = StramTestSupport.getAllocatedBytes() - allocated;
+    }
+    Assert.assertEquals("received", 2 * 2000 * messages.length, received[0]);
+    Assert.assertTrue("allocated " + allocated + " bytes", allocated < 2000 * messages.length);
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerSubscriberTest.class);
 }
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedMemoryRingTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static byte[] message(int i, int length)
+  {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte)i);
+    return bytes;
+  }
+
+  private static byte[] read(SharedMemoryRing.Cursor cursor)
+  {
+    int length = cursor.next();
+    Assert.assertTrue("message length " + length, length >= 0);
+    byte[] bytes = new byte[length];
+    Assert.assertTrue("message copied", cursor.read(bytes, 0));
+    return bytes;
+  }
+
+  @Test
+  public void testWriteRead() throws Exception
+  {
+    File file = new File(folder.getRoot(), "ring");
+    SharedMemoryRing writer = SharedMemoryRing.create(file, 4096, 5L);
+    SharedMemoryRing reader = SharedMemoryRing.open(file);
+    Assert.assertNotNull("opened ring", reader);
+    Assert.assertEquals("start window", 5L, reader.getStartWindowId());
+    Assert.assertEquals("capacity", 4096, reader.getCapacity());
+    writer.setWindowWidth(500);
+    Assert.assertEquals("window width", 500, reader.getWindowWidth());
+
+    SharedMemoryRing.Cursor cursor = reader.newCursor();
+    Assert.assertEquals("empty ring", SharedMemoryRing.NONE, cursor.next());
+    writer.write(6L, message(1, 10), 0, 10);
+    Assert.assertEquals("message not flushed", SharedMemoryRing.NONE, cursor.next());
+    writer.write(7L, message(2, 20), 0, 20);
+    writer.flush();
+    Assert.assertArrayEquals(message(1, 10), read(cursor));
+    Assert.assertEquals("window", 6L, cursor.getWindowId());
+    Assert.assertArrayEquals(message(2, 20), read(cursor));
+    Assert.assertEquals("window", 7L, cursor.getWindowId());
+    Assert.assertEquals("all read", SharedMemoryRing.NONE, cursor.next());
+
+    Assert.assertFalse("closed", reader.isClosed());
+    Assert.assertFalse("replaced", reader.isReplaced());
+    writer.delete();
+    Assert.assertTrue("closed", reader.isClosed());
+    Assert.assertTrue("deleted", reader.isReplaced());
+    Assert.assertFalse("ring file", file.exists());
+    Assert.assertNull("deleted ring", SharedMemoryRing.open(file));
+  }
+
+  @Test
+  public void testWrap() throws Exception
+  {
+    File file = new File(folder.getRoot(), "ring");
+    SharedMemoryRing writer = SharedMemoryRing.create(file, 1024, -1L);
+    SharedMemoryRing.Cursor cursor = SharedMemoryRing.open(file).newCursor();
+    /* messages of varying lengths wrap around the ring many times, leaving various gaps at its end */
+    for (int i = 0; i < 1000; i++) {
+      int length = (i * 7) % 200;
+      writer.write(i, message(i, length), 0, length);
+      writer.flush();
+      Assert.assertArrayEquals("message " + i, message(i, length), read(cursor));
+      Assert.assertEquals("window", i, cursor.getWindowId());
+    }
+    Assert.assertEquals("all read", SharedMemoryRing.NONE, cursor.next());
+    Assert.assertTrue("head moved", writer.getHead() > 0);
+  }
+
+  @Test
+  public void testLapped() throws Exception
+  {
+    File file = new File(folder.getRoot(), "ring");
+    SharedMemoryRing writer = SharedMemoryRing.create(file, 1024, -1L);
+    SharedMemoryRing reader = SharedMemoryRing.open(file);
+    SharedMemoryRing.Cursor cursor = reader.newCursor();
+    for (int i = 0; i < 100; i++) {
+      writer.write(i, message(i, 100), 0, 100);
+    }
+    writer.flush();
+    Assert.assertEquals("overwritten", SharedMemoryRing.LAPPED, cursor.next());
+
+    /* a new cursor starts at the oldest message still in the ring */
+    cursor = reader.newCursor();
+    long windowId = -1;
+    while (cursor.next() >= 0) {
+      byte[] bytes = new byte[100];
+      Assert.assertTrue(cursor.read(bytes, 0));
+      Assert.assertTrue("window order", cursor.getWindowId() > windowId);
+      windowId = cursor.getWindowId();
+      Assert.assertArrayEquals(message((int)windowId, 100), bytes);
+    }
+    Assert.assertEquals("last message", 99L, windowId);
+  }
+
+  @Test
+  public void testOversized() throws Exception
+  {
+    File file = new File(folder.getRoot(), "ring");
+    SharedMemoryRing writer = SharedMemoryRing.create(file, 1024, -1L);
+    SharedMemoryRing reader = SharedMemoryRing.open(file);
+    SharedMemoryRing.Cursor cursor = reader.newCursor();
+    writer.write(1L, message(1, 10), 0, 10);
+    writer.write(2L, message(2, 600), 0, 600);
+    writer.flush();
+    /* the messages which do not fit are skipped, the readers behind them are lapped */
+    Assert.assertEquals("skipped", SharedMemoryRing.LAPPED, cursor.next());
+
+    cursor = reader.newCursor();
+    Assert.assertEquals("empty ring", SharedMemoryRing.NONE, cursor.next());
+    writer.write(3L, message(3, 10), 0, 10);
+    writer.flush();
+    Assert.assertArrayEquals(message(3, 10), read(cursor));
+  }
+
+  @Test
+  public void testReplaced() throws Exception
+  {
+    File file = new File(folder.getRoot(), "ring");
+    SharedMemoryRing previous = SharedMemoryRing.create(file, 1024, -1L);
+    SharedMemoryRing reader = SharedMemoryRing.open(file);
+    SharedMemoryRing writer = SharedMemoryRing.create(file, 2048, 10L);
+    Assert.assertTrue("replaced", reader.isReplaced());
+    Assert.assertEquals("new ring", 10L, SharedMemoryRing.open(file).getStartWindowId());
+    /* the previous publisher does not delete the ring of its successor */
+    previous.delete();
+    Assert.assertTrue("ring file", file.exists());
+    writer.delete();
+    Assert.assertFalse("ring file", file.exists());
+  }
+
+  @Test
+  public void testDeleteStale() throws Exception
+  {
+    File live = new File(folder.getRoot(), "apex-app-live");
+    SharedMemoryRing ring = SharedMemoryRing.create(live, 1024, -1L);
+    /* a copy of the ring is not locked, as a ring left behind by a publisher which died */
+    File stale = new File(folder.getRoot(), "apex-app-stale");
+    Files.copy(live.toPath(), stale.toPath());
+    File staleTemp = folder.newFile("apex-app-stale.tmp");
+    Assert.assertTrue(staleTemp.setLastModified(System.currentTimeMillis() - 3600000));
+    File temp = folder.newFile("apex-app-new.tmp");
+    File other = folder.newFile("apex-app-other");
+    File otherApp = new File(folder.getRoot(), "apex-other-stale");
+    Files.copy(live.toPath(), otherApp.toPath());
+
+    Assert.assertEquals("deleted files", 2, SharedMemoryRing.deleteStale(folder.getRoot(), "apex-app-"));
+    Assert.assertTrue("live ring", live.exists());
+    Assert.assertFalse("stale ring", stale.exists());
+    Assert.assertFalse("stale temporary file", staleTemp.exists());
+    Assert.assertTrue("temporary file of a ring being created", temp.exists());
+    Assert.assertTrue("not a ring", other.exists());
+    Assert.assertTrue("ring of another application", otherApp.exists());
+
+    ring.delete();
+    Assert.assertEquals("deleted files", 1, SharedMemoryRing.deleteStale(folder.getRoot(), "apex-"));
+    Assert.assertFalse("ring of another application", otherApp.exists());
+  }
+}
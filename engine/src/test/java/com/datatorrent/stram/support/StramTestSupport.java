@@ -21,6 +21,7 @@ package com.datatorrent.stram.support;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.nio.file.FileAlreadyExistsException;
@@ -400,6 +401,15 @@ public abstract class StramTestSupport
     return "true".equals(System.getProperty("travis"));
   }
 
+  /**
+   * Returns the number of bytes allocated on the heap by the current thread so far, used by the tests to verify
+   * that a code path does not allocate.
+   */
+  public static long getAllocatedBytes()
+  {
+    return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
   public static class MemoryStorageAgent implements StorageAgent, Serializable
   {
     static class OperatorWindowIdPair implements Serializable
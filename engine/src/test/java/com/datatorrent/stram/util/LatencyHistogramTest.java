@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+  @Test
+  public void testBuckets()
+  {
+    Assert.assertEquals(0, LatencyHistogram.getBucket(-1));
+    Assert.assertEquals(0, LatencyHistogram.getBucket(0));
+    Assert.assertEquals(1, LatencyHistogram.getBucket(1));
+    Assert.assertEquals(2, LatencyHistogram.getBucket(2));
+    Assert.assertEquals(2, LatencyHistogram.getBucket(3));
+    Assert.assertEquals(3, LatencyHistogram.getBucket(4));
+    Assert.assertEquals(10, LatencyHistogram.getBucket(1023));
+    Assert.assertEquals(11, LatencyHistogram.getBucket(1024));
+    Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+    Assert.assertEquals(0, LatencyHistogram.getBucketUpperBound(0));
+    Assert.assertEquals(3, LatencyHistogram.getBucketUpperBound(2));
+    Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketUpperBound(LatencyHistogram.BUCKETS - 1));
+  }
+
+  @Test
+  public void testPercentiles()
+  {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getPercentile(50));
+    for (int i = 1; i <= 100; i++) {
+      histogram.add(i);
+    }
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(100, histogram.getMax());
+    Assert.assertEquals("50th percentile in [32, 64)", 63, histogram.getPercentile(50));
+    Assert.assertEquals("90th percentile capped at the max", 100, histogram.getPercentile(90));
+    Assert.assertEquals("1st percentile", 1, histogram.getPercentile(1));
+
+    LatencyHistogram other = new LatencyHistogram();
+    for (int i = 0; i < 300; i++) {
+      other.add(0);
+    }
+    other.add(5000);
+    histogram.merge(other);
+    Assert.assertEquals(401, histogram.getCount());
+    Assert.assertEquals(5000, histogram.getMax());
+    Assert.assertEquals(300, histogram.getCounts()[0]);
+    Assert.assertEquals(0, histogram.getPercentile(50));
+    Assert.assertEquals(127, histogram.getPercentile(99));
+    Assert.assertEquals(5000, histogram.getPercentile(100));
+  }
+}